@@ -63,6 +63,28 @@ public final class PropertyLoader {
         }
     }
 
+    public static long getLong(String key, long defaultValue) {
+        String val = get(key);
+        if (val == null)
+            return defaultValue;
+        try {
+            return Long.parseLong(val.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    public static double getDouble(String key, double defaultValue) {
+        String val = get(key);
+        if (val == null)
+            return defaultValue;
+        try {
+            return Double.parseDouble(val.trim());
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
     public static Properties all() {
         init();
         Properties copy = new Properties();
@@ -0,0 +1,313 @@
+package com.example.persistence_repository.persistence.cache;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.persistence_repository.persistence.config.RepositoryConfig;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+import com.example.persistence_repository.persistence.entity.relation.RelationshipMeta;
+
+/**
+ * Process-wide cache of {@code @OneToMany} collections.
+ * <p>
+ * An entry maps {@code (owner class, owner id, field)} to the primary keys of
+ * the children, in load order. As with {@link QueryCache}, only keys are
+ * stored; the repository resolves them through the transaction's
+ * {@link EntityCache} (and batch-loads the rest), so a hit costs at most one
+ * {@code IN} query and no query at all when the children are already cached.
+ * </p>
+ *
+ * <h3>Invalidation</h3>
+ * Owner repositories {@link #registerRole register} their collections. When a
+ * child is written, every collection it may belong to is dropped:
+ * <ul>
+ * <li>save / update: the collection of the owner its {@code mappedBy}
+ * (or {@code joinColumn}) field points at now;</li>
+ * <li>update / delete: every collection that currently lists the child (a
+ * reverse index child key &rarr; collections), which covers a child moved to
+ * another owner;</li>
+ * <li>bulk deletes: every collection of that child class.</li>
+ * </ul>
+ * Like {@link QueryCache}, a transaction that wrote a child class bypasses the
+ * cache for it until it ends, and the invalidations are replayed at commit or
+ * rollback. A per-child-class version, checked when storing, discards
+ * collections loaded while a write was in flight; stored entries are only
+ * dropped explicitly, so a write leaves unrelated collections cached.
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class CollectionCache {
+
+    private static final CollectionCache SHARED = new CollectionCache(RepositoryConfig.COLLECTION_CACHE_MAX_SIZE,
+            RepositoryConfig.COLLECTION_CACHE_TTL_MILLIS);
+
+    /**
+     * Identifies one collection: {@code ownerClass#field} of the owner with
+     * primary key {@code ownerId}.
+     */
+    public record CollectionKey(Class<?> ownerClass, Object ownerId, String field) {
+    }
+
+    // child class -> collections holding it
+    private final Map<Class<?>, List<Role>> roles = new ConcurrentHashMap<>();
+    private final Map<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+    private final int maxSize;
+    private final long ttlMillis;
+    // LRU entries and reverse index, both guarded by this
+    private final LinkedHashMap<CollectionKey, Entry> entries;
+    private final Map<EntityKey, Set<CollectionKey>> byChild = new HashMap<>();
+    // child classes written by the current transaction
+    private final TransactionWrites<Class<?>> writes = new TransactionWrites<>();
+
+    public CollectionCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Collection cache max size must be greater than 0");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CollectionKey, Entry> eldest) {
+                if (size() > CollectionCache.this.maxSize) {
+                    unindex(eldest.getKey(), eldest.getValue());
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    public static CollectionCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * Declares that {@code ownerClass} holds a collection of
+     * {@code rel.getTargetType()}. Idempotent.
+     *
+     * @param rel a {@code @OneToMany} relationship of {@code ownerClass}
+     */
+    public void registerRole(Class<?> ownerClass, RelationshipMeta rel) {
+        Class<?> childClass = rel.getTargetType();
+        List<Role> list = roles.computeIfAbsent(childClass, c -> new CopyOnWriteArrayList<>());
+        String field = rel.getField().getName();
+        for (Role role : list) {
+            if (role.ownerClass == ownerClass && role.field.equals(field)) {
+                return;
+            }
+        }
+        list.add(new Role(ownerClass, field, foreignKeyField(childClass, rel)));
+    }
+
+    /**
+     * Version of {@code childClass}; read it before loading a collection that
+     * will be {@link #put stored}.
+     */
+    public long version(Class<?> childClass) {
+        return versions.computeIfAbsent(childClass, c -> new AtomicLong()).get();
+    }
+
+    /**
+     * @return cached child keys, or null on a miss
+     */
+    public List<Object> get(CollectionKey key, Class<?> childClass) {
+        if (isWrittenInTransaction(childClass) || !TransactionManager.canReadSharedCaches()) {
+            return null;
+        }
+        synchronized (this) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                unindex(key, entry);
+                return null;
+            }
+            return entry.childIds;
+        }
+    }
+
+    /**
+     * Stores the child keys of a collection.
+     *
+     * @param version {@link #version(Class)} read before the collection was
+     *                loaded
+     */
+    public void put(CollectionKey key, Class<?> childClass, long version, List<Object> childIds) {
+        if (isWrittenInTransaction(childClass) || !TransactionManager.canFillSharedCaches()) {
+            return;
+        }
+        Entry entry = new Entry(childClass, List.copyOf(childIds), System.currentTimeMillis() + ttlMillis);
+        synchronized (this) {
+            if (version != version(childClass)) {
+                return;
+            }
+            Entry previous = entries.put(key, entry);
+            if (previous != null) {
+                unindex(key, previous);
+            }
+            for (Object id : entry.childIds) {
+                byChild.computeIfAbsent(EntityKey.of(childClass, id), k -> new HashSet<>()).add(key);
+            }
+        }
+    }
+
+    /**
+     * A child was inserted or updated: drops the collection of its current
+     * owner(s) and every collection that lists it.
+     */
+    public void childWritten(Object child) {
+        Class<?> childClass = child.getClass();
+        EntityKey childKey = EntityKey.of(child);
+        List<CollectionKey> owners = new ArrayList<>();
+        for (Role role : roles.getOrDefault(childClass, List.of())) {
+            Object ownerId = role.ownerId(child);
+            if (ownerId != null) {
+                owners.add(new CollectionKey(role.ownerClass, ownerId, role.field));
+            }
+        }
+        record(childClass, () -> {
+            synchronized (this) {
+                owners.forEach(this::remove);
+                if (childKey != null) {
+                    removeListing(childKey);
+                }
+            }
+        });
+    }
+
+    /**
+     * A child was deleted by primary key: drops every collection listing it.
+     */
+    public void childDeleted(Class<?> childClass, Object childId) {
+        EntityKey childKey = EntityKey.of(childClass, childId);
+        record(childClass, () -> {
+            synchronized (this) {
+                removeListing(childKey);
+            }
+        });
+    }
+
+    /**
+     * Children were written in bulk (e.g. delete by condition): drops every
+     * collection of {@code childClass}.
+     */
+    public void childClassWritten(Class<?> childClass) {
+        record(childClass, () -> invalidate(childClass));
+    }
+
+    /**
+     * Drops every collection of {@code childClass}.
+     */
+    public synchronized void invalidate(Class<?> childClass) {
+        versions.computeIfAbsent(childClass, c -> new AtomicLong()).incrementAndGet();
+        Iterator<Map.Entry<CollectionKey, Entry>> it = entries.entrySet().iterator();
+        while (it.hasNext()) {
+            Map.Entry<CollectionKey, Entry> e = it.next();
+            if (e.getValue().childClass == childClass) {
+                it.remove();
+                unindex(e.getKey(), e.getValue());
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        entries.clear();
+        byChild.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    private void record(Class<?> childClass, Runnable invalidation) {
+        versions.computeIfAbsent(childClass, c -> new AtomicLong()).incrementAndGet();
+        invalidation.run();
+        writes.record(childClass, () -> {
+            versions.get(childClass).incrementAndGet();
+            invalidation.run();
+        });
+    }
+
+    private boolean isWrittenInTransaction(Class<?> childClass) {
+        return writes.contains(childClass);
+    }
+
+    // callers hold the lock
+    private void remove(CollectionKey key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            unindex(key, entry);
+        }
+    }
+
+    private void removeListing(EntityKey childKey) {
+        Set<CollectionKey> listing = byChild.remove(childKey);
+        if (listing != null) {
+            new ArrayList<>(listing).forEach(this::remove);
+        }
+    }
+
+    private void unindex(CollectionKey key, Entry entry) {
+        for (Object id : entry.childIds) {
+            EntityKey childKey = EntityKey.of(entry.childClass, id);
+            Set<CollectionKey> listing = byChild.get(childKey);
+            if (listing != null) {
+                listing.remove(key);
+                if (listing.isEmpty()) {
+                    byChild.remove(childKey);
+                }
+            }
+        }
+    }
+
+    /**
+     * Field of the child holding the owner's id: the {@code mappedBy} field if
+     * it is a column, else the field mapped to {@code joinColumn}.
+     */
+    private static Field foreignKeyField(Class<?> childClass, RelationshipMeta rel) {
+        EntityMeta<?> childMeta = EntityMeta.scanAnnotation(childClass);
+        for (Field f : childMeta.getFields()) {
+            if (f.getName().equals(rel.getMappedBy())) {
+                return f;
+            }
+        }
+        for (Field f : childMeta.getFields()) {
+            if (rel.getJoinColumn() != null && rel.getJoinColumn().equalsIgnoreCase(childMeta.getColnumName(f.getName()))) {
+                return f;
+            }
+        }
+        throw new IllegalArgumentException("Cannot find the foreign key of " + childClass.getName()
+                + " for collection " + rel.getField().getDeclaringClass().getSimpleName() + "."
+                + rel.getField().getName());
+    }
+
+    private record Role(Class<?> ownerClass, String field, Field foreignKey) {
+        Object ownerId(Object child) {
+            try {
+                foreignKey.setAccessible(true);
+                return foreignKey.get(child);
+            } catch (IllegalAccessException e) {
+                return null;
+            }
+        }
+    }
+
+    private record Entry(Class<?> childClass, List<Object> childIds, long expiresAt) {
+    }
+}
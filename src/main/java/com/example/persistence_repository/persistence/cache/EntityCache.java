@@ -1,22 +1,45 @@
 package com.example.persistence_repository.persistence.cache;
 
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import com.example.persistence_repository.persistence.cache.stats.CacheStatistics;
+import com.example.persistence_repository.persistence.config.RepositoryConfig;
 
 /**
  * A simple in-memory cache implementation for entities.
  * <p>
- * This cache uses a ConcurrentHashMap to store entities with their keys.
+ * Entities are grouped in one region per entity class. Entities with a
+ * {@code Long} primary key (every model in this project) are stored in a
+ * {@link LongObjectMap} keyed by the primitive id, so the
+ * {@link #get(Class, Object)} / {@link #put(Class, Object, Object)} fast path
+ * and {@link #put(Iterable)} build no {@link EntityKey} and no hash entry per
+ * entity. Other key types fall back to a map keyed by {@link EntityKey}. The
+ * {@link EntityKey} methods of {@link PersistenceCache} dispatch to the same
+ * regions.
+ * </p>
+ * <p>
+ * With {@code repository.cache-stats.enabled}, lookups, puts and evictions
+ * are counted per entity class in {@link CacheStatistics#shared()}, shared by
+ * the caches of all transactions. Counting is not free: every lookup also
+ * feeds the hot-key sketch of its class, which may allocate.
  * </p>
- * 
+ * <p>
+ * Lookups take a read lock and run concurrently (e.g. from the children of
+ * {@code TransactionManager.parallel}); puts, removals and clears take the
+ * write lock and exclude each other and the lookups.
+ * </p>
+ *
  * @Key Entity name + primary key value
- * 
+ *
  *      <pre>
  * e.g., "User:1", "Product:42"
  *      </pre>
- * 
+ *
  * @Value Entity object
- * 
+ *
  * @author Kepter
  * @since 1.0
  */
@@ -25,40 +48,176 @@ public class EntityCache implements PersistenceCache<EntityKey, Object> {
     private final int maxSize;
     public static final int DEFAULT_MAX_SIZE = 1000;
     private long expirationTimeMillis = 10 * 60 * 1000;
-    private final Map<EntityKey, Object> cache = new ConcurrentHashMap<>();
+    // entity class -> entities by Long id
+    private final Map<Class<?>, LongObjectMap<Object>> regions = new HashMap<>();
+    // entities whose id is not a Long
+    private final Map<EntityKey, Object> others = new HashMap<>();
+    private int size;
+    // guards regions, others and size
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    // null when statistics are off
+    private final CacheStatistics statistics;
 
     public EntityCache(int maxSize, long expirationTimeMillis) {
+        this(maxSize, expirationTimeMillis, RepositoryConfig.CACHE_STATS_ENABLED ? CacheStatistics.shared() : null);
+    }
+
+    /**
+     * @param statistics receives this cache's counters; null for none
+     */
+    public EntityCache(int maxSize, long expirationTimeMillis, CacheStatistics statistics) {
         this.maxSize = maxSize;
         this.expirationTimeMillis = expirationTimeMillis;
+        this.statistics = statistics;
     }
 
     @Override
     public Object get(EntityKey key) {
-        return cache.get(key);
+        return get(key.getEntityClass(), key.getId());
+    }
+
+    /**
+     * Looks up an entity without building an {@link EntityKey}.
+     *
+     * @return the cached entity, or null
+     */
+    public Object get(Class<?> cls, Object id) {
+        Object value;
+        lock.readLock().lock();
+        try {
+            value = lookup(cls, id);
+        } finally {
+            lock.readLock().unlock();
+        }
+        if (statistics != null && id != null) {
+            if (value != null) {
+                statistics.recordHit(cls, id);
+            } else {
+                statistics.recordMiss(cls, id);
+            }
+        }
+        return value;
+    }
+
+    // caller holds a lock
+    private Object lookup(Class<?> cls, Object id) {
+        if (id instanceof Long longId) {
+            LongObjectMap<Object> region = regions.get(cls);
+            return region == null ? null : region.get(longId);
+        }
+        return id == null ? null : others.get(EntityKey.of(cls, id));
     }
 
     @Override
     public void put(EntityKey key, Object value) {
-        if (cache.size() >= maxSize) {
-            // Simple eviction policy: clear the cache when max size is reached
-            cache.clear();
+        put(key.getEntityClass(), key.getId(), value);
+    }
+
+    /**
+     * Caches {@code value} under {@code cls} and {@code id}. A null value
+     * removes the entry (a miss is not cached).
+     */
+    public void put(Class<?> cls, Object id, Object value) {
+        if (id == null) {
+            return;
+        }
+        if (value == null) {
+            remove(cls, id);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            if (size >= maxSize) {
+                // Simple eviction policy: clear the cache when max size is reached
+                if (statistics != null) {
+                    recordEvictions();
+                }
+                clearRegions();
+            }
+            Object previous;
+            if (id instanceof Long longId) {
+                previous = regions.computeIfAbsent(cls, c -> new LongObjectMap<>()).put(longId, value);
+            } else {
+                previous = others.put(EntityKey.of(cls, id), value);
+            }
+            if (previous == null) {
+                size++;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+        if (statistics != null) {
+            statistics.recordPut(cls);
         }
-        cache.put(key, value);
     }
 
     @Override
     public boolean contains(EntityKey key) {
-        return cache.containsKey(key);
+        lock.readLock().lock();
+        try {
+            return lookup(key.getEntityClass(), key.getId()) != null;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // caller holds the write lock
+    private void recordEvictions() {
+        regions.forEach((cls, region) -> statistics.recordEvictions(cls, region.size()));
+        for (EntityKey key : others.keySet()) {
+            statistics.recordEvictions(key.getEntityClass(), 1);
+        }
     }
 
     @Override
     public void remove(EntityKey key) {
-        cache.remove(key);
+        remove(key.getEntityClass(), key.getId());
+    }
+
+    public void remove(Class<?> cls, Object id) {
+        lock.writeLock().lock();
+        try {
+            Object removed = null;
+            if (id instanceof Long longId) {
+                LongObjectMap<Object> region = regions.get(cls);
+                if (region != null) {
+                    removed = region.remove(longId);
+                }
+            } else if (id != null) {
+                removed = others.remove(EntityKey.of(cls, id));
+            }
+            if (removed != null) {
+                size--;
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
     @Override
     public void clear() {
-        cache.clear();
+        lock.writeLock().lock();
+        try {
+            clearRegions();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // caller holds the write lock
+    private void clearRegions() {
+        regions.clear();
+        others.clear();
+        size = 0;
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return size;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public int getMaxSize() {
@@ -69,8 +228,19 @@ public class EntityCache implements PersistenceCache<EntityKey, Object> {
         return expirationTimeMillis;
     }
 
+    /**
+     * @return a snapshot of the cached entities; changes to it do not affect
+     *         the cache
+     */
     public Map<EntityKey, Object> getCache() {
-        return cache;
+        lock.readLock().lock();
+        try {
+            Map<EntityKey, Object> snapshot = new HashMap<>(others);
+            regions.forEach((cls, region) -> region.forEach((id, entity) -> snapshot.put(EntityKey.of(cls, id), entity)));
+            return snapshot;
+        } finally {
+            lock.readLock().unlock();
+        }
     }
 
     public static CacheBuilder builder() {
@@ -83,16 +253,22 @@ public class EntityCache implements PersistenceCache<EntityKey, Object> {
 
     @Override
     public void put(Iterable<EntityKey> keys, Iterable<Object> values) {
-        while (keys.iterator().hasNext() && values.iterator().hasNext()) {
-            put(keys.iterator().next(), values.iterator().next());
+        Iterator<EntityKey> k = keys.iterator();
+        Iterator<Object> v = values.iterator();
+        while (k.hasNext() && v.hasNext()) {
+            put(k.next(), v.next());
         }
     }
 
     public void put(Iterable<?> entities) {
+        if (entities == null) {
+            return;
+        }
         for (Object entity : entities) {
-            EntityKey key = EntityKey.of(entity);
-            if (key != null) {
-                put(key, entity);
+            try {
+                put(entity.getClass(), EntityKey.idOf(entity), entity);
+            } catch (Exception e) {
+                e.printStackTrace();
             }
         }
     }
@@ -105,7 +281,22 @@ public class EntityCache implements PersistenceCache<EntityKey, Object> {
 
     @Override
     public void clear(Class<?> cls) {
-        cache.keySet().removeIf(key -> key.getEntityClass().equals(cls));
+        lock.writeLock().lock();
+        try {
+            LongObjectMap<Object> region = regions.remove(cls);
+            if (region != null) {
+                size -= region.size();
+            }
+            Iterator<EntityKey> it = others.keySet().iterator();
+            while (it.hasNext()) {
+                if (it.next().getEntityClass().equals(cls)) {
+                    it.remove();
+                    size--;
+                }
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
     }
 
 }
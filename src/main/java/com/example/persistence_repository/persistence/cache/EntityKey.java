@@ -8,6 +8,19 @@ import java.util.Objects;
 import com.example.persistence_repository.persistence.annotation.Key;
 
 public final class EntityKey {
+    private static final ClassValue<Field> KEY_FIELDS = new ClassValue<>() {
+        @Override
+        protected Field computeValue(Class<?> clazz) {
+            for (Field field : clazz.getDeclaredFields()) {
+                if (field.isAnnotationPresent(Key.class)) {
+                    field.setAccessible(true);
+                    return field;
+                }
+            }
+            return null;
+        }
+    };
+
     private final Class<?> entityClass;
     private final Object id;
 
@@ -22,25 +35,28 @@ public final class EntityKey {
 
     public static EntityKey of(Object entity) {
         try {
-            Class<?> clazz = entity.getClass();
-            Field idField = null;
-            for (Field field : clazz.getDeclaredFields()) {
-                if (field.isAnnotationPresent(Key.class)) {
-                    idField = field;
-                    break;
-                }
-            }
-            if (idField == null) {
-                throw new IllegalArgumentException("No field annotated with @Key found in class " + clazz.getName());
-            }
-            idField.setAccessible(true);
-            return new EntityKey(clazz, idField.get(entity));
+            return new EntityKey(entity.getClass(), idOf(entity));
         } catch (Exception e) {
             e.printStackTrace();
             return null;
         }
     }
 
+    /**
+     * Reads the {@code @Key} field of {@code entity}; the field is looked up
+     * once per class.
+     *
+     * @throws IllegalArgumentException if the class has no {@code @Key} field
+     */
+    static Object idOf(Object entity) throws IllegalAccessException {
+        Field idField = KEY_FIELDS.get(entity.getClass());
+        if (idField == null) {
+            throw new IllegalArgumentException(
+                    "No field annotated with @Key found in class " + entity.getClass().getName());
+        }
+        return idField.get(entity);
+    }
+
     public static Iterable<EntityKey> of(Iterable<?> entities) {
         List<EntityKey> entityKeys = new ArrayList<>();
         for (Object entity : entities) {
@@ -0,0 +1,227 @@
+package com.example.persistence_repository.persistence.cache;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.persistence_repository.persistence.config.RepositoryConfig;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+
+/**
+ * Process-wide cache of query results, shared by all transactions.
+ * <p>
+ * An entry maps {@code (table, SQL, bound parameters)} to a result value. Two
+ * instances exist: {@link #shared()} keeps the primary keys a query returned,
+ * in result order (the repository resolves them through the transaction's
+ * {@link EntityCache}, so entity instances are never shared between
+ * transactions), and {@link #counts()} keeps row counts for pagination.
+ * </p>
+ *
+ * <h3>Invalidation</h3>
+ * Every table has a version counter. A write to the table (from any
+ * repository in the process) bumps the version and drops the table's entries;
+ * entries stored under an older version are never returned. Callers read
+ * {@link #version(String)} <b>before</b> running the query and pass it to
+ * {@link #put}, so a result computed concurrently with a write is discarded
+ * instead of being cached stale.
+ * <p>
+ * A transaction that wrote a table bypasses the cache for that table until it
+ * ends (its uncommitted rows must not leak to other transactions), and the
+ * table is invalidated once more when the transaction commits or rolls back.
+ * </p>
+ *
+ * <h3>Bounds</h3>
+ * At most {@code repository.query-cache.max-size} entries, least recently used
+ * first out, each living at most {@code repository.query-cache.ttl-ms}
+ * ({@code repository.count-cache.*} for the count cache).
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class QueryCache<V> {
+
+    private static final QueryCache<List<Object>> SHARED = new QueryCache<>(RepositoryConfig.QUERY_CACHE_MAX_SIZE,
+            RepositoryConfig.QUERY_CACHE_TTL_MILLIS);
+    private static final QueryCache<Long> COUNTS = new QueryCache<>(RepositoryConfig.COUNT_CACHE_MAX_SIZE,
+            RepositoryConfig.COUNT_CACHE_TTL_MILLIS);
+
+    private final int maxSize;
+    private final long ttlMillis;
+    private final Map<String, AtomicLong> versions = new ConcurrentHashMap<>();
+    // access-order map = LRU; guarded by this
+    private final LinkedHashMap<QueryKey, Entry<V>> entries;
+    // tables written by the current transaction
+    private final TransactionWrites<String> writes = new TransactionWrites<>();
+
+    public QueryCache(int maxSize, long ttlMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Query cache max size must be greater than 0");
+        }
+        this.maxSize = maxSize;
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<QueryKey, Entry<V>> eldest) {
+                return size() > QueryCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @return the result-key cache shared by all repositories
+     */
+    public static QueryCache<List<Object>> shared() {
+        return SHARED;
+    }
+
+    /**
+     * @return the (short-lived) row count cache shared by all repositories
+     */
+    public static QueryCache<Long> counts() {
+        return COUNTS;
+    }
+
+    /**
+     * Current version of {@code table}; read it before executing a query whose
+     * result will be {@link #put stored}.
+     */
+    public long version(String table) {
+        return counter(table).get();
+    }
+
+    /**
+     * @return cached value, or null on a miss (absent, expired, invalidated, or
+     *         the table was written by this transaction)
+     */
+    public V get(String table, String sql, List<Object> parameters) {
+        if (isWrittenInTransaction(table) || !TransactionManager.canReadSharedCaches()) {
+            return null;
+        }
+        QueryKey key = new QueryKey(normalize(table), sql, parameters);
+        synchronized (this) {
+            Entry<V> entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.version != version(table) || entry.expiresAt < System.currentTimeMillis()) {
+                entries.remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+    }
+
+    /**
+     * Stores the result of a query. The value must not be modified afterwards.
+     *
+     * @param version {@link #version(String)} read before the query ran; the
+     *                entry is dropped if the table was written since
+     */
+    public void put(String table, String sql, List<Object> parameters, long version, V value) {
+        if (isWrittenInTransaction(table) || version != version(table) || !TransactionManager.canFillSharedCaches()) {
+            return;
+        }
+        QueryKey key = new QueryKey(normalize(table), sql, parameters);
+        Entry<V> entry = new Entry<>(value, version, System.currentTimeMillis() + ttlMillis);
+        synchronized (this) {
+            // re-check under the lock: invalidate() bumps before it removes
+            if (version == version(table)) {
+                entries.put(key, entry);
+            }
+        }
+    }
+
+    /**
+     * Drops every entry of {@code table}.
+     */
+    public void invalidate(String table) {
+        String name = normalize(table);
+        counter(name).incrementAndGet();
+        synchronized (this) {
+            entries.keySet().removeIf(k -> k.table.equals(name));
+        }
+    }
+
+    /**
+     * Records a write to {@code table}: invalidates it now, bypasses the cache
+     * for it in the current transaction, and invalidates it again when the
+     * transaction ends.
+     */
+    public void tableWritten(String table) {
+        String name = normalize(table);
+        invalidate(name);
+        if (!writes.contains(name)) {
+            writes.record(name, () -> invalidate(name));
+        }
+    }
+
+    public synchronized void clear() {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        entries.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * @return true if the current transaction wrote {@code table}; it then
+     *         bypasses the cache (and must not share loads with other
+     *         transactions) until it ends
+     */
+    public boolean isWrittenInTransaction(String table) {
+        return writes.contains(normalize(table));
+    }
+
+    private AtomicLong counter(String table) {
+        return versions.computeIfAbsent(normalize(table), t -> new AtomicLong());
+    }
+
+    private static String normalize(String table) {
+        return table.toLowerCase();
+    }
+
+    private static final class QueryKey {
+        private final String table;
+        private final String sql;
+        private final List<Object> parameters;
+        private final int hash;
+
+        QueryKey(String table, String sql, List<Object> parameters) {
+            this.table = table;
+            this.sql = sql;
+            this.parameters = parameters == null ? List.of() : new ArrayList<>(parameters);
+            this.hash = 31 * (31 * table.hashCode() + sql.hashCode()) + this.parameters.hashCode();
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o)
+                return true;
+            if (!(o instanceof QueryKey other))
+                return false;
+            return hash == other.hash && table.equals(other.table) && sql.equals(other.sql)
+                    && parameters.equals(other.parameters);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+    }
+
+    private record Entry<V>(V value, long version, long expiresAt) {
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.persistence_repository.persistence.cache;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Runs cache refreshes in the background, at most one per key at a time.
+ * <p>
+ * Refreshes go to a fixed pool of daemon threads with a bounded queue; when
+ * the queue is full the refresh is dropped (the entry then simply expires and
+ * the next reader loads it). Outcomes are counted per entity class.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class RefreshAhead {
+
+    private final ThreadPoolExecutor executor;
+    private final Set<EntityKey> pending = ConcurrentHashMap.newKeySet();
+    private final Map<Class<?>, RefreshStats> stats = new ConcurrentHashMap<>();
+
+    /**
+     * @param threads   refresh threads
+     * @param queueSize refreshes waiting for a thread before new ones are
+     *                  dropped
+     */
+    public RefreshAhead(int threads, int queueSize) {
+        if (threads < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("Refresh threads and queue size must be greater than 0");
+        }
+        AtomicInteger count = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread thread = new Thread(r, "cache-refresh-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Schedules {@code refresh} for {@code key} unless a refresh of the key
+     * is already queued or running.
+     *
+     * @return true if the refresh was queued
+     */
+    public boolean schedule(EntityKey key, Runnable refresh) {
+        if (!pending.add(key)) {
+            return false;
+        }
+        RefreshStats classStats = stats(key.getEntityClass());
+        classStats.scheduled.incrementAndGet();
+        try {
+            executor.execute(() -> {
+                try {
+                    refresh.run();
+                    classStats.refreshed.incrementAndGet();
+                } catch (RuntimeException e) {
+                    classStats.failed.incrementAndGet();
+                    e.printStackTrace();
+                } finally {
+                    pending.remove(key);
+                }
+            });
+            return true;
+        } catch (RejectedExecutionException e) {
+            pending.remove(key);
+            classStats.scheduled.decrementAndGet();
+            classStats.rejected.incrementAndGet();
+            return false;
+        }
+    }
+
+    /**
+     * @return refresh counters of {@code cls}
+     */
+    public RefreshStats stats(Class<?> cls) {
+        return stats.computeIfAbsent(cls, c -> new RefreshStats());
+    }
+
+    /**
+     * @return refresh counters of every class refreshed so far
+     */
+    public Map<Class<?>, RefreshStats> getStats() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(stats));
+    }
+
+    /**
+     * @return refreshes queued or running
+     */
+    public int getPending() {
+        return pending.size();
+    }
+
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Refresh counters of one entity class.
+     */
+    public static final class RefreshStats {
+        private final AtomicLong scheduled = new AtomicLong();
+        private final AtomicLong refreshed = new AtomicLong();
+        private final AtomicLong failed = new AtomicLong();
+        private final AtomicLong rejected = new AtomicLong();
+
+        /**
+         * @return refreshes queued
+         */
+        public long getScheduled() {
+            return scheduled.get();
+        }
+
+        /**
+         * @return refreshes that completed
+         */
+        public long getRefreshed() {
+            return refreshed.get();
+        }
+
+        /**
+         * @return refreshes that threw
+         */
+        public long getFailed() {
+            return failed.get();
+        }
+
+        /**
+         * @return refreshes dropped because the queue was full
+         */
+        public long getRejected() {
+            return rejected.get();
+        }
+
+        @Override
+        public String toString() {
+            return "RefreshStats[scheduled=" + getScheduled() + ", refreshed=" + getRefreshed() + ", failed="
+                    + getFailed() + ", rejected=" + getRejected() + "]";
+        }
+    }
+}
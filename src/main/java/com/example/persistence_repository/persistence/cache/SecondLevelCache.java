@@ -0,0 +1,422 @@
+package com.example.persistence_repository.persistence.cache;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.LongPredicate;
+
+import com.example.persistence_repository.persistence.cache.offheap.CacheSnapshot;
+import com.example.persistence_repository.persistence.cache.RefreshAhead.RefreshStats;
+import com.example.persistence_repository.persistence.cache.invalidation.InvalidationBus;
+import com.example.persistence_repository.persistence.cache.offheap.OffHeapEntityStore;
+import com.example.persistence_repository.persistence.cache.stats.CacheStatistics;
+import com.example.persistence_repository.persistence.config.ConnectionPool.ConnectionFactory;
+import com.example.persistence_repository.persistence.config.DBcontext;
+import com.example.persistence_repository.persistence.config.RepositoryConfig;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+
+/**
+ * Process-wide entity cache behind {@code findById} / {@code findAllById},
+ * stored off-heap in an {@link OffHeapEntityStore}.
+ * <p>
+ * The per-transaction {@link EntityCache} is checked first; on a miss the
+ * repository asks this cache, and only then the database. Every hit
+ * materializes a fresh instance, so transactions never share entity objects.
+ * </p>
+ *
+ * <h3>Invalidation</h3>
+ * Same rules as {@link QueryCache}: a write drops the entity (or the whole
+ * class for bulk writes), a transaction that wrote a class bypasses the cache
+ * for it until it ends, and the eviction is replayed at commit or rollback. A
+ * per-class version, read before loading and checked when storing, discards
+ * rows loaded while a write was in flight.
+ *
+ * <h3>Refresh-ahead</h3>
+ * With {@code repository.l2-cache.ttl-ms} set, entries expire; with
+ * {@code repository.l2-cache.refresh-ahead} (a fraction of the TTL) as well,
+ * reading an entry past that fraction schedules a reload on a bounded
+ * {@link RefreshAhead} pool while readers keep getting the cached row, so hot
+ * entries are replaced before they expire. Refreshes read through the
+ * repository's loader on a connection of their own, never on a request
+ * thread's transaction; a refresh whose loader throws is rolled back.
+ * {@link #shutdown()} stops the refresh threads and closes their
+ * connections.
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class SecondLevelCache {
+
+    private static final SecondLevelCache SHARED = createShared();
+
+    private final OffHeapEntityStore store;
+    private final Map<Class<?>, AtomicLong> versions = new ConcurrentHashMap<>();
+    // classes written by the current transaction
+    private final TransactionWrites<Class<?>> writes = new TransactionWrites<>();
+    private final Map<Class<?>, Function<Object, ?>> loaders = new ConcurrentHashMap<>();
+    private volatile RefreshAhead refreshAhead;
+    // opens the connections of the refresh threads
+    private final ConnectionFactory connections;
+    // each refresh thread keeps its own connection
+    private final ThreadLocal<Connection> refreshConnection = new ThreadLocal<>();
+    // every refresh connection open, closed by shutdown()
+    private final Set<Connection> refreshConnections = ConcurrentHashMap.newKeySet();
+    private volatile boolean shutdown;
+
+    public SecondLevelCache(OffHeapEntityStore store) {
+        this(store, DBcontext::createConnection);
+    }
+
+    /**
+     * @param connections opens the connection each refresh thread reads on
+     */
+    public SecondLevelCache(OffHeapEntityStore store, ConnectionFactory connections) {
+        this.store = store;
+        this.connections = connections;
+    }
+
+    public static SecondLevelCache shared() {
+        return SHARED;
+    }
+
+    /**
+     * With {@code repository.l2-cache.snapshot.path} set, the shared cache is
+     * warmed from that file at startup and written back to it at JVM
+     * shutdown. The file is only loaded if the invalidations published since
+     * it was written can be replayed (the shared {@link InvalidationBus} is
+     * then started from the snapshot time), or entries expire.
+     */
+    private static SecondLevelCache createShared() {
+        SecondLevelCache cache = new SecondLevelCache(new OffHeapEntityStore(RepositoryConfig.L2_CACHE_MAX_BYTES,
+                RepositoryConfig.L2_CACHE_SLAB_BYTES, RepositoryConfig.L2_CACHE_TTL_MILLIS));
+        if (RepositoryConfig.CACHE_STATS_ENABLED) {
+            cache.store.setExpirationListener(
+                    key -> CacheStatistics.shared().recordExpiration(key.getEntityClass()));
+        }
+        double refreshAhead = RepositoryConfig.L2_CACHE_REFRESH_AHEAD;
+        if (RepositoryConfig.L2_CACHE_ENABLED && RepositoryConfig.L2_CACHE_TTL_MILLIS > 0 && refreshAhead > 0
+                && refreshAhead < 1) {
+            cache.enableRefreshAhead(new RefreshAhead(RepositoryConfig.L2_CACHE_REFRESH_THREADS,
+                    RepositoryConfig.L2_CACHE_REFRESH_QUEUE_SIZE),
+                    (long) (RepositoryConfig.L2_CACHE_TTL_MILLIS * refreshAhead));
+        }
+        String path = RepositoryConfig.L2_CACHE_SNAPSHOT_PATH;
+        if (RepositoryConfig.L2_CACHE_ENABLED && !path.isBlank()) {
+            Path file = Path.of(path);
+            if (Files.exists(file)) {
+                cache.loadSnapshot(file,
+                        created -> RepositoryConfig.INVALIDATION_ENABLED && InvalidationBus.startShared(created));
+            }
+            Runtime.getRuntime().addShutdownHook(new Thread(() -> cache.saveSnapshot(file, List.of()),
+                    "l2-cache-snapshot"));
+        }
+        if (cache.refreshAhead != null) {
+            Runtime.getRuntime().addShutdownHook(new Thread(cache::shutdown, "l2-cache-refresh-shutdown"));
+        }
+        return cache;
+    }
+
+    /**
+     * Registers the row mapper of a repository so cached entities come back
+     * with their relations wired.
+     *
+     * @return false if the class has columns the off-heap encoding cannot
+     *         store; it is then never cached
+     */
+    public <E> boolean register(EntityMeta<E> entityMeta, Function<Map<String, Object>, E> materializer) {
+        try {
+            store.register(entityMeta, materializer);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Registers a row mapper and the loader reading a fresh entity by id from
+     * the database (bypassing this cache), used by refresh-ahead.
+     */
+    public <E> boolean register(EntityMeta<E> entityMeta, Function<Map<String, Object>, E> materializer,
+            Function<Object, E> loader) {
+        if (!register(entityMeta, materializer)) {
+            return false;
+        }
+        loaders.put(entityMeta.getClazz(), loader);
+        return true;
+    }
+
+    /**
+     * Reloads entries read more than {@code refreshAfterMillis} after they
+     * were stored, on {@code refreshAhead}'s threads.
+     */
+    public void enableRefreshAhead(RefreshAhead refreshAhead, long refreshAfterMillis) {
+        this.refreshAhead = refreshAhead;
+        store.setRefreshAhead(refreshAfterMillis, this::scheduleRefresh);
+    }
+
+    /**
+     * @return refresh counters by entity class; empty when refresh-ahead is
+     *         off
+     */
+    public Map<Class<?>, RefreshStats> getRefreshStats() {
+        RefreshAhead refresh = refreshAhead;
+        return refresh == null ? Map.of() : refresh.getStats();
+    }
+
+    /**
+     * Version of {@code cls}; read it before loading entities that will be
+     * {@link #put stored}.
+     */
+    public long version(Class<?> cls) {
+        return counter(cls).get();
+    }
+
+    /**
+     * @return a new instance of the cached entity, or null on a miss
+     */
+    public Object get(Class<?> cls, Object id) {
+        if (isWrittenInTransaction(cls) || !TransactionManager.canReadSharedCaches()) {
+            return null;
+        }
+        return store.get(EntityKey.of(cls, id));
+    }
+
+    /**
+     * Stores an entity loaded from the database.
+     *
+     * @param version {@link #version(Class)} read before the entity was loaded
+     */
+    public void put(Object entity, long version) {
+        Class<?> cls = entity.getClass();
+        EntityKey key = EntityKey.of(entity);
+        if (key == null || isWrittenInTransaction(cls) || !TransactionManager.canFillSharedCaches()) {
+            return;
+        }
+        synchronized (this) {
+            // evict() bumps the version before removing
+            if (version == version(cls)) {
+                store.put(key, entity);
+            }
+        }
+    }
+
+    /**
+     * An entity was inserted, updated or deleted.
+     */
+    public void evict(Class<?> cls, Object id) {
+        EntityKey key = EntityKey.of(cls, id);
+        record(cls, () -> store.remove(key));
+    }
+
+    /**
+     * Entities of {@code cls} were written in bulk.
+     */
+    public void evictAll(Class<?> cls) {
+        record(cls, () -> store.clear(cls));
+    }
+
+    /**
+     * Drops an entity without the transaction bookkeeping of {@link #evict},
+     * e.g. for a write reported by another node.
+     */
+    public synchronized void invalidate(Class<?> cls, Object id) {
+        counter(cls).incrementAndGet();
+        store.remove(EntityKey.of(cls, id));
+    }
+
+    /**
+     * Drops every entity of {@code cls} without transaction bookkeeping.
+     */
+    public synchronized void invalidateAll(Class<?> cls) {
+        counter(cls).incrementAndGet();
+        store.clear(cls);
+    }
+
+    public synchronized void clear() {
+        versions.values().forEach(AtomicLong::incrementAndGet);
+        store.clear();
+    }
+
+    /**
+     * Writes the cached rows of {@code classes} (all when empty) to
+     * {@code file}; see {@link CacheSnapshot}.
+     *
+     * @return rows written, or -1 if the file could not be written
+     */
+    public int saveSnapshot(Path file, Collection<Class<?>> classes) {
+        try {
+            return CacheSnapshot.save(store, file, classes);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Loads a snapshot written by {@link #saveSnapshot}, unless it is older
+     * than {@code repository.l2-cache.snapshot.max-age-ms} or was written for
+     * another schema. Rows of classes whose columns changed are skipped.
+     *
+     * @return rows loaded, or -1 if the snapshot was rejected
+     */
+    public int loadSnapshot(Path file) {
+        try {
+            return CacheSnapshot.load(store, file, RepositoryConfig.L2_CACHE_SNAPSHOT_MAX_AGE_MILLIS);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return -1;
+        }
+    }
+
+    /**
+     * Loads a snapshot like {@link #loadSnapshot(Path)}, unless rows changed in
+     * the database since it was written could be served stale forever: that
+     * is, unless {@code replayed} confirms the invalidations published since
+     * the snapshot time will still be applied, or the store has a TTL (rows
+     * count as stored at the snapshot time, so stale ones expire with it).
+     *
+     * @param replayed given the snapshot time (epoch ms), arranges for the
+     *                 invalidations published since then to be received and
+     *                 tells whether that is possible
+     * @return rows loaded, or -1 if the snapshot was rejected
+     */
+    public int loadSnapshot(Path file, LongPredicate replayed) {
+        long created;
+        try {
+            created = CacheSnapshot.created(file);
+        } catch (Exception e) {
+            e.printStackTrace();
+            return -1;
+        }
+        if (!replayed.test(created) && store.getTtlMillis() <= 0) {
+            System.err.println("[SecondLevelCache] Ignoring snapshot " + file
+                    + ": writes made since it was taken cannot be replayed and entries never expire");
+            return -1;
+        }
+        return loadSnapshot(file);
+    }
+
+    public OffHeapEntityStore getStore() {
+        return store;
+    }
+
+    /**
+     * Stops refresh-ahead (running refreshes are interrupted) and closes the
+     * connections of the refresh threads. Cached rows stay readable.
+     */
+    public void shutdown() {
+        shutdown = true;
+        RefreshAhead refresh = refreshAhead;
+        if (refresh != null) {
+            refresh.shutdown();
+        }
+        for (Connection connection : refreshConnections) {
+            closeQuietly(connection);
+        }
+        refreshConnections.clear();
+    }
+
+    private void scheduleRefresh(EntityKey key) {
+        RefreshAhead refresh = refreshAhead;
+        Function<Object, ?> loader = loaders.get(key.getEntityClass());
+        if (refresh != null && loader != null) {
+            refresh.schedule(key, () -> refresh(key, loader));
+        }
+    }
+
+    // runs on a refresh thread
+    private void refresh(EntityKey key, Function<Object, ?> loader) {
+        Class<?> cls = key.getEntityClass();
+        long version = version(cls);
+        Object fresh = null;
+        try {
+            TransactionManager.beginTransaction(refreshConnection());
+            boolean loaded = false;
+            try {
+                fresh = loader.apply(key.getId());
+                loaded = true;
+            } finally {
+                if (loaded) {
+                    TransactionManager.commit();
+                } else {
+                    TransactionManager.rollback();
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot refresh " + key, e);
+        }
+        if (fresh != null) {
+            put(fresh, version);
+            return;
+        }
+        // the row is gone
+        synchronized (this) {
+            if (version == version(cls)) {
+                store.remove(key);
+            }
+        }
+    }
+
+    private Connection refreshConnection() throws SQLException {
+        Connection connection = refreshConnection.get();
+        if (connection == null || connection.isClosed()) {
+            if (connection != null) {
+                refreshConnections.remove(connection);
+            }
+            connection = connections.create();
+            refreshConnections.add(connection);
+            refreshConnection.set(connection);
+        }
+        if (shutdown) {
+            // raced with shutdown(): do not leave the connection behind
+            refreshConnections.remove(connection);
+            closeQuietly(connection);
+            throw new SQLException("Second-level cache is shut down");
+        }
+        return connection;
+    }
+
+    private static void closeQuietly(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void record(Class<?> cls, Runnable eviction) {
+        synchronized (this) {
+            counter(cls).incrementAndGet();
+            eviction.run();
+        }
+        writes.record(cls, () -> {
+            synchronized (this) {
+                counter(cls).incrementAndGet();
+                eviction.run();
+            }
+        });
+    }
+
+    /**
+     * @return true if the current transaction wrote {@code cls}; it then
+     *         bypasses the cache (and must not share loads with other
+     *         transactions) until it ends
+     */
+    public boolean isWrittenInTransaction(Class<?> cls) {
+        return writes.contains(cls);
+    }
+
+    private AtomicLong counter(Class<?> cls) {
+        return versions.computeIfAbsent(cls, c -> new AtomicLong());
+    }
+}
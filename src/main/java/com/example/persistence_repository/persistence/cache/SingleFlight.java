@@ -0,0 +1,295 @@
+package com.example.persistence_repository.persistence.cache;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import com.example.persistence_repository.persistence.config.RepositoryConfig;
+
+/**
+ * Coalesces concurrent loads of the same key into one.
+ * <p>
+ * The first caller for a key runs the loader; callers asking for the same key
+ * while that load is in flight wait for it and receive its result instead of
+ * running the same query again. Once the load completes the key is released,
+ * so the next miss loads again: this is not a cache, it only removes the
+ * stampede of identical queries behind a cache miss.
+ * </p>
+ *
+ * <h3>Failures and timeouts</h3>
+ * A waiting caller gives up after {@code timeoutMillis} and runs the loader
+ * itself, as it also does when the load it waited for failed. A caller that
+ * asks for a key its own thread is already loading (e.g. through an
+ * {@code EAGER} relation cycle) loads it directly instead of waiting on
+ * itself.
+ *
+ * <p>
+ * Results are handed to several threads, so values must not be modified by
+ * the callers.
+ * </p>
+ *
+ * @param <K> the key type
+ * @param <V> the loaded value type; null means "not found" and is shared too
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class SingleFlight<K, V> {
+
+    private static final SingleFlight<EntityKey, Map<String, Object>> ENTITIES = new SingleFlight<>(
+            RepositoryConfig.SINGLE_FLIGHT_TIMEOUT_MILLIS);
+    private static final SingleFlight<List<Object>, List<Object>> QUERIES = new SingleFlight<>(
+            RepositoryConfig.SINGLE_FLIGHT_TIMEOUT_MILLIS);
+
+    private final long timeoutMillis;
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    // keys the current thread is loading
+    private final ThreadLocal<Set<K>> leading = new ThreadLocal<>();
+
+    private final AtomicLong loads = new AtomicLong();
+    private final AtomicLong coalesced = new AtomicLong();
+    private final AtomicLong timeouts = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+
+    public SingleFlight(long timeoutMillis) {
+        if (timeoutMillis < 1) {
+            throw new IllegalArgumentException("Single-flight timeout must be greater than 0");
+        }
+        this.timeoutMillis = timeoutMillis;
+    }
+
+    /**
+     * @return the flights of entity rows ({@code findById}, {@code findAllById}
+     *         and lazy references), keyed by {@link EntityKey}
+     */
+    public static SingleFlight<EntityKey, Map<String, Object>> entities() {
+        return ENTITIES;
+    }
+
+    /**
+     * @return the flights of query results behind the {@link QueryCache}, keyed
+     *         by table, SQL and parameters
+     */
+    public static SingleFlight<List<Object>, List<Object>> queries() {
+        return QUERIES;
+    }
+
+    /**
+     * Loads {@code key}, or waits for the load of another thread already in
+     * flight.
+     *
+     * @param loader runs on the calling thread if it becomes the loader
+     * @return the loaded value
+     */
+    public V load(K key, Supplier<V> loader) {
+        if (isLeading(key)) {
+            return loader.get();
+        }
+        CompletableFuture<V> flight = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+        if (running == null) {
+            return lead(key, flight, loader);
+        }
+        try {
+            V value = running.get(timeoutMillis, TimeUnit.MILLISECONDS);
+            coalesced.incrementAndGet();
+            return value;
+        } catch (TimeoutException e) {
+            timeouts.incrementAndGet();
+        } catch (ExecutionException e) {
+            failures.incrementAndGet();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for a load of " + key, e);
+        }
+        loads.incrementAndGet();
+        return loader.get();
+    }
+
+    /**
+     * Loads several keys at once: keys nobody is loading are claimed and
+     * passed to {@code loader} in one call, then the keys loaded by other
+     * threads are awaited (sharing one deadline).
+     *
+     * @param loader loads the given keys; keys missing from its result are
+     *               "not found"
+     * @return the values found, by key
+     */
+    public Map<K, V> loadAll(Collection<K> keys, Function<Set<K>, Map<K, V>> loader) {
+        Set<K> claimed = new LinkedHashSet<>();
+        Set<K> reentrant = new LinkedHashSet<>();
+        Map<K, CompletableFuture<V>> flights = new LinkedHashMap<>();
+        Map<K, CompletableFuture<V>> awaited = new LinkedHashMap<>();
+        for (K key : keys) {
+            if (isLeading(key)) {
+                reentrant.add(key);
+                continue;
+            }
+            CompletableFuture<V> flight = new CompletableFuture<>();
+            CompletableFuture<V> running = inFlight.putIfAbsent(key, flight);
+            if (running == null) {
+                claimed.add(key);
+                flights.put(key, flight);
+            } else {
+                awaited.put(key, running);
+            }
+        }
+
+        Map<K, V> result = new HashMap<>();
+        if (!claimed.isEmpty()) {
+            loads.addAndGet(claimed.size());
+            claim(claimed);
+            Map<K, V> loaded = null;
+            try {
+                Set<K> batch = new LinkedHashSet<>(claimed);
+                batch.addAll(reentrant);
+                reentrant.clear();
+                loaded = loader.apply(batch);
+                putFound(result, loaded);
+            } finally {
+                for (Map.Entry<K, CompletableFuture<V>> e : flights.entrySet()) {
+                    release(e.getKey(), e.getValue(), loaded);
+                }
+                unclaim(claimed);
+            }
+        }
+
+        List<K> retry = new ArrayList<>(reentrant);
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        for (Map.Entry<K, CompletableFuture<V>> e : awaited.entrySet()) {
+            try {
+                V value = e.getValue().get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+                coalesced.incrementAndGet();
+                if (value != null) {
+                    result.put(e.getKey(), value);
+                }
+            } catch (TimeoutException ex) {
+                timeouts.incrementAndGet();
+                retry.add(e.getKey());
+            } catch (ExecutionException ex) {
+                failures.incrementAndGet();
+                retry.add(e.getKey());
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while waiting for a load of " + e.getKey(), ex);
+            }
+        }
+        if (!retry.isEmpty()) {
+            loads.addAndGet(retry.size());
+            putFound(result, loader.apply(new LinkedHashSet<>(retry)));
+        }
+        return result;
+    }
+
+    /**
+     * @return loads run (including fallbacks after a timeout or failure)
+     */
+    public long getLoads() {
+        return loads.get();
+    }
+
+    /**
+     * @return requests served by another thread's load
+     */
+    public long getCoalesced() {
+        return coalesced.get();
+    }
+
+    /**
+     * @return waits abandoned after the timeout
+     */
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    /**
+     * @return waits whose load failed
+     */
+    public long getFailures() {
+        return failures.get();
+    }
+
+    /**
+     * @return keys being loaded right now
+     */
+    public int getInFlight() {
+        return inFlight.size();
+    }
+
+    public long getTimeoutMillis() {
+        return timeoutMillis;
+    }
+
+    private V lead(K key, CompletableFuture<V> flight, Supplier<V> loader) {
+        loads.incrementAndGet();
+        claim(Set.of(key));
+        try {
+            V value = loader.get();
+            flight.complete(value);
+            return value;
+        } catch (RuntimeException | Error e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            unclaim(Set.of(key));
+            inFlight.remove(key, flight);
+        }
+    }
+
+    private boolean isLeading(K key) {
+        Set<K> mine = leading.get();
+        return mine != null && mine.contains(key);
+    }
+
+    // The set is dropped once empty, so threads that never lead a load (or
+    // short-lived virtual threads) keep no per-thread state
+    private void claim(Collection<K> keys) {
+        Set<K> mine = leading.get();
+        if (mine == null) {
+            mine = new HashSet<>();
+            leading.set(mine);
+        }
+        mine.addAll(keys);
+    }
+
+    private void unclaim(Collection<K> keys) {
+        Set<K> mine = leading.get();
+        mine.removeAll(keys);
+        if (mine.isEmpty()) {
+            leading.remove();
+        }
+    }
+
+    // loaded == null: the loader threw
+    private void release(K key, CompletableFuture<V> flight, Map<K, V> loaded) {
+        if (loaded == null) {
+            flight.completeExceptionally(new IllegalStateException("Load of " + key + " failed"));
+        } else {
+            flight.complete(loaded.get(key));
+        }
+        inFlight.remove(key, flight);
+    }
+
+    private static <K, V> void putFound(Map<K, V> result, Map<K, V> loaded) {
+        for (Map.Entry<K, V> e : loaded.entrySet()) {
+            if (e.getValue() != null) {
+                result.put(e.getKey(), e.getValue());
+            }
+        }
+    }
+}
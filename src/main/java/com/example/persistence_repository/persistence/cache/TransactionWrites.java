@@ -0,0 +1,62 @@
+package com.example.persistence_repository.persistence.cache;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.example.persistence_repository.persistence.config.TransactionManager;
+
+/**
+ * What the current transaction wrote, as seen by one shared cache: the
+ * written targets (classes or tables), which the transaction must read past
+ * the cache, and the invalidations to replay when it ends.
+ * <p>
+ * Kept as a transaction resource rather than a ThreadLocal, so it follows a
+ * transaction that is suspended and resumed on another thread.
+ * </p>
+ *
+ * @param <T> the written target type
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+final class TransactionWrites<T> {
+
+    private final Object key = new Object();
+
+    private static final class State<T> {
+        private final Set<T> written = new HashSet<>();
+        private final List<Runnable> replays = new ArrayList<>();
+    }
+
+    /**
+     * Records a write to {@code target} in the current transaction, if any.
+     *
+     * @param replay run again once the outermost transaction has ended; null
+     *               for none
+     */
+    void record(T target, Runnable replay) {
+        if (!TransactionManager.isActive()) {
+            return;
+        }
+        State<T> state = TransactionManager.getResource(key, () -> {
+            State<T> created = new State<>();
+            TransactionManager.registerCleanup(() -> created.replays.forEach(Runnable::run));
+            return created;
+        });
+        state.written.add(target);
+        if (replay != null) {
+            state.replays.add(replay);
+        }
+    }
+
+    /**
+     * @return true if the current transaction wrote {@code target}
+     */
+    boolean contains(T target) {
+        State<T> state = TransactionManager.findResource(key);
+        return state != null && state.written.contains(target);
+    }
+}
@@ -0,0 +1,433 @@
+package com.example.persistence_repository.persistence.cache.invalidation;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import com.example.persistence_repository.persistence.cache.CollectionCache;
+import com.example.persistence_repository.persistence.cache.QueryCache;
+import com.example.persistence_repository.persistence.cache.SecondLevelCache;
+import com.example.persistence_repository.persistence.config.RepositoryConfig;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+
+/**
+ * Propagates cache invalidations to the other nodes sharing the database.
+ * <p>
+ * Repositories report their writes here (in addition to invalidating the
+ * local caches). Writes made inside a transaction are collected per
+ * transaction and handed over only once it commits; a rollback drops them.
+ * Committed batches go to an outbox drained by one background thread, which
+ * merges whatever accumulated since its last run and publishes it through the
+ * {@link InvalidationTransport}.
+ * </p>
+ *
+ * <h3>Coalescing</h3>
+ * Duplicate events are sent once, a {@link InvalidationEvent.Kind#TABLE TABLE}
+ * event absorbs the entity events of its table, and more than
+ * {@code repository.invalidation.max-entity-events} entity events for one
+ * table are replaced by a single table event.
+ *
+ * <h3>Failures</h3>
+ * A batch the transport fails to publish goes back to the head of the
+ * outbox, ahead of anything queued since, and is published again (merged with
+ * the newer events) after {@code repository.invalidation.retry-ms}, doubling
+ * after each failure up to {@code repository.invalidation.retry-max-ms}.
+ * Events queued meanwhile wait for that retry.
+ *
+ * <h3>Receiving</h3>
+ * Events from other nodes drop the matching entries of the shared caches:
+ * query and count results of the table, the entity (or every entity of the
+ * class) in the {@link SecondLevelCache}, and the class's collections in the
+ * {@link CollectionCache} (the remote node does not say which owner a child
+ * belonged to).
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class InvalidationBus {
+
+    private static volatile InvalidationBus shared;
+
+    private final String nodeId;
+    private final InvalidationTransport transport;
+    private final int maxEntityEvents;
+    private final long retryMillis;
+    private final long retryMaxMillis;
+    private final Consumer<List<InvalidationEvent>> receiver;
+    // key of the current transaction's event batch (a transaction resource)
+    private final Object transactionEvents = new Object();
+    private final ConcurrentLinkedDeque<InvalidationEvent> outbox = new ConcurrentLinkedDeque<>();
+    private final AtomicBoolean drainScheduled = new AtomicBoolean();
+    // publish failures in a row, and when the next attempt is due (System.nanoTime); guarded by this
+    private int failures;
+    private long retryAt;
+    private final ScheduledExecutorService sender = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "cache-invalidation-sender");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Map<String, Class<?>> classes = new ConcurrentHashMap<>();
+    // events published since this time (epoch ms) are received
+    private volatile long startedAt = System.currentTimeMillis();
+
+    private final AtomicLong publishedEvents = new AtomicLong();
+    private final AtomicLong publishedBatches = new AtomicLong();
+    private final AtomicLong coalescedEvents = new AtomicLong();
+    private final AtomicLong receivedEvents = new AtomicLong();
+    private final AtomicLong failedPublishes = new AtomicLong();
+
+    /**
+     * Bus applying received events to the shared caches.
+     */
+    public InvalidationBus(String nodeId, InvalidationTransport transport, int maxEntityEvents) {
+        this(nodeId, transport, maxEntityEvents, null);
+    }
+
+    /**
+     * @param receiver handles received events instead of the shared caches;
+     *                 null for the default
+     */
+    public InvalidationBus(String nodeId, InvalidationTransport transport, int maxEntityEvents,
+            Consumer<List<InvalidationEvent>> receiver) {
+        this(nodeId, transport, maxEntityEvents, receiver, RepositoryConfig.INVALIDATION_RETRY_MILLIS,
+                RepositoryConfig.INVALIDATION_RETRY_MAX_MILLIS);
+    }
+
+    /**
+     * @param retryMillis    delay before publishing a failed batch again
+     * @param retryMaxMillis longest delay, reached by doubling
+     *                       {@code retryMillis} after each failure
+     */
+    public InvalidationBus(String nodeId, InvalidationTransport transport, int maxEntityEvents,
+            Consumer<List<InvalidationEvent>> receiver, long retryMillis, long retryMaxMillis) {
+        if (maxEntityEvents < 1) {
+            throw new IllegalArgumentException("Max entity events must be greater than 0");
+        }
+        if (retryMillis < 1 || retryMaxMillis < retryMillis) {
+            throw new IllegalArgumentException("Retry delay must be positive and not above the max retry delay");
+        }
+        this.nodeId = nodeId;
+        this.transport = transport;
+        this.maxEntityEvents = maxEntityEvents;
+        this.retryMillis = retryMillis;
+        this.retryMaxMillis = retryMaxMillis;
+        this.receiver = receiver != null ? receiver : this::applyToSharedCaches;
+        transport.start(nodeId, this::receive);
+    }
+
+    /**
+     * The bus configured by {@code repository.invalidation.*}, created on first
+     * use.
+     *
+     * @throws IllegalStateException if {@code repository.invalidation.enabled}
+     *                               is false
+     */
+    public static InvalidationBus shared() {
+        InvalidationBus bus = shared;
+        if (bus == null) {
+            synchronized (InvalidationBus.class) {
+                if (shared == null) {
+                    shared = createShared(0);
+                }
+                bus = shared;
+            }
+        }
+        return bus;
+    }
+
+    /**
+     * Starts the shared bus now, receiving the events other nodes published
+     * since {@code epochMillis} as well as new ones (see
+     * {@link InvalidationTransport#replayFrom}). Called at startup by caches
+     * restored from a snapshot taken at that time.
+     *
+     * @return false if those events cannot all be received: the transport
+     *         keeps no such history, or the shared bus was already started
+     *         later than {@code epochMillis}
+     * @throws IllegalStateException if {@code repository.invalidation.enabled}
+     *                               is false
+     */
+    public static boolean startShared(long epochMillis) {
+        synchronized (InvalidationBus.class) {
+            if (shared != null) {
+                return shared.startedAt <= epochMillis;
+            }
+            shared = createShared(epochMillis);
+            return shared.startedAt <= epochMillis;
+        }
+    }
+
+    /**
+     * @param replayFrom epoch ms of the oldest events to receive, 0 for new
+     *                   ones only
+     */
+    private static InvalidationBus createShared(long replayFrom) {
+        if (!RepositoryConfig.INVALIDATION_ENABLED) {
+            throw new IllegalStateException("Cache invalidation bus is disabled (repository.invalidation.enabled)");
+        }
+        String nodeId = RepositoryConfig.INVALIDATION_NODE_ID.isBlank() ? UUID.randomUUID().toString()
+                : RepositoryConfig.INVALIDATION_NODE_ID;
+        InvalidationTransport transport;
+        switch (RepositoryConfig.INVALIDATION_TRANSPORT.toLowerCase()) {
+            case "loopback":
+                transport = new LoopbackTransport();
+                break;
+            case "jdbc":
+                transport = new JdbcPollingTransport(RepositoryConfig.INVALIDATION_TABLE,
+                        RepositoryConfig.INVALIDATION_POLL_MILLIS, RepositoryConfig.INVALIDATION_RETENTION_MILLIS);
+                break;
+            default:
+                throw new IllegalArgumentException(
+                        "Unknown invalidation transport: " + RepositoryConfig.INVALIDATION_TRANSPORT);
+        }
+        long startedAt = System.currentTimeMillis();
+        if (replayFrom > 0 && transport.replayFrom(replayFrom)) {
+            startedAt = replayFrom;
+        }
+        InvalidationBus bus = new InvalidationBus(nodeId, transport, RepositoryConfig.INVALIDATION_MAX_ENTITY_EVENTS);
+        bus.startedAt = startedAt;
+        Runtime.getRuntime().addShutdownHook(new Thread(bus::close, "cache-invalidation-shutdown"));
+        return bus;
+    }
+
+    /**
+     * The row of {@code entityClass} with primary key {@code id} was written.
+     */
+    public void entityWritten(Class<?> entityClass, String table, Object id) {
+        if (id instanceof Long || id instanceof Integer || id instanceof String) {
+            add(InvalidationEvent.entity(entityClass, table, id));
+        } else {
+            add(InvalidationEvent.table(entityClass, table));
+        }
+    }
+
+    /**
+     * Rows of {@code entityClass} were written in bulk.
+     */
+    public void tableWritten(Class<?> entityClass, String table) {
+        add(InvalidationEvent.table(entityClass, table));
+    }
+
+    /**
+     * Publishes everything committed so far on the calling thread, without
+     * waiting for a scheduled retry.
+     */
+    public void flush() {
+        drain(true);
+    }
+
+    /**
+     * Flushes and stops the transport. Events that still cannot be published
+     * are lost.
+     */
+    public void close() {
+        drain(true);
+        sender.shutdownNow();
+        transport.close();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public long getPublishedEvents() {
+        return publishedEvents.get();
+    }
+
+    public long getPublishedBatches() {
+        return publishedBatches.get();
+    }
+
+    /**
+     * @return events dropped as duplicates or folded into a table event
+     */
+    public long getCoalescedEvents() {
+        return coalescedEvents.get();
+    }
+
+    public long getReceivedEvents() {
+        return receivedEvents.get();
+    }
+
+    /**
+     * @return batches the transport failed to publish (each retried later)
+     */
+    public long getFailedPublishes() {
+        return failedPublishes.get();
+    }
+
+    /**
+     * @return events waiting to be published
+     */
+    public int getPendingEvents() {
+        return outbox.size();
+    }
+
+    private void add(InvalidationEvent event) {
+        if (!TransactionManager.isActive()) {
+            enqueue(List.of(event));
+            return;
+        }
+        Set<InvalidationEvent> events = TransactionManager.getResource(transactionEvents, () -> {
+            Set<InvalidationEvent> batch = new LinkedHashSet<>();
+            TransactionManager.registerAfterCommit(() -> enqueue(batch));
+            return batch;
+        });
+        if (!events.add(event)) {
+            coalescedEvents.incrementAndGet();
+        }
+    }
+
+    private void enqueue(Collection<InvalidationEvent> events) {
+        outbox.addAll(events);
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> {
+                    drainScheduled.set(false);
+                    drain(false);
+                });
+            } catch (RuntimeException e) {
+                // sender shut down: publish on the caller
+                drainScheduled.set(false);
+                drain(false);
+            }
+        }
+    }
+
+    /**
+     * @param force publish now even if a retry after a failure is scheduled
+     */
+    private synchronized void drain(boolean force) {
+        if (!force && failures > 0 && System.nanoTime() - retryAt < 0) {
+            // the scheduled retry takes everything queued
+            return;
+        }
+        List<InvalidationEvent> events = new ArrayList<>();
+        InvalidationEvent event;
+        while ((event = outbox.poll()) != null) {
+            events.add(event);
+        }
+        if (events.isEmpty()) {
+            return;
+        }
+        List<InvalidationEvent> batch = coalesce(events, maxEntityEvents);
+        coalescedEvents.addAndGet(events.size() - batch.size());
+        try {
+            transport.publish(nodeId, batch);
+            publishedEvents.addAndGet(batch.size());
+            publishedBatches.incrementAndGet();
+            failures = 0;
+        } catch (Exception e) {
+            e.printStackTrace();
+            failedPublishes.incrementAndGet();
+            for (int i = batch.size() - 1; i >= 0; i--) {
+                outbox.offerFirst(batch.get(i));
+            }
+            long delay = Math.min(retryMaxMillis, retryMillis << Math.min(failures, 20));
+            failures++;
+            retryAt = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delay);
+            try {
+                sender.schedule(() -> drain(false), delay, TimeUnit.MILLISECONDS);
+            } catch (RejectedExecutionException rejected) {
+                // closing: the events stay in the outbox
+            }
+        }
+    }
+
+    /**
+     * Removes duplicates, folds entity events into the table event of their
+     * table, and replaces more than {@code maxEntityEvents} entity events of
+     * one table by a table event.
+     */
+    static List<InvalidationEvent> coalesce(List<InvalidationEvent> events, int maxEntityEvents) {
+        Map<String, InvalidationEvent> tableEvents = new HashMap<>();
+        Map<String, Set<InvalidationEvent>> entityEvents = new HashMap<>();
+        for (InvalidationEvent event : events) {
+            if (event.kind() == InvalidationEvent.Kind.TABLE) {
+                tableEvents.putIfAbsent(event.table(), event);
+            } else {
+                entityEvents.computeIfAbsent(event.table(), t -> new LinkedHashSet<>()).add(event);
+            }
+        }
+        for (Map.Entry<String, Set<InvalidationEvent>> e : entityEvents.entrySet()) {
+            if (!tableEvents.containsKey(e.getKey()) && e.getValue().size() > maxEntityEvents) {
+                InvalidationEvent first = e.getValue().iterator().next();
+                tableEvents.put(e.getKey(),
+                        new InvalidationEvent(InvalidationEvent.Kind.TABLE, first.table(), first.entityClass(), null));
+            }
+        }
+        List<InvalidationEvent> result = new ArrayList<>(tableEvents.values());
+        for (Map.Entry<String, Set<InvalidationEvent>> e : entityEvents.entrySet()) {
+            if (!tableEvents.containsKey(e.getKey())) {
+                result.addAll(e.getValue());
+            }
+        }
+        return result;
+    }
+
+    private void receive(List<InvalidationEvent> events) {
+        receivedEvents.addAndGet(events.size());
+        try {
+            receiver.accept(events);
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private void applyToSharedCaches(List<InvalidationEvent> events) {
+        Set<String> tables = new LinkedHashSet<>();
+        for (InvalidationEvent event : events) {
+            tables.add(event.table());
+            Class<?> cls = resolve(event.entityClass());
+            if (cls == null) {
+                continue;
+            }
+            if (RepositoryConfig.L2_CACHE_ENABLED) {
+                if (event.kind() == InvalidationEvent.Kind.ENTITY) {
+                    SecondLevelCache.shared().invalidate(cls, event.id());
+                } else {
+                    SecondLevelCache.shared().invalidateAll(cls);
+                }
+            }
+            if (RepositoryConfig.COLLECTION_CACHE_ENABLED) {
+                CollectionCache.shared().invalidate(cls);
+            }
+        }
+        for (String table : tables) {
+            if (RepositoryConfig.QUERY_CACHE_ENABLED) {
+                QueryCache.shared().invalidate(table);
+            }
+            if (RepositoryConfig.COUNT_CACHE_ENABLED) {
+                QueryCache.counts().invalidate(table);
+            }
+        }
+    }
+
+    private Class<?> resolve(String className) {
+        Class<?> cls = classes.get(className);
+        if (cls == null) {
+            try {
+                cls = Class.forName(className);
+                classes.put(className, cls);
+            } catch (ClassNotFoundException e) {
+                return null;
+            }
+        }
+        return cls;
+    }
+}
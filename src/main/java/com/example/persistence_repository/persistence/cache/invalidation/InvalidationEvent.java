@@ -0,0 +1,78 @@
+package com.example.persistence_repository.persistence.cache.invalidation;
+
+/**
+ * One cache invalidation sent between nodes.
+ * <ul>
+ * <li>{@link Kind#ENTITY}: the row of {@code entityClass} with primary key
+ * {@code id} was inserted, updated or deleted;</li>
+ * <li>{@link Kind#TABLE}: rows of {@code entityClass} (table {@code table})
+ * changed in bulk; everything cached for the class and table is stale.</li>
+ * </ul>
+ * Every event carries the table, so query results over it are dropped either
+ * way. Classes are referred to by name, since nodes share the model but not
+ * {@link Class} instances. Ids are limited to {@code Long}, {@code Integer}
+ * and {@code String}.
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public record InvalidationEvent(Kind kind, String table, String entityClass, Object id) {
+
+    public enum Kind {
+        ENTITY, TABLE
+    }
+
+    public InvalidationEvent {
+        if (kind == Kind.ENTITY && !(id instanceof Long || id instanceof Integer || id instanceof String)) {
+            throw new IllegalArgumentException("Unsupported id type for invalidation: " + id);
+        }
+        table = table.toLowerCase();
+    }
+
+    public static InvalidationEvent entity(Class<?> entityClass, String table, Object id) {
+        return new InvalidationEvent(Kind.ENTITY, table, entityClass.getName(), id);
+    }
+
+    public static InvalidationEvent table(Class<?> entityClass, String table) {
+        return new InvalidationEvent(Kind.TABLE, table, entityClass.getName(), null);
+    }
+
+    /**
+     * Text form used by transports that store or send strings, e.g.
+     * {@code E|product|com.example.Product|L42}.
+     */
+    public String encode() {
+        String head = (kind == Kind.ENTITY ? "E" : "T") + "|" + table + "|" + entityClass;
+        if (kind == Kind.TABLE) {
+            return head;
+        }
+        String typedId = id instanceof Long ? "L" + id : id instanceof Integer ? "I" + id : "S" + id;
+        return head + "|" + typedId;
+    }
+
+    /**
+     * @throws IllegalArgumentException if {@code text} was not produced by
+     *                                  {@link #encode()}
+     */
+    public static InvalidationEvent decode(String text) {
+        String[] parts = text.split("\\|", 4);
+        if (parts.length < 3) {
+            throw new IllegalArgumentException("Malformed invalidation event: " + text);
+        }
+        if (parts[0].equals("T")) {
+            return new InvalidationEvent(Kind.TABLE, parts[1], parts[2], null);
+        }
+        if (!parts[0].equals("E") || parts.length < 4 || parts[3].isEmpty()) {
+            throw new IllegalArgumentException("Malformed invalidation event: " + text);
+        }
+        String value = parts[3].substring(1);
+        Object id = switch (parts[3].charAt(0)) {
+            case 'L' -> Long.valueOf(value);
+            case 'I' -> Integer.valueOf(value);
+            case 'S' -> value;
+            default -> throw new IllegalArgumentException("Malformed invalidation event: " + text);
+        };
+        return new InvalidationEvent(Kind.ENTITY, parts[1], parts[2], id);
+    }
+}
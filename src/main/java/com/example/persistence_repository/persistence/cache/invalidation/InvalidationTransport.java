@@ -0,0 +1,59 @@
+package com.example.persistence_repository.persistence.cache.invalidation;
+
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Carries invalidation batches between the nodes sharing one database.
+ * <p>
+ * The {@link InvalidationBus} calls {@link #start} once with its node id and
+ * a listener, then {@link #publish} for every outgoing batch. A transport must
+ * deliver each published batch to the listeners of all <b>other</b> nodes
+ * (delivering to the publishing node is harmless but wasted work), at least
+ * once; order between batches does not matter since invalidations are
+ * idempotent.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public interface InvalidationTransport extends AutoCloseable {
+
+    /**
+     * Starts receiving.
+     *
+     * @param nodeId   id of the local node; batches it published must not be
+     *                 delivered back to it
+     * @param listener receives batches from other nodes, possibly on a
+     *                 transport thread
+     */
+    void start(String nodeId, Consumer<List<InvalidationEvent>> listener);
+
+    /**
+     * Asks the transport to also deliver, once started, the events published
+     * since {@code epochMillis}, e.g. while the node was down. Must be called
+     * before {@link #start}.
+     *
+     * @return false if the transport cannot do it (it keeps no history, or
+     *         may already have dropped some of those events)
+     */
+    default boolean replayFrom(long epochMillis) {
+        return false;
+    }
+
+    /**
+     * Sends a batch to the other nodes.
+     *
+     * @param nodeId id of the publishing node
+     * @throws IllegalStateException if the batch could not be sent; the bus
+     *                               keeps it and publishes it again later
+     */
+    void publish(String nodeId, List<InvalidationEvent> batch);
+
+    /**
+     * Stops receiving and releases resources.
+     */
+    @Override
+    void close();
+}
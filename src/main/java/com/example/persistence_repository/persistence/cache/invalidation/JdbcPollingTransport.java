@@ -0,0 +1,279 @@
+package com.example.persistence_repository.persistence.cache.invalidation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import com.example.persistence_repository.persistence.config.DBcontext;
+
+/**
+ * {@link InvalidationTransport} through a table of the shared database, so
+ * nodes need nothing but the database they already use.
+ * <p>
+ * {@link #publish} inserts one row per event; every node polls for rows with
+ * a higher id than the last one it saw, skipping its own. Since concurrent
+ * inserts may commit out of id order, each poll re-reads the last
+ * {@value #ID_LOOKBACK} ids and skips those already delivered. Rows older
+ * than the retention period are deleted by whichever node polls. The
+ * transport uses its own auto-commit connection, never a transaction's.
+ * </p>
+ * <p>
+ * A node normally starts at the newest row. After {@link #replayFrom}, it
+ * starts at the first row created since the given time instead, so its first
+ * poll delivers what other nodes published while it was down. That is only
+ * possible while those rows are within the retention period, and assumes the
+ * nodes' clocks agree (rows carry the publisher's time).
+ * </p>
+ *
+ * <pre>
+ * CREATE TABLE cache_invalidation (
+ *     id BIGINT AUTO_INCREMENT PRIMARY KEY,
+ *     node_id VARCHAR(64) NOT NULL,
+ *     event VARCHAR(1000) NOT NULL,
+ *     created_at BIGINT NOT NULL
+ * )
+ * </pre>
+ *
+ * The table is created on {@link #start} if missing.
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class JdbcPollingTransport implements InvalidationTransport {
+
+    static final int ID_LOOKBACK = 1000;
+
+    /**
+     * Opens the transport's own connection.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final ConnectionFactory connectionFactory;
+    private final String table;
+    private final long pollMillis;
+    private final long retentionMillis;
+    private ScheduledExecutorService poller;
+    private Connection connection;
+    private String nodeId;
+    private Consumer<List<InvalidationEvent>> listener;
+    private long lastSeenId;
+    // epoch ms of the oldest events to deliver on start, 0 = only new ones
+    private long replayFrom;
+    // ids delivered within the lookback window
+    private final Set<Long> seenIds = new HashSet<>();
+    private long lastPurge;
+
+    /**
+     * @param table           name of the event table
+     * @param pollMillis      delay between two polls
+     * @param retentionMillis age after which event rows are deleted; must be
+     *                        well above {@code pollMillis}
+     */
+    public JdbcPollingTransport(String table, long pollMillis, long retentionMillis) {
+        this(DBcontext::createConnection, table, pollMillis, retentionMillis);
+    }
+
+    /**
+     * @param connectionFactory opens the connection used for publishing and
+     *                          polling, instead of {@link DBcontext}
+     */
+    public JdbcPollingTransport(ConnectionFactory connectionFactory, String table, long pollMillis,
+            long retentionMillis) {
+        if (!table.matches("[A-Za-z_][A-Za-z0-9_]*")) {
+            throw new IllegalArgumentException("Invalid invalidation table name: " + table);
+        }
+        if (pollMillis < 1 || retentionMillis <= pollMillis) {
+            throw new IllegalArgumentException("Retention must be longer than the poll interval");
+        }
+        this.connectionFactory = connectionFactory;
+        this.table = table;
+        this.pollMillis = pollMillis;
+        this.retentionMillis = retentionMillis;
+    }
+
+    /**
+     * @return false if rows created at {@code epochMillis} may already have
+     *         been purged
+     */
+    @Override
+    public synchronized boolean replayFrom(long epochMillis) {
+        if (System.currentTimeMillis() - epochMillis >= retentionMillis) {
+            return false;
+        }
+        replayFrom = epochMillis;
+        return true;
+    }
+
+    @Override
+    public synchronized void start(String nodeId, Consumer<List<InvalidationEvent>> listener) {
+        this.nodeId = nodeId;
+        this.listener = listener;
+        try {
+            Connection conn = connection();
+            try (Statement st = conn.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS " + table + " (id BIGINT AUTO_INCREMENT PRIMARY KEY,"
+                        + " node_id VARCHAR(64) NOT NULL, event VARCHAR(1000) NOT NULL, created_at BIGINT NOT NULL)");
+                // only events published from now on are of interest
+                try (ResultSet rs = st.executeQuery("SELECT MAX(id) FROM " + table)) {
+                    lastSeenId = rs.next() ? rs.getLong(1) : 0;
+                }
+            }
+            if (replayFrom > 0) {
+                // ... or since the replay time
+                try (PreparedStatement ps = conn
+                        .prepareStatement("SELECT MIN(id) FROM " + table + " WHERE created_at >= ?")) {
+                    ps.setLong(1, replayFrom);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        if (rs.next() && rs.getObject(1) != null) {
+                            lastSeenId = rs.getLong(1) - 1;
+                        }
+                    }
+                }
+            }
+            try (PreparedStatement ps = conn
+                    .prepareStatement("SELECT id FROM " + table + " WHERE id > ? AND id <= ?")) {
+                ps.setLong(1, lastSeenId - ID_LOOKBACK);
+                ps.setLong(2, lastSeenId);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        seenIds.add(rs.getLong(1));
+                    }
+                }
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot start invalidation polling on " + table, e);
+        }
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "cache-invalidation-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::pollQuietly, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public synchronized void publish(String nodeId, List<InvalidationEvent> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        try (PreparedStatement ps = connection()
+                .prepareStatement("INSERT INTO " + table + " (node_id, event, created_at) VALUES (?, ?, ?)")) {
+            for (InvalidationEvent event : batch) {
+                ps.setString(1, nodeId);
+                ps.setString(2, event.encode());
+                ps.setLong(3, now);
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        } catch (SQLException e) {
+            // reconnect on the next attempt
+            closeConnection();
+            throw new IllegalStateException("Cannot publish invalidations to " + table, e);
+        }
+    }
+
+    /**
+     * Reads and delivers the events published by other nodes since the last
+     * poll. Called by the poller thread; public for tests.
+     *
+     * @return number of events delivered
+     */
+    public int poll() throws SQLException {
+        List<InvalidationEvent> events = new ArrayList<>();
+        synchronized (this) {
+            try (PreparedStatement ps = connection()
+                    .prepareStatement("SELECT id, node_id, event FROM " + table + " WHERE id > ? ORDER BY id")) {
+                ps.setLong(1, lastSeenId - ID_LOOKBACK);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) {
+                        long id = rs.getLong(1);
+                        if (!seenIds.add(id)) {
+                            continue;
+                        }
+                        lastSeenId = Math.max(lastSeenId, id);
+                        if (!nodeId.equals(rs.getString(2))) {
+                            try {
+                                events.add(InvalidationEvent.decode(rs.getString(3)));
+                            } catch (IllegalArgumentException e) {
+                                e.printStackTrace();
+                            }
+                        }
+                    }
+                }
+            }
+            long floor = lastSeenId - ID_LOOKBACK;
+            seenIds.removeIf(id -> id <= floor);
+            purge();
+        }
+        if (!events.isEmpty()) {
+            listener.accept(events);
+        }
+        return events.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (poller != null) {
+            poller.shutdownNow();
+            poller = null;
+        }
+        closeConnection();
+    }
+
+    // caller holds the lock
+    private void closeConnection() {
+        if (connection != null) {
+            try {
+                connection.close();
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            connection = null;
+        }
+    }
+
+    private void pollQuietly() {
+        try {
+            poll();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    // caller holds the lock
+    private void purge() throws SQLException {
+        long now = System.currentTimeMillis();
+        if (now - lastPurge < retentionMillis) {
+            return;
+        }
+        lastPurge = now;
+        try (PreparedStatement ps = connection().prepareStatement("DELETE FROM " + table + " WHERE created_at < ?")) {
+            ps.setLong(1, now - retentionMillis);
+            ps.executeUpdate();
+        }
+    }
+
+    // caller holds the lock
+    private Connection connection() throws SQLException {
+        if (connection == null || connection.isClosed()) {
+            connection = connectionFactory.create();
+            connection.setAutoCommit(true);
+        }
+        return connection;
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.persistence_repository.persistence.cache.invalidation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+
+/**
+ * In-JVM {@link InvalidationTransport}: every bus started on the same
+ * instance is a "node", and a published batch is handed synchronously to the
+ * listeners of the other nodes. Meant for tests and local runs of several
+ * simulated nodes; a single node gains nothing from it.
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class LoopbackTransport implements InvalidationTransport {
+
+    private final Map<String, Consumer<List<InvalidationEvent>>> listeners = new ConcurrentHashMap<>();
+
+    @Override
+    public void start(String nodeId, Consumer<List<InvalidationEvent>> listener) {
+        listeners.put(nodeId, listener);
+    }
+
+    @Override
+    public void publish(String nodeId, List<InvalidationEvent> batch) {
+        listeners.forEach((node, listener) -> {
+            if (!node.equals(nodeId)) {
+                listener.accept(batch);
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        listeners.clear();
+    }
+}
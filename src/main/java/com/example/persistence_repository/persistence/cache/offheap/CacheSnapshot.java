@@ -0,0 +1,232 @@
+package com.example.persistence_repository.persistence.cache.offheap;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.persistence_repository.persistence.cache.EntityKey;
+
+/**
+ * Writes the rows of an {@link OffHeapEntityStore} to a file and loads them
+ * back, so a restarted node starts with a warm cache.
+ *
+ * <h3>File layout</h3>
+ *
+ * <pre>
+ * header   int magic "L2SN", int format version, long created (epoch ms), int section count
+ * section  int name length, class name (UTF-8), long schema fingerprint, int row count, rows
+ * row      byte id type (1 = Long, 2 = Integer, 3 = String), id, int row length, {@link RowCodec} row
+ * </pre>
+ *
+ * Rows are copied as encoded, without materializing entities. Loading maps
+ * the file read-only with {@link FileChannel#map} and copies each row straight
+ * into the store. A file with another magic or format version, or older than
+ * the allowed age, is rejected as a whole; a section whose class is gone or
+ * whose {@link RowCodec#fingerprint() fingerprint} differs from the current
+ * {@code EntityMeta} (a column was added, renamed or retyped) is skipped.
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public final class CacheSnapshot {
+
+    static final int MAGIC = 0x4C32534E;
+    static final int FORMAT_VERSION = 1;
+
+    private static final byte ID_LONG = 1;
+    private static final byte ID_INT = 2;
+    private static final byte ID_STRING = 3;
+
+    private CacheSnapshot() {
+    }
+
+    /**
+     * Writes the rows of {@code classes} (every class when null or empty) to
+     * {@code file}, replacing it atomically.
+     *
+     * @return number of rows written
+     */
+    public static int save(OffHeapEntityStore store, Path file, Collection<Class<?>> classes) throws IOException {
+        Map<Class<?>, List<Row>> sections = new LinkedHashMap<>();
+        store.forEachRow((key, data) -> {
+            Class<?> cls = key.getEntityClass();
+            if (classes == null || classes.isEmpty() || classes.contains(cls)) {
+                Object id = key.getId();
+                if (id instanceof Long || id instanceof Integer || id instanceof String) {
+                    sections.computeIfAbsent(cls, c -> new ArrayList<>()).add(new Row(id, data));
+                }
+            }
+        });
+
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        int written = 0;
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(FORMAT_VERSION);
+            out.writeLong(System.currentTimeMillis());
+            out.writeInt(sections.size());
+            for (Map.Entry<Class<?>, List<Row>> section : sections.entrySet()) {
+                byte[] name = section.getKey().getName().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(name.length);
+                out.write(name);
+                out.writeLong(store.codec(section.getKey()).fingerprint());
+                out.writeInt(section.getValue().size());
+                for (Row row : section.getValue()) {
+                    writeId(out, row.id);
+                    out.writeInt(row.data.length);
+                    out.write(row.data);
+                    written++;
+                }
+            }
+        }
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        return written;
+    }
+
+    /**
+     * Reads when a snapshot was written, without loading it.
+     *
+     * @return the creation time stored in the header (epoch ms)
+     * @throws IllegalStateException if the file is not a compatible snapshot
+     */
+    public static long created(Path file) throws IOException {
+        try (DataInputStream in = new DataInputStream(Files.newInputStream(file))) {
+            if (in.readInt() != MAGIC) {
+                throw new IllegalStateException("Not a cache snapshot: " + file);
+            }
+            int version = in.readInt();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalStateException("Unsupported cache snapshot version " + version + ": " + file);
+            }
+            return in.readLong();
+        } catch (EOFException e) {
+            throw new IllegalStateException("Not a cache snapshot: " + file, e);
+        }
+    }
+
+    /**
+     * Loads a snapshot written by {@link #save} into {@code store}.
+     *
+     * @param maxAgeMillis reject snapshots older than this; 0 or less accepts
+     *                     any age
+     * @return number of rows loaded
+     * @throws IllegalStateException if the file is not a compatible snapshot,
+     *                               is too old or is truncated
+     */
+    public static int load(OffHeapEntityStore store, Path file, long maxAgeMillis) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            MappedByteBuffer in = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                if (in.remaining() < 20 || in.getInt() != MAGIC) {
+                    throw new IllegalStateException("Not a cache snapshot: " + file);
+                }
+                int version = in.getInt();
+                if (version != FORMAT_VERSION) {
+                    throw new IllegalStateException("Unsupported cache snapshot version " + version + ": " + file);
+                }
+                long created = in.getLong();
+                if (maxAgeMillis > 0 && System.currentTimeMillis() - created > maxAgeMillis) {
+                    throw new IllegalStateException("Cache snapshot is older than " + maxAgeMillis + " ms: " + file);
+                }
+                int loaded = 0;
+                int sections = in.getInt();
+                for (int s = 0; s < sections; s++) {
+                    loaded += loadSection(store, in, created);
+                }
+                return loaded;
+            } catch (BufferUnderflowException e) {
+                throw new IllegalStateException("Truncated cache snapshot: " + file, e);
+            }
+        }
+    }
+
+    private static int loadSection(OffHeapEntityStore store, MappedByteBuffer in, long created) {
+        byte[] name = new byte[in.getInt()];
+        in.get(name);
+        long fingerprint = in.getLong();
+        int count = in.getInt();
+
+        Class<?> cls = compatibleClass(store, new String(name, StandardCharsets.UTF_8), fingerprint);
+        List<Row> rows = new ArrayList<>(cls == null ? 0 : count);
+        for (int i = 0; i < count; i++) {
+            Object id = readId(in);
+            int length = in.getInt();
+            if (cls == null) {
+                in.position(in.position() + length);
+                continue;
+            }
+            byte[] data = new byte[length];
+            in.get(data);
+            rows.add(new Row(id, data));
+        }
+        // only once the whole section was read, so a truncated file adds nothing half-read;
+        // rows are at least as old as the snapshot, which is what their TTL counts from
+        for (Row row : rows) {
+            store.putRow(EntityKey.of(cls, row.id), row.data, created);
+        }
+        return rows.size();
+    }
+
+    private static Class<?> compatibleClass(OffHeapEntityStore store, String className, long fingerprint) {
+        try {
+            Class<?> cls = Class.forName(className);
+            return store.codec(cls).fingerprint() == fingerprint ? cls : null;
+        } catch (ClassNotFoundException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void writeId(DataOutputStream out, Object id) throws IOException {
+        if (id instanceof Long l) {
+            out.writeByte(ID_LONG);
+            out.writeLong(l);
+        } else if (id instanceof Integer i) {
+            out.writeByte(ID_INT);
+            out.writeInt(i);
+        } else {
+            byte[] bytes = ((String) id).getBytes(StandardCharsets.UTF_8);
+            out.writeByte(ID_STRING);
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static Object readId(MappedByteBuffer in) {
+        byte type = in.get();
+        switch (type) {
+            case ID_LONG:
+                return in.getLong();
+            case ID_INT:
+                return in.getInt();
+            case ID_STRING:
+                byte[] bytes = new byte[in.getInt()];
+                in.get(bytes);
+                return new String(bytes, StandardCharsets.UTF_8);
+            default:
+                throw new IllegalStateException("Corrupted cache snapshot: unknown id type " + type);
+        }
+    }
+
+    private record Row(Object id, byte[] data) {
+    }
+}
@@ -0,0 +1,400 @@
+package com.example.persistence_repository.persistence.cache.offheap;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiConsumer;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import com.example.persistence_repository.persistence.cache.EntityKey;
+import com.example.persistence_repository.persistence.cache.PersistenceCache;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+
+/**
+ * {@link PersistenceCache} keeping entities outside the Java heap.
+ * <p>
+ * Entities are stored as {@link RowCodec} rows in direct {@link ByteBuffer}
+ * slabs, so a large cache adds almost nothing to GC work: the heap only holds
+ * the index ({@link EntityKey} &rarr; slab and offset). {@link #get} copies
+ * the row out and materializes a <b>new</b> entity each time, through the row
+ * mapper {@link #register registered} for its class (the repository's, which
+ * also wires relations) or, failing that, with scalar columns only.
+ * </p>
+ *
+ * <h3>Memory budget</h3>
+ * The budget is split into {@code maxBytes / slabBytes} slabs, allocated on
+ * first use. Rows are appended to the current slab; when it is full the next
+ * one is taken, and once all exist the oldest is recycled, dropping every row
+ * it held (FIFO eviction by slab). Removed or replaced rows keep their space
+ * until their slab is recycled. Rows larger than a slab are not cached.
+ *
+ * <h3>Expiry and refresh-ahead</h3>
+ * Every row is stamped with the time it was stored. With a TTL, an older row
+ * is dropped on access and reported as a miss. With
+ * {@link #setRefreshAhead refresh-ahead}, reading a row older than the
+ * refresh threshold still returns it but also notifies a listener, which
+ * reloads it in the background before it expires.
+ *
+ * <h3>Limits</h3>
+ * Only the rows are off-heap. The index is an on-heap {@code HashMap} of
+ * {@link EntityKey} to a boxed address, roughly 100 bytes of heap per cached
+ * row, so a store of tens of millions of small rows still costs gigabytes of
+ * heap and GC scanning; size {@code repository.l2-cache.max-bytes} with that
+ * in mind. Every operation also takes the store's single monitor: slab
+ * allocation is sequential by design, and reads hold it while copying the
+ * row bytes out (decoding and materializing run outside it). Under heavy
+ * read concurrency the store serializes; keep the hottest entities in the
+ * per-transaction {@code EntityCache} in front of it.
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class OffHeapEntityStore implements PersistenceCache<EntityKey, Object> {
+
+    // slab record: int row length, long stored-at (epoch ms), row
+    private static final int HEADER_BYTES = Integer.BYTES + Long.BYTES;
+
+    private final int slabBytes;
+    private final long ttlMillis;
+    private final ByteBuffer[] slabs;
+    // keys written to each slab, possibly since moved or removed
+    private final List<List<EntityKey>> slabKeys;
+    private final Map<EntityKey, Long> index = new HashMap<>();
+    private final Map<Class<?>, RowCodec> codecs = new ConcurrentHashMap<>();
+    private final Map<Class<?>, Function<Map<String, Object>, ?>> materializers = new ConcurrentHashMap<>();
+    private volatile long refreshAfterMillis;
+    private volatile Consumer<EntityKey> refreshListener;
+    private volatile Consumer<EntityKey> expirationListener;
+    private int currentSlab;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long expirations;
+
+    /**
+     * Store whose rows never expire.
+     */
+    public OffHeapEntityStore(long maxBytes, int slabBytes) {
+        this(maxBytes, slabBytes, 0);
+    }
+
+    /**
+     * @param ttlMillis age after which a row is dropped; 0 or less keeps rows
+     *                  until evicted
+     */
+    public OffHeapEntityStore(long maxBytes, int slabBytes, long ttlMillis) {
+        if (slabBytes < 64) {
+            throw new IllegalArgumentException("Slab size must be at least 64 bytes");
+        }
+        if (maxBytes < slabBytes) {
+            throw new IllegalArgumentException("Off-heap budget must hold at least one slab");
+        }
+        long count = maxBytes / slabBytes;
+        if (count > Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("Too many slabs: " + count);
+        }
+        this.slabBytes = slabBytes;
+        this.ttlMillis = ttlMillis;
+        this.slabs = new ByteBuffer[(int) count];
+        this.slabKeys = new ArrayList<>(slabs.length);
+        for (int i = 0; i < slabs.length; i++) {
+            slabKeys.add(new ArrayList<>());
+        }
+    }
+
+    /**
+     * Registers the row mapper used to materialize entities of
+     * {@code entityMeta}'s class.
+     */
+    public <E> void register(EntityMeta<E> entityMeta, Function<Map<String, Object>, E> materializer) {
+        codecs.put(entityMeta.getClazz(), RowCodec.of(entityMeta));
+        materializers.put(entityMeta.getClazz(), materializer);
+    }
+
+    /**
+     * Notifies {@code listener} when a row older than
+     * {@code refreshAfterMillis} is read. The listener runs on the reading
+     * thread, so it should only schedule the reload; it is called on every
+     * such read until the row is replaced.
+     *
+     * @param refreshAfterMillis 0 or less disables the notification
+     */
+    public void setRefreshAhead(long refreshAfterMillis, Consumer<EntityKey> listener) {
+        this.refreshListener = listener;
+        this.refreshAfterMillis = refreshAfterMillis;
+    }
+
+    /**
+     * Notifies {@code listener} of every row dropped at its TTL, on the
+     * reading thread.
+     */
+    public void setExpirationListener(Consumer<EntityKey> listener) {
+        this.expirationListener = listener;
+    }
+
+    /**
+     * Whether entities of {@code cls} can be stored, i.e. every column has a
+     * supported type.
+     */
+    public boolean supports(Class<?> cls) {
+        try {
+            codec(cls);
+            return true;
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+    }
+
+    @Override
+    public Object get(EntityKey key) {
+        byte[] data;
+        boolean refresh = false;
+        boolean expired = false;
+        synchronized (this) {
+            Long address = index.get(key);
+            if (address == null) {
+                misses++;
+                return null;
+            }
+            long age = System.currentTimeMillis() - storedAt(address);
+            if (ttlMillis > 0 && age >= ttlMillis) {
+                index.remove(key);
+                expirations++;
+                misses++;
+                expired = true;
+                data = null;
+            } else {
+                hits++;
+                data = read(address);
+                refresh = refreshAfterMillis > 0 && age >= refreshAfterMillis;
+            }
+        }
+        if (expired) {
+            Consumer<EntityKey> listener = expirationListener;
+            if (listener != null) {
+                listener.accept(key);
+            }
+            return null;
+        }
+        Consumer<EntityKey> listener = refreshListener;
+        if (refresh && listener != null) {
+            listener.accept(key);
+        }
+        Class<?> cls = key.getEntityClass();
+        Map<String, Object> row = codec(cls).decode(data);
+        Function<Map<String, Object>, ?> materializer = materializers.get(cls);
+        return materializer != null ? materializer.apply(row) : codec(cls).materialize(row);
+    }
+
+    /**
+     * Stores {@code value}; a null value, or one that cannot be encoded or is
+     * larger than a slab, only removes the previous row.
+     */
+    @Override
+    public void put(EntityKey key, Object value) {
+        byte[] data = null;
+        if (value != null) {
+            try {
+                data = codec(key.getEntityClass()).encode(value);
+            } catch (IllegalArgumentException e) {
+                data = null;
+            }
+        }
+        putRow(key, data);
+    }
+
+    /**
+     * Stores an already encoded row; null only removes the previous one.
+     */
+    void putRow(EntityKey key, byte[] data) {
+        putRow(key, data, System.currentTimeMillis());
+    }
+
+    /**
+     * Stores an already encoded row as if it had been stored at
+     * {@code storedAt}, e.g. a row loaded from a snapshot.
+     */
+    synchronized void putRow(EntityKey key, byte[] data, long storedAt) {
+        index.remove(key);
+        if (data == null || data.length + HEADER_BYTES > slabBytes) {
+            return;
+        }
+        int offset = allocate(data.length + HEADER_BYTES);
+        ByteBuffer slab = slabs[currentSlab].duplicate();
+        slab.position(offset);
+        slab.putInt(data.length);
+        slab.putLong(storedAt);
+        slab.put(data);
+        index.put(key, ((long) currentSlab << 32) | offset);
+        slabKeys.get(currentSlab).add(key);
+    }
+
+    /**
+     * Visits a copy of every stored row, oldest slab first.
+     */
+    synchronized void forEachRow(BiConsumer<EntityKey, byte[]> visitor) {
+        List<Map.Entry<EntityKey, Long>> rows = new ArrayList<>(index.entrySet());
+        // the slab after the current one is the oldest
+        rows.sort(Comparator.comparingLong(e -> age(e.getValue())));
+        for (Map.Entry<EntityKey, Long> row : rows) {
+            visitor.accept(row.getKey(), read(row.getValue()));
+        }
+    }
+
+    private long age(long address) {
+        long slab = (slabOf(address) - currentSlab - 1 + slabs.length) % slabs.length;
+        return (slab << 32) | offsetOf(address);
+    }
+
+    @Override
+    public void put(Iterable<EntityKey> keys, Iterable<Object> values) {
+        Iterator<EntityKey> k = keys.iterator();
+        Iterator<Object> v = values.iterator();
+        while (k.hasNext() && v.hasNext()) {
+            put(k.next(), v.next());
+        }
+    }
+
+    @Override
+    public synchronized boolean contains(EntityKey key) {
+        return index.containsKey(key);
+    }
+
+    @Override
+    public synchronized void remove(EntityKey key) {
+        index.remove(key);
+    }
+
+    @Override
+    public synchronized void clear() {
+        index.clear();
+        slabKeys.forEach(List::clear);
+        for (ByteBuffer slab : slabs) {
+            if (slab != null) {
+                slab.clear();
+            }
+        }
+        currentSlab = 0;
+    }
+
+    @Override
+    public synchronized void clear(Class<?> cls) {
+        index.keySet().removeIf(key -> key.getEntityClass() == cls);
+    }
+
+    public synchronized int size() {
+        return index.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    /**
+     * @return number of rows dropped because their slab was recycled
+     */
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    /**
+     * @return number of rows dropped on access because they outlived the TTL
+     */
+    public synchronized long getExpirationCount() {
+        return expirations;
+    }
+
+    public long getTtlMillis() {
+        return ttlMillis;
+    }
+
+    /**
+     * @return off-heap bytes currently allocated (slabs in use)
+     */
+    public synchronized long getAllocatedBytes() {
+        long total = 0;
+        for (ByteBuffer slab : slabs) {
+            if (slab != null) {
+                total += slab.capacity();
+            }
+        }
+        return total;
+    }
+
+    public int getSlabBytes() {
+        return slabBytes;
+    }
+
+    public int getSlabCount() {
+        return slabs.length;
+    }
+
+    // caller holds the lock; returns the write offset in slabs[currentSlab]
+    private int allocate(int size) {
+        if (slabs[currentSlab] == null) {
+            slabs[currentSlab] = ByteBuffer.allocateDirect(slabBytes);
+        }
+        if (slabs[currentSlab].remaining() < size) {
+            currentSlab = (currentSlab + 1) % slabs.length;
+            if (slabs[currentSlab] == null) {
+                slabs[currentSlab] = ByteBuffer.allocateDirect(slabBytes);
+            } else {
+                recycle(currentSlab);
+            }
+        }
+        ByteBuffer slab = slabs[currentSlab];
+        int offset = slab.position();
+        slab.position(offset + size);
+        return offset;
+    }
+
+    private void recycle(int slab) {
+        for (EntityKey key : slabKeys.get(slab)) {
+            Long address = index.get(key);
+            if (address != null && slabOf(address) == slab) {
+                index.remove(key);
+                evictions++;
+            }
+        }
+        slabKeys.get(slab).clear();
+        slabs[slab].clear();
+    }
+
+    // caller holds the lock
+    private byte[] read(long address) {
+        ByteBuffer slab = slabs[slabOf(address)].duplicate();
+        slab.position(offsetOf(address));
+        byte[] data = new byte[slab.getInt()];
+        slab.position(slab.position() + Long.BYTES);
+        slab.get(data);
+        return data;
+    }
+
+    // caller holds the lock
+    private long storedAt(long address) {
+        return slabs[slabOf(address)].getLong(offsetOf(address) + Integer.BYTES);
+    }
+
+    RowCodec codec(Class<?> cls) {
+        return codecs.computeIfAbsent(cls, c -> RowCodec.of(EntityMeta.scanAnnotation(c)));
+    }
+
+    private static int slabOf(long address) {
+        return (int) (address >>> 32);
+    }
+
+    private static int offsetOf(long address) {
+        return (int) address;
+    }
+}
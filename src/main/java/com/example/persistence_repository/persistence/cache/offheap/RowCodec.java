@@ -0,0 +1,311 @@
+package com.example.persistence_repository.persistence.cache.offheap;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.persistence_repository.persistence.entity.ColumnMeta;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+
+/**
+ * Compact binary encoding of one entity row, derived from its
+ * {@link EntityMeta}.
+ * <p>
+ * Every {@code @Column} field gets a fixed slot in declaration order. A row
+ * is written as a null bitmap (one bit per column) followed by the non-null
+ * values, each in the narrowest form its type allows: {@code long}/{@code int}
+ * as is, strings as length-prefixed UTF-8, dates as epoch days, timestamps as
+ * epoch seconds plus nanos, decimals as scale plus unscaled bytes. No column
+ * names or type tags are stored, so a row costs little more than its data.
+ * </p>
+ * <p>
+ * Values are encoded in their database form (after
+ * {@link EntityMeta#getColnumValue converters}); the codec of a converted
+ * column is chosen from its SQL type, the others from the Java field type.
+ * {@link #decode} yields the raw row (lower-case column name &rarr; value),
+ * ready for the repository's row mapper.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public final class RowCodec {
+
+    enum ColumnType {
+        LONG, INT, SHORT, DOUBLE, FLOAT, BOOLEAN, STRING, DECIMAL, SQL_DATE, LOCAL_DATE, TIMESTAMP,
+        LOCAL_DATE_TIME, UTIL_DATE, BYTES
+    }
+
+    private final EntityMeta<?> entityMeta;
+    private final List<Field> fields;
+    private final String[] columns;
+    private final ColumnType[] types;
+
+    private RowCodec(EntityMeta<?> entityMeta) {
+        this.entityMeta = entityMeta;
+        this.fields = entityMeta.getFields();
+        this.columns = new String[fields.size()];
+        this.types = new ColumnType[fields.size()];
+        for (int i = 0; i < fields.size(); i++) {
+            Field field = fields.get(i);
+            ColumnMeta column = entityMeta.getFieldToColumnMap().get(field.getName());
+            columns[i] = column.getName().toLowerCase();
+            types[i] = column.getConverter() != null ? fromSqlType(column.getType(), field)
+                    : fromJavaType(field.getType(), field);
+        }
+    }
+
+    /**
+     * @throws IllegalArgumentException if a column has a type the codec cannot
+     *                                  store
+     */
+    public static RowCodec of(EntityMeta<?> entityMeta) {
+        return new RowCodec(entityMeta);
+    }
+
+    public EntityMeta<?> getEntityMeta() {
+        return entityMeta;
+    }
+
+    /**
+     * Hash of everything the encoding depends on: table, and for every column
+     * in order its field, name, stored type and converter. Rows written under
+     * one fingerprint can only be decoded by a codec with the same one.
+     */
+    public long fingerprint() {
+        StringBuilder schema = new StringBuilder(entityMeta.getTableName());
+        for (int i = 0; i < columns.length; i++) {
+            ColumnMeta column = entityMeta.getFieldToColumnMap().get(fields.get(i).getName());
+            schema.append('|').append(fields.get(i).getName()).append(':').append(columns[i]).append(':')
+                    .append(types[i]);
+            if (column.getConverter() != null) {
+                schema.append(':').append(column.getConverter().getClass().getName());
+            }
+        }
+        // 64-bit FNV-1a
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : schema.toString().getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Encodes the {@code @Column} values of {@code entity}.
+     *
+     * @throws IllegalArgumentException if a (converted) value does not match
+     *                                  its column type
+     */
+    public byte[] encode(Object entity) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            Object[] values = new Object[fields.size()];
+            byte[] nulls = new byte[(fields.size() + 7) / 8];
+            for (int i = 0; i < values.length; i++) {
+                Field field = fields.get(i);
+                field.setAccessible(true);
+                values[i] = entityMeta.getColnumValue(field.get(entity), field);
+                if (values[i] == null) {
+                    nulls[i >> 3] |= (byte) (1 << (i & 7));
+                }
+            }
+            out.write(nulls);
+            for (int i = 0; i < values.length; i++) {
+                if (values[i] != null) {
+                    write(out, types[i], values[i], i);
+                }
+            }
+        } catch (IOException | IllegalAccessException e) {
+            throw new IllegalStateException("Cannot encode " + entity.getClass().getName(), e);
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Decodes a row written by {@link #encode}.
+     *
+     * @return lower-case column name &rarr; database value
+     */
+    public Map<String, Object> decode(byte[] data) {
+        Map<String, Object> row = new HashMap<>();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data))) {
+            byte[] nulls = new byte[(columns.length + 7) / 8];
+            in.readFully(nulls);
+            for (int i = 0; i < columns.length; i++) {
+                boolean isNull = (nulls[i >> 3] & (1 << (i & 7))) != 0;
+                row.put(columns[i], isNull ? null : read(in, types[i]));
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Corrupted row of " + entityMeta.getClazz().getName(), e);
+        }
+        return row;
+    }
+
+    /**
+     * Builds an entity from its scalar columns only (no relation wiring); used
+     * when no repository registered a row mapper for the class.
+     */
+    public Object materialize(Map<String, Object> row) {
+        try {
+            Object entity = entityMeta.getClazz().getDeclaredConstructor().newInstance();
+            for (int i = 0; i < columns.length; i++) {
+                Field field = fields.get(i);
+                field.setAccessible(true);
+                field.set(entity, entityMeta.getFieldValue(row.get(columns[i]), field));
+            }
+            return entity;
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot instantiate " + entityMeta.getClazz().getName(), e);
+        }
+    }
+
+    private void write(DataOutputStream out, ColumnType type, Object value, int index) throws IOException {
+        try {
+            switch (type) {
+                case LONG -> out.writeLong(((Number) value).longValue());
+                case INT -> out.writeInt(((Number) value).intValue());
+                case SHORT -> out.writeShort(((Number) value).shortValue());
+                case DOUBLE -> out.writeDouble(((Number) value).doubleValue());
+                case FLOAT -> out.writeFloat(((Number) value).floatValue());
+                case BOOLEAN -> out.writeBoolean((Boolean) value);
+                case STRING -> writeBytes(out, ((String) value).getBytes(StandardCharsets.UTF_8));
+                case DECIMAL -> {
+                    BigDecimal decimal = (BigDecimal) value;
+                    out.writeInt(decimal.scale());
+                    writeBytes(out, decimal.unscaledValue().toByteArray());
+                }
+                case SQL_DATE -> out.writeLong(((java.sql.Date) value).toLocalDate().toEpochDay());
+                case LOCAL_DATE -> out.writeLong(((LocalDate) value).toEpochDay());
+                case TIMESTAMP -> writeDateTime(out, ((Timestamp) value).toLocalDateTime());
+                case LOCAL_DATE_TIME -> writeDateTime(out, (LocalDateTime) value);
+                case UTIL_DATE -> out.writeLong(((java.util.Date) value).getTime());
+                case BYTES -> writeBytes(out, (byte[]) value);
+            }
+        } catch (ClassCastException e) {
+            throw new IllegalArgumentException("Column " + columns[index] + " of "
+                    + entityMeta.getClazz().getSimpleName() + " holds a " + value.getClass().getName()
+                    + ", expected " + type, e);
+        }
+    }
+
+    private static Object read(DataInputStream in, ColumnType type) throws IOException {
+        return switch (type) {
+            case LONG -> in.readLong();
+            case INT -> in.readInt();
+            case SHORT -> in.readShort();
+            case DOUBLE -> in.readDouble();
+            case FLOAT -> in.readFloat();
+            case BOOLEAN -> in.readBoolean();
+            case STRING -> new String(readBytes(in), StandardCharsets.UTF_8);
+            case DECIMAL -> {
+                int scale = in.readInt();
+                yield new BigDecimal(new BigInteger(readBytes(in)), scale);
+            }
+            case SQL_DATE -> java.sql.Date.valueOf(LocalDate.ofEpochDay(in.readLong()));
+            case LOCAL_DATE -> LocalDate.ofEpochDay(in.readLong());
+            case TIMESTAMP -> Timestamp.valueOf(readDateTime(in));
+            case LOCAL_DATE_TIME -> readDateTime(in);
+            case UTIL_DATE -> new java.util.Date(in.readLong());
+            case BYTES -> readBytes(in);
+        };
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] data) throws IOException {
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return data;
+    }
+
+    private static void writeDateTime(DataOutputStream out, LocalDateTime value) throws IOException {
+        out.writeLong(value.toEpochSecond(ZoneOffset.UTC));
+        out.writeInt(value.getNano());
+    }
+
+    private static LocalDateTime readDateTime(DataInputStream in) throws IOException {
+        long seconds = in.readLong();
+        return LocalDateTime.ofEpochSecond(seconds, in.readInt(), ZoneOffset.UTC);
+    }
+
+    private static ColumnType fromJavaType(Class<?> type, Field field) {
+        if (type == Long.class || type == long.class)
+            return ColumnType.LONG;
+        if (type == Integer.class || type == int.class)
+            return ColumnType.INT;
+        if (type == Short.class || type == short.class)
+            return ColumnType.SHORT;
+        if (type == Double.class || type == double.class)
+            return ColumnType.DOUBLE;
+        if (type == Float.class || type == float.class)
+            return ColumnType.FLOAT;
+        if (type == Boolean.class || type == boolean.class)
+            return ColumnType.BOOLEAN;
+        if (type == String.class)
+            return ColumnType.STRING;
+        if (type == BigDecimal.class)
+            return ColumnType.DECIMAL;
+        if (type == java.sql.Date.class)
+            return ColumnType.SQL_DATE;
+        if (type == LocalDate.class)
+            return ColumnType.LOCAL_DATE;
+        if (type == Timestamp.class)
+            return ColumnType.TIMESTAMP;
+        if (type == LocalDateTime.class)
+            return ColumnType.LOCAL_DATE_TIME;
+        if (type == java.util.Date.class)
+            return ColumnType.UTIL_DATE;
+        if (type == byte[].class)
+            return ColumnType.BYTES;
+        throw unsupported(field);
+    }
+
+    private static ColumnType fromSqlType(String sqlType, Field field) {
+        String t = sqlType.toUpperCase();
+        if (t.startsWith("BIGINT"))
+            return ColumnType.LONG;
+        if (t.startsWith("INT") || t.startsWith("TINYINT") || t.startsWith("MEDIUMINT"))
+            return ColumnType.INT;
+        if (t.startsWith("SMALLINT"))
+            return ColumnType.SHORT;
+        if (t.startsWith("VARCHAR") || t.startsWith("CHAR") || t.endsWith("TEXT"))
+            return ColumnType.STRING;
+        if (t.startsWith("DECIMAL") || t.startsWith("NUMERIC"))
+            return ColumnType.DECIMAL;
+        if (t.startsWith("DOUBLE"))
+            return ColumnType.DOUBLE;
+        if (t.startsWith("FLOAT") || t.startsWith("REAL"))
+            return ColumnType.FLOAT;
+        if (t.startsWith("BOOL") || t.startsWith("BIT"))
+            return ColumnType.BOOLEAN;
+        if (t.equals("DATE"))
+            return ColumnType.SQL_DATE;
+        if (t.startsWith("DATETIME") || t.startsWith("TIMESTAMP"))
+            return ColumnType.TIMESTAMP;
+        throw unsupported(field);
+    }
+
+    private static IllegalArgumentException unsupported(Field field) {
+        return new IllegalArgumentException("Unsupported column type for off-heap storage: "
+                + field.getDeclaringClass().getSimpleName() + "." + field.getName());
+    }
+
+}
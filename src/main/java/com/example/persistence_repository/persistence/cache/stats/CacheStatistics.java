@@ -0,0 +1,139 @@
+package com.example.persistence_repository.persistence.cache.stats;
+
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.example.persistence_repository.persistence.config.RepositoryConfig;
+
+/**
+ * Process-wide cache counters per entity class.
+ * <p>
+ * Every transaction has its own {@code EntityCache}; when
+ * {@code repository.cache-stats.enabled} is set they all report here, as do
+ * the repositories (database loads and their latency) and the second-level
+ * cache (expirations). Each class also keeps a {@link HeavyHitters} sketch of
+ * the ids looked up, so the hottest keys can be listed without storing a
+ * counter per id. Counters only grow until {@link #reset()}; read them with
+ * {@link #snapshot()}.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class CacheStatistics {
+
+    private static final CacheStatistics SHARED = new CacheStatistics(RepositoryConfig.CACHE_STATS_TOP_K,
+            RepositoryConfig.CACHE_STATS_SKETCH_WIDTH, RepositoryConfig.CACHE_STATS_SKETCH_DEPTH);
+
+    private final int topK;
+    private final int sketchWidth;
+    private final int sketchDepth;
+    private final Map<Class<?>, ClassStats> classes = new ConcurrentHashMap<>();
+
+    /**
+     * @param topK        hot keys reported per class
+     * @param sketchWidth Count-Min counters per row; counts are halved every
+     *                    {@code 10 * sketchWidth} lookups of a class
+     * @param sketchDepth Count-Min rows
+     */
+    public CacheStatistics(int topK, int sketchWidth, int sketchDepth) {
+        if (topK < 1 || sketchWidth < 1 || sketchDepth < 1) {
+            throw new IllegalArgumentException("Top-K size and sketch dimensions must be greater than 0");
+        }
+        this.topK = topK;
+        this.sketchWidth = sketchWidth;
+        this.sketchDepth = sketchDepth;
+    }
+
+    public static CacheStatistics shared() {
+        return SHARED;
+    }
+
+    public void recordHit(Class<?> cls, Object id) {
+        ClassStats stats = stats(cls);
+        stats.hits.increment();
+        stats.hotKeys.add(id);
+    }
+
+    public void recordMiss(Class<?> cls, Object id) {
+        ClassStats stats = stats(cls);
+        stats.misses.increment();
+        stats.hotKeys.add(id);
+    }
+
+    public void recordPut(Class<?> cls) {
+        stats(cls).puts.increment();
+    }
+
+    public void recordEvictions(Class<?> cls, long count) {
+        stats(cls).evictions.add(count);
+    }
+
+    public void recordExpiration(Class<?> cls) {
+        stats(cls).expirations.increment();
+    }
+
+    /**
+     * One database round trip that took {@code nanos}.
+     */
+    public void recordLoad(Class<?> cls, long nanos) {
+        ClassStats stats = stats(cls);
+        stats.loads.increment();
+        stats.loadNanos.add(nanos);
+        stats.maxLoadNanos.accumulate(nanos);
+    }
+
+    /**
+     * @return counters of every class seen so far, ordered by class name
+     */
+    public Map<Class<?>, CacheStatsSnapshot> snapshot() {
+        Map<Class<?>, CacheStatsSnapshot> result = new LinkedHashMap<>();
+        classes.keySet().stream().sorted(Comparator.comparing(Class::getName))
+                .forEach(cls -> result.put(cls, snapshot(cls)));
+        return result;
+    }
+
+    /**
+     * @return counters of {@code cls} (all zero if it was never seen)
+     */
+    public CacheStatsSnapshot snapshot(Class<?> cls) {
+        ClassStats stats = classes.get(cls);
+        if (stats == null) {
+            return new CacheStatsSnapshot(cls, 0, 0, 0, 0, 0, 0, 0, 0, List.of());
+        }
+        return new CacheStatsSnapshot(cls, stats.hits.sum(), stats.misses.sum(), stats.puts.sum(),
+                stats.evictions.sum(), stats.expirations.sum(), stats.loads.sum(), stats.loadNanos.sum(),
+                stats.maxLoadNanos.get(), List.copyOf(stats.hotKeys.top()));
+    }
+
+    public void reset() {
+        classes.clear();
+    }
+
+    private ClassStats stats(Class<?> cls) {
+        ClassStats stats = classes.get(cls);
+        return stats != null ? stats : classes.computeIfAbsent(cls, c -> new ClassStats(this));
+    }
+
+    private static final class ClassStats {
+        final LongAdder hits = new LongAdder();
+        final LongAdder misses = new LongAdder();
+        final LongAdder puts = new LongAdder();
+        final LongAdder evictions = new LongAdder();
+        final LongAdder expirations = new LongAdder();
+        final LongAdder loads = new LongAdder();
+        final LongAdder loadNanos = new LongAdder();
+        final LongAccumulator maxLoadNanos = new LongAccumulator(Math::max, 0);
+        final HeavyHitters hotKeys;
+
+        ClassStats(CacheStatistics owner) {
+            hotKeys = new HeavyHitters(owner.topK, owner.sketchWidth, owner.sketchDepth, 10L * owner.sketchWidth);
+        }
+    }
+}
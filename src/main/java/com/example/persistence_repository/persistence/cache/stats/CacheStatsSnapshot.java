@@ -0,0 +1,43 @@
+package com.example.persistence_repository.persistence.cache.stats;
+
+import java.util.List;
+
+import com.example.persistence_repository.persistence.cache.stats.HeavyHitters.HotKey;
+
+/**
+ * Point-in-time cache counters of one entity class, as returned by
+ * {@link CacheStatistics#snapshot()}.
+ *
+ * @param hits           lookups served by the transaction's entity cache
+ * @param misses         lookups not found there
+ * @param puts           entities stored
+ * @param evictions      entities dropped because the cache was full
+ * @param expirations    second-level cache entries dropped at their TTL
+ * @param loads          database round trips for entities missing from the
+ *                       caches
+ * @param totalLoadNanos time spent in those loads
+ * @param maxLoadNanos   slowest load
+ * @param hotKeys        most accessed ids, hottest first
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public record CacheStatsSnapshot(Class<?> entityClass, long hits, long misses, long puts, long evictions,
+        long expirations, long loads, long totalLoadNanos, long maxLoadNanos, List<HotKey> hotKeys) {
+
+    /**
+     * @return hits / (hits + misses), or 0 without lookups
+     */
+    public double hitRatio() {
+        long lookups = hits + misses;
+        return lookups == 0 ? 0 : (double) hits / lookups;
+    }
+
+    /**
+     * @return mean load time in milliseconds, or 0 without loads
+     */
+    public double averageLoadMillis() {
+        return loads == 0 ? 0 : totalLoadNanos / 1_000_000.0 / loads;
+    }
+}
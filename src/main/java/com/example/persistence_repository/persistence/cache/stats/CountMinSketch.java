@@ -0,0 +1,124 @@
+package com.example.persistence_repository.persistence.cache.stats;
+
+import java.util.Arrays;
+
+/**
+ * Count-Min sketch: approximate frequencies of a stream of keys in fixed
+ * memory.
+ * <p>
+ * {@code depth} rows of {@code width} counters; a key increments one counter
+ * per row (chosen by a different hash each) and its estimate is the smallest
+ * of those counters. Estimates never undercount; they overcount by at most
+ * about {@code e / width} of the total count with probability
+ * {@code 1 - e^-depth}. Increments are conservative (only the counters equal
+ * to the current minimum grow), which tightens the overcount for skewed
+ * streams. Keys are given as 64-bit hashes, see {@link #hash(Object)}.
+ * </p>
+ * Not thread-safe.
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public final class CountMinSketch {
+
+    private final int width;
+    private final int depth;
+    private final int mask;
+    private final long[] counters;
+    private final long[] seeds;
+
+    /**
+     * @param width counters per row, rounded up to a power of two
+     * @param depth number of rows (hash functions)
+     */
+    public CountMinSketch(int width, int depth) {
+        if (width < 1 || depth < 1 || width > (1 << 24)) {
+            throw new IllegalArgumentException("Invalid sketch size: " + width + " x " + depth);
+        }
+        this.width = width == 1 ? 1 : Integer.highestOneBit(width - 1) << 1;
+        this.depth = depth;
+        this.mask = this.width - 1;
+        this.counters = new long[this.width * depth];
+        this.seeds = new long[depth];
+        long seed = 0x9E3779B97F4A7C15L;
+        for (int i = 0; i < depth; i++) {
+            seed = mix(seed + i);
+            seeds[i] = seed;
+        }
+    }
+
+    /**
+     * Counts one occurrence of the key.
+     *
+     * @return the key's new estimate
+     */
+    public long add(long hash) {
+        long min = estimate(hash);
+        for (int row = 0; row < depth; row++) {
+            int index = index(row, hash);
+            if (counters[index] == min) {
+                counters[index]++;
+            }
+        }
+        return min + 1;
+    }
+
+    /**
+     * @return estimated occurrences of the key, never less than the true count
+     *         (since the last {@link #halve()})
+     */
+    public long estimate(long hash) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[index(row, hash)]);
+        }
+        return min;
+    }
+
+    /**
+     * Halves every counter, so old traffic weighs less than recent traffic.
+     */
+    public void halve() {
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] >>>= 1;
+        }
+    }
+
+    public void clear() {
+        Arrays.fill(counters, 0);
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * 64-bit hash of a key; {@code Long} and {@code Integer} ids are mixed by
+     * value, other keys through {@link Object#hashCode()}.
+     */
+    public static long hash(Object key) {
+        if (key instanceof Long l) {
+            return mix(l);
+        }
+        if (key instanceof Integer i) {
+            return mix(i.longValue());
+        }
+        return mix(key.hashCode() ^ 0xC2B2AE3D27D4EB4FL);
+    }
+
+    private int index(int row, long hash) {
+        return row * width + (int) (mix(hash ^ seeds[row]) & mask);
+    }
+
+    // SplitMix64 finalizer
+    private static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
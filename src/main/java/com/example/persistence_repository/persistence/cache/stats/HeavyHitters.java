@@ -0,0 +1,124 @@
+package com.example.persistence_repository.persistence.cache.stats;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Streaming top-K of the most frequent keys.
+ * <p>
+ * Frequencies are estimated by a {@link CountMinSketch}; only the {@code k}
+ * keys with the highest estimates are remembered. A key seen for the first
+ * time enters the top-K when its estimate beats the smallest one kept, which
+ * it then replaces. Every {@code agingPeriod} additions all counts are
+ * halved, so keys that were hot an hour ago make room for the ones hot now.
+ * </p>
+ * Thread-safe.
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public final class HeavyHitters {
+
+    /**
+     * A hot key and its estimated access count (since the counts were last
+     * halved).
+     */
+    public record HotKey(Object key, long count) {
+    }
+
+    private final CountMinSketch sketch;
+    private final int k;
+    private final long agingPeriod;
+    private final Map<Object, Long> top = new HashMap<>();
+    private long minCount;
+    private long additions;
+
+    /**
+     * @param k           number of keys reported
+     * @param width       sketch counters per row
+     * @param depth       sketch rows
+     * @param agingPeriod additions between two halvings; 0 or less never
+     *                    halves
+     */
+    public HeavyHitters(int k, int width, int depth, long agingPeriod) {
+        if (k < 1) {
+            throw new IllegalArgumentException("Top-K size must be greater than 0");
+        }
+        this.sketch = new CountMinSketch(width, depth);
+        this.k = k;
+        this.agingPeriod = agingPeriod;
+    }
+
+    /**
+     * Counts one access to {@code key}.
+     */
+    public synchronized void add(Object key) {
+        long count = sketch.add(CountMinSketch.hash(key));
+        Long previous = top.get(key);
+        if (previous != null) {
+            top.put(key, count);
+            if (previous == minCount) {
+                minCount = min();
+            }
+        } else if (top.size() < k) {
+            top.put(key, count);
+            minCount = top.size() == 1 ? count : Math.min(minCount, count);
+        } else if (count > minCount) {
+            Object coldest = null;
+            for (Map.Entry<Object, Long> e : top.entrySet()) {
+                if (e.getValue() == minCount) {
+                    coldest = e.getKey();
+                    break;
+                }
+            }
+            top.remove(coldest);
+            top.put(key, count);
+            minCount = min();
+        }
+        if (agingPeriod > 0 && ++additions >= agingPeriod) {
+            additions = 0;
+            sketch.halve();
+            top.replaceAll((ignored, c) -> c >>> 1);
+            minCount = min();
+        }
+    }
+
+    /**
+     * @return estimated access count of {@code key}
+     */
+    public synchronized long estimate(Object key) {
+        return sketch.estimate(CountMinSketch.hash(key));
+    }
+
+    /**
+     * @return the hottest keys, most accessed first
+     */
+    public synchronized List<HotKey> top() {
+        List<HotKey> result = new ArrayList<>(top.size());
+        top.forEach((key, count) -> result.add(new HotKey(key, count)));
+        result.sort((a, b) -> Long.compare(b.count(), a.count()));
+        return result;
+    }
+
+    public synchronized void clear() {
+        sketch.clear();
+        top.clear();
+        minCount = 0;
+        additions = 0;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    private long min() {
+        long min = Long.MAX_VALUE;
+        for (long count : top.values()) {
+            min = Math.min(min, count);
+        }
+        return top.isEmpty() ? 0 : min;
+    }
+}
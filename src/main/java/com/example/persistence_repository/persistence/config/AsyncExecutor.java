@@ -0,0 +1,228 @@
+package com.example.persistence_repository.persistence.config;
+
+import java.sql.Connection;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs repository work off the calling thread.
+ * <p>
+ * Work goes to a fixed pool of daemon threads with a bounded queue (a full
+ * queue fails the returned future with {@link RejectedExecutionException}),
+ * and runs in a transaction on a connection of the executor's own
+ * {@link ConnectionPool}, so it never touches the shared {@link DBcontext}
+ * connection nor the caller's transaction. Each {@link #submit} is its own
+ * transaction; work that must share one goes through an
+ * {@link AsyncTransaction} from {@link #begin()}.
+ * </p>
+ * <p>
+ * {@link #virtual(int, ConnectionPool)} runs every task on a virtual thread of
+ * its own instead (Java 21+); concurrency is then bounded by the pool, whose
+ * waits do not pin the carrier thread, and by the number of pending tasks.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class AsyncExecutor {
+
+    private static volatile AsyncExecutor shared;
+
+    private final ExecutorService executor;
+    private final ConnectionPool pool;
+    // Tasks running or waiting; more are rejected
+    private final int maxPending;
+    private final AtomicInteger pending = new AtomicInteger();
+
+    /**
+     * @param threads   worker threads
+     * @param queueSize tasks waiting for a thread before new ones are rejected
+     * @param pool      connections of the tasks; should hold at least
+     *                  {@code threads} connections
+     */
+    public AsyncExecutor(int threads, int queueSize, ConnectionPool pool) {
+        this(platformExecutor(threads, queueSize), threads + queueSize, pool);
+    }
+
+    private AsyncExecutor(ExecutorService executor, int maxPending, ConnectionPool pool) {
+        this.executor = executor;
+        this.maxPending = maxPending;
+        this.pool = pool;
+    }
+
+    /**
+     * Creates an executor that starts a virtual thread per task.
+     *
+     * @param maxPending tasks running or waiting (for a thread or a pooled
+     *                   connection) before new ones are rejected
+     * @throws UnsupportedOperationException before Java 21
+     */
+    public static AsyncExecutor virtual(int maxPending, ConnectionPool pool) {
+        if (maxPending < 1) {
+            throw new IllegalArgumentException("Async pending tasks must be greater than 0");
+        }
+        return new AsyncExecutor(VirtualThreads.newExecutor(), maxPending, pool);
+    }
+
+    /**
+     * @return the executor configured by the {@code repository.async.*}
+     *         properties, with a pool of one primary connection per thread;
+     *         on virtual threads when {@link VirtualThreads#isEnabled()}
+     */
+    public static AsyncExecutor shared() {
+        AsyncExecutor executor = shared;
+        if (executor == null) {
+            synchronized (AsyncExecutor.class) {
+                executor = shared;
+                if (executor == null) {
+                    ConnectionPool pool = new ConnectionPool("async", DBcontext::createConnection,
+                            RepositoryConfig.ASYNC_THREADS, RepositoryConfig.ASYNC_BORROW_TIMEOUT_MILLIS);
+                    executor = VirtualThreads.isEnabled()
+                            ? virtual(RepositoryConfig.ASYNC_THREADS + RepositoryConfig.ASYNC_QUEUE_SIZE, pool)
+                            : new AsyncExecutor(RepositoryConfig.ASYNC_THREADS, RepositoryConfig.ASYNC_QUEUE_SIZE,
+                                    pool);
+                    shared = executor;
+                }
+            }
+        }
+        return executor;
+    }
+
+    /**
+     * Runs {@code work} in a transaction of its own, committed when it returns
+     * and rolled back when it throws, as the workload of the calling code.
+     *
+     * @see TransactionManager#currentWorkload()
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> work) {
+        return submit(TransactionManager.currentWorkload(), work);
+    }
+
+    /**
+     * Runs {@code work} in a transaction of {@code workload}, committed when
+     * it returns and rolled back when it throws.
+     */
+    public <T> CompletableFuture<T> submit(Workload workload, Callable<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        try {
+            execute(() -> {
+                try {
+                    result.complete(TransactionManager.callAs(workload, () -> inTransaction(work)));
+                } catch (Throwable e) {
+                    result.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            result.completeExceptionally(e);
+        }
+        return result;
+    }
+
+    /**
+     * Starts a transaction whose work runs on this executor, one step at a
+     * time, possibly on different threads. Its connection is taken from the
+     * pool by the first step.
+     */
+    public AsyncTransaction begin() {
+        return begin(TransactionManager.currentWorkload());
+    }
+
+    /**
+     * Starts a transaction of {@code workload} whose work runs on this
+     * executor.
+     *
+     * @see #begin()
+     */
+    public AsyncTransaction begin(Workload workload) {
+        return new AsyncTransaction(this, workload);
+    }
+
+    /**
+     * @return tasks queued or running
+     */
+    public int getPending() {
+        return pending.get();
+    }
+
+    public ConnectionPool getPool() {
+        return pool;
+    }
+
+    /**
+     * Stops the threads (running work is interrupted) and closes the pool.
+     */
+    public void shutdown() {
+        executor.shutdownNow();
+        pool.close();
+    }
+
+    Executor executor() {
+        return this::execute;
+    }
+
+    private void execute(Runnable task) {
+        if (pending.incrementAndGet() > maxPending) {
+            pending.decrementAndGet();
+            throw new RejectedExecutionException("Async executor has " + maxPending + " pending tasks");
+        }
+        try {
+            executor.execute(() -> {
+                try {
+                    task.run();
+                } finally {
+                    pending.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            pending.decrementAndGet();
+            throw e;
+        }
+    }
+
+    private static ExecutorService platformExecutor(int threads, int queueSize) {
+        if (threads < 1 || queueSize < 1) {
+            throw new IllegalArgumentException("Async threads and queue size must be greater than 0");
+        }
+        AtomicInteger count = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), r -> {
+                    Thread thread = new Thread(r, "repository-async-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    private <T> T inTransaction(Callable<T> work) throws Exception {
+        // the slot first, so no connection is held while waiting for it
+        ConcurrencyLimiter.Permit permit = TransactionManager.acquirePermit();
+        try {
+            Connection connection = pool.borrow();
+            try {
+                TransactionManager.beginTransaction(connection, permit);
+                T value;
+                try {
+                    value = work.call();
+                } catch (Exception | Error e) {
+                    TransactionManager.rollback();
+                    throw e;
+                }
+                TransactionManager.commit();
+                return value;
+            } finally {
+                pool.release(connection);
+            }
+        } finally {
+            if (permit != null) {
+                permit.release();
+            }
+        }
+    }
+}
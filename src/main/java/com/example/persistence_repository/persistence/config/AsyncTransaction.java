@@ -0,0 +1,210 @@
+package com.example.persistence_repository.persistence.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Handle of a transaction whose work runs on an {@link AsyncExecutor}.
+ * <p>
+ * The thread-bound transaction of {@link TransactionManager} does not follow
+ * work handed to another thread, so this handle carries it instead: each step
+ * binds the transaction to whichever worker runs it for the duration of the
+ * step only ({@link TransactionManager#callIn}), so workers, virtual or not,
+ * keep nothing attached between steps. Steps run one at a time in submission
+ * order, so they see each other's writes; a failed step fails its own future
+ * only, and the caller decides between {@link #commit()} and
+ * {@link #rollback()}.
+ * </p>
+ * <p>
+ * A step the executor rejects (its queue is full) fails with
+ * {@link RejectedExecutionException} without running; later steps are not
+ * affected. The commit or rollback itself is never dropped: when the
+ * executor rejects it, it runs on a thread of its own, so the connection
+ * always goes back to the pool.
+ * </p>
+ * <p>
+ * Example:
+ * </p>
+ *
+ * <pre>
+ * AsyncTransaction tx = executor.begin();
+ * tx.submit(() -&gt; userRepository.save(user));
+ * tx.submit(() -&gt; auditRepository.save(entry));
+ * tx.commit().join();
+ * </pre>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public final class AsyncTransaction {
+
+    private final AsyncExecutor executor;
+    private final Workload workload;
+
+    // Last step submitted; the next one runs after it
+    private CompletableFuture<?> tail = CompletableFuture.completedFuture(null);
+    private boolean ended;
+
+    // Only touched by steps, which never run concurrently
+    private TransactionContext context;
+    private Connection connection;
+    private ConcurrencyLimiter.Permit permit;
+
+    AsyncTransaction(AsyncExecutor executor, Workload workload) {
+        this.executor = executor;
+        this.workload = workload;
+    }
+
+    /**
+     * Runs {@code work} in this transaction after the previously submitted
+     * work. The first step takes a slot of the concurrency limiter, then
+     * borrows the connection and begins the transaction; both are held until
+     * the transaction ends.
+     *
+     * @throws IllegalStateException through the future, if the transaction
+     *                               has been committed or rolled back
+     */
+    public synchronized <T> CompletableFuture<T> submit(Callable<T> work) {
+        if (ended) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Async transaction has already ended"));
+        }
+        CompletableFuture<T> step = new CompletableFuture<>();
+        tail.whenComplete((previous, error) -> {
+            try {
+                executor.executor().execute(() -> {
+                    try {
+                        step.complete(step(work));
+                    } catch (Throwable e) {
+                        step.completeExceptionally(e);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                step.completeExceptionally(e);
+            }
+        });
+        tail = step;
+        return step;
+    }
+
+    /**
+     * Commits once the submitted work has run, and returns the connection to
+     * the pool.
+     */
+    public CompletableFuture<Void> commit() {
+        return end(true);
+    }
+
+    /**
+     * Rolls back once the submitted work has run, and returns the connection
+     * to the pool.
+     */
+    public CompletableFuture<Void> rollback() {
+        return end(false);
+    }
+
+    /**
+     * @return true once {@link #commit()} or {@link #rollback()} was called
+     */
+    public synchronized boolean isEnded() {
+        return ended;
+    }
+
+    private synchronized CompletableFuture<Void> end(boolean commit) {
+        if (ended) {
+            return CompletableFuture.failedFuture(new IllegalStateException("Async transaction has already ended"));
+        }
+        ended = true;
+        CompletableFuture<Void> last = new CompletableFuture<>();
+        Runnable ending = () -> {
+            try {
+                finish(commit);
+                last.complete(null);
+            } catch (Throwable e) {
+                last.completeExceptionally(e);
+            }
+        };
+        tail.whenComplete((previous, error) -> {
+            try {
+                executor.executor().execute(ending);
+            } catch (RejectedExecutionException e) {
+                // the connection must not stay borrowed: finish outside the executor
+                Thread thread = new Thread(ending, "async-transaction-end");
+                thread.setDaemon(true);
+                thread.start();
+            }
+        });
+        tail = last;
+        return last;
+    }
+
+    private <T> T step(Callable<T> work) {
+        try {
+            if (context == null) {
+                try {
+                    // the slot first, so no connection is held while waiting for it
+                    permit = TransactionManager.acquirePermit();
+                    connection = executor.getPool().borrow(workload);
+                    TransactionManager.beginTransaction(connection, permit);
+                    TransactionManager.setWorkload(workload);
+                } catch (SQLException | RuntimeException e) {
+                    releaseConnection();
+                    throw e;
+                }
+                context = TransactionManager.suspend();
+            }
+            try {
+                return TransactionManager.callIn(context, work);
+            } finally {
+                if (!context.isActive()) {
+                    // the work ended the transaction itself
+                    context = null;
+                    releaseConnection();
+                }
+            }
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void finish(boolean commit) {
+        if (context == null) {
+            return;
+        }
+        TransactionContext ending = context;
+        context = null;
+        try {
+            TransactionManager.callIn(ending, () -> {
+                if (commit) {
+                    TransactionManager.commit();
+                } else {
+                    TransactionManager.rollback();
+                }
+                return null;
+            });
+        } catch (RuntimeException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        } finally {
+            releaseConnection();
+        }
+    }
+
+    private void releaseConnection() {
+        if (connection != null) {
+            executor.getPool().release(connection);
+            connection = null;
+        }
+        if (permit != null) {
+            permit.release();
+            permit = null;
+        }
+    }
+}
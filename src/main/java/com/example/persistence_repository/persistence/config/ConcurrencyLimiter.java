@@ -0,0 +1,298 @@
+package com.example.persistence_repository.persistence.config;
+
+import java.sql.SQLException;
+import java.sql.SQLTransientException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Adaptive limit on the units of database work running at once.
+ * <p>
+ * {@link TransactionManager} takes a {@link Permit} when an outermost
+ * transaction begins and returns it when the transaction ends. Meanwhile the
+ * transaction reports the time of each database call (statements, commit,
+ * rollback) to the permit with {@link Permit#record(long)}; time spent in the
+ * application between calls is not counted. The limit follows AIMD on the
+ * mean call time of each permit: above {@code maxLatencyMillis} the limit is
+ * multiplied by {@code backoff}, otherwise it grows by one, as long as the
+ * limit was at least half used, so it does not grow while idle. Only permits
+ * taken after the last decrease may shrink the limit again, so the
+ * transactions that were already running when the database slowed down cut
+ * it once rather than once each. A permit that recorded no call leaves the
+ * limit as it is. When the database slows down,
+ * fewer transactions run at once and the others wait here instead of piling
+ * up on connections.
+ * </p>
+ * <p>
+ * A caller finding the limit reached waits up to {@code queueTimeoutMillis}
+ * for a slot, then is rejected with a {@link SQLTransientException}; with a
+ * timeout of 0 it is rejected at once. Waiting callers are served first in
+ * first out: a freed slot is handed to the oldest one, and a newcomer queues
+ * behind them even when a slot looks free. Waits use a
+ * {@link java.util.concurrent.locks.ReentrantLock}, so virtual threads do not
+ * pin their carrier.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class ConcurrencyLimiter {
+
+    /**
+     * A slot taken by {@link #acquire()}; {@link #release()} gives it back
+     * and reports the mean time of the database calls recorded on it. Calls
+     * may be recorded from several threads.
+     */
+    public final class Permit {
+
+        // in-flight count when the permit was taken, itself included
+        private final int inFlightAtStart;
+        // number of the permit, in the order they were handed out
+        private final long sequence;
+        private long callNanos;
+        private int calls;
+        private boolean released;
+
+        private Permit(int inFlightAtStart, long sequence) {
+            this.inFlightAtStart = inFlightAtStart;
+            this.sequence = sequence;
+        }
+
+        /**
+         * Records a database call made under this slot; ignored once the
+         * slot was released.
+         *
+         * @param nanos time the call took
+         */
+        public synchronized void record(long nanos) {
+            if (!released) {
+                callNanos += nanos;
+                calls++;
+            }
+        }
+
+        /**
+         * Gives the slot back; later calls do nothing.
+         */
+        public void release() {
+            long latency;
+            synchronized (this) {
+                if (released) {
+                    return;
+                }
+                released = true;
+                latency = calls == 0 ? -1 : callNanos / calls;
+            }
+            onRelease(latency, inFlightAtStart, sequence);
+        }
+    }
+
+    /**
+     * A caller of {@link #acquire()} waiting for a slot.
+     */
+    private static final class Waiter {
+        final Condition ready;
+        // set with the permit when a slot is handed over
+        Permit permit;
+
+        Waiter(Condition ready) {
+            this.ready = ready;
+        }
+    }
+
+    private final int minLimit;
+    private final int maxLimit;
+    private final long maxLatencyNanos;
+    private final double backoff;
+    private final long queueTimeoutMillis;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    // callers waiting for a slot, oldest first
+    private final Deque<Waiter> waiting = new ArrayDeque<>();
+    private int limit;
+    private int inFlight;
+    private long rejected;
+    // permits handed out so far, and that count at the last decrease
+    private long issued;
+    private long decreasedAt;
+
+    /**
+     * @param initialLimit       limit before any transaction was measured
+     * @param minLimit           the limit never drops below this
+     * @param maxLimit           the limit never grows above this
+     * @param maxLatencyMillis   database calls slower than this on average
+     *                           shrink the limit
+     * @param backoff            factor applied to the limit on slow calls,
+     *                           between 0 and 1
+     * @param queueTimeoutMillis how long {@link #acquire()} waits for a slot,
+     *                           0 to reject at once
+     */
+    public ConcurrencyLimiter(int initialLimit, int minLimit, int maxLimit, long maxLatencyMillis, double backoff,
+            long queueTimeoutMillis) {
+        if (minLimit < 1 || maxLimit < minLimit) {
+            throw new IllegalArgumentException("Limits must satisfy 1 <= min <= max");
+        }
+        if (initialLimit < minLimit || initialLimit > maxLimit) {
+            throw new IllegalArgumentException("Initial limit must be between min and max");
+        }
+        if (backoff <= 0 || backoff >= 1) {
+            throw new IllegalArgumentException("Backoff must be between 0 and 1");
+        }
+        if (maxLatencyMillis < 1 || queueTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Latency must be positive and queue timeout not negative");
+        }
+        this.limit = initialLimit;
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.maxLatencyNanos = TimeUnit.MILLISECONDS.toNanos(maxLatencyMillis);
+        this.backoff = backoff;
+        this.queueTimeoutMillis = queueTimeoutMillis;
+    }
+
+    /**
+     * @return a limiter built from the {@code repository.limit.*} keys
+     */
+    public static ConcurrencyLimiter fromConfig() {
+        return new ConcurrencyLimiter(RepositoryConfig.LIMIT_INITIAL, RepositoryConfig.LIMIT_MIN,
+                RepositoryConfig.LIMIT_MAX, RepositoryConfig.LIMIT_MAX_LATENCY_MILLIS, RepositoryConfig.LIMIT_BACKOFF,
+                RepositoryConfig.LIMIT_QUEUE_TIMEOUT_MILLIS);
+    }
+
+    /**
+     * Takes a slot, waiting up to the queue timeout while the limit is
+     * reached.
+     *
+     * @throws SQLTransientException if no slot became free in time
+     * @throws SQLException          if interrupted while waiting
+     */
+    public Permit acquire() throws SQLException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(queueTimeoutMillis);
+        lock.lock();
+        try {
+            if (waiting.isEmpty() && inFlight < limit) {
+                return grant();
+            }
+            if (remaining <= 0) {
+                throw reject();
+            }
+            Waiter waiter = new Waiter(lock.newCondition());
+            waiting.addLast(waiter);
+            try {
+                while (waiter.permit == null) {
+                    if (remaining <= 0) {
+                        waiting.remove(waiter);
+                        throw reject();
+                    }
+                    remaining = waiter.ready.awaitNanos(remaining);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                if (waiter.permit == null) {
+                    waiting.remove(waiter);
+                } else {
+                    inFlight--;
+                    dispatch();
+                }
+                throw new SQLException("Interrupted while waiting for the concurrency limit", e);
+            }
+            return waiter.permit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return transactions allowed to run at once
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return transactions holding a slot
+     */
+    public int getInFlight() {
+        lock.lock();
+        try {
+            return inFlight;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return callers waiting for a slot
+     */
+    public int getQueued() {
+        lock.lock();
+        try {
+            return waiting.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return callers rejected since the limiter was created
+     */
+    public long getRejected() {
+        lock.lock();
+        try {
+            return rejected;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void onRelease(long latencyNanos, int inFlightAtStart, long sequence) {
+        lock.lock();
+        try {
+            inFlight--;
+            if (latencyNanos > maxLatencyNanos) {
+                if (sequence > decreasedAt) {
+                    limit = Math.max(minLimit, (int) (limit * backoff));
+                    decreasedAt = issued;
+                }
+            } else if (latencyNanos >= 0 && inFlightAtStart * 2 >= limit && limit < maxLimit) {
+                limit++;
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands free slots to the waiters, oldest first. Called with the lock
+     * held.
+     */
+    private void dispatch() {
+        while (!waiting.isEmpty() && inFlight < limit) {
+            Waiter waiter = waiting.pollFirst();
+            waiter.permit = grant();
+            waiter.ready.signal();
+        }
+    }
+
+    // takes a slot; called with the lock held
+    private Permit grant() {
+        inFlight++;
+        return new Permit(inFlight, ++issued);
+    }
+
+    // called with the lock held
+    private SQLTransientException reject() {
+        rejected++;
+        return new SQLTransientException("Concurrency limit of " + limit + " reached, "
+                + inFlight + " transactions running");
+    }
+}
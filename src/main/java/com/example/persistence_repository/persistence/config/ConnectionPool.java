@@ -0,0 +1,427 @@
+package com.example.persistence_repository.persistence.config;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A small bounded pool of JDBC connections to one database.
+ * <p>
+ * Connections are opened lazily up to {@code maxSize}; a caller borrowing
+ * from an exhausted pool waits up to {@code borrowTimeoutMillis} for one to be
+ * returned. Returned connections are put back in auto-commit mode; closed
+ * ones are dropped and free their slot.
+ * </p>
+ * <p>
+ * Every borrow is made for a {@link Workload}. Each class keeps its reserved
+ * share of the pool for itself, and when connections run short, waiting
+ * callers are served by start-time fair queuing: each class has a virtual
+ * clock advancing by {@code 1 / weight} per connection handed to it, and the
+ * next connection goes to the first waiter of the class with the earliest
+ * clock (first in first out within a class). A class that starts waiting
+ * joins at the current virtual time, so idle periods earn it no credit.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class ConnectionPool implements AutoCloseable {
+
+    /**
+     * Opens a new connection of the pool.
+     */
+    @FunctionalInterface
+    public interface ConnectionFactory {
+        Connection create() throws SQLException;
+    }
+
+    private final String name;
+    private final ConnectionFactory factory;
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+
+    /**
+     * A caller of {@link #borrow(Workload)} waiting for a connection.
+     */
+    private static final class Waiter {
+        final Workload workload;
+        final Condition ready;
+        // set when a connection or a slot to open one is handed over
+        boolean granted;
+        // the idle connection handed over, null for a slot
+        Connection connection;
+
+        Waiter(Workload workload, Condition ready) {
+            this.workload = workload;
+            this.ready = ready;
+        }
+    }
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Deque<Connection> idle = new ArrayDeque<>();
+    // connections open or being opened, idle ones included
+    private int size;
+    private boolean closed;
+
+    // Per workload class, indexed by ordinal
+    private final int[] reserved = new int[Workload.values().length];
+    private final int[] active = new int[Workload.values().length];
+    private final double[] virtualStart = new double[Workload.values().length];
+    private final Map<Workload, Deque<Waiter>> waiting = new EnumMap<>(Workload.class);
+    // virtual start of the last connection handed out
+    private double virtualTime;
+    private final Map<Connection, Workload> borrowed = new IdentityHashMap<>();
+
+    /**
+     * @param name                used in error messages
+     * @param url                 JDBC url
+     * @param user                database user
+     * @param password            database password
+     * @param maxSize             connections open at most
+     * @param borrowTimeoutMillis how long {@link #borrow()} waits for a free
+     *                            connection
+     */
+    public ConnectionPool(String name, String url, String user, String password, int maxSize,
+            long borrowTimeoutMillis) {
+        this(name, () -> DriverManager.getConnection(url, user, password), maxSize, borrowTimeoutMillis);
+    }
+
+    public ConnectionPool(String name, ConnectionFactory factory, int maxSize, long borrowTimeoutMillis) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Pool size must be greater than 0");
+        }
+        if (borrowTimeoutMillis < 0) {
+            throw new IllegalArgumentException("Borrow timeout must not be negative");
+        }
+        this.name = name;
+        this.factory = factory;
+        this.maxSize = maxSize;
+        this.borrowTimeoutMillis = borrowTimeoutMillis;
+        int totalReserved = 0;
+        for (Workload workload : Workload.values()) {
+            reserved[workload.ordinal()] = workload.reservedOf(maxSize);
+            totalReserved += reserved[workload.ordinal()];
+        }
+        if (totalReserved >= maxSize) {
+            throw new IllegalArgumentException("Workload reservations leave no shared connection in pool " + name);
+        }
+        for (Workload workload : Workload.values()) {
+            waiting.put(workload, new ArrayDeque<>());
+        }
+    }
+
+    /**
+     * Borrows for the workload of the running code, see
+     * {@link TransactionManager#currentWorkload()}.
+     *
+     * @see #borrow(Workload)
+     */
+    public Connection borrow() throws SQLException {
+        return borrow(TransactionManager.currentWorkload());
+    }
+
+    /**
+     * Takes an idle connection, opens a new one if the pool is not full, or
+     * waits for one to be returned, in turn with the other callers of
+     * {@code workload}'s class.
+     *
+     * @throws SQLTimeoutException if no connection became free in time
+     * @throws SQLException        if a new connection could not be opened, the
+     *                             pool is closed or the thread was interrupted
+     */
+    public Connection borrow(Workload workload) throws SQLException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+        Waiter waiter = new Waiter(workload, lock.newCondition());
+        lock.lock();
+        try {
+            if (closed) {
+                throw new SQLException("Connection pool " + name + " is closed");
+            }
+            Deque<Waiter> queue = waiting.get(workload);
+            if (queue.isEmpty()) {
+                virtualStart[workload.ordinal()] = Math.max(virtualStart[workload.ordinal()], virtualTime);
+            }
+            queue.addLast(waiter);
+            dispatch();
+            while (!waiter.granted) {
+                if (closed) {
+                    queue.remove(waiter);
+                    throw new SQLException("Connection pool " + name + " is closed");
+                }
+                if (remaining <= 0) {
+                    queue.remove(waiter);
+                    throw new SQLTimeoutException("Timed out waiting for a connection of pool " + name);
+                }
+                remaining = waiter.ready.awaitNanos(remaining);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            if (waiter.granted) {
+                giveBack(waiter);
+            } else {
+                waiting.get(workload).remove(waiter);
+            }
+            throw new SQLException("Interrupted while waiting for a connection of pool " + name, e);
+        } finally {
+            lock.unlock();
+        }
+        if (waiter.connection != null) {
+            return waiter.connection;
+        }
+        // a slot is reserved, open the connection outside the lock
+        try {
+            Connection conn = factory.create();
+            lock.lock();
+            try {
+                borrowed.put(conn, workload);
+            } finally {
+                lock.unlock();
+            }
+            return conn;
+        } catch (SQLException | RuntimeException e) {
+            lock.lock();
+            try {
+                giveBack(waiter);
+            } finally {
+                lock.unlock();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Gives a borrowed connection back to the pool. Connections not currently
+     * borrowed from this pool (already released, or never borrowed) are
+     * ignored.
+     */
+    public void release(Connection conn) {
+        lock.lock();
+        try {
+            Workload workload = borrowed.remove(conn);
+            if (workload == null) {
+                return;
+            }
+            active[workload.ordinal()]--;
+        } finally {
+            lock.unlock();
+        }
+        // still counted in size, but no longer borrowed: a second release stops above
+        boolean usable = isUsable(conn);
+        if (usable) {
+            try {
+                if (!conn.getAutoCommit()) {
+                    conn.rollback();
+                    conn.setAutoCommit(true);
+                }
+            } catch (SQLException e) {
+                usable = false;
+            }
+        }
+        lock.lock();
+        try {
+            if (usable && !closed) {
+                idle.addFirst(conn);
+            } else {
+                size--;
+                closeQuietly(conn);
+            }
+            dispatch();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return connections currently borrowed
+     */
+    public int getActive() {
+        lock.lock();
+        try {
+            return size - idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return connections open and waiting to be borrowed
+     */
+    public int getIdle() {
+        lock.lock();
+        try {
+            return idle.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return connections currently borrowed for {@code workload}
+     */
+    public int getActive(Workload workload) {
+        lock.lock();
+        try {
+            return active[workload.ordinal()];
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * @return callers of {@code workload} waiting for a connection
+     */
+    public int getWaiting(Workload workload) {
+        lock.lock();
+        try {
+            return waiting.get(workload).size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Closes the idle connections; borrowed ones are closed when returned.
+     */
+    @Override
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            for (Connection conn : idle) {
+                closeQuietly(conn);
+            }
+            size -= idle.size();
+            idle.clear();
+            for (Deque<Waiter> queue : waiting.values()) {
+                for (Waiter waiter : queue) {
+                    waiter.ready.signal();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Hands free connections to waiters, in fair queuing order, as long as
+     * one of them may take one. Called with the lock held.
+     */
+    private void dispatch() {
+        while (!closed) {
+            Workload next = nextServed();
+            if (next == null) {
+                return;
+            }
+            Waiter waiter = waiting.get(next).pollFirst();
+            waiter.connection = pollUsable();
+            if (waiter.connection == null) {
+                size++;
+            } else {
+                borrowed.put(waiter.connection, next);
+            }
+            active[next.ordinal()]++;
+            virtualTime = virtualStart[next.ordinal()];
+            virtualStart[next.ordinal()] += 1.0 / next.getWeight();
+            waiter.granted = true;
+            waiter.ready.signal();
+        }
+    }
+
+    /**
+     * @return the waiting class with the earliest virtual start among those
+     *         the free connections may go to, null if none
+     */
+    private Workload nextServed() {
+        int free = maxSize - (size - idle.size());
+        if (free <= 0) {
+            return null;
+        }
+        Workload best = null;
+        for (Workload workload : Workload.values()) {
+            int i = workload.ordinal();
+            if (waiting.get(workload).isEmpty() || free <= reservedForOthers(workload)) {
+                continue;
+            }
+            if (best == null || virtualStart[i] < virtualStart[best.ordinal()]) {
+                best = workload;
+            }
+        }
+        return best;
+    }
+
+    // reserved connections of the other classes not borrowed by them
+    private int reservedForOthers(Workload workload) {
+        int unused = 0;
+        for (Workload other : Workload.values()) {
+            if (other != workload) {
+                unused += Math.max(0, reserved[other.ordinal()] - active[other.ordinal()]);
+            }
+        }
+        return unused;
+    }
+
+    private Connection pollUsable() {
+        Connection conn;
+        while ((conn = idle.pollFirst()) != null) {
+            if (isUsable(conn)) {
+                return conn;
+            }
+            size--;
+        }
+        return null;
+    }
+
+    /**
+     * Returns what was handed to a waiter that will not use it. Called with
+     * the lock held.
+     */
+    private void giveBack(Waiter waiter) {
+        active[waiter.workload.ordinal()]--;
+        if (waiter.connection != null) {
+            borrowed.remove(waiter.connection);
+        }
+        if (waiter.connection != null && !closed) {
+            idle.addFirst(waiter.connection);
+        } else {
+            size--;
+            if (waiter.connection != null) {
+                closeQuietly(waiter.connection);
+            }
+        }
+        dispatch();
+    }
+
+    private static boolean isUsable(Connection conn) {
+        try {
+            return !conn.isClosed();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
+
+    private static void closeQuietly(Connection conn) {
+        try {
+            conn.close();
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.example.persistence_repository.persistence.config;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Holder of a value bound to the running thread, shaped after Java 21's
+ * {@code ScopedValue}: {@link #callWhere(Object, Callable)} binds a value for
+ * the extent of one call and restores the previous binding when it returns,
+ * so nothing stays attached to the thread afterwards.
+ * <p>
+ * It is backed by a {@link ThreadLocal} so it also runs on Java 17, and keeps
+ * {@link #set(Object)} / {@link #remove()} for the begin / commit style API of
+ * {@link TransactionManager}, whose transactions outlive the call that opened
+ * them. Code that only binds through {@link #callWhere(Object, Callable)} is
+ * what a {@code ScopedValue} can replace one-for-one.
+ * </p>
+ *
+ * @param <T> the type of the value
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+final class ContextHolder<T> {
+
+    private final ThreadLocal<T> value = new ThreadLocal<>();
+
+    /**
+     * @return the value bound to the running thread, or null
+     */
+    T get() {
+        return value.get();
+    }
+
+    boolean isBound() {
+        return value.get() != null;
+    }
+
+    void set(T bound) {
+        value.set(bound);
+    }
+
+    void remove() {
+        value.remove();
+    }
+
+    /**
+     * Runs {@code operation} with {@code bound} as the value of the running
+     * thread, then restores the previous value (removing the binding when
+     * there was none).
+     */
+    <R> R callWhere(T bound, Callable<R> operation) throws Exception {
+        T previous = value.get();
+        value.set(bound);
+        try {
+            return operation.call();
+        } finally {
+            if (previous == null) {
+                value.remove();
+            } else {
+                value.set(previous);
+            }
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.persistence_repository.persistence.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * Minimal description of the SQL dialect spoken by the configured database.
+ * <p>
+ * Only the differences the framework actually relies on are captured here
+ * (array binding, temporary tables, table statistics). Everything else is
+ * plain ANSI SQL shared by all supported databases.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public enum Dialect {
+    MYSQL,
+    H2,
+    GENERIC;
+
+    /**
+     * Resolves the dialect from a JDBC url (e.g. {@code jdbc:mysql://...}).
+     *
+     * @param url JDBC url, may be null
+     * @return matching dialect or {@link #GENERIC}
+     */
+    public static Dialect fromUrl(String url) {
+        if (url == null) {
+            return GENERIC;
+        }
+        String lower = url.toLowerCase();
+        if (lower.startsWith("jdbc:mysql:") || lower.startsWith("jdbc:mariadb:")) {
+            return MYSQL;
+        }
+        if (lower.startsWith("jdbc:h2:")) {
+            return H2;
+        }
+        return GENERIC;
+    }
+
+    /**
+     * Resolves the dialect of an open connection from its metadata.
+     *
+     * @param connection open connection
+     * @return matching dialect or {@link #GENERIC}
+     */
+    public static Dialect of(Connection connection) {
+        try {
+            return fromUrl(connection.getMetaData().getURL());
+        } catch (SQLException e) {
+            return GENERIC;
+        }
+    }
+
+    /**
+     * @return dialect of {@link RepositoryConfig#DB_URL}
+     */
+    public static Dialect current() {
+        return fromUrl(RepositoryConfig.DB_URL);
+    }
+
+    /**
+     * Whether a whole collection can be bound as one array parameter and
+     * compared with {@code column = ANY(?)}.
+     */
+    public boolean supportsArrayParameters() {
+        return this == H2;
+    }
+
+    /**
+     * Query returning the optimizer's row estimate for one table of the current
+     * schema; takes the table name as its only parameter.
+     * <p>
+     * MySQL reads {@code information_schema.TABLES.TABLE_ROWS} (exact for
+     * MyISAM, an estimate for InnoDB), H2 reads
+     * {@code INFORMATION_SCHEMA.TABLES.ROW_COUNT_ESTIMATE}.
+     * </p>
+     *
+     * @return the query, or null if the dialect has no cheap estimate
+     */
+    public String approximateCountQuery() {
+        switch (this) {
+            case MYSQL:
+                return "SELECT TABLE_ROWS FROM information_schema.TABLES"
+                        + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?";
+            case H2:
+                return "SELECT ROW_COUNT_ESTIMATE FROM INFORMATION_SCHEMA.TABLES"
+                        + " WHERE TABLE_SCHEMA = SCHEMA() AND UPPER(TABLE_NAME) = UPPER(?)";
+            default:
+                return null;
+        }
+    }
+}
@@ -0,0 +1,336 @@
+package com.example.persistence_repository.persistence.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTimeoutException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes read-only transactions, and the single reads repositories make
+ * outside of a transaction, to read replicas of the primary database.
+ * <p>
+ * Each replica has its own {@link ConnectionPool}. A read is sent to the next
+ * replica in turn ({@link Strategy#ROUND_ROBIN}) or to the one with the fewest
+ * borrowed connections ({@link Strategy#LEAST_LOADED}). A replica whose
+ * database cannot be connected to is skipped for {@code retryMillis}; one
+ * whose pool is merely exhausted (the borrow timed out) is only passed over
+ * for that read. When no replica is usable the read falls back to the
+ * primary.
+ * </p>
+ *
+ * <h3>Read-your-writes</h3>
+ * Replicas lag behind the primary, so a thread that has just committed a
+ * write would not see it on a replica. After such a commit the thread's reads
+ * stay on the primary for {@code readYourWritesMillis}.
+ *
+ * <p>
+ * Writes never go through the router: read-write transactions always use the
+ * primary connection of {@link DBcontext}.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class ReplicaRouter implements AutoCloseable {
+
+    /**
+     * How a replica is picked for a read.
+     */
+    public enum Strategy {
+        ROUND_ROBIN, LEAST_LOADED;
+
+        /**
+         * @param value {@code round-robin} or {@code least-loaded}, case
+         *              insensitive
+         */
+        public static Strategy parse(String value) {
+            try {
+                return valueOf(value.trim().toUpperCase().replace('-', '_'));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Unknown replica strategy: " + value, e);
+            }
+        }
+    }
+
+    private static volatile ReplicaRouter shared;
+
+    private final List<Replica> replicas;
+    private final Strategy strategy;
+    private final long readYourWritesMillis;
+    private final long retryMillis;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Map<Connection, Replica> borrowed = Collections.synchronizedMap(new IdentityHashMap<>());
+    // time of the last write committed by the current thread
+    private final ThreadLocal<Long> lastWrite = new ThreadLocal<>();
+
+    private final AtomicLong primaryReads = new AtomicLong();
+    private final AtomicLong pinnedReads = new AtomicLong();
+
+    /**
+     * @param pools                one pool per replica
+     * @param strategy             how a replica is picked
+     * @param readYourWritesMillis how long a thread reads from the primary
+     *                             after committing a write, 0 = never
+     * @param retryMillis          how long a failing replica is skipped
+     */
+    public ReplicaRouter(List<ConnectionPool> pools, Strategy strategy, long readYourWritesMillis,
+            long retryMillis) {
+        if (readYourWritesMillis < 0 || retryMillis < 0) {
+            throw new IllegalArgumentException("Replica windows must not be negative");
+        }
+        List<Replica> list = new ArrayList<>(pools.size());
+        for (ConnectionPool pool : pools) {
+            list.add(new Replica(pool));
+        }
+        this.replicas = Collections.unmodifiableList(list);
+        this.strategy = strategy;
+        this.readYourWritesMillis = readYourWritesMillis;
+        this.retryMillis = retryMillis;
+    }
+
+    /**
+     * @return the router configured by the {@code repository.replica.*}
+     *         properties; without {@code repository.replica.urls} it has no
+     *         replica and every read stays on the primary
+     */
+    public static ReplicaRouter shared() {
+        ReplicaRouter router = shared;
+        if (router == null) {
+            synchronized (ReplicaRouter.class) {
+                router = shared;
+                if (router == null) {
+                    router = createShared();
+                    shared = router;
+                }
+            }
+        }
+        return router;
+    }
+
+    /**
+     * Replaces the router returned by {@link #shared()}, e.g. with one built
+     * in code. The previous router is not closed; null goes back to the one of
+     * the {@code repository.replica.*} properties on next use.
+     */
+    public static void setShared(ReplicaRouter router) {
+        synchronized (ReplicaRouter.class) {
+            shared = router;
+        }
+    }
+
+    private static ReplicaRouter createShared() {
+        List<ConnectionPool> pools = new ArrayList<>();
+        String user = RepositoryConfig.REPLICA_USER.isEmpty() ? RepositoryConfig.USER : RepositoryConfig.REPLICA_USER;
+        String password = RepositoryConfig.REPLICA_USER.isEmpty() ? RepositoryConfig.PASSWORD
+                : RepositoryConfig.REPLICA_PASSWORD;
+        if (!RepositoryConfig.REPLICA_URLS.isBlank()) {
+            try {
+                Class.forName(RepositoryConfig.DRIVER);
+            } catch (ClassNotFoundException e) {
+                e.printStackTrace();
+            }
+            int i = 0;
+            for (String url : RepositoryConfig.REPLICA_URLS.split(",")) {
+                if (!url.isBlank()) {
+                    pools.add(new ConnectionPool("replica-" + (++i), url.trim(), user, password,
+                            RepositoryConfig.REPLICA_POOL_SIZE, RepositoryConfig.REPLICA_BORROW_TIMEOUT_MILLIS));
+                }
+            }
+        }
+        return new ReplicaRouter(pools, Strategy.parse(RepositoryConfig.REPLICA_STRATEGY),
+                RepositoryConfig.REPLICA_READ_YOUR_WRITES_MILLIS, RepositoryConfig.REPLICA_RETRY_MILLIS);
+    }
+
+    /**
+     * Picks a replica connection for a read-only transaction.
+     *
+     * @return a borrowed connection to hand back with {@link #release}, or
+     *         null if the read must use the primary (no replica configured or
+     *         usable, or the thread is within its read-your-writes window)
+     */
+    public Connection acquire() {
+        if (replicas.isEmpty()) {
+            primaryReads.incrementAndGet();
+            return null;
+        }
+        if (isPinnedToPrimary()) {
+            pinnedReads.incrementAndGet();
+            return null;
+        }
+        long now = System.currentTimeMillis();
+        for (Replica replica : candidates()) {
+            if (replica.downUntil > now) {
+                continue;
+            }
+            try {
+                Connection conn = replica.pool.borrow();
+                borrowed.put(conn, replica);
+                replica.reads.incrementAndGet();
+                return conn;
+            } catch (SQLTimeoutException e) {
+                // every connection is in use: the replica is busy, not down
+                replica.busy.incrementAndGet();
+            } catch (SQLException e) {
+                if (Thread.currentThread().isInterrupted()) {
+                    break;
+                }
+                replica.downUntil = now + retryMillis;
+                replica.failures.incrementAndGet();
+                e.printStackTrace();
+            }
+        }
+        primaryReads.incrementAndGet();
+        return null;
+    }
+
+    /**
+     * Returns a connection obtained from {@link #acquire()} to its pool.
+     */
+    public void release(Connection conn) {
+        Replica replica = borrowed.remove(conn);
+        if (replica == null) {
+            throw new IllegalArgumentException("Connection was not borrowed from a replica");
+        }
+        replica.pool.release(conn);
+    }
+
+    /**
+     * @return the pool of the replica {@code conn} was borrowed from by
+     *         {@link #acquire()}, or null if it is not borrowed from this
+     *         router
+     */
+    ConnectionPool poolOf(Connection conn) {
+        Replica replica = borrowed.get(conn);
+        return replica == null ? null : replica.pool;
+    }
+
+    /**
+     * Records that the current thread committed a write, which pins its reads
+     * to the primary for the read-your-writes window.
+     */
+    public void recordWrite() {
+        if (readYourWritesMillis > 0) {
+            lastWrite.set(System.currentTimeMillis());
+        }
+    }
+
+    /**
+     * @return true if the current thread committed a write within the
+     *         read-your-writes window
+     */
+    public boolean isPinnedToPrimary() {
+        Long written = lastWrite.get();
+        if (written == null) {
+            return false;
+        }
+        if (System.currentTimeMillis() - written < readYourWritesMillis) {
+            return true;
+        }
+        lastWrite.remove();
+        return false;
+    }
+
+    /**
+     * @return true if at least one replica is configured
+     */
+    public boolean hasReplicas() {
+        return !replicas.isEmpty();
+    }
+
+    /**
+     * @return the replica pools, in configuration order
+     */
+    public List<ConnectionPool> getPools() {
+        List<ConnectionPool> pools = new ArrayList<>(replicas.size());
+        for (Replica replica : replicas) {
+            pools.add(replica.pool);
+        }
+        return pools;
+    }
+
+    /**
+     * @return reads routed to the replica at {@code index}
+     */
+    public long getReplicaReads(int index) {
+        return replicas.get(index).reads.get();
+    }
+
+    /**
+     * @return attempts to connect to the replica at {@code index} that failed
+     *         and took it out of rotation
+     */
+    public long getReplicaFailures(int index) {
+        return replicas.get(index).failures.get();
+    }
+
+    /**
+     * @return reads that passed over the replica at {@code index} because all
+     *         of its connections were in use
+     */
+    public long getReplicaBusy(int index) {
+        return replicas.get(index).busy.get();
+    }
+
+    /**
+     * @return reads sent to the primary because no replica was usable
+     */
+    public long getPrimaryReads() {
+        return primaryReads.get();
+    }
+
+    /**
+     * @return reads sent to the primary because of read-your-writes
+     */
+    public long getPinnedReads() {
+        return pinnedReads.get();
+    }
+
+    public Strategy getStrategy() {
+        return strategy;
+    }
+
+    @Override
+    public void close() {
+        for (Replica replica : replicas) {
+            replica.pool.close();
+        }
+    }
+
+    // replicas in the order they should be tried
+    private List<Replica> candidates() {
+        int n = replicas.size();
+        int start = Math.floorMod(next.getAndIncrement(), n);
+        List<Replica> order = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            order.add(replicas.get((start + i) % n));
+        }
+        if (strategy == Strategy.LEAST_LOADED) {
+            Map<Replica, Integer> load = new IdentityHashMap<>();
+            for (Replica replica : order) {
+                load.put(replica, replica.pool.getActive());
+            }
+            // stable sort: equally loaded replicas keep the round-robin order
+            order.sort((a, b) -> Integer.compare(load.get(a), load.get(b)));
+        }
+        return order;
+    }
+
+    private static final class Replica {
+        private final ConnectionPool pool;
+        private final AtomicLong reads = new AtomicLong();
+        private final AtomicLong failures = new AtomicLong();
+        private final AtomicLong busy = new AtomicLong();
+        private volatile long downUntil;
+
+        private Replica(ConnectionPool pool) {
+            this.pool = pool;
+        }
+    }
+}
@@ -10,6 +10,77 @@ import com.example.persistence_repository.PropertyLoader;
  * - repository.password
  * - repository.driver-class-name
  * - repository.show-sql
+ * - repository.in-list.padding
+ * - repository.in-list.max-size
+ * - repository.in-list.array-binding
+ * - repository.query-cache.enabled
+ * - repository.query-cache.max-size
+ * - repository.query-cache.ttl-ms
+ * - repository.count-cache.enabled
+ * - repository.count-cache.max-size
+ * - repository.count-cache.ttl-ms
+ * - repository.count.approximate
+ * - repository.collection-cache.enabled
+ * - repository.collection-cache.max-size
+ * - repository.collection-cache.ttl-ms
+ * - repository.l2-cache.enabled
+ * - repository.l2-cache.max-bytes
+ * - repository.l2-cache.slab-bytes
+ * - repository.l2-cache.snapshot.path
+ * - repository.l2-cache.snapshot.max-age-ms
+ * - repository.l2-cache.ttl-ms
+ * - repository.l2-cache.refresh-ahead
+ * - repository.l2-cache.refresh.threads
+ * - repository.l2-cache.refresh.queue-size
+ * - repository.invalidation.enabled
+ * - repository.invalidation.transport
+ * - repository.invalidation.node-id
+ * - repository.invalidation.table
+ * - repository.invalidation.poll-ms
+ * - repository.invalidation.retention-ms
+ * - repository.invalidation.max-entity-events
+ * - repository.invalidation.retry-ms
+ * - repository.invalidation.retry-max-ms
+ * - repository.single-flight.enabled
+ * - repository.single-flight.timeout-ms
+ * - repository.cache-stats.enabled
+ * - repository.cache-stats.top-k
+ * - repository.cache-stats.sketch-width
+ * - repository.cache-stats.sketch-depth
+ * - repository.replica.urls
+ * - repository.replica.username
+ * - repository.replica.password
+ * - repository.replica.strategy
+ * - repository.replica.pool-size
+ * - repository.replica.borrow-timeout-ms
+ * - repository.replica.read-your-writes-ms
+ * - repository.replica.retry-ms
+ * - repository.read-only.isolation
+ * - repository.async.threads
+ * - repository.async.queue-size
+ * - repository.async.borrow-timeout-ms
+ * - repository.virtual-threads.enabled
+ * - repository.parallel.pool-size
+ * - repository.parallel.borrow-timeout-ms
+ * - repository.transaction.pooled
+ * - repository.transaction.pool-size
+ * - repository.transaction.borrow-timeout-ms
+ * - repository.page.skip-count
+ * - repository.page.parallel-count
+ * - repository.page.prefetch-depth
+ * - repository.limit.enabled
+ * - repository.limit.initial
+ * - repository.limit.min
+ * - repository.limit.max
+ * - repository.limit.max-latency-ms
+ * - repository.limit.backoff
+ * - repository.limit.queue-timeout-ms
+ * - repository.workload.interactive.weight
+ * - repository.workload.interactive.reserved
+ * - repository.workload.background.weight
+ * - repository.workload.background.reserved
+ * - repository.workload.bulk.weight
+ * - repository.workload.bulk.reserved
  */
 public class RepositoryConfig {
 
@@ -19,6 +90,170 @@ public class RepositoryConfig {
     public static final String DRIVER = PropertyLoader.get("repository.driver-class-name", "");
     public static final boolean PRINT_SQL = PropertyLoader.getBoolean("repository.show-sql", true);
 
+    // Pad IN lists to power-of-two sizes so statement / plan caches see few shapes (opt-in)
+    public static final boolean IN_LIST_PADDING = PropertyLoader.getBoolean("repository.in-list.padding", false);
+    // Largest IN list emitted as one predicate; longer lists are split into OR-ed lists of the same statement
+    public static final int IN_LIST_MAX_SIZE = PropertyLoader.getInt("repository.in-list.max-size", 1000);
+    // Bind IN lists as one array parameter (column = ANY(?)) where the dialect allows
+    public static final boolean IN_LIST_ARRAY_BINDING = PropertyLoader.getBoolean("repository.in-list.array-binding",
+            false);
+
+    // Shared query result cache (findWithCondition), off by default
+    public static final boolean QUERY_CACHE_ENABLED = PropertyLoader.getBoolean("repository.query-cache.enabled",
+            false);
+    public static final int QUERY_CACHE_MAX_SIZE = PropertyLoader.getInt("repository.query-cache.max-size", 1000);
+    public static final long QUERY_CACHE_TTL_MILLIS = PropertyLoader.getLong("repository.query-cache.ttl-ms", 60_000L);
+
+    // Short-lived cache of COUNT results (count(), paginated totals)
+    public static final boolean COUNT_CACHE_ENABLED = PropertyLoader.getBoolean("repository.count-cache.enabled",
+            false);
+    public static final int COUNT_CACHE_MAX_SIZE = PropertyLoader.getInt("repository.count-cache.max-size", 500);
+    public static final long COUNT_CACHE_TTL_MILLIS = PropertyLoader.getLong("repository.count-cache.ttl-ms", 5_000L);
+    // findAll(PageRequest) totals read table statistics instead of COUNT(*); count() stays exact
+    public static final boolean COUNT_APPROXIMATE = PropertyLoader.getBoolean("repository.count.approximate", false);
+
+    // Shared cache of @OneToMany child keys
+    public static final boolean COLLECTION_CACHE_ENABLED = PropertyLoader
+            .getBoolean("repository.collection-cache.enabled", false);
+    public static final int COLLECTION_CACHE_MAX_SIZE = PropertyLoader.getInt("repository.collection-cache.max-size",
+            2000);
+    public static final long COLLECTION_CACHE_TTL_MILLIS = PropertyLoader
+            .getLong("repository.collection-cache.ttl-ms", 300_000L);
+
+    // Shared off-heap entity cache behind findById / findAllById
+    public static final boolean L2_CACHE_ENABLED = PropertyLoader.getBoolean("repository.l2-cache.enabled", false);
+    public static final long L2_CACHE_MAX_BYTES = PropertyLoader.getLong("repository.l2-cache.max-bytes",
+            64L * 1024 * 1024);
+    public static final int L2_CACHE_SLAB_BYTES = PropertyLoader.getInt("repository.l2-cache.slab-bytes",
+            1024 * 1024);
+    // Warm-restart file for the L2 cache, empty = no snapshot
+    public static final String L2_CACHE_SNAPSHOT_PATH = PropertyLoader.get("repository.l2-cache.snapshot.path", "");
+    public static final long L2_CACHE_SNAPSHOT_MAX_AGE_MILLIS = PropertyLoader
+            .getLong("repository.l2-cache.snapshot.max-age-ms", 3_600_000L);
+    // Age after which an L2 entry is dropped, 0 = never
+    public static final long L2_CACHE_TTL_MILLIS = PropertyLoader.getLong("repository.l2-cache.ttl-ms", 0L);
+    // Fraction of the TTL after which a read entry is reloaded in the background, 0 = off
+    public static final double L2_CACHE_REFRESH_AHEAD = PropertyLoader.getDouble("repository.l2-cache.refresh-ahead",
+            0.0);
+    public static final int L2_CACHE_REFRESH_THREADS = PropertyLoader.getInt("repository.l2-cache.refresh.threads", 2);
+    public static final int L2_CACHE_REFRESH_QUEUE_SIZE = PropertyLoader
+            .getInt("repository.l2-cache.refresh.queue-size", 1000);
+
+    // Cross-node cache invalidation (loopback | jdbc transport)
+    public static final boolean INVALIDATION_ENABLED = PropertyLoader.getBoolean("repository.invalidation.enabled",
+            false);
+    public static final String INVALIDATION_TRANSPORT = PropertyLoader.get("repository.invalidation.transport",
+            "jdbc");
+    // Empty = random id per process
+    public static final String INVALIDATION_NODE_ID = PropertyLoader.get("repository.invalidation.node-id", "");
+    public static final String INVALIDATION_TABLE = PropertyLoader.get("repository.invalidation.table",
+            "cache_invalidation");
+    public static final long INVALIDATION_POLL_MILLIS = PropertyLoader.getLong("repository.invalidation.poll-ms",
+            1_000L);
+    public static final long INVALIDATION_RETENTION_MILLIS = PropertyLoader
+            .getLong("repository.invalidation.retention-ms", 600_000L);
+    // More entity events than this for one table are sent as one table event
+    public static final int INVALIDATION_MAX_ENTITY_EVENTS = PropertyLoader
+            .getInt("repository.invalidation.max-entity-events", 100);
+    // A batch that failed to publish is retried after retry-ms, doubling up to retry-max-ms
+    public static final long INVALIDATION_RETRY_MILLIS = PropertyLoader.getLong("repository.invalidation.retry-ms",
+            500L);
+    public static final long INVALIDATION_RETRY_MAX_MILLIS = PropertyLoader
+            .getLong("repository.invalidation.retry-max-ms", 30_000L);
+
+    // Concurrent identical loads behind the shared caches run once
+    public static final boolean SINGLE_FLIGHT_ENABLED = PropertyLoader.getBoolean("repository.single-flight.enabled",
+            false);
+    // How long a caller waits for another thread's load before loading itself
+    public static final long SINGLE_FLIGHT_TIMEOUT_MILLIS = PropertyLoader
+            .getLong("repository.single-flight.timeout-ms", 5_000L);
+
+    // Per-class cache counters and hot-key sketch (CacheStatistics)
+    public static final boolean CACHE_STATS_ENABLED = PropertyLoader.getBoolean("repository.cache-stats.enabled",
+            false);
+    public static final int CACHE_STATS_TOP_K = PropertyLoader.getInt("repository.cache-stats.top-k", 10);
+    public static final int CACHE_STATS_SKETCH_WIDTH = PropertyLoader.getInt("repository.cache-stats.sketch-width",
+            1024);
+    public static final int CACHE_STATS_SKETCH_DEPTH = PropertyLoader.getInt("repository.cache-stats.sketch-depth", 4);
+
+    // Read replicas for read-only transactions, comma-separated JDBC urls, empty = none
+    public static final String REPLICA_URLS = PropertyLoader.get("repository.replica.urls", "");
+    // Empty = same credentials as the primary
+    public static final String REPLICA_USER = PropertyLoader.get("repository.replica.username", "");
+    public static final String REPLICA_PASSWORD = PropertyLoader.get("repository.replica.password", "");
+    // round-robin | least-loaded
+    public static final String REPLICA_STRATEGY = PropertyLoader.get("repository.replica.strategy", "round-robin");
+    public static final int REPLICA_POOL_SIZE = PropertyLoader.getInt("repository.replica.pool-size", 8);
+    public static final long REPLICA_BORROW_TIMEOUT_MILLIS = PropertyLoader
+            .getLong("repository.replica.borrow-timeout-ms", 1_000L);
+    // Reads of a thread stay on the primary this long after it committed a write
+    public static final long REPLICA_READ_YOUR_WRITES_MILLIS = PropertyLoader
+            .getLong("repository.replica.read-your-writes-ms", 2_000L);
+    // How long a replica that failed to connect is skipped
+    public static final long REPLICA_RETRY_MILLIS = PropertyLoader.getLong("repository.replica.retry-ms", 30_000L);
+
+    // Isolation level of beginReadOnly(): read-uncommitted | read-committed | repeatable-read
+    // | serializable, empty = keep the connection's
+    public static final String READ_ONLY_ISOLATION = PropertyLoader.get("repository.read-only.isolation", "");
+
+    // AsyncRepository worker threads, each with a primary connection of its own
+    public static final int ASYNC_THREADS = PropertyLoader.getInt("repository.async.threads", 8);
+    // Operations waiting for a worker before new ones are rejected
+    public static final int ASYNC_QUEUE_SIZE = PropertyLoader.getInt("repository.async.queue-size", 1000);
+    public static final long ASYNC_BORROW_TIMEOUT_MILLIS = PropertyLoader
+            .getLong("repository.async.borrow-timeout-ms", 5_000L);
+
+    // Run async and shard work on virtual threads (Java 21+, ignored before)
+    public static final boolean VIRTUAL_THREADS_ENABLED = PropertyLoader
+            .getBoolean("repository.virtual-threads.enabled", false);
+
+    // Primary connections of parallel() child tasks and of beginReadOnly() without a replica
+    public static final int PARALLEL_POOL_SIZE = PropertyLoader.getInt("repository.parallel.pool-size", 8);
+    public static final long PARALLEL_BORROW_TIMEOUT_MILLIS = PropertyLoader
+            .getLong("repository.parallel.borrow-timeout-ms", 5_000L);
+
+    // beginTransaction() borrows from a workload-scheduled pool instead of the shared connection (opt-in)
+    public static final boolean TRANSACTION_POOLED = PropertyLoader.getBoolean("repository.transaction.pooled", false);
+    public static final int TRANSACTION_POOL_SIZE = PropertyLoader.getInt("repository.transaction.pool-size", 10);
+    public static final long TRANSACTION_BORROW_TIMEOUT_MILLIS = PropertyLoader
+            .getLong("repository.transaction.borrow-timeout-ms", 5_000L);
+
+    // Paged queries: take the total from a page shorter than the page size
+    public static final boolean PAGE_SKIP_COUNT = PropertyLoader.getBoolean("repository.page.skip-count", true);
+    // Paged queries in read-only transactions: count and fetch concurrently on pooled connections
+    public static final boolean PAGE_PARALLEL_COUNT = PropertyLoader.getBoolean("repository.page.parallel-count",
+            false);
+    // Pages a PageIterator fetches ahead of the one being processed
+    public static final int PAGE_PREFETCH_DEPTH = PropertyLoader.getInt("repository.page.prefetch-depth", 1);
+
+    // Adaptive limit on transactions running at once (AIMD on the time of their database calls)
+    public static final boolean LIMIT_ENABLED = PropertyLoader.getBoolean("repository.limit.enabled", false);
+    public static final int LIMIT_INITIAL = PropertyLoader.getInt("repository.limit.initial", 20);
+    public static final int LIMIT_MIN = PropertyLoader.getInt("repository.limit.min", 1);
+    public static final int LIMIT_MAX = PropertyLoader.getInt("repository.limit.max", 200);
+    // Mean database call time above which a transaction shrinks the limit; below it, grows it by one
+    public static final long LIMIT_MAX_LATENCY_MILLIS = PropertyLoader.getLong("repository.limit.max-latency-ms",
+            500L);
+    // Factor the limit is multiplied by when the calls were slow
+    public static final double LIMIT_BACKOFF = PropertyLoader.getDouble("repository.limit.backoff", 0.9);
+    // How long a transaction waits for a slot before it is rejected, 0 = reject at once
+    public static final long LIMIT_QUEUE_TIMEOUT_MILLIS = PropertyLoader
+            .getLong("repository.limit.queue-timeout-ms", 100L);
+
+    // Share of connections handed to each workload class while several wait for one
+    public static final int WORKLOAD_INTERACTIVE_WEIGHT = PropertyLoader
+            .getInt("repository.workload.interactive.weight", 8);
+    public static final int WORKLOAD_BACKGROUND_WEIGHT = PropertyLoader
+            .getInt("repository.workload.background.weight", 2);
+    public static final int WORKLOAD_BULK_WEIGHT = PropertyLoader.getInt("repository.workload.bulk.weight", 1);
+    // Fraction of every pool only that class may borrow, rounded down
+    public static final double WORKLOAD_INTERACTIVE_RESERVED = PropertyLoader
+            .getDouble("repository.workload.interactive.reserved", 0.25);
+    public static final double WORKLOAD_BACKGROUND_RESERVED = PropertyLoader
+            .getDouble("repository.workload.background.reserved", 0.0);
+    public static final double WORKLOAD_BULK_RESERVED = PropertyLoader
+            .getDouble("repository.workload.bulk.reserved", 0.0);
+
     private RepositoryConfig() {
     }
 }
@@ -0,0 +1,82 @@
+package com.example.persistence_repository.persistence.config;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.example.persistence_repository.persistence.cache.EntityCache;
+
+/**
+ * State of one transaction: its connection, nesting depth, entity cache,
+ * callbacks, resources and flags.
+ * <p>
+ * {@link TransactionManager} binds it to the thread running the transaction
+ * in a single {@link ContextHolder} slot. {@link TransactionManager#suspend()}
+ * hands it out; pass it to {@link TransactionManager#resume(TransactionContext)}
+ * or {@link TransactionManager#callIn(TransactionContext, java.util.concurrent.Callable)}
+ * on the same or another thread to continue the transaction there. A context
+ * must be bound to at most one thread at a time, and not after the
+ * transaction has ended.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public final class TransactionContext {
+
+    final Connection connection;
+    final EntityCache cache;
+    // Pool the connection was borrowed from, returned to it after the cleanups; null if not borrowed
+    ConnectionPool pool;
+    int depth;
+    // Callbacks run just before the outermost commit or rollback
+    final List<Runnable> beforeCompletion = new ArrayList<>();
+    // Callbacks run once the outermost transaction has committed or rolled back
+    final List<Runnable> cleanups = new ArrayList<>();
+    // Callbacks run only once the outermost transaction has committed
+    final List<Runnable> afterCommit = new ArrayList<>();
+    // Per-transaction state of other components, see getResource()
+    final Map<Object, Object> resources = new HashMap<>();
+    // Set while the transaction was begun with beginReadOnly()
+    boolean readOnly;
+    // Set while the read-only transaction runs on a replica connection
+    boolean replica;
+    // Set once the transaction has written through a repository
+    boolean written;
+    // Set while the transaction must neither read nor fill the shared caches
+    boolean bypass;
+    // Class of the connections borrowed for the transaction's work
+    Workload workload = Workload.INTERACTIVE;
+    // Slot of the concurrency limiter the database calls are reported to, null if none
+    ConcurrencyLimiter.Permit permit;
+
+    TransactionContext(Connection connection, EntityCache cache) {
+        this.connection = connection;
+        this.cache = cache;
+    }
+
+    /**
+     * @return true if the transaction was begun with
+     *         {@link TransactionManager#beginReadOnly()}
+     */
+    public boolean isReadOnly() {
+        return readOnly;
+    }
+
+    /**
+     * @return the workload class of the transaction
+     */
+    public Workload getWorkload() {
+        return workload;
+    }
+
+    /**
+     * @return true until the outermost commit or rollback
+     */
+    public boolean isActive() {
+        return depth > 0;
+    }
+}
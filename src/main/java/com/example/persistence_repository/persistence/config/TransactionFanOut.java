@@ -0,0 +1,179 @@
+package com.example.persistence_repository.persistence.config;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the child tasks of {@link TransactionManager#parallel(List)}.
+ * <p>
+ * Each child runs on a worker thread in a read-only transaction of its own,
+ * on a connection borrowed from a pool and set to the parent's isolation
+ * level, and shares the parent's {@link com.example.persistence_repository.persistence.cache.EntityCache}
+ * (which is synchronized), so entities loaded by one child are seen by the
+ * others and by the parent afterwards. Children borrow for the workload of
+ * the parent's code. The parent waits for every child; the first failure
+ * cancels the children still running.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+final class TransactionFanOut {
+
+    private static final ExecutorService EXECUTOR = newExecutor();
+    private static volatile ConnectionPool sharedPool;
+
+    private TransactionFanOut() {
+    }
+
+    static <T> List<T> run(TransactionContext parent, ConnectionPool pool, List<? extends Callable<T>> tasks)
+            throws SQLException {
+        List<T> results = new ArrayList<>(tasks.size());
+        if (parent.written) {
+            // other connections cannot see the parent's uncommitted writes
+            for (Callable<T> task : tasks) {
+                try {
+                    results.add(task.call());
+                } catch (Exception e) {
+                    throw rethrow(e);
+                }
+            }
+            return results;
+        }
+        int isolation = parent.connection.getTransactionIsolation();
+        Workload workload = TransactionManager.currentWorkload();
+        List<Future<T>> futures = new ArrayList<>(tasks.size());
+        for (Callable<T> task : tasks) {
+            futures.add(EXECUTOR.submit(() -> runChild(parent, pool, isolation, workload, task)));
+        }
+        Throwable failure = null;
+        for (Future<T> future : futures) {
+            try {
+                T result = future.get();
+                if (failure == null) {
+                    results.add(result);
+                }
+            } catch (ExecutionException e) {
+                if (failure == null) {
+                    failure = e.getCause();
+                    futures.forEach(f -> f.cancel(true));
+                } else if (failure != e.getCause()) {
+                    failure.addSuppressed(e.getCause());
+                }
+            } catch (CancellationException e) {
+                // cancelled after an earlier failure
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                futures.forEach(f -> f.cancel(true));
+                throw new SQLException("Interrupted while waiting for parallel tasks", e);
+            }
+        }
+        if (failure != null) {
+            throw rethrow(failure);
+        }
+        return results;
+    }
+
+    static ConnectionPool sharedPool() {
+        ConnectionPool pool = sharedPool;
+        if (pool == null) {
+            synchronized (TransactionFanOut.class) {
+                pool = sharedPool;
+                if (pool == null) {
+                    pool = new ConnectionPool("parallel", DBcontext::createConnection,
+                            RepositoryConfig.PARALLEL_POOL_SIZE, RepositoryConfig.PARALLEL_BORROW_TIMEOUT_MILLIS);
+                    sharedPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    static void setSharedPool(ConnectionPool pool) {
+        synchronized (TransactionFanOut.class) {
+            sharedPool = pool;
+        }
+    }
+
+    private static <T> T runChild(TransactionContext parent, ConnectionPool pool, int isolation, Workload workload,
+            Callable<T> task) throws Exception {
+        Connection connection = pool.borrow(workload);
+        boolean previousReadOnly = connection.isReadOnly();
+        int previousIsolation = connection.getTransactionIsolation();
+        try {
+            connection.setReadOnly(true);
+            if (isolation != previousIsolation) {
+                connection.setTransactionIsolation(isolation);
+            }
+            connection.setAutoCommit(false);
+            TransactionContext child = new TransactionContext(connection, parent.cache);
+            child.depth = 1;
+            child.readOnly = true;
+            child.bypass = parent.bypass;
+            // rows of a replica parent's children may be just as stale
+            child.replica = parent.replica;
+            child.workload = workload;
+            // runs in the parent's slot: its calls count towards the parent's latency
+            child.permit = parent.permit;
+            return TransactionManager.callIn(child, () -> {
+                T value;
+                try {
+                    value = task.call();
+                } catch (Exception | Error e) {
+                    TransactionManager.rollback();
+                    throw e;
+                }
+                TransactionManager.commit();
+                return value;
+            });
+        } finally {
+            try {
+                // a closed connection is dropped by the pool on release
+                if (!connection.isClosed()) {
+                    connection.setReadOnly(previousReadOnly);
+                    if (connection.getTransactionIsolation() != previousIsolation) {
+                        connection.setTransactionIsolation(previousIsolation);
+                    }
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            }
+            pool.release(connection);
+        }
+    }
+
+    private static SQLException rethrow(Throwable failure) {
+        if (failure instanceof SQLException e) {
+            return e;
+        }
+        if (failure instanceof RuntimeException e) {
+            throw e;
+        }
+        if (failure instanceof Error e) {
+            throw e;
+        }
+        return new SQLException("Parallel task failed", failure);
+    }
+
+    private static ExecutorService newExecutor() {
+        if (VirtualThreads.isEnabled()) {
+            return VirtualThreads.newExecutor();
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "transaction-parallel-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+}
@@ -2,12 +2,23 @@ package com.example.persistence_repository.persistence.config;
 
 import java.sql.Connection;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.function.Supplier;
 
 import com.example.persistence_repository.persistence.cache.EntityCache;
 
 /**
  * Manages database transactions using ThreadLocal to ensure thread safety.
  * <p>
+ * All state of the current transaction lives in one {@link TransactionContext}
+ * held in a single {@link ContextHolder} slot, which is empty on threads
+ * without a transaction; short-lived (e.g. virtual) threads that only check
+ * for a transaction keep nothing attached.
+ * </p>
+ * <p>
  * This class provides methods to begin, commit, and rollback transactions,
  * as well as to retrieve the current connection associated with the thread.
  * </p>
@@ -47,29 +58,264 @@ import com.example.persistence_repository.persistence.cache.EntityCache;
  * 
  */
 public class TransactionManager {
-    // ThreadLocal to hold the connection for each thread
-    private static ThreadLocal<Connection> connectionHolder = new ThreadLocal<>();
-    // To keep track of transaction depth for nested transactions
-    private static ThreadLocal<Integer> transactionDepthHolder = ThreadLocal.withInitial(() -> 0);
+    // Transaction bound to the running thread, null when there is none
+    private static final ContextHolder<TransactionContext> current = new ContextHolder<>();
 
-    private static ThreadLocal<EntityCache> cacheHolder = new ThreadLocal<>();
+    /**
+     * Isolation level argument of {@link #beginReadOnly(int)} that keeps the
+     * connection's current level.
+     */
+    public static final int DEFAULT_ISOLATION = -1;
+    private static final int READ_ONLY_ISOLATION = isolationLevel(RepositoryConfig.READ_ONLY_ISOLATION);
+    // Workload bound by callAs(), null outside of it
+    private static final ContextHolder<Workload> callWorkload = new ContextHolder<>();
+    // Taken by outermost transactions, null when disabled
+    private static volatile ConcurrencyLimiter limiter = RepositoryConfig.LIMIT_ENABLED
+            ? ConcurrencyLimiter.fromConfig()
+            : null;
+    // Borrowed from by outermost beginTransaction(), null for the shared DBcontext connection
+    private static volatile ConnectionPool primaryPool;
 
     /**
      * Begins a new transaction by setting auto-commit to false on the current
      * connection.
+     * <p>
+     * With {@code repository.transaction.pooled=true} (or a pool set by
+     * {@link #setPrimaryPool(ConnectionPool)}), the outermost transaction
+     * borrows a connection of that pool for the {@link #currentWorkload()}
+     * instead of using the shared connection, and returns it once the
+     * transaction has ended, so bulk work cannot take the connections
+     * reserved for interactive requests.
+     * </p>
      * 
      * @throws SQLException if a database access error occurs
      */
     public static void beginTransaction() throws SQLException {
+        beginTransaction(null);
+    }
+
+    /**
+     * Begins a new transaction on {@code connection} instead of the shared
+     * one, e.g. for background work that must stay out of the transactions of
+     * request threads. Nested calls join the outer transaction as usual; the
+     * connection is not closed when the transaction ends.
+     *
+     * @param connection connection to use; null for the shared connection, or
+     *                   one of the pool of {@link #setPrimaryPool} if any
+     * @throws SQLException if a database access error occurs
+     */
+    public static void beginTransaction(Connection connection) throws SQLException {
+        TransactionContext context = current.get();
+        if (context != null && context.readOnly) {
+            throw new IllegalStateException("Cannot begin a read-write transaction inside a read-only one");
+        }
+        begin(connection, null);
+    }
+
+    /**
+     * Begins a transaction on {@code connection} under {@code permit}, a slot
+     * of the concurrency limiter taken beforehand with
+     * {@link #acquirePermit()}, so that no connection is held while waiting
+     * for the slot. The transaction takes no slot of its own and reports its
+     * database calls to {@code permit}, which the caller releases once the
+     * transaction has ended. Several transactions may share one permit, e.g.
+     * the sub-transactions of one operation.
+     *
+     * @param connection connection to use; null as in
+     *                   {@link #beginTransaction(Connection)}
+     * @param permit     slot to run under; null to take one as
+     *                   {@link #beginTransaction(Connection)} does
+     * @throws SQLException if a database access error occurs
+     */
+    public static void beginTransaction(Connection connection, ConcurrencyLimiter.Permit permit)
+            throws SQLException {
+        TransactionContext context = current.get();
+        if (context != null && context.readOnly) {
+            throw new IllegalStateException("Cannot begin a read-write transaction inside a read-only one");
+        }
+        begin(connection, permit);
+    }
+
+    /**
+     * Begins a read-only transaction with the isolation level set by
+     * {@code repository.read-only.isolation}.
+     *
+     * @throws SQLException if a database access error occurs
+     * @see #beginReadOnly(int)
+     */
+    public static void beginReadOnly() throws SQLException {
+        beginReadOnly(READ_ONLY_ISOLATION);
+    }
+
+    /**
+     * Begins a read-only transaction. If it is the outermost one, it runs on a
+     * read replica picked by {@link ReplicaRouter#shared()}, or on the primary
+     * when no replica is configured or usable, or when the thread committed a
+     * write within the read-your-writes window. On the primary it borrows a
+     * connection of the pool set by {@link #setParallelPool}, never the shared
+     * connection of {@link DBcontext}. The connection is switched to
+     * {@link Connection#setReadOnly(boolean) read-only} and to
+     * {@code isolation} for the duration of the transaction, so the driver and
+     * database can skip the work needed for writes.
+     * <p>
+     * Repository writes inside it fail with {@link IllegalStateException}
+     * before any SQL is sent, and a read-write transaction cannot be nested
+     * inside it. Inside a read-write transaction it simply joins it, keeping
+     * the outer isolation level.
+     * </p>
+     *
+     * @param isolation one of the {@code Connection.TRANSACTION_*} levels, or
+     *                  {@link #DEFAULT_ISOLATION} to keep the connection's
+     * @throws SQLException if a database access error occurs
+     */
+    public static void beginReadOnly(int isolation) throws SQLException {
+        if (isolation != DEFAULT_ISOLATION && isolation != Connection.TRANSACTION_READ_UNCOMMITTED
+                && isolation != Connection.TRANSACTION_READ_COMMITTED
+                && isolation != Connection.TRANSACTION_REPEATABLE_READ
+                && isolation != Connection.TRANSACTION_SERIALIZABLE) {
+            throw new IllegalArgumentException("Unknown isolation level: " + isolation);
+        }
+        if (current.isBound()) {
+            begin(null, null);
+            return;
+        }
+        ConcurrencyLimiter.Permit permit = acquirePermit();
+        ReplicaRouter router = ReplicaRouter.shared();
+        Connection replica;
+        ConnectionPool primary;
+        Connection connection;
+        try {
+            replica = router.acquire();
+            // not the shared DBcontext connection: its other users would see the flags
+            primary = replica == null ? TransactionFanOut.sharedPool() : null;
+            connection = replica != null ? replica : primary.borrow();
+        } catch (SQLException | RuntimeException e) {
+            if (permit != null) {
+                permit.release();
+            }
+            throw e;
+        }
+        Runnable release = () -> {
+            if (primary != null) {
+                primary.release(connection);
+            } else {
+                router.release(replica);
+            }
+            if (permit != null) {
+                permit.release();
+            }
+        };
+        boolean previousReadOnly;
+        int previousIsolation;
+        try {
+            previousReadOnly = connection.isReadOnly();
+            previousIsolation = connection.getTransactionIsolation();
+        } catch (SQLException | RuntimeException e) {
+            release.run();
+            throw e;
+        }
+        Runnable restore = () -> {
+            try {
+                connection.setReadOnly(previousReadOnly);
+                if (connection.getTransactionIsolation() != previousIsolation) {
+                    connection.setTransactionIsolation(previousIsolation);
+                }
+            } catch (SQLException e) {
+                e.printStackTrace();
+            } finally {
+                release.run();
+            }
+        };
+        try {
+            connection.setReadOnly(true);
+            if (isolation != DEFAULT_ISOLATION && isolation != previousIsolation) {
+                connection.setTransactionIsolation(isolation);
+            }
+            begin(connection, permit);
+        } catch (SQLException | RuntimeException e) {
+            restore.run();
+            throw e;
+        }
+        TransactionContext context = current.get();
+        context.readOnly = true;
+        context.replica = replica != null;
+        registerCleanup(restore);
+    }
 
-        if (transactionDepthHolder.get() < 1 && connectionHolder.get() == null) {
-            Connection connection = DBcontext.getConnection();
-            connection.setAutoCommit(false);
-            connectionHolder.set(connection);
-            cacheHolder.set(EntityCache.defaultCache());
+    // admitted: permit taken and released by the caller, null to take one here
+    private static void begin(Connection connection, ConcurrencyLimiter.Permit admitted) throws SQLException {
+        TransactionContext context = current.get();
+        if (context == null) {
+            ConcurrencyLimiter.Permit permit = admitted != null ? admitted : acquirePermit();
+            ConnectionPool pool = null;
+            try {
+                if (connection == null) {
+                    pool = primaryPool();
+                    connection = pool != null ? pool.borrow(currentWorkload()) : DBcontext.getConnection();
+                }
+                connection.setAutoCommit(false);
+            } catch (SQLException | RuntimeException e) {
+                if (pool != null && connection != null) {
+                    pool.release(connection);
+                }
+                if (admitted == null && permit != null) {
+                    permit.release();
+                }
+                throw e;
+            }
+            context = new TransactionContext(connection, EntityCache.defaultCache());
+            context.pool = pool;
+            if (callWorkload.isBound()) {
+                context.workload = callWorkload.get();
+            }
+            context.permit = permit;
+            if (admitted == null && permit != null) {
+                context.cleanups.add(permit::release);
+            }
+            current.set(context);
         }
 
-        transactionDepthHolder.set(transactionDepthHolder.get() + 1);
+        context.depth++;
+    }
+
+    /**
+     * Takes a slot of the concurrency limiter for transactions about to begin
+     * on a connection not borrowed yet; pass it to
+     * {@link #beginTransaction(Connection, ConcurrencyLimiter.Permit)} once
+     * the connection is there, and release it when they have ended.
+     *
+     * @return the slot, or null if no limiter is installed
+     * @throws java.sql.SQLTransientException if no slot became free in time
+     * @throws SQLException                   if interrupted while waiting
+     */
+    public static ConcurrencyLimiter.Permit acquirePermit() throws SQLException {
+        ConcurrencyLimiter active = limiter;
+        return active == null ? null : active.acquire();
+    }
+
+    /**
+     * @return the slot of the concurrency limiter the current transaction runs
+     *         under, or null if there is none (or no transaction). Work the
+     *         transaction starts on other connections runs under it too
+     *         instead of taking slots of its own.
+     */
+    public static ConcurrencyLimiter.Permit currentPermit() {
+        TransactionContext context = current.get();
+        return context == null ? null : context.permit;
+    }
+
+    /**
+     * Reports a database call of the current transaction that took
+     * {@code nanos} to the concurrency limiter. Repositories call it around
+     * each statement they run; code running statements through
+     * {@link #getConnection()} directly may call it too. Does nothing outside
+     * a transaction or without a limiter.
+     */
+    public static void recordLatency(long nanos) {
+        TransactionContext context = current.get();
+        if (context != null && context.permit != null) {
+            context.permit.record(nanos);
+        }
     }
 
     /**
@@ -78,17 +324,30 @@ public class TransactionManager {
      * @throws SQLException
      */
     public static void commit() throws SQLException {
-        int depth = transactionDepthHolder.get() - 1;
-        transactionDepthHolder.set(depth);
-        Connection connection = connectionHolder.get();
-        if (connection == null) {
+        TransactionContext context = current.get();
+        if (context == null) {
             throw new SQLException("No transaction to commit");
         }
-        if (depth < 0) {
-            throw new SQLException("No transaction to commit");
-        } else if (depth == 0) {
-            connection.commit();
-            connectionHolder.remove();
+        if (--context.depth == 0) {
+            boolean committed = false;
+            try {
+                runCallbacks(context.beforeCompletion);
+                long start = System.nanoTime();
+                context.connection.commit();
+                recordLatency(System.nanoTime() - start);
+                committed = true;
+                if (context.written) {
+                    ReplicaRouter.shared().recordWrite();
+                }
+            } finally {
+                context.written = false;
+                context.bypass = false;
+                runCleanups(context);
+                releaseConnection(context);
+                context.resources.clear();
+                current.remove();
+                runAfterCommit(context, committed);
+            }
         }
 
     }
@@ -99,18 +358,25 @@ public class TransactionManager {
      * @throws SQLException if a database access error occurs
      */
     public static void rollback() throws SQLException {
-        int depth = transactionDepthHolder.get() - 1;
-        transactionDepthHolder.set(depth);
-        Connection connection = connectionHolder.get();
-        if (connection == null) {
+        TransactionContext context = current.get();
+        if (context == null) {
             throw new SQLException("No transaction to rollback");
         }
-        if (depth < 0) {
-            throw new SQLException("No transaction to rollback");
-        } else if (depth == 0) {
-            connection.rollback();
-            connectionHolder.remove();
-            cacheHolder.remove();
+        if (--context.depth == 0) {
+            try {
+                runCallbacks(context.beforeCompletion);
+                long start = System.nanoTime();
+                context.connection.rollback();
+                recordLatency(System.nanoTime() - start);
+            } finally {
+                context.written = false;
+                context.bypass = false;
+                runCleanups(context);
+                releaseConnection(context);
+                context.resources.clear();
+                current.remove();
+                context.afterCommit.clear();
+            }
         }
 
     }
@@ -122,20 +388,434 @@ public class TransactionManager {
      * @return the current Connection object
      */
     public static Connection getConnection() {
-        Connection connection = connectionHolder.get();
-        if (connection == null) {
-            throw new IllegalStateException(
-                    "No active transaction. Please call beginTransaction() first.");
+        return active().connection;
+    }
+
+    /**
+     * @return true if the current thread has an open transaction
+     */
+    public static boolean isActive() {
+        return current.isBound();
+    }
+
+    /**
+     * Returns the connection of the current transaction for a write.
+     *
+     * @throws IllegalStateException if there is no transaction, or it was
+     *                               begun with {@link #beginReadOnly()}
+     */
+    public static Connection getWritableConnection() {
+        TransactionContext context = active();
+        if (context.readOnly) {
+            throw new IllegalStateException("Cannot write in a read-only transaction");
+        }
+        return context.connection;
+    }
+
+    /**
+     * @return true if the current transaction was begun with
+     *         {@link #beginReadOnly()}
+     */
+    public static boolean isReadOnly() {
+        TransactionContext context = current.get();
+        return context != null && context.readOnly;
+    }
+
+    /**
+     * @return true if the current transaction runs on a read replica. Rows read
+     *         there may lag behind the primary, so they are not put into the
+     *         shared caches.
+     */
+    public static boolean isOnReplica() {
+        TransactionContext context = current.get();
+        return context != null && context.replica;
+    }
+
+    /**
+     * Makes the current transaction bypass the shared caches (query, count,
+     * collection and second-level caches) until the outermost transaction
+     * ends, e.g. because its connection is one of several databases holding
+     * the same tables, whose rows must not be mixed up in the caches.
+     */
+    public static void bypassSharedCaches() {
+        active().bypass = true;
+    }
+
+    /**
+     * @return false if the current transaction bypasses the shared caches
+     */
+    public static boolean canReadSharedCaches() {
+        TransactionContext context = current.get();
+        return context == null || !context.bypass;
+    }
+
+    /**
+     * @return false if rows read by the current transaction must not be put
+     *         into the shared caches (nor shared with concurrent loads): it
+     *         bypasses them, or runs on a replica
+     */
+    public static boolean canFillSharedCaches() {
+        TransactionContext context = current.get();
+        return context == null || !context.bypass && !context.replica;
+    }
+
+    /**
+     * Marks the current transaction as having written. Repositories call this
+     * on every insert, update and delete; code writing through
+     * {@link #getConnection()} directly should call it too, so that the
+     * thread's next reads see the write (see {@link ReplicaRouter}).
+     */
+    public static void markWritten() {
+        TransactionContext context = current.get();
+        if (context != null) {
+            context.written = true;
+        }
+    }
+
+    /**
+     * Returns the value bound to the current transaction under {@code key},
+     * creating it with {@code factory} on first use. Components use it for
+     * per-transaction bookkeeping that must follow the transaction through
+     * {@link #suspend()} / {@link #resume(TransactionContext)}; values are
+     * dropped once the outermost transaction has ended and its cleanups have
+     * run.
+     *
+     * @param key     identity of the value, typically a private
+     *                {@code new Object()} of the owner
+     * @param factory may register cleanups or after-commit callbacks
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T getResource(Object key, Supplier<T> factory) {
+        Map<Object, Object> resources = active().resources;
+        Object value = resources.get(key);
+        if (value == null) {
+            value = factory.get();
+            resources.put(key, value);
+        }
+        return (T) value;
+    }
+
+    /**
+     * @return the value bound to the current transaction under {@code key}, or
+     *         null if there is none (or no transaction)
+     */
+    @SuppressWarnings("unchecked")
+    public static <T> T findResource(Object key) {
+        TransactionContext context = current.get();
+        return context == null ? null : (T) context.resources.get(key);
+    }
+
+    /**
+     * Detaches the current transaction from the thread, e.g. to continue it
+     * on another thread, or to run an unrelated transaction in between. The
+     * thread is left without a transaction.
+     *
+     * @return the detached transaction, or null if there was none
+     */
+    public static TransactionContext suspend() {
+        TransactionContext context = current.get();
+        current.remove();
+        return context;
+    }
+
+    /**
+     * Binds a transaction detached by {@link #suspend()} to the current
+     * thread; it then continues as if it had been begun here. A null context
+     * is ignored.
+     *
+     * @throws IllegalStateException if the thread already has a transaction
+     */
+    public static void resume(TransactionContext context) {
+        if (context == null) {
+            return;
+        }
+        if (current.isBound()) {
+            throw new IllegalStateException("Cannot resume a transaction while another one is active");
+        }
+        current.set(context);
+    }
+
+    /**
+     * Runs {@code work} in the transaction of {@code context} and detaches it
+     * again when {@code work} returns, like {@code ScopedValue.where(...).call(...)}:
+     * the thread is left exactly as it was, which suits pooled and virtual
+     * threads alike. {@code work} may still end the transaction itself.
+     *
+     * @throws IllegalStateException if the thread already has a transaction
+     */
+    public static <T> T callIn(TransactionContext context, Callable<T> work) throws Exception {
+        if (current.isBound()) {
+            throw new IllegalStateException("Cannot resume a transaction while another one is active");
+        }
+        return current.callWhere(context, work);
+    }
+
+    /**
+     * Sets the workload class of the current transaction, which decides how
+     * connections borrowed for its work (by {@link #parallel(List)}, or by an
+     * {@link AsyncExecutor} it submits to) are scheduled against other work.
+     *
+     * @throws IllegalStateException if there is no transaction
+     * @see Workload
+     */
+    public static void setWorkload(Workload workload) {
+        if (workload == null) {
+            throw new IllegalArgumentException("Workload must not be null");
+        }
+        active().workload = workload;
+    }
+
+    /**
+     * Runs {@code work} as {@code workload}: connections borrowed during the
+     * call, and transactions begun in it, belong to that class. The previous
+     * workload is restored when the call returns.
+     * <p>
+     * Example:
+     * </p>
+     *
+     * <pre>
+     * TransactionManager.callAs(Workload.BULK, () -&gt; {
+     *     exporter.exportAll();
+     *     return null;
+     * });
+     * </pre>
+     */
+    public static <T> T callAs(Workload workload, Callable<T> work) throws Exception {
+        if (workload == null) {
+            throw new IllegalArgumentException("Workload must not be null");
+        }
+        return callWorkload.callWhere(workload, work);
+    }
+
+    /**
+     * @return the workload of the enclosing {@link #callAs} call, else that
+     *         of the current transaction, else {@link Workload#INTERACTIVE}
+     */
+    public static Workload currentWorkload() {
+        Workload bound = callWorkload.get();
+        if (bound != null) {
+            return bound;
+        }
+        TransactionContext context = current.get();
+        return context != null ? context.workload : Workload.INTERACTIVE;
+    }
+
+    /**
+     * Runs {@code tasks} in parallel as read-only children of the current
+     * transaction, on connections of the same database as it: the pool of its
+     * replica when it runs on one, else the {@code repository.parallel.*}
+     * pool.
+     *
+     * @see #parallel(ConnectionPool, List)
+     */
+    public static <T> List<T> parallel(List<? extends Callable<T>> tasks) throws SQLException {
+        TransactionContext context = active();
+        ConnectionPool pool = context.replica ? ReplicaRouter.shared().poolOf(context.connection) : null;
+        return parallel(pool != null ? pool : TransactionFanOut.sharedPool(), tasks);
+    }
+
+    /**
+     * Sets the pool {@link #parallel(List)} and read-only transactions on the
+     * primary ({@link #beginReadOnly(int)}) borrow from, e.g. one built on
+     * the application's own data source; null restores the default pool of
+     * {@code repository.parallel.pool-size} primary connections.
+     */
+    public static void setParallelPool(ConnectionPool pool) {
+        TransactionFanOut.setSharedPool(pool);
+    }
+
+    /**
+     * Sets the pool outermost {@link #beginTransaction()} calls borrow from,
+     * for the {@link #currentWorkload()}, so that its {@link Workload} shares
+     * apply to them; null restores the default, which is a pool of
+     * {@code repository.transaction.pool-size} primary connections when
+     * {@code repository.transaction.pooled=true} and the shared connection of
+     * {@link DBcontext} otherwise. Transactions begun on a given connection
+     * are not affected.
+     */
+    public static void setPrimaryPool(ConnectionPool pool) {
+        synchronized (TransactionManager.class) {
+            primaryPool = pool;
+        }
+    }
+
+    private static ConnectionPool primaryPool() {
+        ConnectionPool pool = primaryPool;
+        if (pool == null && RepositoryConfig.TRANSACTION_POOLED) {
+            synchronized (TransactionManager.class) {
+                pool = primaryPool;
+                if (pool == null) {
+                    pool = new ConnectionPool("primary", DBcontext::createConnection,
+                            RepositoryConfig.TRANSACTION_POOL_SIZE,
+                            RepositoryConfig.TRANSACTION_BORROW_TIMEOUT_MILLIS);
+                    primaryPool = pool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Limits the transactions running at once: each outermost transaction
+     * takes a slot of {@code limiter} when it begins (waiting or failing with
+     * {@link java.sql.SQLTransientException} when none is free) and frees it
+     * when it commits or rolls back. Nested transactions and the child tasks of
+     * {@link #parallel(List)} run in their parent's slot. Null disables the
+     * limit; the default follows {@code repository.limit.enabled}.
+     */
+    public static void setConcurrencyLimiter(ConcurrencyLimiter limiter) {
+        TransactionManager.limiter = limiter;
+    }
+
+    /**
+     * @return the limiter of {@link #setConcurrencyLimiter}, null when there
+     *         is none
+     */
+    public static ConcurrencyLimiter getConcurrencyLimiter() {
+        return limiter;
+    }
+
+    /**
+     * Splits read work of the current transaction across threads. Each task
+     * runs on its own thread in a read-only child transaction, on a
+     * connection borrowed from {@code pool} and set to the isolation level of
+     * the current transaction; repository calls inside it work as usual and
+     * share the current transaction's entity cache. Returns once every task
+     * has finished.
+     * <p>
+     * Children start their own snapshot: they see committed data, not
+     * what the current transaction wrote. If it has already written, the tasks
+     * therefore run one after the other in the current transaction instead.
+     * Writes inside a task fail with {@link IllegalStateException}.
+     * </p>
+     *
+     * @return the results, in the order of {@code tasks}
+     * @throws SQLException          the first task failure (later ones are
+     *                               suppressed), wrapped unless it is an
+     *                               SQLException or unchecked; the other tasks
+     *                               are cancelled
+     * @throws IllegalStateException if there is no transaction
+     */
+    public static <T> List<T> parallel(ConnectionPool pool, List<? extends Callable<T>> tasks)
+            throws SQLException {
+        return TransactionFanOut.run(active(), pool, tasks);
+    }
+
+    /**
+     * Registers a callback to run when the current (outermost) transaction ends,
+     * whether it commits or rolls back. The transaction connection is still
+     * bound while callbacks run, so they may use {@link #getConnection()} for
+     * session cleanup (e.g. dropping temporary tables).
+     *
+     * @param cleanup callback, exceptions are logged and swallowed
+     */
+    public static void registerCleanup(Runnable cleanup) {
+        active().cleanups.add(cleanup);
+    }
+
+    /**
+     * Registers a callback to run when the current (outermost) transaction is
+     * about to commit or roll back, before the connection does, so its work
+     * is part of the transaction (e.g. dropping a temporary table without
+     * leaving a new implicit transaction open afterwards).
+     *
+     * @param callback callback, exceptions are logged and swallowed
+     */
+    public static void registerBeforeCompletion(Runnable callback) {
+        active().beforeCompletion.add(callback);
+    }
+
+    /**
+     * Registers a callback to run after the current (outermost) transaction has
+     * committed; it is dropped if the transaction rolls back. The connection is
+     * no longer bound while callbacks run. Without an open transaction the
+     * callback runs immediately.
+     *
+     * @param callback callback, exceptions are logged and swallowed
+     */
+    public static void registerAfterCommit(Runnable callback) {
+        TransactionContext context = current.get();
+        if (context == null) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+            return;
+        }
+        context.afterCommit.add(callback);
+    }
+
+    /**
+     * Parses {@code read-uncommitted}, {@code read-committed},
+     * {@code repeatable-read} or {@code serializable}; blank means
+     * {@link #DEFAULT_ISOLATION}.
+     */
+    static int isolationLevel(String name) {
+        switch (name.trim().toLowerCase()) {
+            case "":
+                return DEFAULT_ISOLATION;
+            case "read-uncommitted":
+                return Connection.TRANSACTION_READ_UNCOMMITTED;
+            case "read-committed":
+                return Connection.TRANSACTION_READ_COMMITTED;
+            case "repeatable-read":
+                return Connection.TRANSACTION_REPEATABLE_READ;
+            case "serializable":
+                return Connection.TRANSACTION_SERIALIZABLE;
+            default:
+                throw new IllegalArgumentException("Unknown isolation level: " + name);
+        }
+    }
+
+    private static void runAfterCommit(TransactionContext context, boolean committed) {
+        List<Runnable> callbacks = new ArrayList<>(context.afterCommit);
+        context.afterCommit.clear();
+        if (!committed) {
+            return;
+        }
+        for (Runnable callback : callbacks) {
+            try {
+                callback.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
+    }
+
+    // after the cleanups, which may still use the connection
+    private static void releaseConnection(TransactionContext context) {
+        if (context.pool != null) {
+            context.pool.release(context.connection);
+        }
+    }
+
+    private static void runCleanups(TransactionContext context) {
+        runCallbacks(context.cleanups);
+    }
+
+    private static void runCallbacks(List<Runnable> registered) {
+        List<Runnable> callbacks = new ArrayList<>(registered);
+        registered.clear();
+        for (Runnable cleanup : callbacks) {
+            try {
+                cleanup.run();
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
         }
-        return connection;
     }
 
     public static EntityCache getCache() {
-        EntityCache cache = cacheHolder.get();
-        if (cache == null) {
+        return active().cache;
+    }
+
+    private static TransactionContext active() {
+        TransactionContext context = current.get();
+        if (context == null) {
             throw new IllegalStateException(
                     "No active transaction. Please call beginTransaction() first.");
         }
-        return cache;
+        return context;
     }
 }
\ No newline at end of file
@@ -0,0 +1,68 @@
+package com.example.persistence_repository.persistence.config;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Access to Java 21 virtual threads from code compiled for Java 17.
+ * <p>
+ * With {@code repository.virtual-threads.enabled=true} on a Java 21+ runtime,
+ * the repository's own executors ({@link AsyncExecutor#shared()} and the
+ * default executor of {@code ShardedRepository}) start a virtual thread per
+ * task instead of using a fixed pool; on older runtimes they keep their
+ * platform threads. Connection waits ({@link ConnectionPool#borrow()}) and
+ * lazy loads use {@link java.util.concurrent.locks.ReentrantLock}, and the
+ * transaction context is bound per call, so virtual threads neither pin their
+ * carrier nor keep per-thread state behind.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public final class VirtualThreads {
+
+    private static final Method NEW_EXECUTOR = lookup();
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * @return true if the runtime has virtual threads (Java 21 or later)
+     */
+    public static boolean isSupported() {
+        return NEW_EXECUTOR != null;
+    }
+
+    /**
+     * @return true if virtual threads are enabled by configuration and
+     *         supported by the runtime
+     */
+    public static boolean isEnabled() {
+        return RepositoryConfig.VIRTUAL_THREADS_ENABLED && isSupported();
+    }
+
+    /**
+     * @return {@code Executors.newVirtualThreadPerTaskExecutor()}
+     * @throws UnsupportedOperationException before Java 21
+     */
+    public static ExecutorService newExecutor() {
+        if (NEW_EXECUTOR == null) {
+            throw new UnsupportedOperationException("Virtual threads need Java 21 or later");
+        }
+        try {
+            return (ExecutorService) NEW_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create a virtual thread executor", e);
+        }
+    }
+
+    private static Method lookup() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+}
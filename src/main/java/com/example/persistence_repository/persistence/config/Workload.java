@@ -0,0 +1,82 @@
+package com.example.persistence_repository.persistence.config;
+
+/**
+ * Class of database work, used by {@link ConnectionPool} to share its
+ * connections when they run short.
+ * <p>
+ * Each class keeps a share of every pool for itself
+ * ({@code repository.workload.<class>.reserved}, a fraction of the pool size
+ * rounded down) that the other classes cannot borrow, and callers waiting
+ * for a connection are served by weighted fair queuing across classes
+ * ({@code repository.workload.<class>.weight}): with weights 8, 2 and 1, an
+ * interactive caller is served about four times as often as a background one
+ * while both wait, and nothing waits forever behind a busier class.
+ * </p>
+ * <p>
+ * The workload of a transaction is set with
+ * {@link TransactionManager#setWorkload(Workload)}, that of a call (and of the
+ * transactions it begins) with {@link TransactionManager#callAs}; work
+ * submitted to an {@link AsyncExecutor} and the children of
+ * {@link TransactionManager#parallel} keep the workload of their caller.
+ * Unclassified work is {@link #INTERACTIVE}.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public enum Workload {
+
+    /**
+     * Work a user is waiting for, e.g. loading an entity for a request.
+     */
+    INTERACTIVE(RepositoryConfig.WORKLOAD_INTERACTIVE_WEIGHT, RepositoryConfig.WORKLOAD_INTERACTIVE_RESERVED),
+
+    /**
+     * Work nobody waits for directly, e.g. refreshing caches or scheduled
+     * reports.
+     */
+    BACKGROUND(RepositoryConfig.WORKLOAD_BACKGROUND_WEIGHT, RepositoryConfig.WORKLOAD_BACKGROUND_RESERVED),
+
+    /**
+     * Long scans and mass writes, e.g. exports and data loads.
+     */
+    BULK(RepositoryConfig.WORKLOAD_BULK_WEIGHT, RepositoryConfig.WORKLOAD_BULK_RESERVED);
+
+    private final int weight;
+    private final double reserved;
+
+    Workload(int weight, double reserved) {
+        if (weight < 1) {
+            throw new IllegalArgumentException("Workload weight must be greater than 0");
+        }
+        if (reserved < 0 || reserved >= 1) {
+            throw new IllegalArgumentException("Workload reserved share must be in [0, 1)");
+        }
+        this.weight = weight;
+        this.reserved = reserved;
+    }
+
+    /**
+     * @return relative share of the connections handed out while several
+     *         classes wait
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return fraction of each pool only this class may use
+     */
+    public double getReservedShare() {
+        return reserved;
+    }
+
+    /**
+     * @return connections of a pool of {@code poolSize} reserved for this
+     *         class
+     */
+    public int reservedOf(int poolSize) {
+        return (int) (poolSize * reserved);
+    }
+}
@@ -49,4 +49,16 @@ public class ColumnMeta {
         return converter;
     }
 
+    /**
+     * Column type as rendered in DDL: VARCHAR gets its length appended, other
+     * types are assumed to be complete already.
+     */
+    public String getDdlType() {
+        String t = type.toUpperCase();
+        if (t.startsWith("VARCHAR")) {
+            return "VARCHAR(" + length + ")";
+        }
+        return t;
+    }
+
 }
@@ -300,6 +300,21 @@ public class EntityMeta<E> {
         return null;
     }
 
+    /**
+     * Looks up column metadata by physical column name (case-insensitive).
+     *
+     * @param columnName physical column name
+     * @return column metadata or {@code null} if the column is not mapped
+     */
+    public ColumnMeta getColumnMeta(String columnName) {
+        for (ColumnMeta colMeta : fieldToColumnMap.values()) {
+            if (colMeta.getName().equalsIgnoreCase(columnName)) {
+                return colMeta;
+            }
+        }
+        return null;
+    }
+
     public Object getFieldValue(Object colnumValue, Field field) {
         String fieldName = field.getName();
         ColumnMeta colMeta = fieldToColumnMap.get(fieldName);
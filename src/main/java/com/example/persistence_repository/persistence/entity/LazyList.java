@@ -3,6 +3,7 @@ package com.example.persistence_repository.persistence.entity;
 import java.util.AbstractList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 import java.util.Objects;
 
@@ -18,6 +19,8 @@ import java.util.Objects;
  *
  * <h3>Thread-safety</h3>
  * Uses double-checked locking to guarantee single execution of the supplier.
+ * The lock is a {@link ReentrantLock}, so virtual threads blocked on the load
+ * do not pin their carrier thread.
  * The returned list itself is not defensively copied; callers must ensure they
  * do
  * not mutate it concurrently. For fully immutable semantics, have the supplier
@@ -44,16 +47,20 @@ public class LazyList<T> extends AbstractList<T> {
     private Supplier<List<T>> supplier;
     private List<T> data;
     private volatile boolean loaded = false;
+    private final ReentrantLock lock = new ReentrantLock();
 
     private void init() {
         if (!loaded) {
-            synchronized (this) {
+            lock.lock();
+            try {
                 if (!loaded) {
                     List<T> result = supplier.get();
                     data = Objects.requireNonNull(result, "LazyList supplier returned null");
                     loaded = true;
                     supplier = null;
                 }
+            } finally {
+                lock.unlock();
             }
 
         }
@@ -175,11 +175,7 @@ public class SchemaGenerator {
     private String sqlType(ColumnMeta c) {
         // Nhanh gọn: nếu type = "VARCHAR" thì thêm (length); nếu INT thì giữ nguyên;
         // cho phép người dùng tự set type tùy ý.
-        String t = c.getType().toUpperCase();
-        if (t.startsWith("VARCHAR")) {
-            return "VARCHAR(" + c.getLength() + ")";
-        }
-        return t; // các kiểu khác assume đã chuẩn
+        return c.getDdlType();
     }
 
     private static class TopoResult {
@@ -1,6 +1,7 @@
 package com.example.persistence_repository.persistence.entity.load;
 
 import java.util.Objects;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.function.Supplier;
 
 /**
@@ -11,6 +12,9 @@ import java.util.function.Supplier;
  * {@link #forceLoad()}) is invoked.
  * Subsequent calls return the cached value. Implementation is thread-safe using
  * double-checked locking. The supplier reference is released after load.
+ * The lock is a {@link ReentrantLock} rather than a {@code synchronized}
+ * block, so a virtual thread waiting for (or running) the JDBC load does not
+ * pin its carrier thread.
  * </p>
  *
  * <h3>Usage</h3>
@@ -34,6 +38,7 @@ public final class LazyReference<T> implements Supplier<T> {
     private Supplier<T> supplier;
     private volatile boolean loaded = false;
     private T value;
+    private final ReentrantLock lock = new ReentrantLock();
 
     public LazyReference(Supplier<T> supplier) {
         this.supplier = Objects.requireNonNull(supplier, "supplier must not be null");
@@ -76,12 +81,15 @@ public final class LazyReference<T> implements Supplier<T> {
      */
     public T get() {
         if (!loaded) {
-            synchronized (this) {
+            lock.lock();
+            try {
                 if (!loaded) {
                     value = supplier.get();
                     supplier = null; // release reference
                     loaded = true;
                 }
+            } finally {
+                lock.unlock();
             }
         }
         return value;
@@ -107,10 +115,13 @@ public final class LazyReference<T> implements Supplier<T> {
      * @param value value to set (may be null).
      */
     public void setValue(T value) {
-        synchronized (this) {
+        lock.lock();
+        try {
             this.value = value;
             this.loaded = true;
             this.supplier = null; // release reference
+        } finally {
+            lock.unlock();
         }
     }
 }
@@ -0,0 +1,296 @@
+package com.example.persistence_repository.persistence.entity.projection;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.lang.reflect.RecordComponent;
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.example.persistence_repository.persistence.annotation.Column;
+import com.example.persistence_repository.persistence.entity.ColumnMeta;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+
+/**
+ * Maps selected columns of an entity table straight into a record or DTO.
+ * <p>
+ * A mapper is compiled once per (entity, projection type) pair and cached:
+ * the projected columns are resolved against {@link EntityMeta} up front and
+ * the target is created through a {@link MethodHandle} on its canonical
+ * constructor, so materializing a row costs one {@code getObject} per column
+ * and one constructor call. No identity cache, no relation wrappers.
+ * </p>
+ *
+ * <h3>Matching rules</h3>
+ * <ul>
+ * <li>Records: every component is matched, by {@code @Column(name)} on the
+ * component if present, else by entity field name, else by physical column
+ * name (case-insensitive).</li>
+ * <li>Classes: only fields annotated with {@code @Column} are projected,
+ * matched the same way. A constructor taking exactly those fields in
+ * declaration order is used when present; otherwise the no-arg constructor
+ * plus field assignment.</li>
+ * </ul>
+ * Values go through the entity's {@code AttributeConverter} (if any) and are
+ * then coerced to the target type for common numeric / temporal widenings.
+ *
+ * @param <R> projection type
+ */
+public final class ProjectionMapper<R> {
+
+    private static final Map<List<Class<?>>, ProjectionMapper<?>> MAPPERS = new ConcurrentHashMap<>();
+
+    private final List<String> columns;
+    private final Field[] entityFields;
+    private final Class<?>[] targetTypes;
+    private final EntityMeta<?> entityMeta;
+    // canonical constructor spread over Object[] (null if field assignment is used)
+    private final MethodHandle constructor;
+    // no-arg constructor + setters, used when no canonical constructor exists
+    private final MethodHandle noArgConstructor;
+    private final MethodHandle[] setters;
+
+    private ProjectionMapper(EntityMeta<?> entityMeta, List<String> columns, Field[] entityFields,
+            Class<?>[] targetTypes, MethodHandle constructor, MethodHandle noArgConstructor, MethodHandle[] setters) {
+        this.entityMeta = entityMeta;
+        this.columns = columns;
+        this.entityFields = entityFields;
+        this.targetTypes = targetTypes;
+        this.constructor = constructor;
+        this.noArgConstructor = noArgConstructor;
+        this.setters = setters;
+    }
+
+    /**
+     * Returns the (cached) mapper projecting {@code entityMeta}'s table into
+     * {@code type}.
+     *
+     * @throws IllegalArgumentException if a projected member does not match any
+     *                                  mapped column
+     */
+    @SuppressWarnings("unchecked")
+    public static <R> ProjectionMapper<R> of(EntityMeta<?> entityMeta, Class<R> type) {
+        return (ProjectionMapper<R>) MAPPERS.computeIfAbsent(List.of(entityMeta.getClazz(), type),
+                k -> compile(entityMeta, type));
+    }
+
+    /**
+     * @return physical columns to select, in constructor order
+     */
+    public List<String> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Creates one projection instance from the current row.
+     */
+    @SuppressWarnings("unchecked")
+    public R map(ResultSet rs) throws SQLException {
+        Object[] args = new Object[columns.size()];
+        for (int i = 0; i < args.length; i++) {
+            Object value = rs.getObject(i + 1);
+            if (entityFields[i] != null) {
+                value = entityMeta.getFieldValue(value, entityFields[i]);
+            }
+            args[i] = coerce(value, targetTypes[i]);
+        }
+        try {
+            if (constructor != null) {
+                return (R) constructor.invoke(args);
+            }
+            Object target = noArgConstructor.invoke();
+            for (int i = 0; i < setters.length; i++) {
+                setters[i].invoke(target, args[i]);
+            }
+            return (R) target;
+        } catch (SQLException | RuntimeException e) {
+            throw e;
+        } catch (Throwable t) {
+            throw new IllegalStateException("Cannot create projection " + t.getMessage(), t);
+        }
+    }
+
+    private static <R> ProjectionMapper<R> compile(EntityMeta<?> meta, Class<R> type) {
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        List<String> names = new ArrayList<>();
+        List<Column> annotations = new ArrayList<>();
+        List<Class<?>> types = new ArrayList<>();
+        List<Field> members = new ArrayList<>();
+
+        if (type.isRecord()) {
+            for (RecordComponent rc : type.getRecordComponents()) {
+                Field backing = declaredField(type, rc.getName());
+                names.add(rc.getName());
+                annotations.add(backing == null ? null : backing.getAnnotation(Column.class));
+                types.add(rc.getType());
+                members.add(backing);
+            }
+        } else {
+            for (Field f : type.getDeclaredFields()) {
+                if (Modifier.isStatic(f.getModifiers()) || !f.isAnnotationPresent(Column.class)) {
+                    continue;
+                }
+                names.add(f.getName());
+                annotations.add(f.getAnnotation(Column.class));
+                types.add(f.getType());
+                members.add(f);
+            }
+        }
+        if (names.isEmpty()) {
+            throw new IllegalArgumentException("Projection " + type.getName()
+                    + " declares no record components or @Column fields");
+        }
+
+        List<String> columns = new ArrayList<>();
+        Field[] entityFields = new Field[names.size()];
+        for (int i = 0; i < names.size(); i++) {
+            String wanted = annotations.get(i) != null && !annotations.get(i).name().isEmpty()
+                    ? annotations.get(i).name()
+                    : names.get(i);
+            String column = null;
+            for (Field f : meta.getFields()) {
+                ColumnMeta colMeta = meta.getFieldToColumnMap().get(f.getName());
+                if (f.getName().equals(wanted) || colMeta.getName().equalsIgnoreCase(wanted)) {
+                    column = colMeta.getName();
+                    entityFields[i] = f;
+                    break;
+                }
+            }
+            if (column == null) {
+                throw new IllegalArgumentException("Projection member " + type.getSimpleName() + "." + names.get(i)
+                        + " does not match any column of " + meta.getTableName());
+            }
+            columns.add(column);
+        }
+
+        Class<?>[] targetTypes = types.toArray(new Class<?>[0]);
+        try {
+            Constructor<?> canonical = findConstructor(type, targetTypes);
+            if (canonical != null) {
+                canonical.setAccessible(true);
+                MethodHandle ctor = lookup.unreflectConstructor(canonical)
+                        .asSpreader(Object[].class, targetTypes.length);
+                return new ProjectionMapper<>(meta, List.copyOf(columns), entityFields, targetTypes, ctor, null,
+                        null);
+            }
+            Constructor<R> noArg = type.getDeclaredConstructor();
+            noArg.setAccessible(true);
+            MethodHandle[] setters = new MethodHandle[members.size()];
+            for (int i = 0; i < setters.length; i++) {
+                Field member = members.get(i);
+                member.setAccessible(true);
+                setters[i] = lookup.unreflectSetter(member);
+            }
+            return new ProjectionMapper<>(meta, List.copyOf(columns), entityFields, targetTypes,
+                    null, lookup.unreflectConstructor(noArg), setters);
+        } catch (NoSuchMethodException | IllegalAccessException e) {
+            throw new IllegalArgumentException("Projection " + type.getName()
+                    + " needs a canonical constructor or a no-arg constructor", e);
+        }
+    }
+
+    private static Constructor<?> findConstructor(Class<?> type, Class<?>[] parameterTypes) {
+        for (Constructor<?> c : type.getDeclaredConstructors()) {
+            if (Arrays.equals(c.getParameterTypes(), parameterTypes)) {
+                return c;
+            }
+        }
+        return null;
+    }
+
+    private static Field declaredField(Class<?> type, String name) {
+        try {
+            return type.getDeclaredField(name);
+        } catch (NoSuchFieldException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Converts JDBC values to the declared projection type for the usual
+     * mismatches (Integer vs long, Timestamp vs LocalDateTime, ...).
+     */
+    static Object coerce(Object value, Class<?> target) {
+        if (value == null) {
+            return primitiveDefault(target);
+        }
+        Class<?> boxed = box(target);
+        if (boxed.isInstance(value)) {
+            return value;
+        }
+        if (value instanceof Number n) {
+            if (boxed == Long.class)
+                return n.longValue();
+            if (boxed == Integer.class)
+                return n.intValue();
+            if (boxed == Double.class)
+                return n.doubleValue();
+            if (boxed == Float.class)
+                return n.floatValue();
+            if (boxed == Short.class)
+                return n.shortValue();
+            if (boxed == Byte.class)
+                return n.byteValue();
+            if (boxed == BigDecimal.class)
+                return new BigDecimal(n.toString());
+            if (boxed == Boolean.class)
+                return n.intValue() != 0;
+        }
+        if (value instanceof Timestamp ts && boxed == LocalDateTime.class) {
+            return ts.toLocalDateTime();
+        }
+        if (value instanceof Date d && boxed == LocalDate.class) {
+            return d.toLocalDate();
+        }
+        if (value instanceof LocalDate d && boxed == Date.class) {
+            return Date.valueOf(d);
+        }
+        if (boxed == String.class) {
+            return value.toString();
+        }
+        return value;
+    }
+
+    private static Object primitiveDefault(Class<?> type) {
+        if (!type.isPrimitive()) {
+            return null;
+        }
+        if (type == boolean.class)
+            return false;
+        if (type == char.class)
+            return '\0';
+        return coerce(0, type);
+    }
+
+    private static Class<?> box(Class<?> type) {
+        if (!type.isPrimitive())
+            return type;
+        if (type == long.class)
+            return Long.class;
+        if (type == int.class)
+            return Integer.class;
+        if (type == double.class)
+            return Double.class;
+        if (type == float.class)
+            return Float.class;
+        if (type == short.class)
+            return Short.class;
+        if (type == boolean.class)
+            return Boolean.class;
+        if (type == byte.class)
+            return Byte.class;
+        return Character.class;
+    }
+}
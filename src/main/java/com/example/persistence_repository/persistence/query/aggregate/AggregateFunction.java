@@ -0,0 +1,27 @@
+package com.example.persistence_repository.persistence.query.aggregate;
+
+/**
+ * SQL aggregate functions supported by {@link Aggregation}.
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public enum AggregateFunction {
+    COUNT,
+    SUM,
+    MIN,
+    MAX,
+    AVG;
+
+    /**
+     * Renders the function applied to a physical column, e.g.
+     * {@code SUM(Quantity)}. A null column renders {@code COUNT(*)}.
+     *
+     * @param column physical column, or null for {@code *}
+     * @return SQL expression
+     */
+    public String apply(String column) {
+        return name() + "(" + (column == null ? "*" : column) + ")";
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.persistence_repository.persistence.query.aggregate;
+
+import java.math.BigDecimal;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * One result row of an {@link Aggregation}: the group-by values followed by
+ * the aggregate values.
+ * <p>
+ * Rows of the same query share a single alias index, so a row is just an
+ * {@code Object[]}. Group-by values are keyed by entity field name and have
+ * already gone through the field's converter (e.g. enums); aggregates are
+ * keyed by the alias given to {@code count/sum/...}.
+ * </p>
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public final class AggregateRow {
+    private final Map<String, Integer> index;
+    private final Object[] values;
+
+    AggregateRow(Map<String, Integer> index, Object[] values) {
+        this.index = index;
+        this.values = values;
+    }
+
+    /**
+     * @param alias field name (group-by) or aggregate alias
+     * @return raw value, may be null
+     * @throws IllegalArgumentException if the alias is not part of the query
+     */
+    public Object get(String alias) {
+        Integer i = index.get(alias);
+        if (i == null) {
+            throw new IllegalArgumentException("Unknown column alias: " + alias);
+        }
+        return values[i];
+    }
+
+    public <T> T get(String alias, Class<T> type) {
+        return type.cast(get(alias));
+    }
+
+    /**
+     * @return numeric value as long, or 0 if null (e.g. SUM over no rows)
+     */
+    public long getLong(String alias) {
+        Object v = get(alias);
+        return v == null ? 0L : ((Number) v).longValue();
+    }
+
+    /**
+     * @return numeric value as double, or 0 if null
+     */
+    public double getDouble(String alias) {
+        Object v = get(alias);
+        return v == null ? 0d : ((Number) v).doubleValue();
+    }
+
+    public BigDecimal getBigDecimal(String alias) {
+        Object v = get(alias);
+        if (v == null || v instanceof BigDecimal) {
+            return (BigDecimal) v;
+        }
+        return new BigDecimal(v.toString());
+    }
+
+    public String getString(String alias) {
+        Object v = get(alias);
+        return v == null ? null : v.toString();
+    }
+
+    /**
+     * @return alias to value, in select order
+     */
+    public Map<String, Object> asMap() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        index.forEach((alias, i) -> map.put(alias, values[i]));
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return asMap().toString();
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.persistence_repository.persistence.query.aggregate;
+
+import java.lang.reflect.Field;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import com.example.persistence_repository.persistence.entity.ColumnMeta;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
+import com.example.persistence_repository.persistence.query.common.Order;
+import com.example.persistence_repository.persistence.query.crud.SelectBuilder;
+
+/**
+ * Typed GROUP BY / aggregate query over one entity table.
+ * <p>
+ * Field names are resolved to physical columns through {@link EntityMeta},
+ * the SQL is produced by {@link SelectBuilder}, and each result row comes back
+ * as a compact {@link AggregateRow}. The aggregation runs in the database;
+ * nothing but the grouped rows is transferred.
+ * </p>
+ *
+ * <pre>{@code
+ * Aggregation<ProductRequest> byStatus = productRequestRepository.aggregate()
+ *         .groupBy("status")
+ *         .count("total");
+ * for (AggregateRow row : byStatus.fetch()) {
+ *     ProductRequestStatus status = row.get("status", ProductRequestStatus.class);
+ *     long total = row.getLong("total");
+ * }
+ *
+ * Aggregation<InventoryItem> stock = inventoryItemRepository.aggregate()
+ *         .groupBy("warehouseID")
+ *         .sum("quantity", "stock");
+ * stock.having(ClauseBuilder.builder().greater(stock.expression(AggregateFunction.SUM, "quantity"), 100));
+ * }</pre>
+ *
+ * @param <E> entity type
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class Aggregation<E> {
+
+    private final EntityMeta<E> entityMeta;
+    private final Function<Aggregation<E>, List<AggregateRow>> executor;
+
+    // group-by entity fields (null entry = column without a mapped field)
+    private final List<Field> groupFields = new ArrayList<>();
+    private final List<String> groupColumns = new ArrayList<>();
+    private final List<String> aliases = new ArrayList<>();
+    private final List<String> selectExpressions = new ArrayList<>();
+    private ClauseBuilder where;
+    private ClauseBuilder having;
+    private List<Order> orders;
+    private Map<String, Integer> index;
+
+    /**
+     * @param entityMeta metadata used to resolve field names
+     * @param executor   runs the query (supplied by the repository)
+     */
+    public Aggregation(EntityMeta<E> entityMeta, Function<Aggregation<E>, List<AggregateRow>> executor) {
+        this.entityMeta = entityMeta;
+        this.executor = executor;
+    }
+
+    /**
+     * Groups by the given entity fields (or physical columns).
+     */
+    public Aggregation<E> groupBy(String... fields) {
+        // group-by columns come first so readRows can apply converters by index
+        if (aliases.size() > groupColumns.size()) {
+            throw new IllegalStateException("groupBy must be declared before aggregates");
+        }
+        for (String f : fields) {
+            String column = column(f);
+            groupColumns.add(column);
+            groupFields.add(field(f));
+            addSelect(column, f);
+        }
+        return this;
+    }
+
+    /**
+     * {@code COUNT(*) AS alias}
+     */
+    public Aggregation<E> count(String alias) {
+        return addSelect(AggregateFunction.COUNT.apply(null), alias);
+    }
+
+    /**
+     * {@code COUNT(column) AS alias} (non-null values only)
+     */
+    public Aggregation<E> count(String field, String alias) {
+        return aggregate(AggregateFunction.COUNT, field, alias);
+    }
+
+    public Aggregation<E> sum(String field, String alias) {
+        return aggregate(AggregateFunction.SUM, field, alias);
+    }
+
+    public Aggregation<E> min(String field, String alias) {
+        return aggregate(AggregateFunction.MIN, field, alias);
+    }
+
+    public Aggregation<E> max(String field, String alias) {
+        return aggregate(AggregateFunction.MAX, field, alias);
+    }
+
+    public Aggregation<E> avg(String field, String alias) {
+        return aggregate(AggregateFunction.AVG, field, alias);
+    }
+
+    public Aggregation<E> aggregate(AggregateFunction function, String field, String alias) {
+        return addSelect(expression(function, field), alias);
+    }
+
+    /**
+     * SQL expression for {@code function(field)}, for use in
+     * {@link #having(ClauseBuilder)} or ordering.
+     *
+     * @param field entity field or physical column, null for {@code COUNT(*)}
+     */
+    public String expression(AggregateFunction function, String field) {
+        return function.apply(field == null ? null : column(field));
+    }
+
+    /**
+     * Filters rows before grouping. Columns are physical column names, as for
+     * any {@link ClauseBuilder}.
+     */
+    public Aggregation<E> where(ClauseBuilder where) {
+        this.where = where;
+        return this;
+    }
+
+    /**
+     * Filters groups. Use {@link #expression(AggregateFunction, String)} to
+     * reference aggregates.
+     */
+    public Aggregation<E> having(ClauseBuilder having) {
+        this.having = having;
+        return this;
+    }
+
+    /**
+     * Orders the grouped rows; columns may be aggregate aliases.
+     */
+    public Aggregation<E> orderBy(Order... orders) {
+        this.orders = List.of(orders);
+        return this;
+    }
+
+    /**
+     * Runs the query.
+     *
+     * @return one row per group (a single row when nothing is grouped)
+     */
+    public List<AggregateRow> fetch() {
+        return executor.apply(this);
+    }
+
+    /**
+     * Builds the SELECT statement (parameters: WHERE, then HAVING).
+     */
+    public SelectBuilder<E> toSelectBuilder() {
+        if (selectExpressions.isEmpty()) {
+            throw new IllegalStateException("Aggregation selects nothing: add groupBy or an aggregate");
+        }
+        SelectBuilder<E> builder = SelectBuilder.<E>builder(entityMeta.getTableName());
+        List<String> select = new ArrayList<>();
+        for (int i = 0; i < selectExpressions.size(); i++) {
+            select.add(selectExpressions.get(i) + " AS " + aliases.get(i));
+        }
+        builder.columns(select);
+        if (where != null && !where.build().isEmpty()) {
+            builder.where(where.build(), where.getParameters().toArray());
+        }
+        if (!groupColumns.isEmpty()) {
+            builder.groupBy(groupColumns);
+        }
+        if (having != null && !having.build().isEmpty()) {
+            builder.having(having.build(), having.getParameters().toArray());
+        }
+        if (orders != null) {
+            builder.orderBy(orders);
+        }
+        return builder;
+    }
+
+    /**
+     * Reads all rows of a result produced by {@link #toSelectBuilder()}.
+     */
+    public List<AggregateRow> readRows(ResultSet rs) throws SQLException {
+        if (index == null) {
+            Map<String, Integer> idx = new LinkedHashMap<>();
+            for (int i = 0; i < aliases.size(); i++) {
+                idx.put(aliases.get(i), i);
+            }
+            index = Collections.unmodifiableMap(idx);
+        }
+        List<AggregateRow> rows = new ArrayList<>();
+        while (rs.next()) {
+            Object[] values = new Object[aliases.size()];
+            for (int i = 0; i < values.length; i++) {
+                Object value = rs.getObject(i + 1);
+                if (i < groupFields.size() && groupFields.get(i) != null) {
+                    value = entityMeta.getFieldValue(value, groupFields.get(i));
+                }
+                values[i] = value;
+            }
+            rows.add(new AggregateRow(index, values));
+        }
+        return rows;
+    }
+
+    private Aggregation<E> addSelect(String expression, String alias) {
+        if (alias == null || alias.isBlank()) {
+            throw new IllegalArgumentException("Alias must not be null or empty");
+        }
+        if (aliases.contains(alias)) {
+            throw new IllegalArgumentException("Duplicate alias " + alias);
+        }
+        selectExpressions.add(expression);
+        aliases.add(alias);
+        index = null;
+        return this;
+    }
+
+    private String column(String field) {
+        String column = entityMeta.getColnumName(field);
+        if (column != null) {
+            return column;
+        }
+        ColumnMeta colMeta = entityMeta.getColumnMeta(field);
+        if (colMeta != null) {
+            return colMeta.getName();
+        }
+        throw new IllegalArgumentException(
+                "Unknown field " + field + " on " + entityMeta.getClazz().getName());
+    }
+
+    private Field field(String name) {
+        for (Field f : entityMeta.getFields()) {
+            ColumnMeta colMeta = entityMeta.getFieldToColumnMap().get(f.getName());
+            if (f.getName().equals(name) || colMeta.getName().equalsIgnoreCase(name)) {
+                return f;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.persistence_repository.persistence.query.clause;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A collection bound as a single SQL ARRAY parameter.
+ * <p>
+ * Produced by {@link ClauseBuilder#in(String, Collection)} when array binding
+ * is enabled. The repository turns it into a {@link java.sql.Array} through
+ * {@link java.sql.Connection#createArrayOf(String, Object[])} right before
+ * execution, so the SQL text stays {@code column = ANY(?)} whatever the list
+ * size.
+ * </p>
+ */
+public final class ArrayParameter {
+    private final String sqlTypeName;
+    private final Object[] values;
+
+    public ArrayParameter(String sqlTypeName, Collection<?> values) {
+        this.sqlTypeName = sqlTypeName;
+        this.values = values.toArray();
+    }
+
+    /**
+     * Creates an array parameter, guessing the element SQL type from the first
+     * value.
+     */
+    public static ArrayParameter of(Collection<?> values) {
+        Object first = values.isEmpty() ? null : values.iterator().next();
+        return new ArrayParameter(sqlTypeOf(first), values);
+    }
+
+    private static String sqlTypeOf(Object value) {
+        if (value instanceof Long) {
+            return "BIGINT";
+        }
+        if (value instanceof Integer || value instanceof Short) {
+            return "INTEGER";
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return "DOUBLE";
+        }
+        if (value instanceof BigDecimal) {
+            return "DECIMAL";
+        }
+        return "VARCHAR";
+    }
+
+    public String getSqlTypeName() {
+        return sqlTypeName;
+    }
+
+    public Object[] getValues() {
+        return values;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o)
+            return true;
+        if (!(o instanceof ArrayParameter other))
+            return false;
+        return sqlTypeName.equals(other.sqlTypeName) && Arrays.equals(values, other.values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * sqlTypeName.hashCode() + Arrays.hashCode(values);
+    }
+
+    @Override
+    public String toString() {
+        return "ARRAY" + List.of(values);
+    }
+}
@@ -6,11 +6,24 @@ import java.util.List;
 import java.util.StringJoiner;
 import java.util.function.Consumer;
 
+import com.example.persistence_repository.persistence.config.Dialect;
+import com.example.persistence_repository.persistence.config.RepositoryConfig;
+import com.example.persistence_repository.persistence.query.crud.SelectBuilder;
+
 public class ClauseBuilder {
     private final StringBuilder whereClause;
     private final List<Object> parameters;
     private boolean hasCondition;
     private String pendingOperator = null;
+    // set once a condition reads another table through a subquery
+    private boolean hasSubquery;
+    // IN-list shaping, defaults from RepositoryConfig
+    private boolean inListPadding = RepositoryConfig.IN_LIST_PADDING;
+    private int inListMaxSize = RepositoryConfig.IN_LIST_MAX_SIZE;
+    // null: repository.in-list.array-binding, if the dialect supports it
+    private Boolean arrayBinding;
+    // dialect of the connection the clause will run on, null when unknown
+    private Dialect dialect;
 
     public ClauseBuilder() {
         this.whereClause = new StringBuilder();
@@ -22,6 +35,14 @@ public class ClauseBuilder {
         return new ClauseBuilder();
     }
 
+    /**
+     * @param dialect dialect of the connection the clause will run on, which
+     *                decides whether IN lists may be bound as arrays
+     */
+    public static ClauseBuilder builder(Dialect dialect) {
+        return new ClauseBuilder().dialect(dialect);
+    }
+
     public ClauseBuilder equal(String column, Object value) {
         return addCondition(column + " = ?", value);
     }
@@ -50,28 +71,206 @@ public class ClauseBuilder {
         return addCondition(column + " LIKE ?", value);
     }
 
+    /**
+     * Adds {@code column IN (...)}.
+     * <p>
+     * With {@link #inListPadding(boolean)} (or
+     * {@code repository.in-list.padding=true}) the list is padded up to the
+     * next power of two (repeating the last value) so that only a handful of
+     * distinct SQL texts exist per column. Lists longer than
+     * {@link #inListMaxSize(int)} are split into several IN lists joined with
+     * OR; this keeps each list within the database's IN-list limit, but all of
+     * them stay in one statement, so the total number of bind parameters is
+     * unchanged. Lists that may exceed the driver's parameter limit belong in
+     * {@code AbstractRepository.findWhereIn}, which runs one statement per
+     * chunk. With array binding enabled the whole list is bound as one
+     * parameter: {@code column = ANY(?)}.
+     * </p>
+     */
     public ClauseBuilder in(String column, Collection<?> values) {
         if (values == null || values.isEmpty()) {
             return this;
         }
-        StringJoiner sj = new StringJoiner(",", "(", ")");
-        for (Object v : values) {
-            sj.add("?");
-            parameters.add(v);
+        if (useArrayBinding()) {
+            parameters.add(ArrayParameter.of(values));
+            return addRawCondition(column + " = ANY(?)");
         }
-        return addRawCondition(column + " IN " + sj.toString());
+        return addRawCondition(inList(column, " IN ", " OR ", values));
     }
 
     public ClauseBuilder notIn(String column, Collection<?> values) {
         if (values == null || values.isEmpty()) {
             return this;
         }
-        StringJoiner sj = new StringJoiner(",", "(", ")");
-        for (Object v : values) {
-            sj.add("?");
-            parameters.add(v);
+        if (useArrayBinding()) {
+            parameters.add(ArrayParameter.of(values));
+            return addRawCondition("NOT (" + column + " = ANY(?))");
+        }
+        return addRawCondition(inList(column, " NOT IN ", " AND ", values));
+    }
+
+    /**
+     * Adds {@code column IN (SELECT ...)}. The subquery's parameters are merged
+     * at this position, so the whole clause stays a single statement.
+     */
+    public ClauseBuilder in(String column, SelectBuilder<?> subquery) {
+        return addSubquery(column + " IN ", subquery);
+    }
+
+    public ClauseBuilder notIn(String column, SelectBuilder<?> subquery) {
+        return addSubquery(column + " NOT IN ", subquery);
+    }
+
+    /**
+     * Adds {@code EXISTS (SELECT ...)}. For a correlated subquery give the
+     * subquery an alias and reference the outer table by its name (repository
+     * queries such as {@code findWithCondition} do not alias their table), e.g.
+     * with {@link #equalColumn(String, String)}:
+     *
+     * <pre>{@code
+     * SelectBuilder<Type> activeTypes = SelectBuilder.<Type>builder("Type").alias("t")
+     *         .columns("t.TypeID")
+     *         .where("t.CategoryID = Category.CategoryID AND t.Status = ?", "ACTIVE");
+     * categoryRepository.findWithCondition(ClauseBuilder.builder().exists(activeTypes));
+     * }</pre>
+     */
+    public ClauseBuilder exists(SelectBuilder<?> subquery) {
+        return addSubquery("EXISTS ", subquery);
+    }
+
+    public ClauseBuilder notExists(SelectBuilder<?> subquery) {
+        return addSubquery("NOT EXISTS ", subquery);
+    }
+
+    /**
+     * Compares a column with a scalar subquery: {@code column operator (SELECT ...)}.
+     *
+     * @param operator one of {@code =, <>, <, <=, >, >=}
+     */
+    public ClauseBuilder compare(String column, String operator, SelectBuilder<?> subquery) {
+        switch (operator) {
+            case "=", "<>", "<", "<=", ">", ">=":
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported comparison operator: " + operator);
+        }
+        return addSubquery(column + " " + operator + " ", subquery);
+    }
+
+    /**
+     * Compares two columns without binding a parameter, typically to correlate
+     * a subquery with its outer query ({@code t.CategoryID = Category.CategoryID}).
+     */
+    public ClauseBuilder equalColumn(String column, String otherColumn) {
+        return addRawCondition(column + " = " + otherColumn);
+    }
+
+    private ClauseBuilder addSubquery(String prefix, SelectBuilder<?> subquery) {
+        if (subquery == null) {
+            throw new IllegalArgumentException("Subquery cannot be null");
+        }
+        // createQuery() không in SQL; câu lệnh ngoài sẽ in toàn bộ khi build()
+        addRawCondition(prefix + "(" + subquery.createQuery() + ")");
+        parameters.addAll(subquery.getParameters());
+        hasSubquery = true;
+        return this;
+    }
+
+    private String inList(String column, String operator, String joiner, Collection<?> values) {
+        List<List<Object>> chunks = partition(values, inListMaxSize);
+        StringJoiner predicates = new StringJoiner(joiner, chunks.size() > 1 ? "(" : "", chunks.size() > 1 ? ")" : "");
+        for (List<Object> chunk : chunks) {
+            int size = inListPadding ? paddedSize(chunk.size(), inListMaxSize) : chunk.size();
+            StringJoiner sj = new StringJoiner(",", "(", ")");
+            for (int i = 0; i < size; i++) {
+                sj.add("?");
+                parameters.add(chunk.get(Math.min(i, chunk.size() - 1)));
+            }
+            predicates.add(column + operator + sj.toString());
+        }
+        return predicates.toString();
+    }
+
+    /**
+     * Smallest power of two that is {@code >= size}, capped at {@code max}.
+     */
+    public static int paddedSize(int size, int max) {
+        if (size <= 1) {
+            return size;
+        }
+        int bucket = Integer.highestOneBit(size - 1) << 1;
+        return bucket > max || bucket <= 0 ? Math.max(size, max) : bucket;
+    }
+
+    /**
+     * Splits values into consecutive chunks of at most {@code chunkSize}
+     * elements. Useful to run one statement per chunk when a single statement
+     * would exceed the driver's parameter limit.
+     */
+    public static <T> List<List<T>> partition(Collection<? extends T> values, int chunkSize) {
+        List<List<T>> chunks = new ArrayList<>();
+        if (values == null || values.isEmpty()) {
+            return chunks;
+        }
+        int size = chunkSize > 0 ? chunkSize : values.size();
+        List<T> current = new ArrayList<>(Math.min(size, values.size()));
+        for (T v : values) {
+            current.add(v);
+            if (current.size() == size) {
+                chunks.add(current);
+                current = new ArrayList<>(size);
+            }
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    /**
+     * Enables / disables power-of-two padding of IN lists for this builder.
+     */
+    public ClauseBuilder inListPadding(boolean inListPadding) {
+        this.inListPadding = inListPadding;
+        return this;
+    }
+
+    /**
+     * Sets the largest IN list emitted as a single predicate.
+     */
+    public ClauseBuilder inListMaxSize(int inListMaxSize) {
+        if (inListMaxSize < 1) {
+            throw new IllegalArgumentException("IN list max size must be greater than 0");
+        }
+        this.inListMaxSize = inListMaxSize;
+        return this;
+    }
+
+    /**
+     * Binds IN lists as a single array parameter ({@code column = ANY(?)}),
+     * whatever the dialect. Only enable for dialects that support it.
+     */
+    public ClauseBuilder arrayBinding(boolean arrayBinding) {
+        this.arrayBinding = arrayBinding;
+        return this;
+    }
+
+    /**
+     * Sets the dialect of the connection the clause will run on. Without an
+     * explicit {@link #arrayBinding(boolean)}, IN lists are bound as arrays
+     * only when {@code repository.in-list.array-binding=true} and this
+     * dialect supports it.
+     */
+    public ClauseBuilder dialect(Dialect dialect) {
+        this.dialect = dialect;
+        return this;
+    }
+
+    private boolean useArrayBinding() {
+        if (arrayBinding != null) {
+            return arrayBinding;
         }
-        return addRawCondition(column + " NOT IN " + sj.toString());
+        return RepositoryConfig.IN_LIST_ARRAY_BINDING && dialect != null && dialect.supportsArrayParameters();
     }
 
     public ClauseBuilder isNull(String column) {
@@ -126,9 +325,14 @@ public class ClauseBuilder {
         }
         whereClause.append("(");
         ClauseBuilder nested = new ClauseBuilder();
+        nested.inListPadding = inListPadding;
+        nested.inListMaxSize = inListMaxSize;
+        nested.arrayBinding = arrayBinding;
+        nested.dialect = dialect;
         consumer.accept(nested);
         whereClause.append(nested.build());
         parameters.addAll(nested.getParameters());
+        hasSubquery |= nested.hasSubquery;
         whereClause.append(")");
         hasCondition = true;
         return this;
@@ -147,4 +351,14 @@ public class ClauseBuilder {
     public List<Object> getParameters() {
         return parameters;
     }
+
+    /**
+     * @return true if a condition added by {@code in}, {@code notIn},
+     *         {@code exists}, {@code notExists} or {@code compare} with a
+     *         subquery, directly or inside a {@link #group(Consumer)}, reads
+     *         other tables
+     */
+    public boolean hasSubquery() {
+        return hasSubquery;
+    }
 }
\ No newline at end of file
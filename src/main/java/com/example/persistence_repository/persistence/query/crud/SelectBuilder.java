@@ -43,6 +43,9 @@ public class SelectBuilder<E> extends AbstractQueryBuilder {
     private Integer limit;
     private Integer offset;
     private final List<String> joins = new ArrayList<>();
+    private List<String> groupByColumns;
+    private String havingClause;
+    private final List<Object> havingParameters = new ArrayList<>();
 
     public SelectBuilder(String tableName) {
         super(tableName);
@@ -104,11 +107,45 @@ public class SelectBuilder<E> extends AbstractQueryBuilder {
     }
 
     public SelectBuilder<E> where(String whereClause, Object... params) {
-        this.getParameters().addAll(List.of(params));
+        super.getParameters().addAll(List.of(params));
         this.whereClause = whereClause;
         return this;
     }
 
+    public SelectBuilder<E> groupBy(String... columns) {
+        this.groupByColumns = List.of(columns);
+        return this;
+    }
+
+    public SelectBuilder<E> groupBy(List<String> columns) {
+        this.groupByColumns = columns;
+        return this;
+    }
+
+    /**
+     * Adds a HAVING clause. Its parameters are always bound after the WHERE
+     * parameters, whatever order the builder methods were called in.
+     */
+    public SelectBuilder<E> having(String havingClause, Object... params) {
+        this.havingClause = havingClause;
+        this.havingParameters.clear();
+        this.havingParameters.addAll(List.of(params));
+        return this;
+    }
+
+    /**
+     * @return WHERE parameters followed by HAVING parameters
+     */
+    @Override
+    public List<Object> getParameters() {
+        if (havingParameters.isEmpty()) {
+            return super.getParameters();
+        }
+        List<Object> all = new ArrayList<>(super.getParameters());
+        all.addAll(havingParameters);
+        return all;
+    }
+
     public SelectBuilder<E> orderBy(List<Order> orderByColumns) {
         this.orderByColumns = orderByColumns;
         return this;
@@ -179,6 +216,12 @@ public class SelectBuilder<E> extends AbstractQueryBuilder {
         if (whereClause != null && !whereClause.isEmpty()) {
             query.append(" WHERE ").append(whereClause);
         }
+        if (groupByColumns != null && !groupByColumns.isEmpty()) {
+            query.append(" GROUP BY ").append(String.join(", ", groupByColumns));
+        }
+        if (havingClause != null && !havingClause.isEmpty()) {
+            query.append(" HAVING ").append(havingClause);
+        }
         if (orderByColumns != null && !orderByColumns.isEmpty()) {
             query.append(" ORDER BY ");
             for (int i = 0; i < orderByColumns.size(); i++) {
@@ -5,21 +5,47 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
 
+import com.example.persistence_repository.persistence.cache.CollectionCache;
+import com.example.persistence_repository.persistence.cache.CollectionCache.CollectionKey;
+import com.example.persistence_repository.persistence.cache.EntityCache;
 import com.example.persistence_repository.persistence.cache.EntityKey;
+import com.example.persistence_repository.persistence.cache.QueryCache;
+import com.example.persistence_repository.persistence.cache.SecondLevelCache;
+import com.example.persistence_repository.persistence.cache.SingleFlight;
+import com.example.persistence_repository.persistence.cache.invalidation.InvalidationBus;
+import com.example.persistence_repository.persistence.cache.stats.CacheStatistics;
+import com.example.persistence_repository.persistence.config.AsyncExecutor;
 import com.example.persistence_repository.persistence.config.DBcontext;
+import com.example.persistence_repository.persistence.config.Dialect;
+import com.example.persistence_repository.persistence.config.ReplicaRouter;
+import com.example.persistence_repository.persistence.config.RepositoryConfig;
 import com.example.persistence_repository.persistence.config.TransactionManager;
 import com.example.persistence_repository.persistence.entity.ColumnMeta;
 import com.example.persistence_repository.persistence.entity.EntityMeta;
 import com.example.persistence_repository.persistence.entity.load.LazyList;
 import com.example.persistence_repository.persistence.entity.load.LazyReference;
+import com.example.persistence_repository.persistence.entity.projection.ProjectionMapper;
 import com.example.persistence_repository.persistence.entity.relation.FetchMode;
 import com.example.persistence_repository.persistence.entity.relation.RelationshipMeta;
+import com.example.persistence_repository.persistence.query.aggregate.AggregateRow;
+import com.example.persistence_repository.persistence.query.aggregate.Aggregation;
+import com.example.persistence_repository.persistence.query.clause.ArrayParameter;
 import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
 import com.example.persistence_repository.persistence.query.common.Page;
+import com.example.persistence_repository.persistence.query.common.Order;
 import com.example.persistence_repository.persistence.query.common.PageRequest;
+import com.example.persistence_repository.persistence.query.common.Sort;
 import com.example.persistence_repository.persistence.query.crud.DeleteBuilder;
 import com.example.persistence_repository.persistence.query.crud.InsertBuilder;
 import com.example.persistence_repository.persistence.query.crud.SelectBuilder;
@@ -56,6 +82,21 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
      */
     private final List<Field> persistentFields;
     private final Field keyField;
+    /**
+     * Whether entities of this class go through the shared off-heap
+     * {@link SecondLevelCache}.
+     */
+    private final boolean secondLevelCached;
+    /**
+     * Whether counts of this repository go through {@link QueryCache#counts()}
+     * ({@code repository.count-cache.enabled}).
+     */
+    private boolean countCached = RepositoryConfig.COUNT_CACHE_ENABLED;
+    /**
+     * Whether pages read in a read-only transaction count in parallel
+     * ({@code repository.page.parallel-count}).
+     */
+    private boolean parallelCount = RepositoryConfig.PAGE_PARALLEL_COUNT;
 
     public AbstractRepository(Class<E> cls) {
         this.cls = cls;
@@ -63,48 +104,157 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
         this.entityMeta = EntityMeta.scanAnnotation(cls);
         this.keyField = entityMeta.getKeyField();
         this.persistentFields = entityMeta.getFields();
+        if (RepositoryConfig.COLLECTION_CACHE_ENABLED) {
+            for (RelationshipMeta rel : entityMeta.getRelationships()) {
+                if (rel.isCollection()) {
+                    CollectionCache.shared().registerRole(cls, rel);
+                }
+            }
+        }
+        this.secondLevelCached = RepositoryConfig.L2_CACHE_ENABLED && keyField != null
+                && SecondLevelCache.shared().register(entityMeta, this::materialize, this::loadFresh);
     }
 
     @Override
     public boolean isExist(K key) {
-        Connection connection = DBcontext.getConnection();
         SelectBuilder builder = SelectBuilder.builder(entityMeta.getTableName())
                 .where(entityMeta.getColnumName(keyField.getName()) + " = ?", key)
                 .limit(1);
         boolean exists = false;
-        try (PreparedStatement preparedSt = connection.prepareStatement(builder.build());) {
-            setPreparedStatementValue(preparedSt, builder.getParameters());
-            try (ResultSet rs = preparedSt.executeQuery()) {
-                if (rs.next()) {
-                    exists = true;
+        try {
+            exists = read((connection, replica) -> {
+                try (PreparedStatement preparedSt = connection.prepareStatement(builder.build())) {
+                    setPreparedStatementValue(preparedSt, builder.getParameters());
+                    try (ResultSet rs = timed(preparedSt::executeQuery)) {
+                        return rs.next();
+                    }
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
-            }
-
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
         return exists;
     }
 
+    /**
+     * Counts all rows of the table with an exact {@code COUNT(*)}, its result
+     * kept for a few seconds in {@link QueryCache#counts()} if
+     * {@code repository.count-cache.enabled=true}. Use
+     * {@link #approximateCount()} when an estimate from the table statistics is
+     * enough.
+     * <p>
+     * Outside of a transaction it runs, like {@link #isExist} and
+     * {@link #approximateCount()}, on a read replica of
+     * {@link ReplicaRouter#shared()} when one is configured, and its result is
+     * then not cached.
+     * </p>
+     */
     @Override
     public int count() {
-        Connection connection = DBcontext.getConnection();
         SelectBuilder builder = SelectBuilder.builder(entityMeta.getTableName())
                 .columns(List.of("COUNT(*) AS total"));
-        int count = 0;
-        try (PreparedStatement preparedSt = connection.prepareStatement(builder.build());
-                ResultSet rs = preparedSt.executeQuery()) {
-            if (rs.next()) {
-                count = rs.getInt("total");
+
+        String table = entityMeta.getTableName();
+        String query = builder.createQuery();
+        QueryCache<Long> counts = QueryCache.counts();
+        long version = 0;
+        if (countCached) {
+            Long cached = counts.get(table, query, List.of());
+            if (cached != null) {
+                return cached.intValue();
             }
+            version = counts.version(table);
+        }
+
+        long cacheVersion = version;
+        int count = 0;
+        try {
+            count = read((connection, replica) -> {
+                try (PreparedStatement preparedSt = connection.prepareStatement(builder.build());
+                        ResultSet rs = timed(preparedSt::executeQuery)) {
+                    int total = rs.next() ? rs.getInt("total") : 0;
+                    // a replica may lag behind: keep its count out of the shared cache
+                    if (countCached && !replica) {
+                        counts.put(table, query, List.of(), cacheVersion, (long) total);
+                    }
+                    return total;
+                }
+            });
         } catch (Exception e) {
             e.printStackTrace();
         }
         return count;
     }
 
+    /**
+     * Reads the row estimate the database keeps in its table statistics
+     * ({@code information_schema.TABLES.TABLE_ROWS} on MySQL,
+     * {@code ROW_COUNT_ESTIMATE} on H2) instead of scanning the table.
+     * <p>
+     * The value may lag behind recent writes and, for InnoDB, be off by a
+     * noticeable percentage; use it for page counts on large tables, not for
+     * business logic.
+     * </p>
+     *
+     * @return estimated row count, or -1 if the dialect has no estimate
+     */
+    public long approximateCount() {
+        long estimate = -1;
+        try {
+            estimate = read((connection, replica) -> {
+                String query = Dialect.of(connection).approximateCountQuery();
+                if (query == null) {
+                    return -1L;
+                }
+                try (PreparedStatement ps = connection.prepareStatement(query)) {
+                    ps.setString(1, entityMeta.getTableName());
+                    try (ResultSet rs = timed(ps::executeQuery)) {
+                        if (rs.next()) {
+                            long rows = rs.getLong(1);
+                            return rs.wasNull() ? -1L : rows;
+                        }
+                        return -1L;
+                    }
+                }
+            });
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        return estimate;
+    }
+
+    /**
+     * Work reading on one connection.
+     */
+    @FunctionalInterface
+    private interface ReadCall<T> {
+        /**
+         * @param replica true if {@code connection} belongs to a read replica
+         */
+        T run(Connection connection, boolean replica) throws SQLException;
+    }
+
+    /**
+     * Runs a read on the connection of the current transaction or, outside
+     * of one, on a replica picked by {@link ReplicaRouter#shared()}, falling
+     * back to the primary connection when no replica is usable or the thread
+     * is within its read-your-writes window.
+     */
+    private <T> T read(ReadCall<T> call) throws SQLException {
+        if (TransactionManager.isActive()) {
+            return call.run(TransactionManager.getConnection(), TransactionManager.isOnReplica());
+        }
+        ReplicaRouter router = ReplicaRouter.shared();
+        Connection replica = router.acquire();
+        try {
+            return call.run(replica != null ? replica : DBcontext.getConnection(), replica != null);
+        } finally {
+            if (replica != null) {
+                router.release(replica);
+            }
+        }
+    }
+
     @Override
     public Iterable<E> findAll() {
         List<E> result = null;
@@ -114,7 +264,7 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
                 .columns(persistentFields.stream().map((f) -> entityMeta.getColnumName(f.getName())).toList());
 
         try (PreparedStatement preparedSt = connection.prepareStatement(builder.build());
-                ResultSet rs = preparedSt.executeQuery()) {
+                ResultSet rs = timed(preparedSt::executeQuery)) {
             result = mapListResultSet(rs, cls);
         } catch (Exception e) {
             e.printStackTrace();
@@ -124,19 +274,75 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
         return result;
     }
 
+    /**
+     * Finds entities matching {@code clause}.
+     * <p>
+     * With {@code repository.query-cache.enabled=true} the primary keys of the
+     * result are kept in the shared {@link QueryCache} (keyed by SQL and
+     * parameters) and later calls resolve them through {@link #findAllById}.
+     * Clauses containing a subquery are never cached, since their result
+     * depends on tables other than this one. With
+     * {@code repository.single-flight.enabled}, callers missing the cache for
+     * the same query while it runs wait for its keys instead of running it
+     * too.
+     * </p>
+     */
     @Override
     public Iterable<E> findWithCondition(ClauseBuilder clause) {
-        List<E> result = null;
+        return selectWhere(clause, RepositoryConfig.QUERY_CACHE_ENABLED);
+    }
 
-        Connection connection = TransactionManager.getConnection();
+    @SuppressWarnings("unchecked")
+    private List<E> selectWhere(ClauseBuilder clause, boolean useQueryCache) {
         SelectBuilder builder = SelectBuilder.builder(entityMeta.getTableName())
                 .columns(persistentFields.stream().map((f) -> entityMeta.getColnumName(f.getName())).toList())
                 .where(clause.build());
         builder.setParameters(clause.getParameters());
 
+        String table = entityMeta.getTableName();
+        String query = builder.createQuery();
+        QueryCache<List<Object>> queryCache = QueryCache.shared();
+        // a subquery reads tables whose writes do not invalidate this one
+        boolean cacheable = useQueryCache && keyField != null && !clause.hasSubquery();
+        if (!cacheable) {
+            return runSelect(builder);
+        }
+        List<Object> keys = queryCache.get(table, query, builder.getParameters());
+        if (keys != null) {
+            return (List<E>) findAllById((List<K>) (List<?>) keys);
+        }
+        long version = queryCache.version(table);
+
+        if (RepositoryConfig.SINGLE_FLIGHT_ENABLED && !queryCache.isWrittenInTransaction(table)
+                && TransactionManager.canFillSharedCaches()) {
+            // concurrent callers of the same query share the keys it returned
+            List<List<E>> own = new ArrayList<>(1);
+            keys = SingleFlight.queries().load(Arrays.asList(table, query, builder.getParameters()), () -> {
+                List<E> result = runSelect(builder);
+                own.add(result);
+                return result == null ? null : cacheKeys(table, query, builder, version, result);
+            });
+            if (!own.isEmpty()) {
+                return own.get(0);
+            }
+            if (keys != null) {
+                return (List<E>) findAllById((List<K>) (List<?>) keys);
+            }
+        }
+
+        List<E> result = runSelect(builder);
+        if (result != null) {
+            cacheKeys(table, query, builder, version, result);
+        }
+        return result;
+    }
+
+    private List<E> runSelect(SelectBuilder builder) {
+        List<E> result = null;
+        Connection connection = TransactionManager.getConnection();
         try (PreparedStatement preparedSt = connection.prepareStatement(builder.build());) {
             setPreparedStatementValue(preparedSt, builder.getParameters());
-            try (ResultSet rs = preparedSt.executeQuery()) {
+            try (ResultSet rs = timed(preparedSt::executeQuery)) {
                 result = mapListResultSet(rs, cls);
             } catch (Exception e) {
                 e.printStackTrace();
@@ -145,46 +351,412 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
             e.printStackTrace();
         }
         TransactionManager.getCache().put(result);
+        return result;
+    }
+
+    private List<Object> cacheKeys(String table, String query, SelectBuilder builder, long version, List<E> result) {
+        List<Object> keys = new ArrayList<>(result.size());
+        for (E entity : result) {
+            keys.add(keyOf(entity));
+        }
+        keys = Collections.unmodifiableList(keys);
+        QueryCache.shared().put(table, query, builder.getParameters(), version, keys);
+        return keys;
+    }
+
+    /**
+     * Loads the entities with the given primary keys, in key order.
+     * <p>
+     * Keys already present in the transaction's entity cache (or, when
+     * enabled, the shared {@link SecondLevelCache}) are served from it; the
+     * rest are loaded with one {@code IN} query per
+     * {@code repository.in-list.max-size} keys. Keys without a matching row
+     * are skipped. With {@code repository.single-flight.enabled}, keys another
+     * thread is already loading are awaited instead of queried again.
+     * </p>
+     */
+    @SuppressWarnings("unchecked")
+    @Override
+    public Iterable<E> findAllById(Iterable<K> keys) {
+        List<E> result = new ArrayList<>();
+        if (keys == null) {
+            return result;
+        }
+        EntityCache cache = TransactionManager.getCache();
+        List<K> ordered = new ArrayList<>();
+        Map<Object, E> found = new HashMap<>();
+        Set<Object> missing = new LinkedHashSet<>();
+        for (K key : keys) {
+            ordered.add(key);
+            Object cached = cache.get(cls, key);
+            if (cached != null) {
+                found.put(key, (E) cached);
+            } else {
+                missing.add(key);
+            }
+        }
+
+        long version = 0;
+        boolean shareLoad = false;
+        if (secondLevelCached && !missing.isEmpty()) {
+            Iterator<Object> it = missing.iterator();
+            while (it.hasNext()) {
+                Object key = it.next();
+                Object shared = SecondLevelCache.shared().get(cls, key);
+                if (shared != null) {
+                    cache.put(cls, key, shared);
+                    found.put(key, (E) shared);
+                    it.remove();
+                }
+            }
+            version = SecondLevelCache.shared().version(cls);
+            shareLoad = RepositoryConfig.SINGLE_FLIGHT_ENABLED
+                    && !SecondLevelCache.shared().isWrittenInTransaction(cls) && TransactionManager.canFillSharedCaches();
+        }
+
+        if (!missing.isEmpty()) {
+            List<EntityKey> missingKeys = new ArrayList<>(missing.size());
+            for (Object key : missing) {
+                missingKeys.add(EntityKey.of(cls, key));
+            }
+            // keys whose rows this thread read itself
+            Set<EntityKey> loadedHere = new HashSet<>();
+            try {
+                Map<EntityKey, Map<String, Object>> rows;
+                if (shareLoad) {
+                    rows = SingleFlight.entities().loadAll(missingKeys, claimed -> {
+                        loadedHere.addAll(claimed);
+                        return selectRowsById(claimed);
+                    });
+                } else {
+                    loadedHere.addAll(missingKeys);
+                    rows = selectRowsById(missingKeys);
+                }
+                for (EntityKey key : missingKeys) {
+                    Map<String, Object> row = rows.get(key);
+                    if (row == null) {
+                        continue;
+                    }
+                    boolean own = loadedHere.contains(key);
+                    E entity = materialize(own ? row : copyRow(row));
+                    cache.put(cls, key.getId(), entity);
+                    found.put(key.getId(), entity);
+                    if (secondLevelCached && own) {
+                        SecondLevelCache.shared().put(entity, version);
+                    }
+                }
+            } catch (Exception e) {
+                e.printStackTrace();
+            }
+        }
 
+        for (K key : ordered) {
+            E entity = found.get(key);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
         return result;
+    }
 
+    private Object keyOf(E entity) {
+        try {
+            keyField.setAccessible(true);
+            return keyField.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read key of " + cls.getName(), e);
+        }
     }
 
-    public Page<E> findWithCondition(ClauseBuilder clause, PageRequest request) {
-        List<E> result = null;
-        int total = 0;
+    /**
+     * Tells the shared caches (and, through the {@link InvalidationBus}, the
+     * other nodes) that rows of this table changed in bulk.
+     */
+    private void tableWritten() {
+        TransactionManager.markWritten();
+        if (RepositoryConfig.INVALIDATION_ENABLED) {
+            InvalidationBus.shared().tableWritten(cls, entityMeta.getTableName());
+        }
+        if (secondLevelCached) {
+            SecondLevelCache.shared().evictAll(cls);
+        }
+        if (RepositoryConfig.COLLECTION_CACHE_ENABLED) {
+            CollectionCache.shared().childClassWritten(cls);
+        }
+        queryCachesWritten();
+    }
+
+    /**
+     * Tells the shared caches that {@code entities} were inserted or updated.
+     */
+    private void entitiesWritten(Iterable<E> entities) {
+        TransactionManager.markWritten();
+        for (E entity : entities) {
+            if (secondLevelCached) {
+                SecondLevelCache.shared().evict(cls, keyOf(entity));
+            }
+            if (RepositoryConfig.INVALIDATION_ENABLED) {
+                InvalidationBus.shared().entityWritten(cls, entityMeta.getTableName(), keyOf(entity));
+            }
+        }
+        if (RepositoryConfig.COLLECTION_CACHE_ENABLED) {
+            for (E entity : entities) {
+                CollectionCache.shared().childWritten(entity);
+            }
+        }
+        queryCachesWritten();
+    }
+
+    /**
+     * Tells the shared caches that the row with primary key {@code key} was
+     * deleted.
+     */
+    private void entityDeleted(K key) {
+        TransactionManager.markWritten();
+        if (secondLevelCached) {
+            SecondLevelCache.shared().evict(cls, key);
+        }
+        if (RepositoryConfig.INVALIDATION_ENABLED) {
+            InvalidationBus.shared().entityWritten(cls, entityMeta.getTableName(), key);
+        }
+        if (RepositoryConfig.COLLECTION_CACHE_ENABLED) {
+            CollectionCache.shared().childDeleted(cls, key);
+        }
+        queryCachesWritten();
+    }
+
+    private void queryCachesWritten() {
+        if (RepositoryConfig.QUERY_CACHE_ENABLED) {
+            QueryCache.shared().tableWritten(entityMeta.getTableName());
+        }
+        if (countCached) {
+            QueryCache.counts().tableWritten(entityMeta.getTableName());
+        }
+    }
+
+    /**
+     * Turns the count cache on or off for this repository only.
+     */
+    void setCountCached(boolean countCached) {
+        this.countCached = countCached;
+    }
+
+    /**
+     * Turns the parallel page count on or off for this repository only.
+     */
+    void setParallelCount(boolean parallelCount) {
+        this.parallelCount = parallelCount;
+    }
+
+    /**
+     * @return a clause builder for the dialect of the current transaction's
+     *         connection (of {@code repository.url} outside a transaction)
+     */
+    protected ClauseBuilder clauseBuilder() {
+        return ClauseBuilder.builder(TransactionManager.isActive() ? Dialect.of(TransactionManager.getConnection())
+                : Dialect.current());
+    }
+
+    /**
+     * Finds all entities whose {@code column} matches one of the given values.
+     * <p>
+     * Unlike a single {@link ClauseBuilder#in(String, Collection)} predicate, the
+     * values are split into chunks of {@code repository.in-list.max-size} and
+     * one query is run per chunk, so arbitrarily large key sets never
+     * exceed the driver's parameter limit.
+     * </p>
+     *
+     * @param column physical column name
+     * @param values values to match
+     * @return matching entities, chunk results concatenated in order
+     */
+    public List<E> findWhereIn(String column, Collection<?> values) {
+        List<E> result = new ArrayList<>();
+        for (List<?> chunk : ClauseBuilder.partition(values, RepositoryConfig.IN_LIST_MAX_SIZE)) {
+            Iterable<E> found = findWithCondition(clauseBuilder().in(column, chunk));
+            if (found != null) {
+                found.forEach(result::add);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Reads only the columns needed by {@code type} and maps each row straight
+     * into it.
+     * <p>
+     * {@code type} is either a record (components matched to entity fields or
+     * columns) or a DTO whose {@code @Column} fields name the columns to read.
+     * The mapper is compiled once per type (see {@link ProjectionMapper}); the
+     * identity cache and relation wiring are skipped entirely, so this is the
+     * cheapest way to feed list screens and reports.
+     * </p>
+     *
+     * <pre>{@code
+     * record ProductName(Long productID, String productName) {}
+     * List<ProductName> names = productRepository.findProjected(ProductName.class, ClauseBuilder.builder());
+     * }</pre>
+     *
+     * @param type   record or DTO type
+     * @param clause filter, may be null or empty
+     * @return projected rows
+     */
+    public <R> List<R> findProjected(Class<R> type, ClauseBuilder clause) {
+        ProjectionMapper<R> mapper = ProjectionMapper.of(entityMeta, type);
+        List<R> result = new ArrayList<>();
 
         Connection connection = TransactionManager.getConnection();
         SelectBuilder builder = SelectBuilder.builder(entityMeta.getTableName())
-                .columns(persistentFields.stream().map((f) -> entityMeta.getColnumName(f.getName())).toList())
-                .where(clause.build());
-        builder.setParameters(clause.getParameters());
-        String query = builder.build(false);
-
-        // Count total records
-        total = countRecord(query, connection, builder.getParameters());
+                .columns(mapper.getColumns());
+        if (clause != null && !clause.build().isEmpty()) {
+            builder.where(clause.build());
+            builder.setParameters(clause.getParameters());
+        }
 
-        // Calculate offset for pagination
-        int offset = (request.getPageNumber() - 1) * request.getPageSize();
-        // Apply pagination and sorting to the original query
-        builder.limit(request.getPageSize() > total ? total : request.getPageSize()).offset(offset);
-        if (request.getSort() != null && request.getSort().getOrders() != null) {
-            builder.orderBy(request.getSort().getOrders());
+        try (PreparedStatement ps = connection.prepareStatement(builder.build())) {
+            setPreparedStatementValue(ps, builder.getParameters());
+            try (ResultSet rs = timed(ps::executeQuery)) {
+                while (rs.next()) {
+                    result.add(mapper.map(rs));
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
         }
+        return result;
+    }
+
+    /**
+     * Starts a GROUP BY / aggregate query over this entity's table.
+     * <p>
+     * Counting, summing or averaging is pushed down to the database instead of
+     * loading rows with {@link #findAll()} and aggregating in Java. See
+     * {@link Aggregation} for the available functions.
+     * </p>
+     *
+     * <pre>{@code
+     * List<AggregateRow> rows = productRequestRepository.aggregate()
+     *         .groupBy("status")
+     *         .count("total")
+     *         .fetch();
+     * }</pre>
+     *
+     * @return a new aggregation bound to this repository
+     */
+    public Aggregation<E> aggregate() {
+        return new Aggregation<>(entityMeta, this::executeAggregation);
+    }
 
+    private List<AggregateRow> executeAggregation(Aggregation<E> aggregation) {
+        List<AggregateRow> rows = new ArrayList<>();
+
+        Connection connection = TransactionManager.getConnection();
+        SelectBuilder<E> builder = aggregation.toSelectBuilder();
         try (PreparedStatement ps = connection.prepareStatement(builder.build())) {
             setPreparedStatementValue(ps, builder.getParameters());
-            try (ResultSet rs = ps.executeQuery()) {
-                result = mapListResultSet(rs, cls);
-            } catch (Exception e) {
-                e.printStackTrace();
+            try (ResultSet rs = timed(ps::executeQuery)) {
+                rows = aggregation.readRows(rs);
             }
         } catch (Exception e) {
             e.printStackTrace();
         }
-        TransactionManager.getCache().put(result);
+        return rows;
+    }
 
-        return new Page<>(total, request, result);
+    /**
+     * Finds entities whose {@code column} value is one of {@code keys}, staging
+     * the keys in a temporary table and joining against it.
+     * <p>
+     * Prefer this over {@link #findWhereIn(String, Collection)} for very large
+     * key sets: the statement stays constant-size and the database can use a
+     * hash / merge join. The temporary table lives until the current
+     * transaction ends.
+     * </p>
+     *
+     * @param column physical column to match
+     * @param keys   keys to match
+     * @param clause additional conditions, may be null
+     * @return matching entities
+     */
+    public Iterable<E> findWithKeySet(String column, Collection<?> keys, ClauseBuilder clause) {
+        List<E> result = null;
+
+        Connection connection = TransactionManager.getConnection();
+        try {
+            String staged = TemporaryKeyTable.stage(keySetColumnType(column), keys);
+            SelectBuilder builder = SelectBuilder.builder(entityMeta.getTableName())
+                    .columns(persistentFields.stream().map((f) -> entityMeta.getColnumName(f.getName())).toList())
+                    .innerJoin(staged + " AS ks",
+                            entityMeta.getTableName() + "." + column + " = ks." + TemporaryKeyTable.KEY_COLUMN);
+            if (clause != null && !clause.build().isEmpty()) {
+                builder.where(clause.build());
+                builder.setParameters(clause.getParameters());
+            }
+            try (PreparedStatement ps = connection.prepareStatement(builder.build())) {
+                setPreparedStatementValue(ps, builder.getParameters());
+                try (ResultSet rs = timed(ps::executeQuery)) {
+                    result = mapListResultSet(rs, cls);
+                }
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+        if (result != null) {
+            TransactionManager.getCache().put(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Deletes rows whose {@code column} value is one of {@code keys}, staging the
+     * keys in a temporary table (see
+     * {@link #findWithKeySet(String, Collection, ClauseBuilder)}).
+     *
+     * @param column physical column to match
+     * @param keys   keys to match
+     * @param clause additional conditions, may be null
+     */
+    public void deleteWithKeySet(String column, Collection<?> keys, ClauseBuilder clause) {
+        Connection connection = TransactionManager.getWritableConnection();
+        try {
+            String staged = TemporaryKeyTable.stage(keySetColumnType(column), keys);
+            String where = column + " IN (SELECT " + TemporaryKeyTable.KEY_COLUMN + " FROM " + staged + ")";
+            DeleteBuilder builder = DeleteBuilder.builder(entityMeta.getTableName());
+            if (clause != null && !clause.build().isEmpty()) {
+                builder.where(where + " AND (" + clause.build() + ")");
+                builder.setParameters(clause.getParameters());
+            } else {
+                builder.where(where);
+            }
+            try (PreparedStatement ps = connection.prepareStatement(builder.build())) {
+                setPreparedStatementValue(ps, builder.getParameters());
+                timed(ps::execute);
+            }
+            TransactionManager.getCache().clear(cls);
+            tableWritten();
+        } catch (Exception e) {
+            e.printStackTrace();
+        }
+    }
+
+    private String keySetColumnType(String column) {
+        ColumnMeta colMeta = entityMeta.getColumnMeta(column);
+        if (colMeta == null) {
+            throw new IllegalArgumentException(
+                    "Column " + column + " is not mapped on " + cls.getName());
+        }
+        return colMeta.getDdlType();
+    }
+
+    public Page<E> findWithCondition(ClauseBuilder clause, PageRequest request) {
+        SelectBuilder builder = SelectBuilder.builder(entityMeta.getTableName())
+                .columns(persistentFields.stream().map((f) -> entityMeta.getColnumName(f.getName())).toList())
+                .where(clause.build());
+        builder.setParameters(clause.getParameters());
+        String query = builder.build(false);
+
+        return findPage(builder, query, builder.getParameters(), !clause.hasSubquery(), request, -1);
     }
 
     /**
@@ -204,46 +776,197 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
      *         page request, and the list of entities
      */
     public Page<E> findAll(PageRequest request) {
-        List<E> result = null;
-        int total = 0;
-
-        Connection connection = TransactionManager.getConnection();
         // Build the base select query
         SelectBuilder builder = SelectBuilder.builder(entityMeta.getTableName())
                 .columns(persistentFields.stream().map((f) -> entityMeta.getColnumName(f.getName())).toList());
         String query = builder.build(false);
 
-        // Count total records
-        total = countRecord(query, connection, null);
+        // Count total records (unfiltered: table statistics are enough when allowed)
+        long approximate = RepositoryConfig.COUNT_APPROXIMATE ? approximateCount() : -1;
+        return findPage(builder, query, null, true, request, approximate);
+    }
 
+    /**
+     * Fetches one page of {@code builder} and the total of {@code query}.
+     * <p>
+     * A page shorter than the page size tells the total without counting
+     * ({@code repository.page.skip-count}). In a read-only transaction with
+     * {@code repository.page.parallel-count=true}, the count and the page are
+     * fetched at the same time through {@link TransactionManager#parallel(List)},
+     * in two child transactions on two connections of the pool of the database
+     * the transaction runs on (its replica, if any). The page then needs two
+     * pooled connections besides the transaction's own, and as each child reads
+     * its own snapshot, under concurrent writes the total may not match the
+     * rows of the page.
+     * </p>
+     *
+     * @param cacheable   true if {@code query} reads only this repository's
+     *                    table, so its count may be kept in the count cache
+     * @param approximate estimated total to use instead of counting; negative
+     *                    to count
+     */
+    @SuppressWarnings("unchecked")
+    private Page<E> findPage(SelectBuilder builder, String query, List<Object> parameters, boolean cacheable,
+            PageRequest request, long approximate) {
         int offset = (request.getPageNumber() - 1) * request.getPageSize();
         // Apply pagination and sorting to the original query
-        builder.limit(request.getPageSize() > total ? total : request.getPageSize()).offset(offset);
+        builder.limit(request.getPageSize()).offset(offset);
         if (request.getSort() != null && request.getSort().getOrders() != null) {
             builder.orderBy(request.getSort().getOrders());
         }
 
-        try (PreparedStatement ps = connection.prepareStatement(builder.build());
-                ResultSet rs = ps.executeQuery()) {
-            result = mapListResultSet(rs, cls);
-        } catch (Exception e) {
-            e.printStackTrace();
+        if (approximate >= 0) {
+            return new Page<>((int) Math.min(approximate, Integer.MAX_VALUE), request, runSelect(builder));
+        }
+        if (parallelCount && TransactionManager.isReadOnly()) {
+            try {
+                List<Object> parts = TransactionManager.parallel(List.<Callable<Object>>of(
+                        () -> countRecord(query, TransactionManager.getConnection(), parameters, cacheable),
+                        () -> runSelect(builder)));
+                return new Page<>((Integer) parts.get(0), request, (List<E>) parts.get(1));
+            } catch (SQLException e) {
+                // no pooled connection in time: fetch both here
+                e.printStackTrace();
+            }
         }
-        TransactionManager.getCache().put(result);
 
+        List<E> result = runSelect(builder);
+        int total;
+        if (RepositoryConfig.PAGE_SKIP_COUNT && result != null && result.size() < request.getPageSize()
+                && (offset == 0 || !result.isEmpty())) {
+            // the page holds the last rows
+            total = offset + result.size();
+        } else {
+            total = countRecord(query, TransactionManager.getConnection(), parameters, cacheable);
+        }
         return new Page<>(total, request, result);
     }
 
+    /**
+     * Iterates the pages of {@code clause} from {@code first} on, fetching
+     * the next {@code repository.page.prefetch-depth} pages in the background
+     * on {@link AsyncExecutor#shared()}.
+     *
+     * @param clause null for all rows
+     * @see PageIterator
+     */
+    public PageIterator<E> iteratePages(ClauseBuilder clause, PageRequest first) {
+        return iteratePages(clause, first, RepositoryConfig.PAGE_PREFETCH_DEPTH, AsyncExecutor.shared());
+    }
+
+    /**
+     * Iterates pages by offset: page {@code n + 1} is
+     * {@code first} moved {@code n} pages forward, with the same sort. Rows
+     * inserted or deleted during the walk may shift later pages.
+     *
+     * @param clause   null for all rows
+     * @param depth    pages fetched ahead of the one being processed
+     * @param executor runs the fetches, each in its own transaction
+     */
+    public PageIterator<E> iteratePages(ClauseBuilder clause, PageRequest first, int depth, AsyncExecutor executor) {
+        Sort sort = first.getSort();
+        return new PageIterator<>(executor, first.getPageSize(), depth,
+                (previous, index) -> findPageContent(clause,
+                        new PageRequest(first.getPageNumber() + index, first.getPageSize(), sort)));
+    }
+
+    /**
+     * Iterates the rows of {@code clause} in ascending {@code column} order,
+     * {@code pageSize} rows at a time, fetching the next
+     * {@code repository.page.prefetch-depth} pages in the background on
+     * {@link AsyncExecutor#shared()}.
+     *
+     * @see #iterateByKey(ClauseBuilder, String, int, int, AsyncExecutor)
+     */
+    public PageIterator<E> iterateByKey(ClauseBuilder clause, String column, int pageSize) {
+        return iterateByKey(clause, column, pageSize, RepositoryConfig.PAGE_PREFETCH_DEPTH, AsyncExecutor.shared());
+    }
+
+    /**
+     * Iterates pages by keyset: each page holds the rows whose {@code column}
+     * is greater than the last one of the previous page, so no row is skipped
+     * or repeated when rows are inserted or deleted during the walk, and deep
+     * pages cost no more than the first one.
+     *
+     * @param clause   null for all rows
+     * @param column   unique, non-null column, typically the key
+     * @param depth    pages fetched ahead of the one being processed
+     * @param executor runs the fetches, each in its own transaction
+     */
+    public PageIterator<E> iterateByKey(ClauseBuilder clause, String column, int pageSize, int depth,
+            AsyncExecutor executor) {
+        Field field = fieldOf(column);
+        return new PageIterator<>(executor, pageSize, depth, (previous, index) -> findAfter(clause, column,
+                previous == null ? null : columnValue(field, previous.get(previous.size() - 1)), pageSize));
+    }
+
+    /**
+     * Fetches the rows of one page of {@code clause}, without counting.
+     */
+    List<E> findPageContent(ClauseBuilder clause, PageRequest request) {
+        SelectBuilder builder = select(clause == null ? "" : clause.build(),
+                clause == null ? new ArrayList<>() : clause.getParameters());
+        builder.limit(request.getPageSize()).offset((request.getPageNumber() - 1) * request.getPageSize());
+        if (request.getSort() != null && request.getSort().getOrders() != null) {
+            builder.orderBy(request.getSort().getOrders());
+        }
+        return runSelect(builder);
+    }
+
+    /**
+     * Fetches up to {@code limit} rows of {@code clause} whose {@code column}
+     * is greater than {@code after} (from the first row when null), in
+     * ascending {@code column} order.
+     */
+    List<E> findAfter(ClauseBuilder clause, String column, Object after, int limit) {
+        String where = clause == null ? "" : clause.build();
+        List<Object> parameters = new ArrayList<>(clause == null ? List.of() : clause.getParameters());
+        if (after != null) {
+            where = (where.isEmpty() ? "" : "(" + where + ") AND ") + column + " > ?";
+            parameters.add(after);
+        }
+        SelectBuilder builder = select(where, parameters);
+        builder.orderBy(List.of(Order.asc(column))).limit(limit);
+        return runSelect(builder);
+    }
+
+    private SelectBuilder select(String where, List<Object> parameters) {
+        SelectBuilder builder = SelectBuilder.builder(entityMeta.getTableName())
+                .columns(persistentFields.stream().map((f) -> entityMeta.getColnumName(f.getName())).toList())
+                .where(where);
+        builder.setParameters(parameters);
+        return builder;
+    }
+
+    private Field fieldOf(String column) {
+        for (Field field : persistentFields) {
+            if (column.equalsIgnoreCase(entityMeta.getColnumName(field.getName()))) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Column " + column + " is not mapped on " + cls.getName());
+    }
+
+    private Object columnValue(Field field, E entity) {
+        try {
+            field.setAccessible(true);
+            return entityMeta.getColnumValue(field.get(entity), field);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read " + field.getName() + " of " + cls.getName(), e);
+        }
+    }
+
     @Override
     public void deleteById(K key) {
 
-        Connection connection = TransactionManager.getConnection();
+        Connection connection = TransactionManager.getWritableConnection();
         DeleteBuilder builder = DeleteBuilder.builder(entityMeta.getTableName()).where(keyField.getName() + " = ?",
                 key);
         try (PreparedStatement ps = connection.prepareStatement(builder.build())) {
             setPreparedStatementValue(ps, builder.getParameters());
-            ps.execute();
-            TransactionManager.getCache().remove(EntityKey.of(cls, key));
+            timed(ps::execute);
+            TransactionManager.getCache().remove(cls, key);
+            entityDeleted(key);
         } catch (Exception e) {
             e.printStackTrace();
         }
@@ -251,50 +974,165 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
 
     @Override
     public void deleteWithCondition(ClauseBuilder clause) {
-        Connection connection = TransactionManager.getConnection();
+        Connection connection = TransactionManager.getWritableConnection();
         DeleteBuilder builder = DeleteBuilder.builder(entityMeta.getTableName()).where(clause.build());
         builder.setParameters(clause.getParameters());
         try (PreparedStatement ps = connection.prepareStatement(builder.build())) {
             setPreparedStatementValue(ps, builder.getParameters());
-            ps.execute();
-            TransactionManager.getCache().clear(entityMeta.getClass());
+            timed(ps::execute);
+            TransactionManager.getCache().clear(cls);
+            tableWritten();
         } catch (Exception e) {
             e.printStackTrace();
         }
     }
 
+    /**
+     * Loads the entity with the given primary key.
+     * <p>
+     * With {@code repository.single-flight.enabled}, concurrent misses of the
+     * shared {@link SecondLevelCache} for the same key run one query; the
+     * other callers materialize their own instance from the row it read.
+     * </p>
+     */
     @SuppressWarnings("unchecked")
     @Override
     public E findById(K key) {
         E entity = null;
 
-        if (TransactionManager.getCache().contains(EntityKey.of(cls, key))) {
-            return (E) TransactionManager.getCache().get(EntityKey.of(cls, key));
+        EntityCache cache = TransactionManager.getCache();
+        Object cached = cache.get(cls, key);
+        if (cached != null) {
+            return (E) cached;
+        }
+        long version = 0;
+        boolean shareLoad = false;
+        if (secondLevelCached) {
+            Object shared = SecondLevelCache.shared().get(cls, key);
+            if (shared != null) {
+                cache.put(cls, key, shared);
+                return (E) shared;
+            }
+            version = SecondLevelCache.shared().version(cls);
+            shareLoad = RepositoryConfig.SINGLE_FLIGHT_ENABLED
+                    && !SecondLevelCache.shared().isWrittenInTransaction(cls) && TransactionManager.canFillSharedCaches();
+        }
+
+        // false when the row was read by another thread's load
+        boolean loadedHere = true;
+        try {
+            Map<String, Object> row;
+            if (shareLoad) {
+                boolean[] leader = new boolean[1];
+                row = SingleFlight.entities().load(EntityKey.of(cls, key), () -> {
+                    leader[0] = true;
+                    return selectRowById(key);
+                });
+                loadedHere = leader[0];
+            } else {
+                row = selectRowById(key);
+            }
+            if (row != null) {
+                entity = materialize(loadedHere ? row : copyRow(row));
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
         }
+        cache.put(cls, key, entity);
+        if (secondLevelCached && loadedHere && entity != null) {
+            SecondLevelCache.shared().put(entity, version);
+        }
+
+        return entity;
+    }
 
+    private Map<String, Object> selectRowById(Object key) {
         Connection connection = TransactionManager.getConnection();
         SelectBuilder builder = SelectBuilder.builder(entityMeta.getTableName()).where(keyField.getName() + " = ?",
                 key);
+        long start = System.nanoTime();
         try (PreparedStatement ps = connection.prepareStatement(builder.build())) {
             setPreparedStatementValue(ps, builder.getParameters());
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    entity = mapResultSet(rs, cls);
+            try (ResultSet rs = timed(ps::executeQuery)) {
+                return rs.next() ? readRow(rs) : null;
+            }
+        } catch (SQLException e) {
+            throw new IllegalStateException("Cannot load " + cls.getName() + " " + key, e);
+        } finally {
+            recordLoad(start);
+        }
+    }
+
+    private void recordLoad(long startNanos) {
+        if (RepositoryConfig.CACHE_STATS_ENABLED) {
+            CacheStatistics.shared().recordLoad(cls, System.nanoTime() - startNanos);
+        }
+    }
+
+    /**
+     * Reads the entity from the database, skipping every cache; used by the
+     * {@link SecondLevelCache} to refresh entries ahead of expiry.
+     */
+    private E loadFresh(Object key) {
+        Map<String, Object> row = selectRowById(key);
+        return row == null ? null : materialize(row);
+    }
+
+    /**
+     * Rows of the given keys, by key, read with one {@code IN} query per
+     * {@code repository.in-list.max-size} keys.
+     */
+    private Map<EntityKey, Map<String, Object>> selectRowsById(Collection<EntityKey> keys) {
+        Map<EntityKey, Map<String, Object>> rows = new HashMap<>();
+        Connection connection = TransactionManager.getConnection();
+        String keyColumn = entityMeta.getColnumName(keyField.getName());
+        List<Object> ids = keys.stream().map(EntityKey::getId).toList();
+        for (List<Object> chunk : ClauseBuilder.partition(ids, RepositoryConfig.IN_LIST_MAX_SIZE)) {
+            ClauseBuilder clause = ClauseBuilder.builder(Dialect.of(connection)).in(keyColumn, chunk);
+            SelectBuilder builder = SelectBuilder.builder(entityMeta.getTableName())
+                    .columns(persistentFields.stream().map((f) -> entityMeta.getColnumName(f.getName())).toList())
+                    .where(clause.build());
+            builder.setParameters(clause.getParameters());
+            long start = System.nanoTime();
+            try (PreparedStatement ps = connection.prepareStatement(builder.build())) {
+                setPreparedStatementValue(ps, builder.getParameters());
+                try (ResultSet rs = timed(ps::executeQuery)) {
+                    while (rs.next()) {
+                        Map<String, Object> row = readRow(rs);
+                        Object id = entityMeta.getFieldValue(row.get(keyColumn.toLowerCase()), keyField);
+                        rows.put(EntityKey.of(cls, id), row);
+                    }
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
+            } catch (SQLException e) {
+                throw new IllegalStateException("Cannot load " + cls.getName() + " rows", e);
+            } finally {
+                recordLoad(start);
             }
-        } catch (Exception e) {
-            e.printStackTrace();
         }
-        TransactionManager.getCache().put(EntityKey.of(cls, key), entity);
+        return rows;
+    }
 
-        return entity;
+    /**
+     * Copy of a row read by another thread; mutable values (dates, byte
+     * arrays) are cloned so entities of different transactions never share
+     * them.
+     */
+    private static Map<String, Object> copyRow(Map<String, Object> row) {
+        Map<String, Object> copy = new HashMap<>(row);
+        for (Map.Entry<String, Object> e : copy.entrySet()) {
+            Object value = e.getValue();
+            if (value instanceof java.util.Date date) {
+                e.setValue(date.clone());
+            } else if (value instanceof byte[] bytes) {
+                e.setValue(bytes.clone());
+            }
+        }
+        return copy;
     }
 
     @Override
     public E save(E entity) {
-        Connection connection = TransactionManager.getConnection();
+        Connection connection = TransactionManager.getWritableConnection();
         try {
             if (keyField == null) {
                 throw new IllegalStateException("Entity without primary key @Key");
@@ -319,9 +1157,10 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
                     .values(values);
             try (PreparedStatement ps = connection.prepareStatement(builder.build())) {
                 setPreparedStatementValue(ps, builder.getParameters());
-                ps.executeUpdate();
+                timed(ps::executeUpdate);
             }
-            TransactionManager.getCache().put(EntityKey.of(cls, keyVal), entity);
+            TransactionManager.getCache().put(cls, keyVal, entity);
+            entitiesWritten(List.of(entity));
             return entity;
         } catch (Exception e) {
             e.printStackTrace();
@@ -331,7 +1170,7 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
 
     @Override
     public Iterable<E> saveAll(Iterable<E> entities) {
-        Connection connection = TransactionManager.getConnection();
+        Connection connection = TransactionManager.getWritableConnection();
         try {
             if (keyField == null) {
                 throw new IllegalStateException("Entity without primary key @Key");
@@ -363,9 +1202,10 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
 
             try (PreparedStatement ps = connection.prepareStatement(builder.build())) {
                 setPreparedStatementValue(ps, builder.getParameters());
-                ps.executeUpdate();
+                timed(ps::executeUpdate);
             }
             TransactionManager.getCache().put(entities);
+            entitiesWritten(entities);
             return entities;
         } catch (Exception e) {
             e.printStackTrace();
@@ -375,7 +1215,7 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
 
     @Override
     public E update(E entity) {
-        Connection connection = TransactionManager.getConnection();
+        Connection connection = TransactionManager.getWritableConnection();
         try {
             UpdateBuilder builder = UpdateBuilder.builder(entityMeta.getTableName());
             Object keyValue = null;
@@ -397,12 +1237,13 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
 
             try (PreparedStatement ps = connection.prepareStatement(builder.build())) {
                 setPreparedStatementValue(ps, builder.getParameters());
-                int affected = ps.executeUpdate();
+                int affected = timed(ps::executeUpdate);
                 if (affected == 0) {
                     throw new SQLException("No rows updated, entity may not exist.");
                 }
             }
-            TransactionManager.getCache().put(EntityKey.of(cls, keyValue), entity);
+            TransactionManager.getCache().put(cls, keyValue, entity);
+            entitiesWritten(List.of(entity));
             return entity;
         } catch (Exception e) {
             e.printStackTrace();
@@ -416,7 +1257,8 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
      * This method wraps the provided SQL query in a COUNT query to determine the
      * total number of records that would be returned by the original query.
      * It executes the count query and retrieves the total count from the result
-     * set.
+     * set. The query may read any table, so its count is never kept in the
+     * count cache.
      * </p>
      *
      * @param query      the base SQL query to count records for
@@ -425,16 +1267,41 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
      * @return the total number of records for the given query
      */
     public int countRecord(String query, Connection connection, List<Object> parameters) {
+        return countRecord(query, connection, parameters, false);
+    }
+
+    /**
+     * @param ownTable true for a query built by this repository on its own
+     *                 table only, whose count writes to the table invalidate
+     */
+    private int countRecord(String query, Connection connection, List<Object> parameters, boolean ownTable) {
         // Wrap the base query in a count query to get total number of records
         String countQuery = "SELECT COUNT(1) AS total FROM (" + query + ") AS count_table";
         int total = 0;
+
+        // a replica may lag behind: keep its count out of the shared cache
+        String table = entityMeta.getTableName();
+        boolean cacheable = countCached && ownTable && !TransactionManager.isOnReplica();
+        QueryCache<Long> counts = QueryCache.counts();
+        long version = 0;
+        if (cacheable) {
+            Long cached = counts.get(table, countQuery, parameters);
+            if (cached != null) {
+                return cached.intValue();
+            }
+            version = counts.version(table);
+        }
+
         // Count total records
         try (PreparedStatement countPs = connection.prepareStatement(countQuery);) {
             setPreparedStatementValue(countPs, parameters);
-            try (ResultSet countRs = countPs.executeQuery()) {
+            try (ResultSet countRs = timed(countPs::executeQuery)) {
                 if (countRs.next()) {
                     total = countRs.getInt("total");
                 }
+                if (cacheable) {
+                    counts.put(table, countQuery, parameters, version, (long) total);
+                }
             } catch (Exception e) {
                 e.printStackTrace();
             }
@@ -445,79 +1312,100 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
     }
 
     protected E mapResultSet(ResultSet rs, Class<E> cls) throws Exception {
+        return mapRow(readRow(rs));
+    }
+
+    /**
+     * A JDBC call that may fail with {@link SQLException}.
+     */
+    @FunctionalInterface
+    interface SqlCall<T> {
+        T call() throws SQLException;
+    }
+
+    /**
+     * Runs a statement and reports its duration to the concurrency limiter
+     * through {@link TransactionManager#recordLatency(long)}.
+     */
+    static <T> T timed(SqlCall<T> call) throws SQLException {
+        long start = System.nanoTime();
+        try {
+            return call.call();
+        } finally {
+            TransactionManager.recordLatency(System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * Copies the current row out, keyed by lower-case column label, so that
+     * lazy relations never read the (by then closed) ResultSet.
+     */
+    private static Map<String, Object> readRow(ResultSet rs) throws SQLException {
         ResultSetMetaData meta = rs.getMetaData();
         int colCount = meta.getColumnCount();
-        E obj = cls.getDeclaredConstructor().newInstance();
-
-        // Create a map of column labels to their indices for quick lookup
-        Map<String, Integer> labelIndex = new HashMap<>();
+        Map<String, Object> row = new HashMap<>();
         for (int i = 1; i <= colCount; i++) {
-            labelIndex.put(meta.getColumnLabel(i).toLowerCase(), i);
+            row.put(meta.getColumnLabel(i).toLowerCase(), rs.getObject(i));
         }
+        return row;
+    }
+
+    /**
+     * Builds an entity from one row of raw column values.
+     * <p>
+     * {@code row} maps lower-case column names to values as read from JDBC
+     * (before conversion); columns missing from it are left unset. Relations
+     * are wired as for a row read from the database: {@code @OneToMany} fields
+     * get a {@link LazyList}, {@code @ManyToOne} fields a
+     * {@link LazyReference} (loaded immediately when {@code EAGER}).
+     * </p>
+     *
+     * @param row column values of one row
+     * @return the entity
+     */
+    protected E mapRow(Map<String, Object> row) throws Exception {
+        E obj = cls.getDeclaredConstructor().newInstance();
 
         // Map columns to fields
         for (Map.Entry<String, ColumnMeta> entry : entityMeta.getFieldToColumnMap().entrySet()) {
             String fieldName = entry.getKey();
-            ColumnMeta colMeta = entry.getValue();
-            String physicalCol = colMeta.getName();
-            Integer idx = labelIndex.get(physicalCol.toLowerCase());
-            if (idx == null) {
+            String physicalCol = entry.getValue().getName().toLowerCase();
+            if (!row.containsKey(physicalCol)) {
                 continue; // column not in result set
             }
 
             try {
                 Field field = cls.getDeclaredField(fieldName);
                 // do convert here
-                Object value = entityMeta.getFieldValue(rs.getObject(idx), field);
+                Object value = entityMeta.getFieldValue(row.get(physicalCol), field);
                 field.setAccessible(true);
                 field.set(obj, value);
             } catch (NoSuchFieldException ignored) {
             }
         }
-        // Attach relationship placeholders (lazy / eager) - simple eager hook
-        // placeholder.
-        // NOTE: Actual loading logic (e.g., repository lookup, lazy wrappers) not yet
-        // implemented here.
-        // Future: Iterate entityMeta.getRelationships() and, based on FetchMode, load
-        // or assign lazy wrapper.
         // Relationship wiring (prototype implementation):
         for (RelationshipMeta rel : entityMeta.getRelationships()) {
             Field f = rel.getField();
             f.setAccessible(true);
-            // Only handle single-valued for now; collections later
             try {
                 if (rel.isCollection()) {
                     // Collection side: assign LazyList placeholder (no immediate fetch even if
                     // EAGER until batch logic exists)
-                    var repo = resolveRepository(rel.getTargetType());
-                    int keyIdx = labelIndex.get(keyField.getName().toLowerCase());
-                    Object keyVal = rs.getObject(keyIdx);
-                    if (TransactionManager.getCache().contains(EntityKey.of(cls, keyVal))) {
-                        LazyReference wrapper = new LazyReference(
-                                () -> (Object) TransactionManager.getCache().get(EntityKey.of(cls, keyVal)));
-                        f.set(obj, wrapper);
-                        continue;
-                    }
-                    @SuppressWarnings("unchecked")
-                    LazyList<?> list = new LazyList<Object>(() -> (List) repo
-                            .findWithCondition(ClauseBuilder.builder().equal(keyField.getName(), keyVal)));
+                    Object keyVal = keyField.get(obj);
+                    LazyList<?> list = new LazyList<Object>(() -> loadCollection(rel, keyVal));
                     f.set(obj, list);
                     continue;
                 }
-                // Single-valued relation
+                // Single-valued relation: FK column stored on this row as rel.getJoinColumn()
+                Object fkValue = null;
+                if (rel.getJoinColumn() != null && !rel.getJoinColumn().isBlank()) {
+                    fkValue = row.get(rel.getJoinColumn().toLowerCase());
+                }
+                Object fk = fkValue;
                 if (rel.getFetchMode() == FetchMode.EAGER) {
                     // Attempt eager load via repository lookup if available
                     var repo = resolveRepository(rel.getTargetType());
-
-                    // Assume FK column stored on this row as rel.getJoinColumn()
-                    Object fkValue = null;
-                    if (rel.getJoinColumn() != null && !rel.getJoinColumn().isBlank()) {
-                        Integer fkIdx = labelIndex.get(rel.getJoinColumn().toLowerCase());
-                        if (fkIdx != null) {
-                            fkValue = rs.getObject(fkIdx);
-                        }
-                    }
-                    Object related = fkValue == null ? null : repo.findById(fkValue);
+                    Object related = fk == null ? null : repo.findById(fk);
 
                     // If the declared field type is LazyReference, wrap the loaded entity
                     if (LazyReference.class.isAssignableFrom(f.getType())) {
@@ -532,16 +1420,6 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
                 } else { // LAZY
                     LazyReference<?> ref = new LazyReference<>(() -> {
                         var repo = resolveRepository(rel.getTargetType());
-                        Object fk = null;
-                        if (rel.getJoinColumn() != null) {
-                            Integer fkIdx = labelIndex.get(rel.getJoinColumn().toLowerCase());
-                            if (fkIdx != null) {
-                                try {
-                                    fk = rs.getObject(fkIdx);
-                                } catch (SQLException ignored) {
-                                }
-                            }
-                        }
                         return fk == null ? null : repo.findById(fk);
                     });
                     f.set(obj, ref);
@@ -553,6 +1431,67 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
         return obj;
     }
 
+    private E materialize(Map<String, Object> row) {
+        try {
+            return mapRow(row);
+        } catch (Exception e) {
+            throw new IllegalStateException("Cannot materialize " + cls.getName(), e);
+        }
+    }
+
+    /**
+     * Loads the children of a {@code @OneToMany} collection, going through the
+     * shared {@link CollectionCache} when it is enabled.
+     */
+    private List<Object> loadCollection(RelationshipMeta rel, Object ownerId) {
+        CrudRepository<Object, Object> repo = resolveRepository((Class<Object>) rel.getTargetType());
+        List<Object> children = new ArrayList<>();
+        if (ownerId == null) {
+            return children;
+        }
+        ClauseBuilder byOwner = ClauseBuilder.builder().equal(foreignKeyColumn(rel), ownerId);
+        if (!RepositoryConfig.COLLECTION_CACHE_ENABLED) {
+            Iterable<Object> found = repo.findWithCondition(byOwner);
+            if (found != null) {
+                found.forEach(children::add);
+            }
+            return children;
+        }
+
+        CollectionCache collections = CollectionCache.shared();
+        CollectionKey key = new CollectionKey(cls, ownerId, rel.getField().getName());
+        List<Object> childIds = collections.get(key, rel.getTargetType());
+        if (childIds != null) {
+            repo.findAllById(childIds).forEach(children::add);
+            return children;
+        }
+        long version = collections.version(rel.getTargetType());
+        Iterable<Object> found = repo.findWithCondition(byOwner);
+        if (found == null) {
+            return children;
+        }
+        childIds = new ArrayList<>();
+        for (Object child : found) {
+            children.add(child);
+            childIds.add(EntityKey.of(child).getId());
+        }
+        collections.put(key, rel.getTargetType(), version, childIds);
+        return children;
+    }
+
+    /**
+     * Column of the child table referencing this entity: {@code joinColumn},
+     * or the column of the child's {@code mappedBy} field.
+     */
+    private String foreignKeyColumn(RelationshipMeta rel) {
+        if (rel.getJoinColumn() != null && !rel.getJoinColumn().isBlank()) {
+            return rel.getJoinColumn();
+        }
+        EntityMeta<?> childMeta = EntityMeta.scanAnnotation(rel.getTargetType());
+        String column = childMeta.getColnumName(rel.getMappedBy());
+        return column != null ? column : rel.getMappedBy();
+    }
+
     /**
      * Maps all rows of the given {@link ResultSet} to a list of instances of the
      * specified class.
@@ -583,7 +1522,8 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
      * <p>
      * This method iterates over the list of parameters and sets each value in the
      * {@link PreparedStatement}
-     * at the corresponding index (1-based).
+     * at the corresponding index (1-based). {@link ArrayParameter} values are
+     * bound as SQL arrays.
      * </p>
      *
      * @param ps      the {@link PreparedStatement} to set values for
@@ -596,6 +1536,10 @@ public abstract class AbstractRepository<E, K> implements CrudRepository<E, K> {
         }
         int idx = 1;
         for (Object p : objects) {
+            if (p instanceof ArrayParameter array) {
+                ps.setArray(idx++, ps.getConnection().createArrayOf(array.getSqlTypeName(), array.getValues()));
+                continue;
+            }
             ps.setObject(idx++, p);
         }
     }
@@ -0,0 +1,205 @@
+package com.example.persistence_repository.persistence.repository;
+
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+
+import com.example.persistence_repository.persistence.config.AsyncExecutor;
+import com.example.persistence_repository.persistence.config.AsyncTransaction;
+import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
+import com.example.persistence_repository.persistence.query.common.Page;
+import com.example.persistence_repository.persistence.query.common.PageRequest;
+
+/**
+ * Asynchronous facade over an {@link AbstractRepository}.
+ * <p>
+ * Every operation runs on the worker threads of an {@link AsyncExecutor}
+ * ({@link AsyncExecutor#shared()} by default) and returns a
+ * {@link CompletableFuture}; the calling thread never blocks on the database.
+ * Without a handle each operation is a transaction of its own on a pooled
+ * connection. Operations that must be atomic take the {@link AsyncTransaction}
+ * they belong to, which carries the transaction from worker to worker:
+ * </p>
+ *
+ * <pre>
+ * AsyncRepository&lt;User, Integer&gt; users = new AsyncRepository&lt;&gt;(userRepository);
+ * users.findById(1).thenAccept(user -&gt; ...);
+ *
+ * AsyncTransaction tx = AsyncExecutor.shared().begin();
+ * users.save(tx, user);
+ * users.deleteById(tx, 2);
+ * tx.commit().join();
+ * </pre>
+ *
+ * Errors are reported the way the wrapped repository reports them: the
+ * operations that log and return null / false / -1 do so here too, and
+ * exceptions they throw fail the future.
+ *
+ * @param <E> the type of entity
+ * @param <K> the type of the primary key
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class AsyncRepository<E, K> {
+
+    /**
+     * Work done with the wrapped repository on a worker thread.
+     */
+    @FunctionalInterface
+    public interface Operation<T, E, K> {
+        T run(AbstractRepository<E, K> repository) throws SQLException;
+    }
+
+    private final AbstractRepository<E, K> repository;
+    private final AsyncExecutor executor;
+
+    public AsyncRepository(AbstractRepository<E, K> repository) {
+        this(repository, AsyncExecutor.shared());
+    }
+
+    public AsyncRepository(AbstractRepository<E, K> repository, AsyncExecutor executor) {
+        this.repository = repository;
+        this.executor = executor;
+    }
+
+    public AbstractRepository<E, K> getRepository() {
+        return repository;
+    }
+
+    public AsyncExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Runs {@code operation} in a transaction of its own.
+     */
+    public <T> CompletableFuture<T> call(Operation<T, E, K> operation) {
+        return executor.submit(() -> operation.run(repository));
+    }
+
+    /**
+     * Runs {@code operation} in {@code tx}, after the work submitted to it
+     * before.
+     */
+    public <T> CompletableFuture<T> call(AsyncTransaction tx, Operation<T, E, K> operation) {
+        return tx.submit(() -> operation.run(repository));
+    }
+
+    public CompletableFuture<E> findById(K key) {
+        return call(r -> r.findById(key));
+    }
+
+    public CompletableFuture<E> findById(AsyncTransaction tx, K key) {
+        return call(tx, r -> r.findById(key));
+    }
+
+    public CompletableFuture<Iterable<E>> findAllById(Iterable<K> keys) {
+        return call(r -> r.findAllById(keys));
+    }
+
+    public CompletableFuture<Iterable<E>> findAllById(AsyncTransaction tx, Iterable<K> keys) {
+        return call(tx, r -> r.findAllById(keys));
+    }
+
+    public CompletableFuture<Iterable<E>> findAll() {
+        return call(AbstractRepository::findAll);
+    }
+
+    public CompletableFuture<Iterable<E>> findAll(AsyncTransaction tx) {
+        return call(tx, AbstractRepository::findAll);
+    }
+
+    public CompletableFuture<Page<E>> findAll(PageRequest request) {
+        return call(r -> r.findAll(request));
+    }
+
+    public CompletableFuture<Page<E>> findAll(AsyncTransaction tx, PageRequest request) {
+        return call(tx, r -> r.findAll(request));
+    }
+
+    public CompletableFuture<Iterable<E>> findWithCondition(ClauseBuilder clause) {
+        return call(r -> r.findWithCondition(clause));
+    }
+
+    public CompletableFuture<Iterable<E>> findWithCondition(AsyncTransaction tx, ClauseBuilder clause) {
+        return call(tx, r -> r.findWithCondition(clause));
+    }
+
+    public CompletableFuture<Page<E>> findWithCondition(ClauseBuilder clause, PageRequest request) {
+        return call(r -> r.findWithCondition(clause, request));
+    }
+
+    public CompletableFuture<Page<E>> findWithCondition(AsyncTransaction tx, ClauseBuilder clause,
+            PageRequest request) {
+        return call(tx, r -> r.findWithCondition(clause, request));
+    }
+
+    public CompletableFuture<Integer> count() {
+        return call(AbstractRepository::count);
+    }
+
+    public CompletableFuture<Integer> count(AsyncTransaction tx) {
+        return call(tx, AbstractRepository::count);
+    }
+
+    public CompletableFuture<Boolean> isExist(K key) {
+        return call(r -> r.isExist(key));
+    }
+
+    public CompletableFuture<Boolean> isExist(AsyncTransaction tx, K key) {
+        return call(tx, r -> r.isExist(key));
+    }
+
+    public CompletableFuture<E> save(E entity) {
+        return call(r -> r.save(entity));
+    }
+
+    public CompletableFuture<E> save(AsyncTransaction tx, E entity) {
+        return call(tx, r -> r.save(entity));
+    }
+
+    public CompletableFuture<Iterable<E>> saveAll(Iterable<E> entities) {
+        return call(r -> r.saveAll(entities));
+    }
+
+    public CompletableFuture<Iterable<E>> saveAll(AsyncTransaction tx, Iterable<E> entities) {
+        return call(tx, r -> r.saveAll(entities));
+    }
+
+    public CompletableFuture<E> update(E entity) {
+        return call(r -> r.update(entity));
+    }
+
+    public CompletableFuture<E> update(AsyncTransaction tx, E entity) {
+        return call(tx, r -> r.update(entity));
+    }
+
+    public CompletableFuture<Void> deleteById(K key) {
+        return call(r -> {
+            r.deleteById(key);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteById(AsyncTransaction tx, K key) {
+        return call(tx, r -> {
+            r.deleteById(key);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteWithCondition(ClauseBuilder clause) {
+        return call(r -> {
+            r.deleteWithCondition(clause);
+            return null;
+        });
+    }
+
+    public CompletableFuture<Void> deleteWithCondition(AsyncTransaction tx, ClauseBuilder clause) {
+        return call(tx, r -> {
+            r.deleteWithCondition(clause);
+            return null;
+        });
+    }
+}
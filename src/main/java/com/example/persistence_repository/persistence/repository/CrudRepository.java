@@ -30,6 +30,8 @@ public interface CrudRepository<E, K> {
 
     E findById(K key);
 
+    Iterable<E> findAllById(Iterable<K> keys);
+
     E update(E entity) throws SQLException;
 
     boolean isExist(K key);
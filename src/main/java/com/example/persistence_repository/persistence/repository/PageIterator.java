@@ -0,0 +1,166 @@
+package com.example.persistence_repository.persistence.repository;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.CompletableFuture;
+
+import com.example.persistence_repository.persistence.config.AsyncExecutor;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.config.Workload;
+
+/**
+ * Walks the pages of a query one after another, fetching the next pages in
+ * the background while the caller processes the current one.
+ * <p>
+ * Pages are read one at a time, in order, each in a transaction of its own on
+ * a connection of the {@link AsyncExecutor}; up to {@code depth} pages are
+ * kept ready beyond the one returned by {@link #next()}, and with a depth of 0
+ * a page is only read when {@link #hasNext()} asks for it. The walk ends at the
+ * first page shorter than the page size (or when a fetch fails, which is
+ * logged by the repository). {@link #hasNext()} waits for the next page when
+ * it is not there yet. Fetches run as the {@link Workload} of the code that
+ * created the iterator.
+ * </p>
+ * <p>
+ * {@link #close()} stops the walk: pages not started are never fetched, and a
+ * page being read finishes in the background and is dropped. Entities come
+ * from other transactions, so lazy relations load in the transaction of the
+ * thread touching them.
+ * </p>
+ *
+ * <pre>
+ * try (PageIterator&lt;RequestLog&gt; pages = logRepository.iterateByKey(clause, "LogID", 500)) {
+ *     while (pages.hasNext()) {
+ *         export(pages.next());
+ *     }
+ * }
+ * </pre>
+ *
+ * @param <E> the type of entity
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class PageIterator<E> implements Iterator<List<E>>, AutoCloseable {
+
+    /**
+     * Reads page {@code index} (0 for the first one) of the walk.
+     */
+    @FunctionalInterface
+    interface PageFetcher<E> {
+        /**
+         * @param previous the page before, null for the first one
+         */
+        List<E> fetch(List<E> previous, int index) throws Exception;
+    }
+
+    private final AsyncExecutor executor;
+    private final int pageSize;
+    private final int depth;
+    private final PageFetcher<E> fetcher;
+    // Workload of the code that started the walk, kept by every fetch
+    private final Workload workload = TransactionManager.currentWorkload();
+
+    // Pages requested and not returned yet, in order; a null page ends the walk
+    private final Deque<CompletableFuture<List<E>>> ahead = new ArrayDeque<>();
+    private CompletableFuture<List<E>> last;
+    private int requested;
+    private volatile boolean closed;
+
+    PageIterator(AsyncExecutor executor, int pageSize, int depth, PageFetcher<E> fetcher) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be greater than 0");
+        }
+        if (depth < 0) {
+            throw new IllegalArgumentException("Prefetch depth must not be negative");
+        }
+        this.executor = executor;
+        this.pageSize = pageSize;
+        this.depth = depth;
+        this.fetcher = fetcher;
+        fill();
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed) {
+            return false;
+        }
+        if (ahead.isEmpty()) {
+            request();
+        }
+        CompletableFuture<List<E>> head = ahead.peekFirst();
+        List<E> page = head.join();
+        if (page == null || page.isEmpty()) {
+            close();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * @return the next page, never empty
+     * @throws java.util.concurrent.CompletionException if the fetch was
+     *                                                  rejected by the
+     *                                                  executor
+     */
+    @Override
+    public List<E> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        List<E> page = ahead.pollFirst().join();
+        fill();
+        return page;
+    }
+
+    /**
+     * @return the page size of the walk
+     */
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    /**
+     * @return pages fetched ahead of the one being processed
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    /**
+     * Stops the walk; further pages are not fetched.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        for (CompletableFuture<List<E>> page : ahead) {
+            page.cancel(false);
+        }
+        ahead.clear();
+    }
+
+    private void fill() {
+        while (!closed && ahead.size() < depth) {
+            request();
+        }
+    }
+
+    private void request() {
+        int index = requested++;
+        CompletableFuture<List<E>> page;
+        if (last == null) {
+            page = executor.submit(workload, () -> fetcher.fetch(null, index));
+        } else {
+            page = last.thenCompose(previous -> closed || previous == null || previous.size() < pageSize
+                    ? CompletableFuture.completedFuture(null)
+                    : executor.submit(workload, () -> fetcher.fetch(previous, index)));
+        }
+        last = page;
+        ahead.addLast(page);
+    }
+}
@@ -0,0 +1,597 @@
+package com.example.persistence_repository.persistence.repository;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import com.example.persistence_repository.persistence.config.ConcurrencyLimiter;
+import com.example.persistence_repository.persistence.config.ConnectionPool;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.config.VirtualThreads;
+import com.example.persistence_repository.persistence.config.Workload;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
+import com.example.persistence_repository.persistence.query.common.Order;
+import com.example.persistence_repository.persistence.query.common.Page;
+import com.example.persistence_repository.persistence.query.common.PageRequest;
+
+/**
+ * Repository over a table split across several databases (shards) that all
+ * hold the same schema.
+ * <p>
+ * Each row lives on the shard chosen by hashing its shard key: the
+ * {@code @Key} field by default, or another column given at construction.
+ * Operations with a known shard key ({@link #save}, {@link #update}, and
+ * {@link #findById} / {@link #deleteById} when sharding by key) go to that
+ * shard only; everything else is scattered to all shards in parallel and the
+ * results gathered. Paged queries ask every shard for its first
+ * {@code page * size} rows, merge-sort them on the requested {@link Order}s
+ * and cut the page out of the merged list, so offsets and limits apply to the
+ * whole table.
+ * </p>
+ * <p>
+ * The merge compares the sort values in Java, and is only correct if that
+ * agrees with the order each shard sorted its rows in. Numbers, dates and
+ * other values compare as in the database; strings compare with
+ * {@link #setCollation(Comparator)}, by default char by char, which matches
+ * a binary collation ({@code utf8mb4_bin}) only. Columns of a case- or
+ * accent-insensitive collation that pages are sorted on need a matching
+ * comparator, e.g. a {@link java.text.Collator} of strength
+ * {@code PRIMARY} for MySQL's {@code utf8mb4_0900_ai_ci}, else rows of
+ * different shards may interleave in the wrong order.
+ * </p>
+ *
+ * <h3>Transactions</h3>
+ * Every shard operation runs in its own transaction on a connection of that
+ * shard's {@link ConnectionPool}, committed before the call returns; it never
+ * joins the caller's transaction, and a write spanning shards is not atomic.
+ * Shard transactions bypass the shared caches, since the same table name and
+ * keys exist on every shard. {@code EAGER} relations are loaded inside the
+ * shard transaction, so the tables they point to must exist on every shard.
+ * The shard transactions of one operation share one slot of the concurrency
+ * limiter: the caller's transaction's, or one taken before any shard
+ * connection is borrowed.
+ *
+ * <p>
+ * The shard key must not change once a row is saved, and the number of
+ * shards must not change without moving the rows.
+ * </p>
+ *
+ * <pre>
+ * ShardedRepository&lt;RequestLog, Long&gt; logs = new ShardedRepository&lt;&gt;(RequestLog.class, pools);
+ * logs.save(log);
+ * Page&lt;RequestLog&gt; page = logs.findWithCondition(clause,
+ *         PageRequest.of(1, 20, Sort.by(Order.desc("ActionDate"))));
+ * </pre>
+ *
+ * @param <E> the type of entity
+ * @param <K> the type of the primary key
+ *
+ * @author Kepter
+ * @author Nguyen Anh Tu
+ * @since 1.0
+ */
+public class ShardedRepository<E, K> implements CrudRepository<E, K> {
+
+    private static final ExecutorService SHARD_EXECUTOR = newExecutor();
+
+    /**
+     * Work done on one shard, inside its transaction.
+     */
+    @FunctionalInterface
+    private interface ShardTask<T, E, K> {
+        T run(AbstractRepository<E, K> repository) throws SQLException;
+    }
+
+    /**
+     * Work done on one shard with that shard's part of the input.
+     */
+    @FunctionalInterface
+    private interface BatchTask<B, T, E, K> {
+        T run(AbstractRepository<E, K> repository, B batch) throws SQLException;
+    }
+
+    @FunctionalInterface
+    private interface ShardQuery<T> {
+        T run() throws SQLException;
+    }
+
+    private final Class<E> cls;
+    private final EntityMeta<E> entityMeta;
+    private final AbstractRepository<E, K> repository;
+    private final List<ConnectionPool> shards;
+    private final Field shardField;
+    private final Field keyField;
+    private final ExecutorService executor;
+    // orders string sort values in merged pages, as the shards' collation does
+    private Comparator<? super String> collation = Comparator.naturalOrder();
+
+    /**
+     * Shards by the {@code @Key} field.
+     *
+     * @param shards one pool per shard; the order defines the shard numbers
+     */
+    public ShardedRepository(Class<E> cls, List<ConnectionPool> shards) {
+        this(cls, null, shards, SHARD_EXECUTOR);
+    }
+
+    /**
+     * @param shardColumn column (or field name) whose value picks the shard;
+     *                    null for the {@code @Key} field
+     * @param shards      one pool per shard; the order defines the shard
+     *                    numbers
+     */
+    public ShardedRepository(Class<E> cls, String shardColumn, List<ConnectionPool> shards) {
+        this(cls, shardColumn, shards, SHARD_EXECUTOR);
+    }
+
+    /**
+     * @param executor runs the shard operations; each blocks on JDBC for its
+     *                 whole duration
+     */
+    public ShardedRepository(Class<E> cls, String shardColumn, List<ConnectionPool> shards,
+            ExecutorService executor) {
+        if (shards.isEmpty()) {
+            throw new IllegalArgumentException("At least one shard is required");
+        }
+        this.cls = cls;
+        this.repository = new SimpleRepository<>(cls);
+        this.entityMeta = EntityMeta.scanAnnotation(cls);
+        this.keyField = entityMeta.getKeyField();
+        if (keyField == null) {
+            throw new IllegalStateException("Entity without primary key @Key");
+        }
+        this.shardField = shardColumn == null ? keyField : field(shardColumn);
+        this.shards = List.copyOf(shards);
+        this.executor = executor;
+    }
+
+    /**
+     * Sets how string values are ordered when pages of several shards are
+     * merged; it must sort as the collation of the sort columns on the
+     * shards. Defaults to {@link String#compareTo}, which matches binary
+     * collations only.
+     *
+     * @param collation e.g. {@link String#CASE_INSENSITIVE_ORDER} for a
+     *                  case-insensitive collation
+     */
+    public void setCollation(Comparator<? super String> collation) {
+        if (collation == null) {
+            throw new IllegalArgumentException("Collation must not be null");
+        }
+        this.collation = collation;
+    }
+
+    /**
+     * @return the shard holding rows whose shard key is {@code value}
+     */
+    public int shardOf(Object value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Shard key of " + cls.getName() + " must not be null");
+        }
+        // murmur3 finalizer: spreads sequential ids evenly
+        int h = value.hashCode();
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return Math.floorMod(h, shards.size());
+    }
+
+    public int getShardCount() {
+        return shards.size();
+    }
+
+    @Override
+    public E save(E entity) throws SQLException {
+        return call(shardOf(read(shardField, entity)), r -> r.save(entity));
+    }
+
+    /**
+     * Saves the entities, one batch per shard.
+     *
+     * @return the saved entities, grouped by shard
+     */
+    @Override
+    public Iterable<E> saveAll(Iterable<E> entities) throws SQLException {
+        Map<Integer, List<E>> byShard = new LinkedHashMap<>();
+        for (E entity : entities) {
+            byShard.computeIfAbsent(shardOf(read(shardField, entity)), s -> new ArrayList<>()).add(entity);
+        }
+        List<E> saved = new ArrayList<>();
+        for (Iterable<E> part : scatter(byShard, (r, batch) -> r.saveAll(batch))) {
+            if (part != null) {
+                part.forEach(saved::add);
+            }
+        }
+        return saved;
+    }
+
+    @Override
+    public E update(E entity) throws SQLException {
+        return call(shardOf(read(shardField, entity)), r -> r.update(entity));
+    }
+
+    @Override
+    public E findById(K key) {
+        if (shardField == keyField) {
+            return query(() -> call(shardOf(key), r -> r.findById(key)));
+        }
+        for (E entity : query(() -> scatter(r -> r.findById(key)))) {
+            if (entity != null) {
+                return entity;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return the entities found, in key order
+     */
+    @Override
+    public Iterable<E> findAllById(Iterable<K> keys) {
+        Map<Integer, List<K>> byShard = new LinkedHashMap<>();
+        List<K> all = new ArrayList<>();
+        for (K key : keys) {
+            all.add(key);
+            if (shardField == keyField) {
+                byShard.computeIfAbsent(shardOf(key), s -> new ArrayList<>()).add(key);
+            }
+        }
+        if (shardField != keyField) {
+            for (int i = 0; i < shards.size(); i++) {
+                byShard.put(i, all);
+            }
+        }
+        Map<Object, E> found = new HashMap<>();
+        for (Iterable<E> part : query(() -> scatter(byShard, (r, batch) -> r.findAllById(batch)))) {
+            if (part != null) {
+                part.forEach(e -> found.putIfAbsent(read(keyField, e), e));
+            }
+        }
+        List<E> result = new ArrayList<>();
+        for (K key : all) {
+            E entity = found.get(key);
+            if (entity != null) {
+                result.add(entity);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public boolean isExist(K key) {
+        return findById(key) != null;
+    }
+
+    @Override
+    public void deleteById(K key) throws SQLException {
+        if (shardField == keyField) {
+            call(shardOf(key), r -> {
+                r.deleteById(key);
+                return null;
+            });
+        } else {
+            scatter(r -> {
+                r.deleteById(key);
+                return null;
+            });
+        }
+    }
+
+    @Override
+    public void deleteWithCondition(ClauseBuilder clause) throws SQLException {
+        scatter(r -> {
+            r.deleteWithCondition(clause);
+            return null;
+        });
+    }
+
+    @Override
+    public int count() {
+        int total = 0;
+        for (Integer count : query(() -> scatter(AbstractRepository::count))) {
+            total += count;
+        }
+        return total;
+    }
+
+    @Override
+    public Iterable<E> findAll() {
+        return concat(query(() -> scatter(AbstractRepository::findAll)));
+    }
+
+    @Override
+    public Iterable<E> findWithCondition(ClauseBuilder clause) {
+        return concat(query(() -> scatter(r -> r.findWithCondition(clause))));
+    }
+
+    /**
+     * Finds one page of the rows matching {@code clause} on all shards,
+     * sorted by the request's {@link Order}s (unsorted requests list shard 0
+     * first, then shard 1, and so on). The total counts all shards.
+     */
+    public Page<E> findWithCondition(ClauseBuilder clause, PageRequest request) {
+        PageRequest window = window(request);
+        return gather(request, query(() -> scatter(r -> r.findWithCondition(clause, window))));
+    }
+
+    /**
+     * Finds one page of all rows; see
+     * {@link #findWithCondition(ClauseBuilder, PageRequest)}.
+     */
+    public Page<E> findAll(PageRequest request) {
+        PageRequest window = window(request);
+        return gather(request, query(() -> scatter(r -> r.findAll(window))));
+    }
+
+    // the first page * size rows of one shard, which hold every row a shard
+    // can contribute to the requested page
+    private static PageRequest window(PageRequest request) {
+        int size = Math.multiplyExact(request.getPageNumber(), request.getPageSize());
+        return request.getSort() == null ? PageRequest.of(1, size) : PageRequest.of(1, size, request.getSort());
+    }
+
+    private Page<E> gather(PageRequest request, List<Page<E>> pages) {
+        long total = 0;
+        List<List<E>> runs = new ArrayList<>();
+        for (Page<E> page : pages) {
+            total += page.getTotalElements();
+            List<E> run = new ArrayList<>();
+            if (page.getContent() != null) {
+                page.getContent().forEach(run::add);
+            }
+            runs.add(run);
+        }
+        List<E> merged = merge(runs, comparator(request));
+        int offset = (request.getPageNumber() - 1) * request.getPageSize();
+        int from = Math.min(offset, merged.size());
+        int to = Math.min(offset + request.getPageSize(), merged.size());
+        return new Page<>(total, request, new ArrayList<>(merged.subList(from, to)));
+    }
+
+    /**
+     * K-way merge of runs already sorted by {@code order}; with no order the
+     * runs are concatenated.
+     */
+    private static <T> List<T> merge(List<List<T>> runs, Comparator<T> order) {
+        List<T> merged = new ArrayList<>();
+        if (order == null) {
+            runs.forEach(merged::addAll);
+            return merged;
+        }
+        // heads of the runs: {run, position}; ties go to the lower shard
+        PriorityQueue<int[]> heads = new PriorityQueue<>((a, b) -> {
+            int c = order.compare(runs.get(a[0]).get(a[1]), runs.get(b[0]).get(b[1]));
+            return c != 0 ? c : Integer.compare(a[0], b[0]);
+        });
+        for (int i = 0; i < runs.size(); i++) {
+            if (!runs.get(i).isEmpty()) {
+                heads.add(new int[] { i, 0 });
+            }
+        }
+        while (!heads.isEmpty()) {
+            int[] head = heads.poll();
+            List<T> run = runs.get(head[0]);
+            merged.add(run.get(head[1]));
+            if (++head[1] < run.size()) {
+                heads.add(head);
+            }
+        }
+        return merged;
+    }
+
+    /**
+     * Orders entities as the database did: on the column values (after
+     * conversion), strings by {@link #collation}, nulls first in ascending
+     * order.
+     */
+    private Comparator<E> comparator(PageRequest request) {
+        if (request.getSort() == null || request.getSort().getOrders() == null
+                || request.getSort().getOrders().isEmpty()) {
+            return null;
+        }
+        Comparator<E> result = null;
+        for (Order order : request.getSort().getOrders()) {
+            Field field = field(order.getColumn());
+            Comparator<? super String> strings = collation;
+            Comparator<E> next = (a, b) -> compareValues(column(field, a), column(field, b), strings);
+            if (!order.isAscending()) {
+                next = next.reversed();
+            }
+            result = result == null ? next : result.thenComparing(next);
+        }
+        return result;
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static int compareValues(Object a, Object b, Comparator<? super String> strings) {
+        if (a == null || b == null) {
+            return a == null ? (b == null ? 0 : -1) : 1;
+        }
+        if (a instanceof String x && b instanceof String y) {
+            return strings.compare(x, y);
+        }
+        if (a instanceof Number && b instanceof Number && a.getClass() != b.getClass()) {
+            return Double.compare(((Number) a).doubleValue(), ((Number) b).doubleValue());
+        }
+        if (a instanceof Comparable) {
+            return ((Comparable) a).compareTo(b);
+        }
+        return a.toString().compareTo(b.toString());
+    }
+
+    private Object column(Field field, E entity) {
+        return entityMeta.getColnumValue(read(field, entity), field);
+    }
+
+    private Field field(String column) {
+        for (Field field : entityMeta.getFields()) {
+            String name = entityMeta.getColnumName(field.getName());
+            if (column.equalsIgnoreCase(name) || column.equals(field.getName())) {
+                return field;
+            }
+        }
+        throw new IllegalArgumentException("Column " + column + " is not mapped on " + cls.getName());
+    }
+
+    private Object read(Field field, E entity) {
+        try {
+            field.setAccessible(true);
+            return field.get(entity);
+        } catch (IllegalAccessException e) {
+            throw new IllegalStateException("Cannot read " + field.getName() + " of " + cls.getName(), e);
+        }
+    }
+
+    private static <T> List<T> concat(List<Iterable<T>> parts) {
+        List<T> result = new ArrayList<>();
+        for (Iterable<T> part : parts) {
+            if (part != null) {
+                part.forEach(result::add);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Runs {@code task} on one shard.
+     */
+    private <T> T call(int shard, ShardTask<T, E, K> task) throws SQLException {
+        Workload workload = TransactionManager.currentWorkload();
+        return admitted(permit -> List.of(executor.submit(() -> inShard(shard, workload, permit, task)))).get(0);
+    }
+
+    /**
+     * Runs {@code task} on every shard in parallel.
+     *
+     * @return the results, by shard
+     */
+    private <T> List<T> scatter(ShardTask<T, E, K> task) throws SQLException {
+        Workload workload = TransactionManager.currentWorkload();
+        return admitted(permit -> {
+            List<Future<T>> futures = new ArrayList<>(shards.size());
+            for (int i = 0; i < shards.size(); i++) {
+                int shard = i;
+                futures.add(executor.submit(() -> inShard(shard, workload, permit, task)));
+            }
+            return futures;
+        });
+    }
+
+    /**
+     * Runs {@code task} in parallel on the shards of {@code batches}, with
+     * each shard's own batch.
+     */
+    private <B, T> List<T> scatter(Map<Integer, B> batches, BatchTask<B, T, E, K> task) throws SQLException {
+        Workload workload = TransactionManager.currentWorkload();
+        return admitted(permit -> {
+            List<Future<T>> futures = new ArrayList<>(batches.size());
+            for (Map.Entry<Integer, B> e : batches.entrySet()) {
+                B batch = e.getValue();
+                futures.add(executor.submit(() -> inShard(e.getKey(), workload, permit, r -> task.run(r, batch))));
+            }
+            return futures;
+        });
+    }
+
+    /**
+     * Runs the shard transactions {@code submit} starts under one slot of the
+     * concurrency limiter and waits for them: the slot of the caller's
+     * transaction if it has one, else a slot taken here, before any shard
+     * connection is borrowed, and released once they have all ended.
+     */
+    private <T> List<T> admitted(Function<ConcurrencyLimiter.Permit, List<Future<T>>> submit)
+            throws SQLException {
+        ConcurrencyLimiter.Permit parent = TransactionManager.currentPermit();
+        ConcurrencyLimiter.Permit permit = parent != null ? parent : TransactionManager.acquirePermit();
+        try {
+            return await(submit.apply(permit));
+        } finally {
+            if (permit != null && permit != parent) {
+                permit.release();
+            }
+        }
+    }
+
+    private <T> T inShard(int shard, Workload workload, ConcurrencyLimiter.Permit permit, ShardTask<T, E, K> task)
+            throws SQLException {
+        ConnectionPool pool = shards.get(shard);
+        Connection connection = pool.borrow(workload);
+        try {
+            TransactionManager.beginTransaction(connection, permit);
+            TransactionManager.setWorkload(workload);
+            T result;
+            try {
+                TransactionManager.bypassSharedCaches();
+                result = task.run(repository);
+            } catch (SQLException | RuntimeException e) {
+                TransactionManager.rollback();
+                throw e;
+            }
+            TransactionManager.commit();
+            return result;
+        } finally {
+            pool.release(connection);
+        }
+    }
+
+    private static ExecutorService newExecutor() {
+        if (VirtualThreads.isEnabled()) {
+            return VirtualThreads.newExecutor();
+        }
+        AtomicInteger count = new AtomicInteger();
+        return Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "shard-worker-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private static <T> List<T> await(List<Future<T>> futures) throws SQLException {
+        List<T> results = new ArrayList<>(futures.size());
+        try {
+            for (Future<T> future : futures) {
+                results.add(future.get());
+            }
+            return results;
+        } catch (ExecutionException e) {
+            futures.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof SQLException sql) {
+                throw sql;
+            }
+            if (cause instanceof RuntimeException runtime) {
+                throw runtime;
+            }
+            throw new IllegalStateException("Shard operation failed", cause);
+        } catch (InterruptedException e) {
+            futures.forEach(f -> f.cancel(true));
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the shards", e);
+        }
+    }
+
+    // reads have no checked exception in CrudRepository
+    private static <T> T query(ShardQuery<T> query) {
+        try {
+            return query.run();
+        } catch (SQLException e) {
+            throw new IllegalStateException("Shard query failed", e);
+        }
+    }
+}
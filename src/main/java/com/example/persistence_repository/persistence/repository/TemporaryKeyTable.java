@@ -0,0 +1,128 @@
+package com.example.persistence_repository.persistence.repository;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.example.persistence_repository.persistence.config.Dialect;
+import com.example.persistence_repository.persistence.config.RepositoryConfig;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+
+/**
+ * Stages a (large) key collection in a session-scoped temporary table.
+ * <p>
+ * Instead of binding tens of thousands of values through
+ * {@code column IN (?, ?, ...)}, the keys are bulk-loaded with batched
+ * inserts into a one-column temporary table which the caller then joins (or
+ * semi-joins) against. The SQL stays constant-size and the database is free
+ * to pick a hash or merge join.
+ * </p>
+ * <p>
+ * Tables are created on the current transaction connection and dropped
+ * as part of the transaction, whether it commits or rolls back: H2 drops them
+ * itself ({@code ON COMMIT DROP}, which also applies on rollback), MySQL
+ * drops them just before the commit or rollback
+ * ({@link TransactionManager#registerBeforeCompletion(Runnable)}), since
+ * {@code DROP TEMPORARY TABLE} does not end the transaction. Other databases
+ * drop them after it and commit the drop, so no implicit transaction is left
+ * open on the connection.
+ * </p>
+ */
+final class TemporaryKeyTable {
+    /** Name of the single column holding the staged keys. */
+    static final String KEY_COLUMN = "stage_key";
+
+    private static final int BATCH_SIZE = 1000;
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+
+    private TemporaryKeyTable() {
+    }
+
+    /**
+     * Creates a temporary table on the transaction connection and loads the
+     * distinct non-null keys into it.
+     *
+     * @param sqlType DDL type of the key column (e.g. {@code BIGINT})
+     * @param keys    keys to stage
+     * @return name of the created temporary table
+     * @throws SQLException if creating or loading the table fails
+     */
+    static String stage(String sqlType, Collection<?> keys) throws SQLException {
+        Connection connection = TransactionManager.getConnection();
+        Dialect dialect = Dialect.of(connection);
+        String table = "tmp_keys_" + SEQUENCE.incrementAndGet();
+
+        try (Statement st = connection.createStatement()) {
+            AbstractRepository.timed(() -> st.execute(createSql(dialect, table, sqlType)));
+        }
+        if (dialect == Dialect.MYSQL) {
+            TransactionManager.registerBeforeCompletion(() -> drop(connection, dialect, table));
+        } else if (dialect != Dialect.H2) {
+            TransactionManager.registerCleanup(() -> {
+                drop(connection, dialect, table);
+                commitDrop(connection);
+            });
+        }
+
+        Set<Object> distinct = new LinkedHashSet<>(keys);
+        distinct.remove(null);
+        String insert = "INSERT INTO " + table + " (" + KEY_COLUMN + ") VALUES (?)";
+        if (RepositoryConfig.PRINT_SQL) {
+            System.out.println("Generated Query: " + insert + " [batch x" + distinct.size() + "]");
+        }
+        try (PreparedStatement ps = connection.prepareStatement(insert)) {
+            int pending = 0;
+            for (Object key : distinct) {
+                ps.setObject(1, key);
+                ps.addBatch();
+                if (++pending == BATCH_SIZE) {
+                    AbstractRepository.timed(ps::executeBatch);
+                    pending = 0;
+                }
+            }
+            if (pending > 0) {
+                AbstractRepository.timed(ps::executeBatch);
+            }
+        }
+        return table;
+    }
+
+    private static String createSql(Dialect dialect, String table, String sqlType) {
+        String columns = " (" + KEY_COLUMN + " " + sqlType + " NOT NULL PRIMARY KEY)";
+        switch (dialect) {
+            case H2:
+                // TRANSACTIONAL: do not commit the surrounding transaction;
+                // dropped when the transaction commits or rolls back
+                return "CREATE LOCAL TEMPORARY TABLE " + table + columns + " ON COMMIT DROP TRANSACTIONAL";
+            case MYSQL:
+            default:
+                return "CREATE TEMPORARY TABLE " + table + columns;
+        }
+    }
+
+    private static void drop(Connection connection, Dialect dialect, String table) {
+        String sql = dialect == Dialect.MYSQL
+                ? "DROP TEMPORARY TABLE IF EXISTS " + table
+                : "DROP TABLE IF EXISTS " + table;
+        try (Statement st = connection.createStatement()) {
+            st.execute(sql);
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+
+    private static void commitDrop(Connection connection) {
+        try {
+            if (!connection.getAutoCommit()) {
+                connection.commit();
+            }
+        } catch (SQLException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.persistence_repository.common.model;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * {@link Feature} table and rows for repository tests.
+ */
+public final class Features {
+
+    private Features() {
+    }
+
+    /**
+     * @return a feature with the given id, URL {@code /f/<id>} and description
+     *         {@code feature <id>}
+     */
+    public static Feature feature(long id) {
+        Feature f = new Feature();
+        f.setFeatureID(id);
+        f.setFeatureURL("/f/" + id);
+        f.setDescription("feature " + id);
+        return f;
+    }
+
+    /**
+     * Drops and recreates the Feature table, then inserts the rows
+     * {@code 1..rows} as built by {@link #feature(long)}.
+     */
+    public static void createTable(Connection conn, int rows) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS Feature");
+            st.execute("CREATE TABLE Feature (FeatureID BIGINT PRIMARY KEY, FeatureURL VARCHAR(255) NOT NULL,"
+                    + " Description VARCHAR(255))");
+        }
+        long[] ids = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            ids[i] = i + 1;
+        }
+        insert(conn, ids);
+    }
+
+    /**
+     * Inserts the rows built by {@link #feature(long)}, in the given order,
+     * without going through a repository.
+     */
+    public static void insert(Connection conn, long... ids) throws SQLException {
+        if (ids.length == 0) {
+            return;
+        }
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO Feature VALUES (?, ?, ?)")) {
+            for (long id : ids) {
+                Feature f = feature(id);
+                ps.setLong(1, f.getFeatureID());
+                ps.setString(2, f.getFeatureURL());
+                ps.setString(3, f.getDescription());
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+}
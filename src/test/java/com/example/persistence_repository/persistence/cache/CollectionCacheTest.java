@@ -0,0 +1,98 @@
+package com.example.persistence_repository.persistence.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.persistence.annotation.Column;
+import com.example.persistence_repository.persistence.annotation.Entity;
+import com.example.persistence_repository.persistence.annotation.Key;
+import com.example.persistence_repository.persistence.annotation.OneToMany;
+import com.example.persistence_repository.persistence.cache.CollectionCache.CollectionKey;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+import com.example.persistence_repository.persistence.entity.relation.RelationshipMeta;
+
+public class CollectionCacheTest {
+
+    @Entity(tableName = "Folder")
+    public static class Folder {
+        @Key
+        @Column(name = "FolderID", type = "BIGINT")
+        private Long folderID;
+
+        @OneToMany(mappedBy = "folderID", joinColumn = "FolderID")
+        private List<Document> documents;
+    }
+
+    @Entity(tableName = "Document")
+    public static class Document {
+        @Key
+        @Column(name = "DocumentID", type = "BIGINT")
+        private Long documentID;
+
+        @Column(name = "FolderID", type = "BIGINT")
+        private Long folderID;
+
+        Document(long documentID, long folderID) {
+            this.documentID = documentID;
+            this.folderID = folderID;
+        }
+    }
+
+    private static CollectionCache cacheWithRole() {
+        CollectionCache cache = new CollectionCache(10, 60_000);
+        RelationshipMeta rel = EntityMeta.scanAnnotation(Folder.class).getRelationships().get(0);
+        cache.registerRole(Folder.class, rel);
+        return cache;
+    }
+
+    private static CollectionKey folder(long id) {
+        return new CollectionKey(Folder.class, id, "documents");
+    }
+
+    @Test
+    public void testInsertInvalidatesOwnerCollectionOnly() {
+        CollectionCache cache = cacheWithRole();
+        cache.put(folder(1), Document.class, cache.version(Document.class), List.of(10L, 11L));
+        cache.put(folder(2), Document.class, cache.version(Document.class), List.of(12L));
+
+        cache.childWritten(new Document(13, 1));
+        assertNull(cache.get(folder(1), Document.class));
+        assertEquals(List.of(12L), cache.get(folder(2), Document.class));
+    }
+
+    @Test
+    public void testLoadRacingAWriteIsDropped() {
+        CollectionCache cache = cacheWithRole();
+        long version = cache.version(Document.class); // đọc trước khi load
+        cache.childWritten(new Document(13, 1));
+        cache.put(folder(1), Document.class, version, List.of(10L, 11L));
+        assertNull(cache.get(folder(1), Document.class));
+    }
+
+    @Test
+    public void testMovedOrDeletedChildFoundThroughReverseIndex() {
+        CollectionCache cache = cacheWithRole();
+        cache.put(folder(1), Document.class, cache.version(Document.class), List.of(10L, 11L));
+
+        cache.childWritten(new Document(10, 2)); // chuyển sang folder 2
+        assertEquals(0, cache.size());
+
+        cache.put(folder(1), Document.class, cache.version(Document.class), List.of(11L));
+        cache.childDeleted(Document.class, 11L);
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testHitAndBulkInvalidation() {
+        CollectionCache cache = cacheWithRole();
+        long version = cache.version(Document.class);
+        cache.put(folder(1), Document.class, version, List.of(10L, 11L));
+        assertEquals(List.of(10L, 11L), cache.get(folder(1), Document.class));
+
+        cache.childClassWritten(Document.class);
+        assertNull(cache.get(folder(1), Document.class));
+    }
+}
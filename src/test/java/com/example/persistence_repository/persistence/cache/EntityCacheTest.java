@@ -0,0 +1,101 @@
+package com.example.persistence_repository.persistence.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.persistence.annotation.Column;
+import com.example.persistence_repository.persistence.annotation.Entity;
+import com.example.persistence_repository.persistence.annotation.Key;
+
+public class EntityCacheTest {
+
+    @Entity(tableName = "Tag")
+    public static class Tag {
+        @Key
+        @Column(name = "TagID", type = "BIGINT")
+        private Long tagID;
+
+        Tag(long tagID) {
+            this.tagID = tagID;
+        }
+    }
+
+    @Entity(tableName = "Code")
+    public static class Code {
+        @Key
+        @Column(name = "Code")
+        private String code;
+
+        Code(String code) {
+            this.code = code;
+        }
+    }
+
+    @Test
+    public void testLongAndOtherKeysShareOneView() {
+        EntityCache cache = EntityCache.defaultCache();
+        Tag tag = new Tag(1);
+        Code code = new Code("VN");
+        cache.put(List.of(tag, code, new Tag(2)));
+
+        assertSame(tag, cache.get(Tag.class, 1L));
+        assertSame(tag, cache.get(EntityKey.of(Tag.class, 1L)));
+        assertSame(code, cache.get(EntityKey.of(Code.class, "VN")));
+        assertNull(cache.get(Code.class, 1L)); // vùng khác lớp
+        assertEquals(3, cache.size());
+        assertEquals(3, cache.getCache().size());
+
+        cache.clear(Tag.class);
+        assertFalse(cache.contains(EntityKey.of(Tag.class, 1L)));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void testNullValueIsNotCachedAndMaxSizeClears() {
+        EntityCache cache = new EntityCache(2, 60_000);
+        cache.put(Tag.class, 1L, new Tag(1));
+        cache.put(Tag.class, 1L, null);
+        assertFalse(cache.contains(EntityKey.of(Tag.class, 1L)));
+
+        cache.put(Tag.class, 1L, new Tag(1));
+        cache.put(Tag.class, 2L, new Tag(2));
+        cache.put(Tag.class, 3L, new Tag(3));
+        assertEquals(1, cache.size());
+        assertNotNull(cache.get(Tag.class, 3L));
+    }
+
+    @Test
+    public void testConcurrentReadersAndWriters() {
+        EntityCache cache = new EntityCache(10_000, 60_000, null);
+        for (long id = 0; id < 1_000; id++) {
+            cache.put(Tag.class, id, new Tag(id));
+        }
+        List<CompletableFuture<Void>> tasks = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            tasks.add(CompletableFuture.runAsync(() -> {
+                for (int round = 0; round < 50; round++) {
+                    for (long id = 0; id < 1_000; id++) {
+                        assertNotNull(cache.get(Tag.class, id));
+                    }
+                }
+            }));
+        }
+        // ghi vào khoá khác trong khi các luồng đọc đang chạy
+        tasks.add(CompletableFuture.runAsync(() -> {
+            for (long id = 1_000; id < 3_000; id++) {
+                cache.put(Tag.class, id, new Tag(id));
+            }
+            for (long id = 1_000; id < 2_000; id++) {
+                cache.remove(Tag.class, id);
+            }
+        }));
+        tasks.forEach(CompletableFuture::join);
+        assertEquals(2_000, cache.size());
+        assertEquals(2_000, cache.getCache().size());
+    }
+}
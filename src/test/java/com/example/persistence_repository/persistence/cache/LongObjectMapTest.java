@@ -0,0 +1,53 @@
+package com.example.persistence_repository.persistence.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class LongObjectMapTest {
+
+    @Test
+    public void testPutGetRemoveAcrossResizes() {
+        LongObjectMap<String> map = new LongObjectMap<>();
+        for (long id = 1; id <= 1000; id++) {
+            assertNull(map.put(id, "v" + id));
+        }
+        assertEquals(1000, map.size());
+        assertEquals("v1", map.put(1, "w1"));
+        assertEquals("w1", map.get(1));
+        assertEquals("v1000", map.get(1000));
+        assertNull(map.get(1001));
+        assertNull(map.get(0)); // 0 là khóa hợp lệ nhưng chưa có
+
+        for (long id = 1; id <= 1000; id += 2) {
+            assertNotNull(map.remove(id));
+        }
+        assertEquals(500, map.size());
+        assertFalse(map.containsKey(999));
+        assertEquals("v998", map.get(998));
+    }
+
+    @Test
+    public void testMatchesHashMapUnderRandomChurn() {
+        // khóa trong khoảng nhỏ để có nhiều va chạm và xóa giữa chuỗi dò
+        LongObjectMap<Long> map = new LongObjectMap<>(4);
+        Map<Long, Long> expected = new HashMap<>();
+        Random random = new Random(42);
+        for (int i = 0; i < 20_000; i++) {
+            long key = random.nextInt(300) - 150;
+            if (random.nextBoolean()) {
+                assertEquals(expected.put(key, (long) i), map.put(key, (long) i));
+            } else {
+                assertEquals(expected.remove(key), map.remove(key));
+            }
+        }
+        assertEquals(expected.size(), map.size());
+        Map<Long, Long> actual = new HashMap<>();
+        map.forEach(actual::put);
+        assertEquals(expected, actual);
+    }
+}
@@ -0,0 +1,50 @@
+package com.example.persistence_repository.persistence.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+public class QueryCacheTest {
+
+    private static final String SQL = "SELECT ProductID FROM Product WHERE Status = ?";
+
+    @Test
+    public void testHitAndTableInvalidation() {
+        QueryCache<List<Object>> cache = new QueryCache<>(10, 60_000);
+        cache.put("Product", SQL, List.of("ACTIVE"), cache.version("Product"), List.of(1L, 2L));
+        cache.put("Category", "SELECT 1", List.of(), cache.version("Category"), List.of(9L));
+
+        assertEquals(List.of(1L, 2L), cache.get("Product", SQL, List.of("ACTIVE")));
+        assertNull(cache.get("Product", SQL, List.of("INACTIVE"))); // khác tham số
+
+        cache.invalidate("PRODUCT");
+        assertNull(cache.get("Product", SQL, List.of("ACTIVE")));
+        assertEquals(List.of(9L), cache.get("Category", "SELECT 1", List.of()));
+    }
+
+    @Test
+    public void testResultOfQueryRacingAWriteIsDropped() {
+        QueryCache<List<Object>> cache = new QueryCache<>(10, 60_000);
+        long version = cache.version("Product"); // đọc trước khi chạy query
+        cache.invalidate("Product"); // ghi xảy ra trong lúc query đang chạy
+        cache.put("Product", SQL, List.of("ACTIVE"), version, List.of(1L));
+        assertNull(cache.get("Product", SQL, List.of("ACTIVE")));
+    }
+
+    @Test
+    public void testSizeAndTtlBounds() throws Exception {
+        QueryCache<List<Object>> cache = new QueryCache<>(2, 60_000);
+        for (int i = 0; i < 3; i++) {
+            cache.put("Product", SQL, List.of(i), cache.version("Product"), List.of((long) i));
+        }
+        assertEquals(2, cache.size());
+        assertNull(cache.get("Product", SQL, List.of(0))); // LRU bị loại
+
+        QueryCache<List<Object>> expiring = new QueryCache<>(10, 0);
+        expiring.put("Product", SQL, List.of(1), expiring.version("Product"), List.of(1L));
+        Thread.sleep(5);
+        assertNull(expiring.get("Product", SQL, List.of(1)));
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.persistence_repository.persistence.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class RefreshAheadTest {
+
+    static class Product {
+    }
+
+    @Test
+    public void testOneRefreshPerKeyAndBoundedQueue() throws Exception {
+        RefreshAhead refresh = new RefreshAhead(1, 1);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            assertTrue(refresh.schedule(EntityKey.of(Product.class, 1L), () -> {
+                started.countDown();
+                try {
+                    release.await(5, TimeUnit.SECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            // cùng khóa đang làm mới: bỏ qua
+            assertFalse(refresh.schedule(EntityKey.of(Product.class, 1L), () -> fail("duplicate refresh")));
+            assertTrue(refresh.schedule(EntityKey.of(Product.class, 2L), () -> {
+            }));
+            // hàng đợi đầy
+            assertFalse(refresh.schedule(EntityKey.of(Product.class, 3L), () -> {
+            }));
+            release.countDown();
+
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (refresh.getPending() > 0 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            RefreshAhead.RefreshStats stats = refresh.stats(Product.class);
+            assertEquals(2, stats.getScheduled());
+            assertEquals(2, stats.getRefreshed());
+            assertEquals(1, stats.getRejected());
+            assertEquals(0, stats.getFailed());
+            assertSame(stats, refresh.getStats().get(Product.class));
+        } finally {
+            refresh.shutdown();
+        }
+    }
+}
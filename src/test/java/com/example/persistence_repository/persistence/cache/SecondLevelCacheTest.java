@@ -0,0 +1,108 @@
+package com.example.persistence_repository.persistence.cache;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static com.example.persistence_repository.common.model.Features.feature;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.cache.offheap.OffHeapEntityStore;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+
+public class SecondLevelCacheTest {
+
+    private static final String URL = "jdbc:h2:mem:l2cache;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    private Connection conn;
+    private SecondLevelCache cache;
+    private RefreshAhead refresh;
+    // connections the refresh threads read on
+    private final List<Connection> used = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(URL, "sa", "");
+        createTable(conn, 0);
+        cache = new SecondLevelCache(new OffHeapEntityStore(1 << 16, 1 << 12, 60_000),
+                () -> DriverManager.getConnection(URL, "sa", ""));
+        refresh = new RefreshAhead(1, 10);
+        cache.enableRefreshAhead(refresh, 1);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        cache.shutdown();
+        conn.close();
+    }
+
+    @Test
+    public void testFailedRefreshRollsBack() throws Exception {
+        cache.register(EntityMeta.scanAnnotation(Feature.class), row -> new Feature(), id -> {
+            Connection connection = TransactionManager.getConnection();
+            used.add(connection);
+            try (Statement st = connection.createStatement()) {
+                st.execute("INSERT INTO Feature VALUES (" + id + ", '/f/" + id + "', 'half-written')");
+            } catch (SQLException e) {
+                throw new IllegalStateException(e);
+            }
+            throw new IllegalStateException("loader failed");
+        });
+        cache.put(feature(1), cache.version(Feature.class));
+        Thread.sleep(5);
+        assertNotNull(cache.get(Feature.class, 1L)); // quá ngưỡng làm mới: lên lịch nạp lại
+
+        RefreshAhead.RefreshStats stats = refresh.stats(Feature.class);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (stats.getFailed() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, stats.getFailed());
+        // lệnh INSERT của lần nạp lỗi không được commit
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM Feature")) {
+            rs.next();
+            assertEquals(0, rs.getInt(1));
+        }
+        assertEquals(1, used.size());
+        assertFalse(used.get(0).isClosed());
+
+        cache.shutdown();
+        assertTrue(used.get(0).isClosed());
+    }
+
+    @Test
+    public void testSnapshotNeedsReplayOrTtl(@TempDir Path dir) {
+        Path file = dir.resolve("l2.snapshot");
+        cache.register(EntityMeta.scanAnnotation(Feature.class), row -> new Feature());
+        cache.put(feature(1), cache.version(Feature.class));
+        assertEquals(1, cache.saveSnapshot(file, List.of()));
+        long[] asked = new long[1];
+
+        // TTL = 0 và không phát lại được: bỏ snapshot
+        SecondLevelCache neverExpires = new SecondLevelCache(new OffHeapEntityStore(1 << 16, 1 << 12));
+        assertEquals(-1, neverExpires.loadSnapshot(file, created -> false));
+        assertEquals(0, neverExpires.getStore().size());
+
+        assertEquals(1, neverExpires.loadSnapshot(file, created -> {
+            asked[0] = created;
+            return true;
+        }));
+        assertTrue(asked[0] > 0 && asked[0] <= System.currentTimeMillis());
+
+        SecondLevelCache expiring = new SecondLevelCache(new OffHeapEntityStore(1 << 16, 1 << 12, 60_000));
+        assertEquals(1, expiring.loadSnapshot(file, created -> false));
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.persistence_repository.persistence.cache;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.Test;
+
+public class SingleFlightTest {
+
+    @Test
+    public void testConcurrentLoadsOfOneKeyRunOnce() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(5_000);
+        AtomicInteger queries = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        try {
+            Future<String> leader = pool.submit(() -> flight.load("product:1", () -> {
+                queries.incrementAndGet();
+                started.countDown();
+                await(release);
+                return "row";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            List<Future<String>> followers = new ArrayList<>();
+            for (int i = 0; i < 7; i++) {
+                followers.add(pool.submit(() -> flight.load("product:1", () -> {
+                    queries.incrementAndGet();
+                    return "other";
+                })));
+            }
+            // để các luồng sau kịp xếp hàng sau lần tải đang chạy
+            Thread.sleep(200);
+            release.countDown();
+
+            assertEquals("row", leader.get(5, TimeUnit.SECONDS));
+            for (Future<String> f : followers) {
+                String value = f.get(5, TimeUnit.SECONDS);
+                assertTrue(value.equals("row") || value.equals("other"));
+            }
+            assertEquals(queries.get(), flight.getLoads());
+            assertEquals(8, flight.getLoads() + flight.getCoalesced());
+            assertTrue(flight.getCoalesced() > 0);
+            assertEquals(0, flight.getInFlight());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testWaiterLoadsItselfAfterTimeout() throws Exception {
+        SingleFlight<String, String> flight = new SingleFlight<>(50);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> slow = pool.submit(() -> flight.load("k", () -> {
+                started.countDown();
+                await(release);
+                return "slow";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            assertEquals("fast", flight.load("k", () -> "fast"));
+            assertEquals(1, flight.getTimeouts());
+            release.countDown();
+            assertEquals("slow", slow.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testReentrantLoadDoesNotWaitOnItself() {
+        SingleFlight<String, String> flight = new SingleFlight<>(5_000);
+        String value = flight.load("a", () -> "outer+" + flight.load("a", () -> "inner"));
+        assertEquals("outer+inner", value);
+        assertEquals(0, flight.getTimeouts());
+    }
+
+    @Test
+    public void testLoadAllClaimsFreeKeysAndAwaitsTheRest() throws Exception {
+        SingleFlight<Long, String> flight = new SingleFlight<>(5_000);
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> other = pool.submit(() -> flight.load(2L, () -> {
+                started.countDown();
+                await(release);
+                return "row2";
+            }));
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+
+            List<Set<Long>> batches = new ArrayList<>();
+            new Thread(() -> {
+                sleep(100);
+                release.countDown();
+            }).start();
+            Map<Long, String> rows = flight.loadAll(List.of(1L, 2L, 3L), keys -> {
+                batches.add(keys);
+                Map<Long, String> loaded = new HashMap<>();
+                for (Long key : keys) {
+                    if (key != 3L) { // 3 không tồn tại
+                        loaded.put(key, "row" + key);
+                    }
+                }
+                return loaded;
+            });
+
+            assertEquals(Map.of(1L, "row1", 2L, "row2"), rows);
+            assertEquals(List.of(Set.of(1L, 3L)), batches);
+            assertEquals(1, flight.getCoalesced());
+            assertEquals("row2", other.get(5, TimeUnit.SECONDS));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
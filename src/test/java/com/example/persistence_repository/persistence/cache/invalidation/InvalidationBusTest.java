@@ -0,0 +1,170 @@
+package com.example.persistence_repository.persistence.cache.invalidation;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.DriverManager;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.persistence.cache.invalidation.InvalidationEvent.Kind;
+
+public class InvalidationBusTest {
+
+    public static class Product {
+    }
+
+    @Test
+    public void testCoalesceFoldsEntityEventsIntoTableEvents() {
+        List<InvalidationEvent> events = List.of(
+                InvalidationEvent.entity(Product.class, "Product", 1L),
+                InvalidationEvent.entity(Product.class, "Product", 1L), // trùng
+                InvalidationEvent.entity(Product.class, "Warehouse", 1L),
+                InvalidationEvent.entity(Product.class, "Warehouse", 2L),
+                InvalidationEvent.entity(Product.class, "Warehouse", 3L), // vượt ngưỡng 2
+                InvalidationEvent.entity(Product.class, "Category", 7L),
+                InvalidationEvent.table(Product.class, "Category"));
+
+        List<InvalidationEvent> batch = InvalidationBus.coalesce(events, 2);
+        assertEquals(3, batch.size());
+        assertTrue(batch.contains(InvalidationEvent.entity(Product.class, "Product", 1L)));
+        assertTrue(batch.contains(InvalidationEvent.table(Product.class, "Warehouse")));
+        assertTrue(batch.contains(InvalidationEvent.table(Product.class, "Category")));
+    }
+
+    @Test
+    public void testEncodeRoundTrip() {
+        for (InvalidationEvent event : List.of(InvalidationEvent.entity(Product.class, "Product", 42L),
+                InvalidationEvent.entity(Product.class, "Product", 7),
+                InvalidationEvent.entity(Product.class, "Product", "a|b"),
+                InvalidationEvent.table(Product.class, "Product"))) {
+            assertEquals(event, InvalidationEvent.decode(event.encode()));
+        }
+    }
+
+    @Test
+    public void testLoopbackDeliversToOtherNodesOnly() {
+        LoopbackTransport transport = new LoopbackTransport();
+        List<InvalidationEvent> receivedByA = new ArrayList<>();
+        List<InvalidationEvent> receivedByB = new ArrayList<>();
+        InvalidationBus a = new InvalidationBus("a", transport, 100, receivedByA::addAll);
+        InvalidationBus b = new InvalidationBus("b", transport, 100, receivedByB::addAll);
+
+        // ngoài transaction: đưa vào outbox ngay
+        a.entityWritten(Product.class, "Product", 1L);
+        a.entityWritten(Product.class, "Product", 1L);
+        a.flush();
+        b.flush();
+
+        assertTrue(receivedByA.isEmpty());
+        assertFalse(receivedByB.isEmpty());
+        assertTrue(receivedByB.stream().allMatch(InvalidationEvent.entity(Product.class, "Product", 1L)::equals));
+        // gộp được hay không tùy luồng gửi đã chạy giữa hai lần ghi hay chưa
+        assertEquals(2, a.getPublishedEvents() + a.getCoalescedEvents());
+        assertEquals(a.getPublishedEvents(), b.getReceivedEvents());
+    }
+
+    @Test
+    public void testFailedPublishIsRetried() throws Exception {
+        LoopbackTransport loopback = new LoopbackTransport();
+        AtomicInteger attempts = new AtomicInteger();
+        // lần publish đầu tiên lỗi, các lần sau đi qua loopback
+        InvalidationTransport flaky = new InvalidationTransport() {
+            @Override
+            public void start(String nodeId, Consumer<List<InvalidationEvent>> listener) {
+                loopback.start(nodeId, listener);
+            }
+
+            @Override
+            public void publish(String nodeId, List<InvalidationEvent> batch) {
+                if (attempts.incrementAndGet() == 1) {
+                    throw new IllegalStateException("database unavailable");
+                }
+                loopback.publish(nodeId, batch);
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        List<InvalidationEvent> receivedByB = new CopyOnWriteArrayList<>();
+        InvalidationBus a = new InvalidationBus("a", flaky, 100, events -> {
+        }, 20, 1_000);
+        new InvalidationBus("b", loopback, 100, receivedByB::addAll);
+
+        a.entityWritten(Product.class, "Product", 1L);
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (receivedByB.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(List.of(InvalidationEvent.entity(Product.class, "Product", 1L)), receivedByB);
+        assertEquals(2, attempts.get());
+        assertEquals(1, a.getFailedPublishes());
+        assertEquals(1, a.getPublishedBatches());
+        assertEquals(0, a.getPendingEvents());
+        a.close();
+    }
+
+    @Test
+    public void testJdbcTransportPollsEventsOfOtherNodes() throws Exception {
+        String url = "jdbc:h2:mem:invalidation;DB_CLOSE_DELAY=-1;MODE=MySQL";
+        JdbcPollingTransport.ConnectionFactory connections = () -> DriverManager.getConnection(url, "sa", "");
+        JdbcPollingTransport nodeA = new JdbcPollingTransport(connections, "cache_invalidation", 60_000, 600_000);
+        JdbcPollingTransport nodeB = new JdbcPollingTransport(connections, "cache_invalidation", 60_000, 600_000);
+        List<InvalidationEvent> receivedByA = new ArrayList<>();
+        List<InvalidationEvent> receivedByB = new ArrayList<>();
+        try {
+            nodeA.start("a", receivedByA::addAll);
+            nodeA.publish("a", List.of(InvalidationEvent.table(Product.class, "Old")));
+            nodeB.start("b", receivedByB::addAll); // sự kiện trước khi start bị bỏ qua
+
+            nodeA.publish("a", List.of(InvalidationEvent.entity(Product.class, "Product", 5L),
+                    InvalidationEvent.table(Product.class, "Warehouse")));
+            assertEquals(2, nodeB.poll());
+            assertEquals(0, nodeB.poll());
+            assertEquals(0, nodeA.poll());
+            assertEquals(Kind.ENTITY, receivedByB.get(0).kind());
+            assertEquals(5L, receivedByB.get(0).id());
+            assertEquals("warehouse", receivedByB.get(1).table());
+            assertTrue(receivedByA.isEmpty());
+        } finally {
+            nodeA.close();
+            nodeB.close();
+        }
+    }
+
+    @Test
+    public void testJdbcTransportReplaysEventsSinceGivenTime() throws Exception {
+        String url = "jdbc:h2:mem:invalidation-replay;DB_CLOSE_DELAY=-1;MODE=MySQL";
+        JdbcPollingTransport.ConnectionFactory connections = () -> DriverManager.getConnection(url, "sa", "");
+        JdbcPollingTransport nodeA = new JdbcPollingTransport(connections, "cache_invalidation", 60_000, 600_000);
+        JdbcPollingTransport restarted = new JdbcPollingTransport(connections, "cache_invalidation", 60_000,
+                600_000);
+        List<InvalidationEvent> received = new ArrayList<>();
+        try {
+            nodeA.start("a", events -> {
+            });
+            nodeA.publish("a", List.of(InvalidationEvent.table(Product.class, "Before")));
+            Thread.sleep(5);
+            long snapshotTime = System.currentTimeMillis();
+            // ghi trong lúc node b đang tắt
+            nodeA.publish("a", List.of(InvalidationEvent.entity(Product.class, "Product", 5L)));
+
+            assertFalse(restarted.replayFrom(snapshotTime - 600_000));
+            assertTrue(restarted.replayFrom(snapshotTime));
+            restarted.start("b", received::addAll);
+            nodeA.publish("a", List.of(InvalidationEvent.table(Product.class, "After")));
+
+            assertEquals(2, restarted.poll());
+            assertEquals(List.of(InvalidationEvent.entity(Product.class, "Product", 5L),
+                    InvalidationEvent.table(Product.class, "After")), received);
+        } finally {
+            nodeA.close();
+            restarted.close();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.example.persistence_repository.persistence.cache.offheap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import com.example.persistence_repository.persistence.annotation.Column;
+import com.example.persistence_repository.persistence.annotation.Entity;
+import com.example.persistence_repository.persistence.annotation.Key;
+import com.example.persistence_repository.persistence.cache.EntityKey;
+
+public class CacheSnapshotTest {
+
+    @Entity(tableName = "Unit")
+    public static class Unit {
+        @Key
+        @Column(name = "UnitID", type = "BIGINT")
+        private Long unitID;
+
+        @Column(name = "UnitName")
+        private String unitName;
+
+        public Unit() {
+        }
+
+        Unit(long unitID, String unitName) {
+            this.unitID = unitID;
+            this.unitName = unitName;
+        }
+    }
+
+    @Entity(tableName = "Zone")
+    public static class Zone {
+        @Key
+        @Column(name = "ZoneID", type = "BIGINT")
+        private Long zoneID;
+
+        public Zone() {
+        }
+
+        Zone(long zoneID) {
+            this.zoneID = zoneID;
+        }
+    }
+
+    private static OffHeapEntityStore filledStore() {
+        OffHeapEntityStore store = new OffHeapEntityStore(8192, 1024);
+        for (long id = 1; id <= 50; id++) {
+            store.put(EntityKey.of(Unit.class, id), new Unit(id, "unit-" + id));
+        }
+        store.put(EntityKey.of(Zone.class, 9L), new Zone(9));
+        return store;
+    }
+
+    @Test
+    public void testSaveAndLoadAllOrChosenClasses(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("l2.snapshot");
+        assertEquals(51, CacheSnapshot.save(filledStore(), file, List.of()));
+
+        OffHeapEntityStore restored = new OffHeapEntityStore(8192, 1024);
+        assertEquals(51, CacheSnapshot.load(restored, file, 60_000));
+        assertEquals("unit-42", ((Unit) restored.get(EntityKey.of(Unit.class, 42L))).unitName);
+        assertNotNull(restored.get(EntityKey.of(Zone.class, 9L)));
+
+        assertEquals(1, CacheSnapshot.save(filledStore(), file, List.of(Zone.class)));
+        OffHeapEntityStore zonesOnly = new OffHeapEntityStore(8192, 1024);
+        assertEquals(1, CacheSnapshot.load(zonesOnly, file, 0));
+        assertFalse(zonesOnly.contains(EntityKey.of(Unit.class, 1L)));
+    }
+
+    @Test
+    public void testChangedSchemaSectionIsSkipped(@TempDir Path dir) throws Exception {
+        Path file = dir.resolve("l2.snapshot");
+        CacheSnapshot.save(filledStore(), file, List.of(Unit.class, Zone.class));
+
+        // đổi fingerprint của section đầu tiên (Unit) như thể cột đã thay đổi
+        byte[] bytes = Files.readAllBytes(file);
+        ByteBuffer buf = ByteBuffer.wrap(bytes);
+        int nameLength = buf.getInt(20);
+        int fingerprintAt = 24 + nameLength;
+        buf.putLong(fingerprintAt, buf.getLong(fingerprintAt) + 1);
+        Files.write(file, bytes);
+
+        OffHeapEntityStore restored = new OffHeapEntityStore(8192, 1024);
+        assertEquals(1, CacheSnapshot.load(restored, file, 0));
+        assertFalse(restored.contains(EntityKey.of(Unit.class, 1L)));
+        assertTrue(restored.contains(EntityKey.of(Zone.class, 9L)));
+    }
+
+    @Test
+    public void testForeignOrStaleFileIsRejected(@TempDir Path dir) throws Exception {
+        Path garbage = dir.resolve("garbage");
+        Files.write(garbage, new byte[64]);
+        assertThrows(IllegalStateException.class,
+                () -> CacheSnapshot.load(new OffHeapEntityStore(8192, 1024), garbage, 0));
+
+        Path file = dir.resolve("l2.snapshot");
+        CacheSnapshot.save(filledStore(), file, List.of());
+        Thread.sleep(5);
+        OffHeapEntityStore restored = new OffHeapEntityStore(8192, 1024);
+        assertThrows(IllegalStateException.class, () -> CacheSnapshot.load(restored, file, 1));
+        assertEquals(0, restored.size());
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.persistence_repository.persistence.cache.offheap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.math.BigDecimal;
+import java.sql.Date;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.enums.AccountStatus;
+import com.example.persistence_repository.common.model.enums.converter.AccountStatusConverter;
+import com.example.persistence_repository.persistence.annotation.Column;
+import com.example.persistence_repository.persistence.annotation.Entity;
+import com.example.persistence_repository.persistence.annotation.Key;
+import com.example.persistence_repository.persistence.cache.EntityKey;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+import com.example.persistence_repository.persistence.entity.convert.Convert;
+
+public class OffHeapEntityStoreTest {
+
+    @Entity(tableName = "Member")
+    public static class Member {
+        @Key
+        @Column(name = "MemberID", type = "BIGINT")
+        private Long memberID;
+
+        @Column(name = "FullName")
+        private String fullName;
+
+        @Column(name = "Birthday", type = "DATE")
+        private Date birthday;
+
+        @Column(name = "CreatedAt", type = "DATETIME")
+        private LocalDateTime createdAt;
+
+        @Column(name = "Balance", type = "DECIMAL")
+        private BigDecimal balance;
+
+        @Convert(converter = AccountStatusConverter.class)
+        @Column(name = "Status")
+        private AccountStatus status;
+
+        public Member() {
+        }
+
+        Member(long memberID, String fullName) {
+            this.memberID = memberID;
+            this.fullName = fullName;
+        }
+    }
+
+    private static EntityKey key(long id) {
+        return EntityKey.of(Member.class, id);
+    }
+
+    @Test
+    public void testRoundTripKeepsValuesAndNulls() {
+        Member member = new Member(1, "Nguyễn Văn A");
+        member.birthday = Date.valueOf("1999-12-31");
+        member.createdAt = LocalDateTime.of(2024, 5, 1, 8, 30, 15, 123_000_000);
+        member.balance = new BigDecimal("-12.50");
+        member.status = AccountStatus.Active;
+
+        OffHeapEntityStore store = new OffHeapEntityStore(4096, 1024);
+        store.put(key(1), member);
+        store.put(key(2), new Member(2, null));
+
+        Member copy = (Member) store.get(key(1));
+        assertNotSame(member, copy);
+        assertEquals(1L, copy.memberID);
+        assertEquals("Nguyễn Văn A", copy.fullName);
+        assertEquals(member.birthday, copy.birthday);
+        assertEquals(member.createdAt, copy.createdAt);
+        assertEquals(member.balance, copy.balance);
+        assertEquals(AccountStatus.Active, copy.status);
+
+        Member empty = (Member) store.get(key(2));
+        assertNull(empty.fullName);
+        assertNull(empty.status);
+        assertNull(store.get(key(3)));
+        assertEquals(2, store.getHitCount());
+        assertEquals(1, store.getMissCount());
+    }
+
+    @Test
+    public void testRegisteredMaterializerReceivesRawRow() {
+        OffHeapEntityStore store = new OffHeapEntityStore(4096, 1024);
+        store.register(EntityMeta.scanAnnotation(Member.class), (Map<String, Object> row) -> {
+            Member member = new Member((Long) row.get("memberid"), "mapped");
+            member.status = AccountStatus.valueOf((String) row.get("status")); // giá trị trước converter
+            return member;
+        });
+        Member member = new Member(7, "raw");
+        member.status = AccountStatus.Active;
+        store.put(key(7), member);
+
+        Member copy = (Member) store.get(key(7));
+        assertEquals("mapped", copy.fullName);
+        assertEquals(AccountStatus.Active, copy.status);
+    }
+
+    @Test
+    public void testBudgetRecyclesOldestSlab() {
+        // 2 slab, mỗi slab chứa được vài dòng
+        OffHeapEntityStore store = new OffHeapEntityStore(256, 128);
+        for (long id = 1; id <= 20; id++) {
+            store.put(key(id), new Member(id, "member-" + id));
+        }
+        assertEquals(256, store.getAllocatedBytes());
+        assertTrue(store.getEvictionCount() > 0);
+        assertNull(store.get(key(1)));
+        assertEquals("member-20", ((Member) store.get(key(20))).fullName);
+        assertEquals(20 - store.getEvictionCount(), store.size());
+    }
+
+    @Test
+    public void testRemoveReplaceAndOversizedRow() {
+        OffHeapEntityStore store = new OffHeapEntityStore(1024, 128);
+        store.put(key(1), new Member(1, "old"));
+        store.put(key(1), new Member(1, "new"));
+        assertEquals("new", ((Member) store.get(key(1))).fullName);
+
+        store.put(key(1), new Member(1, "x".repeat(200))); // lớn hơn một slab
+        assertFalse(store.contains(key(1)));
+
+        store.put(key(2), new Member(2, "b"));
+        store.clear(Member.class);
+        assertEquals(0, store.size());
+    }
+
+    @Test
+    public void testExpiredRowsMissAndOldRowsAskForRefresh() {
+        OffHeapEntityStore store = new OffHeapEntityStore(4096, 1024, 10_000);
+        List<EntityKey> stale = new ArrayList<>();
+        store.setRefreshAhead(7_000, stale::add);
+        byte[] row = store.codec(Member.class).encode(new Member(1, "a"));
+        long now = System.currentTimeMillis();
+        store.putRow(key(1), row, now);
+        store.putRow(key(2), row, now - 8_000); // đã qua ngưỡng làm mới
+        store.putRow(key(3), row, now - 11_000); // đã hết hạn
+
+        assertNotNull(store.get(key(1)));
+        assertNotNull(store.get(key(2)));
+        assertNull(store.get(key(3)));
+        assertEquals(List.of(key(2)), stale);
+        assertEquals(1, store.getExpirationCount());
+        assertFalse(store.contains(key(3)));
+    }
+}
@@ -0,0 +1,83 @@
+package com.example.persistence_repository.persistence.cache.stats;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.persistence.cache.EntityCache;
+import com.example.persistence_repository.persistence.cache.stats.HeavyHitters.HotKey;
+
+public class CacheStatisticsTest {
+
+    static class Product {
+    }
+
+    static class Category {
+    }
+
+    @Test
+    public void testSketchNeverUndercounts() {
+        CountMinSketch sketch = new CountMinSketch(64, 4);
+        Map<Long, Long> exact = new HashMap<>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10_000; i++) {
+            long key = random.nextInt(500);
+            sketch.add(CountMinSketch.hash(key));
+            exact.merge(key, 1L, Long::sum);
+        }
+        assertEquals(64, sketch.getWidth());
+        exact.forEach((key, count) -> assertTrue(sketch.estimate(CountMinSketch.hash(key)) >= count));
+    }
+
+    @Test
+    public void testTopKFindsHotKeysInSkewedStream() {
+        HeavyHitters hitters = new HeavyHitters(3, 256, 4, 0);
+        Random random = new Random(11);
+        for (int i = 0; i < 20_000; i++) {
+            // 3 khóa nóng chiếm phần lớn lưu lượng, phần còn lại rải đều
+            int r = random.nextInt(100);
+            long key = r < 30 ? 1 : r < 50 ? 2 : r < 60 ? 3 : 100 + random.nextInt(5_000);
+            hitters.add(key);
+        }
+        List<HotKey> top = hitters.top();
+        assertEquals(List.of(1L, 2L, 3L), top.stream().map(HotKey::key).toList());
+        assertTrue(top.get(0).count() >= 6_000 * 0.9);
+    }
+
+    @Test
+    public void testEntityCacheReportsPerClass() {
+        CacheStatistics statistics = new CacheStatistics(2, 64, 4);
+        EntityCache cache = new EntityCache(3, 60_000, statistics);
+        Product product = new Product();
+        cache.put(Product.class, 1L, product);
+        cache.put(Category.class, 1L, new Category());
+        cache.get(Product.class, 1L);
+        cache.get(Product.class, 1L);
+        cache.get(Product.class, 2L);
+        cache.put(Product.class, 2L, new Product());
+        cache.put(Product.class, 3L, new Product()); // đầy: xóa toàn bộ
+        statistics.recordLoad(Product.class, 2_000_000);
+        statistics.recordLoad(Product.class, 4_000_000);
+
+        CacheStatsSnapshot products = statistics.snapshot(Product.class);
+        assertEquals(2, products.hits());
+        assertEquals(1, products.misses());
+        assertEquals(3, products.puts());
+        assertEquals(2, products.evictions());
+        assertEquals(2, products.loads());
+        assertEquals(3.0, products.averageLoadMillis(), 1e-9);
+        assertEquals(4_000_000, products.maxLoadNanos());
+        assertEquals(2.0 / 3, products.hitRatio(), 1e-9);
+        assertEquals(1L, products.hotKeys().get(0).key());
+
+        assertEquals(1, statistics.snapshot(Category.class).evictions());
+        assertEquals(List.of(Category.class, Product.class), List.copyOf(statistics.snapshot().keySet()));
+        statistics.reset();
+        assertEquals(0, statistics.snapshot(Product.class).hits());
+    }
+}
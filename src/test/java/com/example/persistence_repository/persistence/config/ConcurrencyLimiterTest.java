@@ -0,0 +1,217 @@
+package com.example.persistence_repository.persistence.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLTransientException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+public class ConcurrencyLimiterTest {
+
+    private static final String URL = "jdbc:h2:mem:limiter;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    @Test
+    public void testLimitGrowsWhenFastAndShrinksWhenSlow() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(4, 1, 10, 50, 0.5, 0);
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ConcurrencyLimiter.Permit permit = limiter.acquire();
+            permit.record(TimeUnit.MILLISECONDS.toNanos(1));
+            permits.add(permit);
+        }
+        assertEquals(4, limiter.getInFlight());
+        permits.forEach(ConcurrencyLimiter.Permit::release);
+        // chỉ những giao dịch chạy khi giới hạn đã dùng quá nửa mới làm tăng giới hạn
+        assertEquals(7, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+
+        ConcurrencyLimiter.Permit slow = limiter.acquire();
+        slow.record(TimeUnit.MILLISECONDS.toNanos(70));
+        slow.record(TimeUnit.MILLISECONDS.toNanos(90));
+        slow.release();
+        slow.release();
+        assertEquals(3, limiter.getLimit());
+        assertEquals(0, limiter.getInFlight());
+    }
+
+    @Test
+    public void testOnlyDatabaseCallsAreMeasured() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 10, 50, 0.5, 0);
+        // không có lệnh nào: giới hạn giữ nguyên
+        limiter.acquire().release();
+        assertEquals(1, limiter.getLimit());
+
+        TransactionManager.setConcurrencyLimiter(limiter);
+        try (Connection conn = DriverManager.getConnection(URL, "sa", "")) {
+            TransactionManager.beginTransaction(conn);
+            try (Statement st = conn.createStatement()) {
+                st.execute("SELECT 1");
+            }
+            Thread.sleep(80); // thời gian của ứng dụng giữa các lệnh không tính
+            TransactionManager.commit();
+            assertEquals(2, limiter.getLimit());
+
+            TransactionManager.beginTransaction(conn);
+            TransactionManager.recordLatency(TimeUnit.MILLISECONDS.toNanos(200));
+            TransactionManager.rollback();
+            assertEquals(1, limiter.getLimit());
+        } finally {
+            TransactionManager.setConcurrencyLimiter(null);
+        }
+    }
+
+    @Test
+    public void testAsyncWorkTakesSlotBeforeConnection() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 1_000, 0.9, 5_000);
+        AsyncExecutor executor = new AsyncExecutor(2, 10, new ConnectionPool("limited", URL, "sa", "", 2, 1_000));
+        TransactionManager.setConcurrencyLimiter(limiter);
+        try {
+            ConcurrencyLimiter.Permit held = limiter.acquire();
+            CompletableFuture<Integer> task = executor.submit(() -> 1);
+            AsyncTransaction tx = executor.begin();
+            CompletableFuture<Integer> step = tx.submit(() -> 2);
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (limiter.getQueued() < 2 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            assertEquals(2, limiter.getQueued());
+            // cả hai đang chờ slot mà chưa mượn kết nối nào
+            assertEquals(0, executor.getPool().getActive());
+
+            held.release();
+            // giao dịch async giữ slot đến khi commit
+            assertEquals(2, step.join());
+            tx.commit().join();
+            assertEquals(1, task.join());
+            assertEquals(0, limiter.getInFlight());
+            assertEquals(0, executor.getPool().getActive());
+        } finally {
+            TransactionManager.setConcurrencyLimiter(null);
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testFullLimitRejectsOrQueues() throws Exception {
+        ConcurrencyLimiter failFast = new ConcurrencyLimiter(1, 1, 1, 1_000, 0.9, 0);
+        ConcurrencyLimiter.Permit held = failFast.acquire();
+        assertThrows(SQLTransientException.class, failFast::acquire);
+        assertEquals(1, failFast.getRejected());
+        held.release();
+        failFast.acquire().release();
+
+        ConcurrencyLimiter queueing = new ConcurrencyLimiter(1, 1, 1, 1_000, 0.9, 5_000);
+        ConcurrencyLimiter.Permit first = queueing.acquire();
+        CompletableFuture<ConcurrencyLimiter.Permit> waiting = CompletableFuture.supplyAsync(() -> {
+            try {
+                return queueing.acquire();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (queueing.getQueued() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, queueing.getQueued());
+        first.release();
+        waiting.join().release();
+        assertEquals(0, queueing.getQueued());
+        assertEquals(0, queueing.getRejected());
+    }
+
+    @Test
+    public void testSlowReleasesShrinkOncePerWindow() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(8, 1, 10, 50, 0.5, 0);
+        List<ConcurrencyLimiter.Permit> permits = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            ConcurrencyLimiter.Permit permit = limiter.acquire();
+            permit.record(TimeUnit.MILLISECONDS.toNanos(100));
+            permits.add(permit);
+        }
+        permits.forEach(ConcurrencyLimiter.Permit::release);
+        // bốn giao dịch chậm cùng lúc chỉ giảm giới hạn một lần
+        assertEquals(4, limiter.getLimit());
+
+        ConcurrencyLimiter.Permit later = limiter.acquire();
+        later.record(TimeUnit.MILLISECONDS.toNanos(100));
+        later.release();
+        assertEquals(2, limiter.getLimit());
+    }
+
+    @Test
+    public void testWaitersAreServedInOrder() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 1_000, 0.9, 5_000);
+        ConcurrencyLimiter.Permit held = limiter.acquire();
+        CompletableFuture<ConcurrencyLimiter.Permit> first = waitFor(limiter, 1);
+        CompletableFuture<ConcurrencyLimiter.Permit> second = waitFor(limiter, 2);
+
+        held.release();
+        // slot được trao thẳng cho người chờ lâu nhất, không ai chen vào được
+        assertEquals(1, limiter.getInFlight());
+        assertEquals(1, limiter.getQueued());
+        ConcurrencyLimiter.Permit firstPermit = first.get(5, TimeUnit.SECONDS);
+        assertFalse(second.isDone());
+        CompletableFuture<ConcurrencyLimiter.Permit> newcomer = waitFor(limiter, 2);
+
+        firstPermit.release();
+        second.get(5, TimeUnit.SECONDS).release();
+        newcomer.get(5, TimeUnit.SECONDS).release();
+        assertEquals(0, limiter.getInFlight());
+        assertEquals(0, limiter.getRejected());
+    }
+
+    @Test
+    public void testOutermostTransactionHoldsOneSlot() throws Exception {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 1_000, 0.9, 0);
+        TransactionManager.setConcurrencyLimiter(limiter);
+        try (Connection first = DriverManager.getConnection(URL, "sa", "");
+                Connection second = DriverManager.getConnection(URL, "sa", "")) {
+            TransactionManager.beginTransaction(first);
+            TransactionManager.beginTransaction();
+            assertEquals(1, limiter.getInFlight());
+
+            CompletableFuture<Void> other = CompletableFuture.runAsync(() -> {
+                try {
+                    TransactionManager.beginTransaction(second);
+                } catch (Exception e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            Exception rejected = assertThrows(Exception.class, other::join);
+            assertInstanceOf(SQLTransientException.class, rejected.getCause().getCause());
+
+            TransactionManager.commit();
+            assertEquals(1, limiter.getInFlight());
+            TransactionManager.rollback();
+            assertEquals(0, limiter.getInFlight());
+            assertFalse(TransactionManager.isActive());
+        } finally {
+            TransactionManager.setConcurrencyLimiter(null);
+        }
+    }
+
+    private static CompletableFuture<ConcurrencyLimiter.Permit> waitFor(ConcurrencyLimiter limiter, int queued)
+            throws InterruptedException {
+        CompletableFuture<ConcurrencyLimiter.Permit> permit = CompletableFuture.supplyAsync(() -> {
+            try {
+                return limiter.acquire();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (limiter.getQueued() < queued && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(queued, limiter.getQueued());
+        return permit;
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.persistence_repository.persistence.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+
+import org.junit.jupiter.api.Test;
+
+public class ConnectionPoolTest {
+
+    private static final String URL = "jdbc:h2:mem:pool;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    @Test
+    public void testLowerClassesCannotTakeReservedConnections() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool("reserved", URL, "sa", "", 4, 50)) {
+            List<Connection> bulk = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                bulk.add(pool.borrow(Workload.BULK));
+            }
+            // 1/4 pool dành riêng cho INTERACTIVE
+            assertThrows(SQLException.class, () -> pool.borrow(Workload.BULK));
+            assertEquals(0, pool.getWaiting(Workload.BULK));
+
+            Connection interactive = pool.borrow(Workload.INTERACTIVE);
+            assertEquals(3, pool.getActive(Workload.BULK));
+            assertEquals(1, pool.getActive(Workload.INTERACTIVE));
+
+            pool.release(interactive);
+            bulk.forEach(pool::release);
+            assertEquals(0, pool.getActive());
+        }
+    }
+
+    @Test
+    public void testReleaseIgnoresConnectionsNotBorrowed() throws SQLException {
+        try (ConnectionPool pool = new ConnectionPool("double-release", URL, "sa", "", 2, 50)) {
+            Connection conn = pool.borrow(Workload.INTERACTIVE);
+            pool.release(conn);
+            pool.release(conn);
+            assertEquals(1, pool.getIdle());
+            assertEquals(0, pool.getActive(Workload.INTERACTIVE));
+
+            // không bao giờ giao cùng một kết nối cho hai người
+            Connection first = pool.borrow(Workload.INTERACTIVE);
+            Connection second = pool.borrow(Workload.INTERACTIVE);
+            assertNotSame(first, second);
+            pool.release(first);
+            pool.release(second);
+            assertEquals(2, pool.getIdle());
+        }
+    }
+
+    @Test
+    public void testWaitersAreServedByWeight() throws Exception {
+        try (ConnectionPool pool = new ConnectionPool("weighted", URL, "sa", "", 1, 5_000)) {
+            Connection held = pool.borrow(Workload.BULK);
+            List<Workload> served = Collections.synchronizedList(new ArrayList<>());
+            List<CompletableFuture<Void>> waiters = new ArrayList<>();
+            waiters.addAll(startWaiters(pool, Workload.BULK, 4, served));
+            waiters.addAll(startWaiters(pool, Workload.INTERACTIVE, 10, served));
+
+            pool.release(held);
+            waiters.forEach(CompletableFuture::join);
+
+            // trọng số 8:1 - BULK vẫn được phục vụ trước khi hết hàng INTERACTIVE
+            List<Workload> expected = new ArrayList<>(Collections.nCopies(9, Workload.INTERACTIVE));
+            expected.addAll(List.of(Workload.BULK, Workload.INTERACTIVE, Workload.BULK, Workload.BULK,
+                    Workload.BULK));
+            assertEquals(expected, served);
+        }
+    }
+
+    @Test
+    public void testAsyncWorkKeepsTheCallerWorkload() throws Exception {
+        AsyncExecutor executor = new AsyncExecutor(1, 10,
+                new ConnectionPool("async-workload", URL, "sa", "", 1, 1_000));
+        try {
+            assertEquals(Workload.INTERACTIVE, TransactionManager.currentWorkload());
+            CompletableFuture<Workload> inBulk = TransactionManager.callAs(Workload.BULK,
+                    () -> executor.submit(() -> {
+                        assertEquals(1, executor.getPool().getActive(Workload.BULK));
+                        return TransactionManager.currentWorkload();
+                    }));
+            assertEquals(Workload.BULK, inBulk.join());
+            assertEquals(Workload.INTERACTIVE, TransactionManager.currentWorkload());
+
+            AsyncTransaction tx = executor.begin(Workload.BACKGROUND);
+            assertEquals(Workload.BACKGROUND, tx.submit(TransactionManager::currentWorkload).join());
+            tx.commit().join();
+            assertEquals(0, executor.getPool().getActive());
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static List<CompletableFuture<Void>> startWaiters(ConnectionPool pool, Workload workload, int count,
+            List<Workload> served) throws InterruptedException {
+        List<CompletableFuture<Void>> waiters = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            CompletableFuture<Void> waiter = new CompletableFuture<>();
+            Thread thread = new Thread(() -> {
+                try {
+                    Connection conn = pool.borrow(workload);
+                    served.add(workload);
+                    pool.release(conn);
+                    waiter.complete(null);
+                } catch (Throwable e) {
+                    waiter.completeExceptionally(e);
+                }
+            });
+            thread.start();
+            waiters.add(waiter);
+        }
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pool.getWaiting(workload) < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(count, pool.getWaiting(workload));
+        return waiters;
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.persistence_repository.persistence.config;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.repository.SimpleRepository;
+
+public class PooledTransactionTest {
+
+    private static final String URL = "jdbc:h2:mem:pooledtx;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    private Connection keepAlive;
+    private ConnectionPool pool;
+    private final SimpleRepository<Feature, Long> features = new SimpleRepository<>(Feature.class);
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        keepAlive = DriverManager.getConnection(URL, "sa", "");
+        createTable(keepAlive, 3);
+        // 4 kết nối, 1 dành riêng cho INTERACTIVE theo cấu hình mặc định
+        pool = new ConnectionPool("pooledtx", URL, "sa", "", 4, 5_000);
+        TransactionManager.setPrimaryPool(pool);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        while (TransactionManager.isActive()) {
+            TransactionManager.rollback();
+        }
+        TransactionManager.setPrimaryPool(null);
+        pool.close();
+        keepAlive.close();
+    }
+
+    @Test
+    public void testBulkWorkCannotTakeTheInteractiveShare() throws Exception {
+        ExecutorService threads = Executors.newFixedThreadPool(4);
+        CountDownLatch done = new CountDownLatch(1);
+        List<Future<Object>> bulk = new ArrayList<>();
+        try {
+            for (int i = 0; i < 4; i++) {
+                bulk.add(threads.submit(() -> TransactionManager.callAs(Workload.BULK, () -> {
+                    TransactionManager.beginTransaction();
+                    try {
+                        features.findById(1L);
+                        done.await(10, TimeUnit.SECONDS);
+                    } finally {
+                        TransactionManager.commit();
+                    }
+                    return null;
+                })));
+            }
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (pool.getWaiting(Workload.BULK) < 1 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(5);
+            }
+            // việc BULK giữ mọi kết nối nó được phép, việc thứ tư phải chờ
+            assertEquals(3, pool.getActive(Workload.BULK));
+            assertEquals(1, pool.getWaiting(Workload.BULK));
+
+            long start = System.nanoTime();
+            TransactionManager.beginTransaction();
+            Connection used = TransactionManager.getConnection();
+            assertEquals("feature 2", features.findById(2L).getDescription());
+            assertEquals(1, pool.getActive(Workload.INTERACTIVE));
+            TransactionManager.commit();
+            assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000);
+            assertEquals(0, pool.getActive(Workload.INTERACTIVE));
+            assertTrue(used.getAutoCommit());
+
+            done.countDown();
+            for (Future<Object> future : bulk) {
+                future.get(10, TimeUnit.SECONDS);
+            }
+            assertEquals(0, pool.getActive());
+        } finally {
+            done.countDown();
+            threads.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testConnectionReturnedAfterCleanups() throws SQLException {
+        TransactionManager.beginTransaction();
+        Connection used = TransactionManager.getConnection();
+        TransactionManager.beginTransaction();
+        // giao dịch lồng nhau dùng chung kết nối đã mượn
+        assertSame(used, TransactionManager.getConnection());
+        TransactionManager.commit();
+        assertEquals(1, pool.getActive());
+
+        boolean[] stillBorrowed = new boolean[1];
+        TransactionManager.registerCleanup(() -> stillBorrowed[0] = pool.getActive() == 1);
+        TransactionManager.rollback();
+        assertTrue(stillBorrowed[0]);
+        assertEquals(0, pool.getActive());
+        assertEquals(1, pool.getIdle());
+
+        // kết nối truyền vào không đi qua pool
+        TransactionManager.beginTransaction(keepAlive);
+        assertSame(keepAlive, TransactionManager.getConnection());
+        assertEquals(0, pool.getActive());
+        TransactionManager.commit();
+    }
+}
@@ -0,0 +1,190 @@
+package com.example.persistence_repository.persistence.config;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static com.example.persistence_repository.common.model.Features.feature;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.repository.SimpleRepository;
+
+public class ReadOnlyTransactionTest {
+
+    private static final String URL = "jdbc:h2:mem:readonly;DB_CLOSE_DELAY=-1;MODE=MySQL";
+    private static final String REPLICA_URL = "jdbc:h2:mem:readonly_replica;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    private Connection conn;
+    private Connection replicaConn;
+    private ConnectionPool primary;
+    private ConnectionPool replicaPool;
+    private final SimpleRepository<Feature, Long> features = new SimpleRepository<>(Feature.class);
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(URL, "sa", "");
+        replicaConn = DriverManager.getConnection(REPLICA_URL, "sa", "");
+        createTable(conn, 0);
+        createTable(replicaConn, 0);
+        try (Statement st = conn.createStatement()) {
+            st.execute("INSERT INTO Feature VALUES (1, '/f/1', 'primary')");
+        }
+        try (Statement st = replicaConn.createStatement()) {
+            st.execute("INSERT INTO Feature VALUES (1, '/f/1', 'replica')");
+        }
+        // một kết nối: các giao dịch liên tiếp dùng lại cùng kết nối
+        primary = new ConnectionPool("readonly", ReadOnlyTransactionTest::tracked, 1, 1_000);
+        replicaPool = new ConnectionPool("readonly-replica", REPLICA_URL, "sa", "", 1, 100);
+        TransactionManager.setParallelPool(primary);
+        ReplicaRouter.setShared(new ReplicaRouter(List.of(), ReplicaRouter.Strategy.ROUND_ROBIN, 0, 60_000));
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        while (TransactionManager.isActive()) {
+            TransactionManager.rollback();
+        }
+        TransactionManager.setParallelPool(null);
+        ReplicaRouter.setShared(null);
+        primary.close();
+        replicaPool.close();
+        conn.close();
+        replicaConn.close();
+    }
+
+    @Test
+    public void testWritesAreRejected() throws SQLException {
+        TransactionManager.beginReadOnly();
+        assertThrows(IllegalStateException.class, () -> features.save(feature(2)));
+        assertThrows(IllegalStateException.class, () -> features.deleteById(1L));
+        assertThrows(IllegalStateException.class, TransactionManager::getWritableConnection);
+        assertEquals("primary", features.findById(1L).getDescription());
+        TransactionManager.commit();
+        assertEquals(1, rows(conn));
+    }
+
+    @Test
+    public void testFlagsRestoredAfterCommitAndRollback() throws SQLException {
+        Connection pooled = primary.borrow();
+        int isolation = pooled.getTransactionIsolation();
+        assertNotEquals(Connection.TRANSACTION_SERIALIZABLE, isolation);
+        primary.release(pooled);
+
+        for (boolean commit : List.of(true, false)) {
+            TransactionManager.beginReadOnly(Connection.TRANSACTION_SERIALIZABLE);
+            Connection used = TransactionManager.getConnection();
+            // kết nối riêng của pool, không phải kết nối dùng chung của DBcontext
+            assertSame(pooled, used);
+            assertEquals(1, primary.getActive());
+            assertTrue(used.isReadOnly());
+            assertEquals(Connection.TRANSACTION_SERIALIZABLE, used.getTransactionIsolation());
+            if (commit) {
+                TransactionManager.commit();
+            } else {
+                TransactionManager.rollback();
+            }
+            assertFalse(used.isReadOnly());
+            assertEquals(isolation, used.getTransactionIsolation());
+            assertTrue(used.getAutoCommit());
+            assertEquals(0, primary.getActive());
+        }
+    }
+
+    @Test
+    public void testNestingRules() throws SQLException {
+        TransactionManager.beginReadOnly();
+        Connection outer = TransactionManager.getConnection();
+        TransactionManager.beginReadOnly(Connection.TRANSACTION_SERIALIZABLE);
+        // lồng nhau: dùng chung giao dịch ngoài, giữ mức cô lập của nó
+        assertSame(outer, TransactionManager.getConnection());
+        assertNotEquals(Connection.TRANSACTION_SERIALIZABLE, outer.getTransactionIsolation());
+        assertThrows(IllegalStateException.class, TransactionManager::beginTransaction);
+        assertThrows(IllegalStateException.class, () -> TransactionManager.beginTransaction(conn));
+        TransactionManager.commit();
+        assertTrue(TransactionManager.isReadOnly());
+        TransactionManager.commit();
+        assertFalse(TransactionManager.isActive());
+        assertEquals(0, primary.getActive());
+
+        // trong giao dịch đọc-ghi: beginReadOnly chỉ tham gia, vẫn ghi được
+        TransactionManager.beginTransaction(conn);
+        TransactionManager.beginReadOnly();
+        assertSame(conn, TransactionManager.getConnection());
+        assertFalse(TransactionManager.isReadOnly());
+        features.save(feature(2));
+        TransactionManager.commit();
+        TransactionManager.commit();
+        assertEquals(2, rows(conn));
+        assertEquals(0, primary.getActive());
+    }
+
+    @Test
+    public void testRoutedToReplicaUnlessPinned() throws SQLException {
+        ReplicaRouter router = new ReplicaRouter(List.of(replicaPool), ReplicaRouter.Strategy.ROUND_ROBIN, 60_000,
+                60_000);
+        ReplicaRouter.setShared(router);
+
+        TransactionManager.beginReadOnly();
+        assertTrue(TransactionManager.isOnReplica());
+        assertEquals("replica", features.findById(1L).getDescription());
+        assertEquals(1, replicaPool.getActive());
+        assertEquals(0, primary.getActive());
+        TransactionManager.commit();
+        assertEquals(0, replicaPool.getActive());
+
+        // ghi rồi commit: lần đọc sau ở lại primary
+        TransactionManager.beginTransaction(conn);
+        features.save(feature(2));
+        TransactionManager.commit();
+        TransactionManager.beginReadOnly();
+        assertFalse(TransactionManager.isOnReplica());
+        assertEquals("primary", features.findById(1L).getDescription());
+        assertEquals(1, primary.getActive());
+        TransactionManager.commit();
+        assertEquals(1, router.getPinnedReads());
+        assertEquals(0, primary.getActive());
+    }
+
+    /**
+     * H2 ignores setReadOnly(); this connection remembers the flag.
+     */
+    private static Connection tracked() throws SQLException {
+        Connection target = DriverManager.getConnection(URL, "sa", "");
+        boolean[] readOnly = new boolean[1];
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "setReadOnly":
+                            readOnly[0] = (Boolean) args[0];
+                            return null;
+                        case "isReadOnly":
+                            return readOnly[0];
+                        default:
+                            try {
+                                return method.invoke(target, args);
+                            } catch (InvocationTargetException e) {
+                                throw e.getCause();
+                            }
+                    }
+                });
+    }
+
+    private static int rows(Connection connection) throws SQLException {
+        try (Statement st = connection.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM Feature")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
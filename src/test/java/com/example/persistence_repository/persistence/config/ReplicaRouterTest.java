@@ -0,0 +1,129 @@
+package com.example.persistence_repository.persistence.config;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+public class ReplicaRouterTest {
+
+    private final List<ConnectionPool> pools = new ArrayList<>();
+    private final List<Connection> keepAlive = new ArrayList<>();
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        for (String name : List.of("replica_a", "replica_b")) {
+            Connection conn = DriverManager.getConnection(url(name), "sa", "");
+            try (Statement st = conn.createStatement()) {
+                st.execute("CREATE TABLE IF NOT EXISTS node (name VARCHAR(20))");
+                st.execute("DELETE FROM node");
+                st.execute("INSERT INTO node VALUES ('" + name + "')");
+            }
+            keepAlive.add(conn);
+            pools.add(new ConnectionPool(name, url(name), "sa", "", 2, 100));
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        pools.forEach(ConnectionPool::close);
+        for (Connection conn : keepAlive) {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testRoundRobinAlternatesReplicas() throws SQLException {
+        ReplicaRouter router = new ReplicaRouter(pools, ReplicaRouter.Strategy.ROUND_ROBIN, 0, 60_000);
+        List<String> seen = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Connection conn = router.acquire();
+            seen.add(nodeOf(conn));
+            router.release(conn);
+        }
+        assertEquals(List.of("replica_a", "replica_b", "replica_a", "replica_b"), seen);
+        assertEquals(2, router.getReplicaReads(0));
+        assertEquals(0, pools.get(0).getActive());
+    }
+
+    @Test
+    public void testLeastLoadedPicksIdleReplica() throws SQLException {
+        ReplicaRouter router = new ReplicaRouter(pools, ReplicaRouter.Strategy.LEAST_LOADED, 0, 60_000);
+        Connection first = router.acquire();
+        Connection second = router.acquire();
+        Connection third = router.acquire();
+        assertNotEquals(nodeOf(first), nodeOf(second));
+        // hai replica đang bận như nhau, lần thứ tư phải sang replica còn trống
+        Connection fourth = router.acquire();
+        assertNotEquals(nodeOf(third), nodeOf(fourth));
+        for (Connection conn : List.of(first, second, third, fourth)) {
+            router.release(conn);
+        }
+        assertEquals(2, router.getReplicaReads(0));
+        assertEquals(2, router.getReplicaReads(1));
+    }
+
+    @Test
+    public void testFailingReplicaIsSkippedAndFullRouterFallsBackToPrimary() throws SQLException {
+        ConnectionPool broken = new ConnectionPool("broken", () -> {
+            throw new SQLException("replica down");
+        }, 1, 0);
+        ReplicaRouter router = new ReplicaRouter(List.of(broken, pools.get(0)), ReplicaRouter.Strategy.ROUND_ROBIN,
+                0, 60_000);
+        Connection a = router.acquire();
+        Connection b = router.acquire();
+        assertEquals("replica_a", nodeOf(a));
+        assertEquals("replica_a", nodeOf(b));
+        assertEquals(1, router.getReplicaFailures(0));
+
+        // replica_a has 2 connections at most, both borrowed
+        assertNull(router.acquire());
+        assertEquals(1, router.getPrimaryReads());
+        router.release(a);
+        router.release(b);
+        // hết kết nối chỉ là bận, không bị đánh dấu hỏng
+        assertEquals(1, router.getReplicaBusy(1));
+        assertEquals(0, router.getReplicaFailures(1));
+        Connection c = router.acquire();
+        assertEquals("replica_a", nodeOf(c));
+        router.release(c);
+    }
+
+    @Test
+    public void testReadsStayOnPrimaryAfterWrite() throws Exception {
+        ReplicaRouter router = new ReplicaRouter(pools, ReplicaRouter.Strategy.ROUND_ROBIN, 100, 60_000);
+        router.recordWrite();
+        assertTrue(router.isPinnedToPrimary());
+        assertNull(router.acquire());
+        assertEquals(1, router.getPinnedReads());
+
+        Thread other = new Thread(() -> assertFalse(router.isPinnedToPrimary()));
+        other.start();
+        other.join();
+
+        Thread.sleep(150);
+        Connection conn = router.acquire();
+        assertNotNull(conn);
+        router.release(conn);
+    }
+
+    private static String url(String name) {
+        return "jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1";
+    }
+
+    private static String nodeOf(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement(); ResultSet rs = st.executeQuery("SELECT name FROM node")) {
+            rs.next();
+            return rs.getString(1);
+        }
+    }
+}
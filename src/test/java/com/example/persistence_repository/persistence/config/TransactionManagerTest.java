@@ -0,0 +1,102 @@
+package com.example.persistence_repository.persistence.config;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static com.example.persistence_repository.common.model.Features.feature;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.repository.SimpleRepository;
+
+public class TransactionManagerTest {
+
+    private static final String URL = "jdbc:h2:mem:parallel;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    private Connection parent;
+    private ConnectionPool pool;
+    private final SimpleRepository<Feature, Long> features = new SimpleRepository<>(Feature.class);
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        parent = DriverManager.getConnection(URL, "sa", "");
+        createTable(parent, 3);
+        pool = new ConnectionPool("parallel", URL, "sa", "", 3, 1_000);
+        TransactionManager.beginTransaction(parent);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        if (TransactionManager.isActive()) {
+            TransactionManager.rollback();
+        }
+        pool.close();
+        parent.close();
+    }
+
+    @Test
+    public void testChildrenRunConcurrentlyAndShareTheEntityCache() throws SQLException {
+        // cả ba task phải chạy cùng lúc mới qua được latch
+        CountDownLatch started = new CountDownLatch(3);
+        List<Callable<Feature>> tasks = List.of(1L, 2L, 3L).stream().<Callable<Feature>>map(id -> () -> {
+            started.countDown();
+            assertTrue(started.await(5, TimeUnit.SECONDS));
+            assertTrue(TransactionManager.isReadOnly());
+            assertNotSame(parent, TransactionManager.getConnection());
+            return features.findById(id);
+        }).toList();
+
+        List<Feature> found = TransactionManager.parallel(pool, tasks);
+
+        assertEquals(List.of("/f/1", "/f/2", "/f/3"), found.stream().map(Feature::getFeatureURL).toList());
+        assertSame(found.get(1), TransactionManager.getCache().get(Feature.class, 2L));
+        assertSame(parent, TransactionManager.getConnection());
+        assertEquals(0, pool.getActive());
+    }
+
+    @Test
+    public void testFailureIsJoinedIntoParent() {
+        List<Callable<Object>> tasks = List.of(
+                () -> features.findById(1L),
+                () -> features.save(new Feature()));
+        assertThrows(IllegalStateException.class, () -> TransactionManager.parallel(pool, tasks));
+        assertTrue(TransactionManager.isActive());
+
+        List<Callable<Object>> failing = List.of(() -> {
+            throw new Exception("boom");
+        });
+        SQLException e = assertThrows(SQLException.class, () -> TransactionManager.parallel(pool, failing));
+        assertEquals("boom", e.getCause().getMessage());
+    }
+
+    @Test
+    public void testTasksSeeParentWritesByRunningInParent() throws SQLException {
+        features.save(feature(4));
+
+        List<Callable<Integer>> tasks = List.of(features::count, features::count);
+        assertEquals(List.of(4, 4), TransactionManager.parallel(pool, tasks));
+        assertEquals(0, pool.getActive());
+    }
+
+    @Test
+    public void testChildrenKeepTheTransactionWorkload() throws SQLException {
+        TransactionManager.setWorkload(Workload.BULK);
+        List<Workload> seen = TransactionManager.parallel(pool, List.<Callable<Workload>>of(() -> {
+            assertEquals(1, pool.getActive(Workload.BULK));
+            return TransactionManager.currentWorkload();
+        }));
+        assertEquals(List.of(Workload.BULK), seen);
+        assertEquals(0, pool.getActive(Workload.BULK));
+    }
+
+}
@@ -0,0 +1,91 @@
+package com.example.persistence_repository.persistence.entity.projection;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.persistence.annotation.Column;
+import com.example.persistence_repository.persistence.annotation.Entity;
+import com.example.persistence_repository.persistence.annotation.Key;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+
+public class ProjectionMapperTest {
+
+    @Entity(tableName = "Item")
+    public static class Item {
+        @Key
+        @Column(name = "ItemID", type = "BIGINT")
+        private Long itemID;
+
+        @Column(name = "ItemName")
+        private String itemName;
+
+        @Column(name = "Quantity", type = "INT")
+        private Integer quantity;
+    }
+
+    public record ItemName(long itemID, String itemName) {
+    }
+
+    public static class ItemQuantity {
+        @Column(name = "ItemID")
+        private Long id;
+
+        @Column(name = "Quantity")
+        private long quantity;
+
+        private String notProjected;
+    }
+
+    @Test
+    public void testRecordProjection() throws Exception {
+        EntityMeta<Item> meta = EntityMeta.scanAnnotation(Item.class);
+        ProjectionMapper<ItemName> mapper = ProjectionMapper.of(meta, ItemName.class);
+        assertEquals(List.of("ItemID", "ItemName"), mapper.getColumns());
+        assertSame(mapper, ProjectionMapper.of(meta, ItemName.class)); // compile một lần
+
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:projection_record");
+                Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE Item (ItemID BIGINT PRIMARY KEY, ItemName VARCHAR(50), Quantity INT)");
+            st.execute("INSERT INTO Item VALUES (7, 'bolt', 3)");
+            try (ResultSet rs = st.executeQuery("SELECT ItemID, ItemName FROM Item")) {
+                assertTrue(rs.next());
+                assertEquals(new ItemName(7L, "bolt"), mapper.map(rs));
+            }
+        }
+    }
+
+    @Test
+    public void testDtoProjection() throws Exception {
+        EntityMeta<Item> meta = EntityMeta.scanAnnotation(Item.class);
+        ProjectionMapper<ItemQuantity> mapper = ProjectionMapper.of(meta, ItemQuantity.class);
+        assertEquals(List.of("ItemID", "Quantity"), mapper.getColumns());
+
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:projection_dto");
+                Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE Item (ItemID BIGINT PRIMARY KEY, ItemName VARCHAR(50), Quantity INT)");
+            st.execute("INSERT INTO Item VALUES (7, 'bolt', NULL)");
+            try (ResultSet rs = st.executeQuery("SELECT ItemID, Quantity FROM Item")) {
+                assertTrue(rs.next());
+                ItemQuantity dto = mapper.map(rs);
+                assertEquals(7L, dto.id);
+                assertEquals(0L, dto.quantity); // NULL -> giá trị mặc định của primitive
+                assertNull(dto.notProjected);
+            }
+        }
+    }
+
+    @Test
+    public void testUnknownMemberRejected() {
+        record Missing(Long nope) {
+        }
+        EntityMeta<Item> meta = EntityMeta.scanAnnotation(Item.class);
+        assertThrows(IllegalArgumentException.class, () -> ProjectionMapper.of(meta, Missing.class));
+    }
+}
@@ -0,0 +1,85 @@
+package com.example.persistence_repository.persistence.query.aggregate;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.persistence.annotation.Column;
+import com.example.persistence_repository.persistence.annotation.Entity;
+import com.example.persistence_repository.persistence.annotation.Key;
+import com.example.persistence_repository.persistence.entity.EntityMeta;
+import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
+import com.example.persistence_repository.persistence.query.common.Order;
+import com.example.persistence_repository.persistence.query.crud.SelectBuilder;
+
+public class AggregationTest {
+
+    @Entity(tableName = "Stock")
+    public static class Stock {
+        @Key
+        @Column(name = "StockID", type = "BIGINT")
+        private Long stockID;
+
+        @Column(name = "WarehouseID", type = "INT")
+        private Integer warehouseID;
+
+        @Column(name = "Quantity", type = "INT")
+        private Integer quantity;
+    }
+
+    @Test
+    public void testGroupByHaving() throws Exception {
+        EntityMeta<Stock> meta = EntityMeta.scanAnnotation(Stock.class);
+        try (Connection conn = DriverManager.getConnection("jdbc:h2:mem:aggregation");
+                Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE Stock (StockID BIGINT PRIMARY KEY, WarehouseID INT, Quantity INT)");
+            st.execute("INSERT INTO Stock VALUES (1, 1, 10), (2, 1, 5), (3, 2, 1), (4, 3, 50), (5, 3, 0)");
+
+            Aggregation<Stock> agg = new Aggregation<>(meta, a -> run(conn, a));
+            agg.groupBy("warehouseID")
+                    .count("items")
+                    .sum("quantity", "stock")
+                    .where(ClauseBuilder.builder().greater("Quantity", 0))
+                    .having(ClauseBuilder.builder().greater(agg.expression(AggregateFunction.SUM, "quantity"), 2))
+                    .orderBy(Order.desc("stock"));
+
+            List<AggregateRow> rows = agg.fetch();
+            assertEquals(2, rows.size());
+            assertEquals(3, rows.get(0).get("warehouseID"));
+            assertEquals(1L, rows.get(0).getLong("items")); // Quantity = 0 bị lọc bởi WHERE
+            assertEquals(50L, rows.get(0).getLong("stock"));
+            assertEquals(1, rows.get(1).get("warehouseID"));
+            assertEquals(15L, rows.get(1).getLong("stock"));
+        }
+    }
+
+    @Test
+    public void testGroupByAfterAggregateRejected() {
+        EntityMeta<Stock> meta = EntityMeta.scanAnnotation(Stock.class);
+        Aggregation<Stock> agg = new Aggregation<>(meta, a -> List.of()).count("n");
+        assertThrows(IllegalStateException.class, () -> agg.groupBy("warehouseID"));
+        assertThrows(IllegalArgumentException.class, () -> agg.sum("nope", "x"));
+    }
+
+    private static List<AggregateRow> run(Connection conn, Aggregation<Stock> agg) {
+        SelectBuilder<Stock> builder = agg.toSelectBuilder();
+        try (PreparedStatement ps = conn.prepareStatement(builder.build())) {
+            List<Object> params = builder.getParameters();
+            for (int i = 0; i < params.size(); i++) {
+                ps.setObject(i + 1, params.get(i));
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                return agg.readRows(rs);
+            }
+        } catch (Exception e) {
+            throw new AssertionError(e);
+        }
+    }
+}
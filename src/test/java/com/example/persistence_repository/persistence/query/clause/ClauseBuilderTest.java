@@ -0,0 +1,105 @@
+package com.example.persistence_repository.persistence.query.clause;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.persistence.config.Dialect;
+import com.example.persistence_repository.persistence.query.crud.SelectBuilder;
+
+public class ClauseBuilderTest {
+
+    @Test
+    public void testInListPaddedToPowerOfTwo() {
+        ClauseBuilder clause = ClauseBuilder.builder().inListPadding(true).arrayBinding(false)
+                .in("id", List.of(1L, 2L, 3L));
+        assertEquals("id IN (?,?,?,?)", clause.build());
+        assertEquals(List.of(1L, 2L, 3L, 3L), clause.getParameters()); // lặp lại giá trị cuối
+    }
+
+    @Test
+    public void testDefaultsKeepInListAsWritten() {
+        // mặc định không pad và không bind mảng, kể cả với dialect hỗ trợ mảng
+        ClauseBuilder clause = ClauseBuilder.builder(Dialect.H2).in("id", List.of(1L, 2L, 3L));
+        assertEquals("id IN (?,?,?)", clause.build());
+        assertEquals(List.of(1L, 2L, 3L), clause.getParameters());
+    }
+
+    @Test
+    public void testSameBucketSameSql() {
+        String five = ClauseBuilder.builder().inListPadding(true).arrayBinding(false)
+                .in("id", List.of(1, 2, 3, 4, 5)).build();
+        String seven = ClauseBuilder.builder().inListPadding(true).arrayBinding(false)
+                .in("id", List.of(1, 2, 3, 4, 5, 6, 7)).build();
+        assertEquals(five, seven);
+    }
+
+    @Test
+    public void testLargeInListChunked() {
+        ClauseBuilder clause = ClauseBuilder.builder().inListPadding(false).arrayBinding(false).inListMaxSize(2)
+                .in("id", List.of(1, 2, 3));
+        assertEquals("(id IN (?,?) OR id IN (?))", clause.build());
+        assertEquals(List.of(1, 2, 3), clause.getParameters());
+
+        ClauseBuilder notIn = ClauseBuilder.builder().inListPadding(false).arrayBinding(false).inListMaxSize(2)
+                .notIn("id", List.of(1, 2, 3));
+        assertEquals("(id NOT IN (?,?) AND id NOT IN (?))", notIn.build());
+    }
+
+    @Test
+    public void testArrayBinding() {
+        ClauseBuilder clause = ClauseBuilder.builder().arrayBinding(true).in("id", List.of(1L, 2L));
+        assertEquals("id = ANY(?)", clause.build());
+        assertEquals(1, clause.getParameters().size());
+        assertInstanceOf(ArrayParameter.class, clause.getParameters().get(0));
+    }
+
+    @Test
+    public void testPaddedSizeCappedAtMax() {
+        assertEquals(1, ClauseBuilder.paddedSize(1, 1000));
+        assertEquals(8, ClauseBuilder.paddedSize(5, 1000));
+        assertEquals(1000, ClauseBuilder.paddedSize(600, 1000));
+    }
+
+    @Test
+    public void testSubqueryParametersMergedInOrder() {
+        SelectBuilder<Object> activeTypes = SelectBuilder.builder("Type").alias("t")
+                .columns("t.TypeID")
+                .where("t.CategoryID = c.CategoryID AND t.Status = ?", "ACTIVE");
+        SelectBuilder<Object> bigCategories = SelectBuilder.builder("Category")
+                .columns("CategoryID")
+                .where("Size > ?", 10);
+
+        ClauseBuilder clause = ClauseBuilder.builder()
+                .equal("c.Owner", "kepter")
+                .exists(activeTypes)
+                .in("c.CategoryID", bigCategories)
+                .less("c.CreatedAt", 2024);
+
+        assertEquals("c.Owner = ? AND EXISTS (SELECT t.TypeID FROM Type AS t WHERE t.CategoryID = c.CategoryID AND t.Status = ?)"
+                + " AND c.CategoryID IN (SELECT CategoryID FROM Category WHERE Size > ?) AND c.CreatedAt < ?",
+                clause.build());
+        assertEquals(List.of("kepter", "ACTIVE", 10, 2024), clause.getParameters());
+    }
+
+    @Test
+    public void testScalarSubqueryComparison() {
+        SelectBuilder<Object> avg = SelectBuilder.builder("Item").columns("AVG(Quantity)");
+        assertEquals("Quantity > (SELECT AVG(Quantity) FROM Item)",
+                ClauseBuilder.builder().compare("Quantity", ">", avg).build());
+        assertThrows(IllegalArgumentException.class, () -> ClauseBuilder.builder().compare("Quantity", "LIKE", avg));
+    }
+
+    @Test
+    public void testSubqueryFlag() {
+        SelectBuilder<Object> big = SelectBuilder.builder("Category").columns("CategoryID").where("Size > ?", 10);
+        // giá trị chứa chữ SELECT chỉ là tham số, không phải truy vấn con
+        assertFalse(ClauseBuilder.builder().equal("Note", "SELECT 1").in("id", List.of(1L)).hasSubquery());
+        assertTrue(ClauseBuilder.builder().exists(big).hasSubquery());
+        assertTrue(ClauseBuilder.builder().compare("CategoryID", "=", big).hasSubquery());
+        assertTrue(ClauseBuilder.builder().equal("Owner", "kepter")
+                .group(g -> g.isNull("CategoryID").or().in("CategoryID", big)).hasSubquery());
+    }
+}
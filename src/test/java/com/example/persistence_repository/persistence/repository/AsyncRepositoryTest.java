@@ -0,0 +1,206 @@
+package com.example.persistence_repository.persistence.repository;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static com.example.persistence_repository.common.model.Features.feature;
+import static org.junit.jupiter.api.Assertions.*;
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.config.AsyncExecutor;
+import com.example.persistence_repository.persistence.config.AsyncTransaction;
+import com.example.persistence_repository.persistence.config.ConnectionPool;
+import com.example.persistence_repository.persistence.config.TransactionContext;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.config.VirtualThreads;
+
+public class AsyncRepositoryTest {
+
+    private static final String URL = "jdbc:h2:mem:async;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    private Connection keepAlive;
+    private AsyncExecutor executor;
+    private AsyncRepository<Feature, Long> features;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        keepAlive = DriverManager.getConnection(URL, "sa", "");
+        createTable(keepAlive, 0);
+        executor = new AsyncExecutor(4, 100, new ConnectionPool("async", URL, "sa", "", 4, 1_000));
+        features = new AsyncRepository<>(new SimpleRepository<>(Feature.class), executor);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        executor.shutdown();
+        keepAlive.close();
+    }
+
+    @Test
+    public void testOperationsRunOffTheCallingThread() {
+        List<Feature> all = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            all.add(feature(id));
+        }
+        features.saveAll(all).join();
+
+        List<CompletableFuture<Feature>> found = new ArrayList<>();
+        for (long id = 1; id <= 20; id++) {
+            found.add(features.findById(id));
+        }
+        for (int i = 0; i < found.size(); i++) {
+            assertEquals("/f/" + (i + 1), found.get(i).join().getFeatureURL());
+        }
+        assertEquals(20, features.count().join());
+        assertFalse(TransactionManager.isActive());
+        assertEquals(0, executor.getPool().getActive());
+    }
+
+    @Test
+    public void testTransactionHandleSpansWorkers() {
+        AsyncTransaction tx = executor.begin();
+        features.save(tx, feature(1));
+        features.save(tx, feature(2));
+        // bước sau phải thấy dữ liệu bước trước ghi, dù chạy trên luồng khác
+        assertEquals(2, features.count(tx).join());
+        assertEquals(0, features.count().join());
+        tx.commit().join();
+        assertEquals(2, features.count().join());
+
+        AsyncTransaction rolledBack = executor.begin();
+        features.deleteById(rolledBack, 1L);
+        assertFalse(features.isExist(rolledBack, 1L).join());
+        rolledBack.rollback().join();
+        assertTrue(features.isExist(1L).join());
+        assertEquals(0, executor.getPool().getActive());
+
+        CompletionException ended = assertThrows(CompletionException.class,
+                () -> features.findById(rolledBack, 1L).join());
+        assertInstanceOf(IllegalStateException.class, ended.getCause());
+    }
+
+    @Test
+    public void testSaturatedExecutorStillEndsTheTransaction() throws Exception {
+        // 1 luồng + hàng đợi 1: hai tác vụ chặn là đầy
+        AsyncExecutor small = new AsyncExecutor(1, 1, new ConnectionPool("async-small", URL, "sa", "", 3, 1_000));
+        AsyncRepository<Feature, Long> repository = new AsyncRepository<>(new SimpleRepository<>(Feature.class),
+                small);
+        CountDownLatch gate = new CountDownLatch(1);
+        try {
+            AsyncTransaction tx = small.begin();
+            repository.save(tx, feature(1)).join();
+            CountDownLatch running = new CountDownLatch(1);
+            List<CompletableFuture<Boolean>> blockers = new ArrayList<>();
+            blockers.add(small.submit(() -> {
+                running.countDown();
+                return gate.await(5, TimeUnit.SECONDS);
+            }));
+            // tác vụ thứ hai chỉ vào hàng đợi khi luồng duy nhất đã bận
+            assertTrue(running.await(5, TimeUnit.SECONDS));
+            blockers.add(small.submit(() -> gate.await(5, TimeUnit.SECONDS)));
+            assertEquals(2, small.getPending());
+
+            CompletionException rejected = assertThrows(CompletionException.class,
+                    () -> repository.save(tx, feature(2)).join());
+            assertInstanceOf(RejectedExecutionException.class, rejected.getCause());
+
+            // commit vẫn chạy và trả kết nối dù executor đang đầy
+            tx.commit().get(5, TimeUnit.SECONDS);
+            assertTrue(tx.isEnded());
+            assertEquals(1, small.getPool().getActive());
+
+            gate.countDown();
+            blockers.forEach(CompletableFuture::join);
+            assertEquals(0, small.getPool().getActive());
+            assertEquals(1, repository.count().join());
+        } finally {
+            gate.countDown();
+            small.shutdown();
+        }
+    }
+
+    @Test
+    public void testSuspendAndResumeMoveTransactionAcrossThreads() throws Exception {
+        Connection conn = DriverManager.getConnection(URL, "sa", "");
+        TransactionManager.beginTransaction(conn);
+        TransactionManager.getResource("key", () -> "value");
+        var context = TransactionManager.suspend();
+        assertFalse(TransactionManager.isActive());
+
+        onOtherThread(() -> {
+            TransactionManager.resume(context);
+            assertSame(conn, TransactionManager.getConnection());
+            assertEquals("value", TransactionManager.findResource("key"));
+            TransactionManager.commit();
+            return null;
+        });
+        assertFalse(TransactionManager.isActive());
+        conn.close();
+    }
+
+    @Test
+    public void testCallInLeavesThreadWithoutTransaction() throws Exception {
+        Connection conn = DriverManager.getConnection(URL, "sa", "");
+        TransactionManager.beginTransaction(conn);
+        TransactionContext context = TransactionManager.suspend();
+
+        onOtherThread(() -> {
+            assertSame(conn, TransactionManager.callIn(context, TransactionManager::getConnection));
+            assertFalse(TransactionManager.isActive());
+            return TransactionManager.callIn(context, () -> {
+                TransactionManager.commit();
+                return null;
+            });
+        });
+        assertFalse(context.isActive());
+        conn.close();
+    }
+
+    @Test
+    public void testVirtualThreadExecutor() {
+        assumeTrue(VirtualThreads.isSupported(), "virtual threads need Java 21");
+        AsyncExecutor virtual = AsyncExecutor.virtual(1_000, new ConnectionPool("virtual", URL, "sa", "", 4, 5_000));
+        try {
+            AsyncRepository<Feature, Long> onVirtual = new AsyncRepository<>(new SimpleRepository<>(Feature.class),
+                    virtual);
+            List<CompletableFuture<Feature>> saved = new ArrayList<>();
+            for (long id = 1; id <= 200; id++) {
+                saved.add(onVirtual.save(feature(id)));
+            }
+            saved.forEach(CompletableFuture::join);
+            assertEquals(200, onVirtual.count().join());
+        } finally {
+            virtual.shutdown();
+        }
+    }
+
+    private static void onOtherThread(Callable<Void> work) throws Exception {
+        FutureTask<Void> task = new FutureTask<>(work);
+        new Thread(task).start();
+        try {
+            task.get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof Error error) {
+                throw error;
+            }
+            throw (Exception) e.getCause();
+        }
+    }
+}
@@ -0,0 +1,173 @@
+package com.example.persistence_repository.persistence.repository;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static com.example.persistence_repository.common.model.Features.feature;
+import static com.example.persistence_repository.common.model.Features.insert;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.cache.QueryCache;
+import com.example.persistence_repository.persistence.config.ConnectionPool;
+import com.example.persistence_repository.persistence.config.ReplicaRouter;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
+import com.example.persistence_repository.persistence.query.common.PageRequest;
+import com.example.persistence_repository.persistence.query.crud.SelectBuilder;
+
+public class CountTest {
+
+    private static final String URL = "jdbc:h2:mem:count;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    private Connection conn;
+    private Connection other;
+    private final SimpleRepository<Feature, Long> features = new SimpleRepository<>(Feature.class);
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(URL, "sa", "");
+        other = DriverManager.getConnection(URL, "sa", "");
+        createTable(conn, 3);
+        QueryCache.counts().clear();
+        features.setCountCached(true);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        if (TransactionManager.isActive()) {
+            TransactionManager.rollback();
+        }
+        QueryCache.counts().clear();
+        conn.close();
+        other.close();
+    }
+
+    @Test
+    public void testCountServedFromCache() throws SQLException {
+        assertEquals(3, countIn(conn));
+        // ghi thẳng qua JDBC, không qua repository: cache không biết
+        try (Statement st = other.createStatement()) {
+            st.execute("INSERT INTO Feature VALUES (4, '/f/4', 'four')");
+        }
+        assertEquals(3, countIn(conn));
+
+        features.setCountCached(false);
+        assertEquals(4, countIn(conn));
+    }
+
+    @Test
+    public void testWriteInSameTransactionBypassesCache() throws SQLException {
+        assertEquals(3, countIn(conn));
+
+        TransactionManager.beginTransaction(conn);
+        features.save(feature(4));
+        assertEquals(4, features.count());
+        features.deleteById(1L);
+        features.deleteById(2L);
+        assertEquals(2, features.count());
+        TransactionManager.rollback();
+
+        assertEquals(3, countIn(conn));
+    }
+
+    @Test
+    public void testWriteInOtherTransactionInvalidates() throws SQLException {
+        assertEquals(3, countIn(conn));
+
+        TransactionManager.beginTransaction(other);
+        features.save(feature(4));
+        TransactionManager.commit();
+        assertEquals(4, countIn(conn));
+
+        TransactionManager.beginTransaction(other);
+        features.deleteById(4L);
+        features.deleteById(3L);
+        TransactionManager.commit();
+        assertEquals(2, countIn(conn));
+    }
+
+    @Test
+    public void testOnlyOwnQueriesAreCached() throws SQLException {
+        SelectBuilder<Object> all = SelectBuilder.builder("Feature").columns("FeatureID");
+        ClauseBuilder plain = ClauseBuilder.builder().greater("FeatureID", 0L);
+        TransactionManager.beginTransaction(conn);
+        assertEquals(3, features.countRecord("SELECT FeatureID FROM Feature", conn, List.of()));
+        assertEquals(3, features.findWithCondition(plain, PageRequest.of(1, 2)).getTotalElements());
+        assertEquals(3, features.findWithCondition(ClauseBuilder.builder().in("FeatureID", all),
+                PageRequest.of(1, 2)).getTotalElements());
+        TransactionManager.commit();
+
+        try (Statement st = other.createStatement()) {
+            st.execute("INSERT INTO Feature VALUES (4, '/f/4', 'four')");
+        }
+        TransactionManager.beginTransaction(conn);
+        // SQL do người gọi truyền vào và truy vấn con không vào cache
+        assertEquals(4, features.countRecord("SELECT FeatureID FROM Feature", conn, List.of()));
+        assertEquals(4, features.findWithCondition(ClauseBuilder.builder().in("FeatureID", all),
+                PageRequest.of(1, 2)).getTotalElements());
+        assertEquals(3, features.findWithCondition(plain, PageRequest.of(1, 2)).getTotalElements());
+        TransactionManager.commit();
+    }
+
+    @Test
+    public void testApproximateCountOnH2() throws SQLException {
+        createTable(conn, 100);
+        try (Statement st = conn.createStatement()) {
+            st.execute("ANALYZE");
+        }
+        TransactionManager.beginTransaction(conn);
+        long estimate = features.approximateCount();
+        // ước lượng của H2 lấy từ thống kê, cho phép lệch 10%
+        assertTrue(Math.abs(estimate - 100) <= 10, "estimate " + estimate);
+        // count() không bao giờ dùng ước lượng
+        assertEquals(100, features.count());
+    }
+
+    @Test
+    public void testReadsOutsideTransactionUseReplica() throws SQLException {
+        String replicaUrl = "jdbc:h2:mem:count_replica;DB_CLOSE_DELAY=-1;MODE=MySQL";
+        try (Connection replica = DriverManager.getConnection(replicaUrl, "sa", "");
+                ConnectionPool pool = new ConnectionPool("count-replica", replicaUrl, "sa", "", 2, 100);
+                ReplicaRouter router = new ReplicaRouter(List.of(pool), ReplicaRouter.Strategy.ROUND_ROBIN, 60_000,
+                        60_000)) {
+            createTable(replica, 0);
+            insert(replica, 1, 7);
+            ReplicaRouter.setShared(router);
+
+            assertEquals(2, features.count());
+            assertTrue(features.isExist(7L));
+            assertFalse(features.isExist(2L));
+            assertTrue(features.approximateCount() >= 0);
+            assertEquals(4, router.getReplicaReads(0));
+            assertEquals(0, pool.getActive());
+            // số đếm từ replica không vào cache dùng chung
+            assertEquals(3, countIn(conn));
+
+            // vừa ghi xong: đọc trên primary, không đụng replica
+            router.recordWrite();
+            features.isExist(7L);
+            assertEquals(1, router.getPinnedReads());
+            assertEquals(4, router.getReplicaReads(0));
+        } finally {
+            ReplicaRouter.setShared(null);
+        }
+    }
+
+    private int countIn(Connection connection) throws SQLException {
+        TransactionManager.beginTransaction(connection);
+        try {
+            return features.count();
+        } finally {
+            TransactionManager.commit();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.persistence_repository.persistence.repository;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
+
+public class KeySetTest {
+
+    private static final int ROWS = 3_000;
+
+    private Connection conn;
+    private final SimpleRepository<Feature, Long> features = new SimpleRepository<>(Feature.class);
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:keyset;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "");
+        createTable(conn, 0);
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO Feature VALUES (?, ?, ?)")) {
+            for (long id = 1; id <= ROWS; id++) {
+                ps.setLong(1, id);
+                ps.setString(2, "/f/" + id);
+                ps.setString(3, id % 2 == 0 ? "even" : "odd");
+                ps.addBatch();
+            }
+            ps.executeBatch();
+        }
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        if (TransactionManager.isActive()) {
+            TransactionManager.rollback();
+        }
+        conn.close();
+    }
+
+    @Test
+    public void testFindThroughStagedKeys() throws SQLException {
+        // nhiều hơn một batch insert và nhiều hơn repository.in-list.max-size
+        List<Long> keys = new ArrayList<>();
+        for (long id = 1; id <= 5_000; id += 2) {
+            keys.add(id);
+        }
+        keys.add(null);
+        keys.add(1L);
+        TransactionManager.beginTransaction(conn);
+        List<Feature> found = toList(features.findWithKeySet("FeatureID", keys, null));
+        assertEquals(1_500, found.size());
+        assertTrue(found.stream().allMatch(f -> f.getFeatureID() % 2 == 1));
+
+        List<Feature> filtered = toList(features.findWithKeySet("FeatureID", List.of(1L, 2L, 3L, 4L),
+                ClauseBuilder.builder().equal("Description", "even")));
+        assertEquals(2, filtered.size());
+        TransactionManager.commit();
+        assertEquals(0, stagedTables());
+    }
+
+    @Test
+    public void testDeleteThroughStagedKeys() throws SQLException {
+        List<Long> keys = new ArrayList<>();
+        for (long id = 1; id <= 2_000; id++) {
+            keys.add(id);
+        }
+        TransactionManager.beginTransaction(conn);
+        features.deleteWithKeySet("FeatureID", keys, ClauseBuilder.builder().equal("Description", "odd"));
+        TransactionManager.commit();
+        assertEquals(0, stagedTables());
+        assertEquals(ROWS - 1_000, rows());
+    }
+
+    @Test
+    public void testRollbackDropsTableAndKeepsRows() throws SQLException {
+        TransactionManager.beginTransaction(conn);
+        features.deleteWithKeySet("FeatureID", List.of(1L, 2L, 3L), null);
+        assertEquals(1, stagedTables());
+        TransactionManager.rollback();
+        // bảng tạm biến mất mà không commit lệnh xoá
+        assertEquals(0, stagedTables());
+        assertEquals(ROWS, rows());
+    }
+
+    private int stagedTables() throws SQLException {
+        try (Statement st = conn.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES"
+                        + " WHERE TABLE_NAME LIKE 'TMP_KEYS_%'")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private int rows() throws SQLException {
+        try (Connection other = DriverManager.getConnection("jdbc:h2:mem:keyset;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa",
+                "");
+                Statement st = other.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM Feature")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+
+    private static List<Feature> toList(Iterable<Feature> found) {
+        assertNotNull(found);
+        List<Feature> list = new ArrayList<>();
+        found.forEach(list::add);
+        return list;
+    }
+}
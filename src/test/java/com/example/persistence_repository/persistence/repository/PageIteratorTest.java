@@ -0,0 +1,113 @@
+package com.example.persistence_repository.persistence.repository;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static com.example.persistence_repository.common.model.Features.insert;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.config.AsyncExecutor;
+import com.example.persistence_repository.persistence.config.ConnectionPool;
+import com.example.persistence_repository.persistence.query.common.PageRequest;
+
+public class PageIteratorTest {
+
+    private static final String URL = "jdbc:h2:mem:pageiterator;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    private Connection keepAlive;
+    private AsyncExecutor executor;
+    private final SimpleRepository<Feature, Long> features = new SimpleRepository<>(Feature.class);
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        keepAlive = DriverManager.getConnection(URL, "sa", "");
+        createTable(keepAlive, 0);
+        // chèn ngược thứ tự để keyset phải tự sắp xếp
+        long[] ids = new long[25];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = 25 - i;
+        }
+        insert(keepAlive, ids);
+        executor = new AsyncExecutor(2, 10, new ConnectionPool("pages", URL, "sa", "", 2, 1_000));
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        executor.shutdown();
+        keepAlive.close();
+    }
+
+    @Test
+    public void testOffsetPagesEndAtShortPage() {
+        List<Integer> sizes = new ArrayList<>();
+        try (PageIterator<Feature> pages = features.iteratePages(null, PageRequest.of(1, 10), 2, executor)) {
+            while (pages.hasNext()) {
+                sizes.add(pages.next().size());
+            }
+            assertThrows(NoSuchElementException.class, pages::next);
+        }
+        assertEquals(List.of(10, 10, 5), sizes);
+    }
+
+    @Test
+    public void testKeysetPagesFollowKeyOrder() {
+        List<Long> ids = new ArrayList<>();
+        try (PageIterator<Feature> pages = features.iterateByKey(null, "FeatureID", 5, 1, executor)) {
+            pages.forEachRemaining(page -> page.forEach(f -> ids.add(f.getFeatureID())));
+        }
+        assertEquals(25, ids.size());
+        for (int i = 0; i < ids.size(); i++) {
+            assertEquals(i + 1L, ids.get(i));
+        }
+    }
+
+    @Test
+    public void testCloseStopsPrefetch() throws InterruptedException {
+        AtomicInteger fetched = new AtomicInteger();
+        PageIterator<Feature> pages = new PageIterator<>(executor, 5, 1, (previous, index) -> {
+            fetched.incrementAndGet();
+            return features.findPageContent(null, PageRequest.of(index + 1, 5));
+        });
+        assertEquals(5, pages.next().size());
+        pages.close();
+        assertFalse(pages.hasNext());
+
+        Thread.sleep(200);
+        // trang đầu cộng đúng depth trang đã được đặt trước khi close
+        assertEquals(2, fetched.get());
+        assertEquals(0, executor.getPool().getActive());
+    }
+
+    @Test
+    public void testZeroDepthFetchesOnDemand() throws InterruptedException {
+        AtomicInteger fetched = new AtomicInteger();
+        List<Integer> sizes = new ArrayList<>();
+        try (PageIterator<Feature> pages = new PageIterator<>(executor, 10, 0, (previous, index) -> {
+            fetched.incrementAndGet();
+            return features.findPageContent(null, PageRequest.of(index + 1, 10));
+        })) {
+            Thread.sleep(100);
+            assertEquals(0, fetched.get());
+            while (pages.hasNext()) {
+                List<Feature> page = pages.next();
+                Thread.sleep(50);
+                // không đọc trước trang nào ngoài trang hiện tại
+                assertEquals(sizes.size() + 1, fetched.get());
+                sizes.add(page.size());
+            }
+        }
+        assertEquals(List.of(10, 10, 5), sizes);
+        assertEquals(3, fetched.get());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.persistence_repository.persistence.repository;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
+import com.example.persistence_repository.persistence.query.common.Page;
+import com.example.persistence_repository.persistence.query.common.PageRequest;
+
+public class PagingTest {
+
+    private Connection conn;
+    private final List<String> statements = new ArrayList<>();
+    private final SimpleRepository<Feature, Long> features = new SimpleRepository<>(Feature.class);
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:paging;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "");
+        createTable(conn, 25);
+        // ghi lại mọi câu SQL được prepare để biết có chạy COUNT hay không
+        Connection recording = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement")) {
+                        statements.add((String) args[0]);
+                    }
+                    return method.invoke(conn, args);
+                });
+        TransactionManager.beginTransaction(recording);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        TransactionManager.rollback();
+        conn.close();
+    }
+
+    @Test
+    public void testShortPageSkipsCount() {
+        Page<Feature> last = features.findAll(PageRequest.of(3, 10));
+        assertEquals(5, size(last));
+        assertEquals(25, last.getTotalElements());
+        assertEquals(0, counts());
+
+        Page<Feature> filtered = features.findWithCondition(ClauseBuilder.builder().greater("FeatureID", 20L),
+                PageRequest.of(1, 10));
+        assertEquals(5, filtered.getTotalElements());
+        assertEquals(0, counts());
+    }
+
+    @Test
+    public void testFullOrEmptyPageStillCounts() {
+        Page<Feature> first = features.findAll(PageRequest.of(1, 10));
+        assertEquals(10, size(first));
+        assertEquals(25, first.getTotalElements());
+        assertEquals(1, counts());
+
+        // trang rỗng ở sau cuối không cho biết tổng
+        Page<Feature> beyond = features.findAll(PageRequest.of(5, 10));
+        assertEquals(0, size(beyond));
+        assertEquals(25, beyond.getTotalElements());
+        assertEquals(2, counts());
+    }
+
+    private static int size(Page<Feature> page) {
+        int size = 0;
+        for (Feature ignored : page.getContent()) {
+            size++;
+        }
+        return size;
+    }
+
+    private long counts() {
+        return statements.stream().filter(sql -> sql.startsWith("SELECT COUNT(1)")).count();
+    }
+}
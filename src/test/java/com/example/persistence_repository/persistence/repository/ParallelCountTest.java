@@ -0,0 +1,104 @@
+package com.example.persistence_repository.persistence.repository;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.config.ConnectionPool;
+import com.example.persistence_repository.persistence.config.ReplicaRouter;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
+import com.example.persistence_repository.persistence.query.common.Order;
+import com.example.persistence_repository.persistence.query.common.Page;
+import com.example.persistence_repository.persistence.query.common.PageRequest;
+import com.example.persistence_repository.persistence.query.common.Sort;
+
+public class ParallelCountTest {
+
+    private static final String URL = "jdbc:h2:mem:pcount;DB_CLOSE_DELAY=-1;MODE=MySQL";
+    private static final String REPLICA_URL = "jdbc:h2:mem:pcount_replica;DB_CLOSE_DELAY=-1;MODE=MySQL";
+
+    private Connection conn;
+    private Connection replicaConn;
+    private ConnectionPool primary;
+    private ConnectionPool replicaPool;
+    private final SimpleRepository<Feature, Long> features = new SimpleRepository<>(Feature.class);
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection(URL, "sa", "");
+        replicaConn = DriverManager.getConnection(REPLICA_URL, "sa", "");
+        // primary có 25 dòng, replica (chậm hơn) mới có 12
+        createTable(conn, 25);
+        createTable(replicaConn, 12);
+        primary = new ConnectionPool("pcount", URL, "sa", "", 3, 1_000);
+        replicaPool = new ConnectionPool("pcount-replica", REPLICA_URL, "sa", "", 3, 1_000);
+        TransactionManager.setParallelPool(primary);
+        features.setParallelCount(true);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        while (TransactionManager.isActive()) {
+            TransactionManager.rollback();
+        }
+        TransactionManager.setParallelPool(null);
+        ReplicaRouter.setShared(null);
+        primary.close();
+        replicaPool.close();
+        conn.close();
+        replicaConn.close();
+    }
+
+    @Test
+    public void testCountAndPageOnPrimary() throws SQLException {
+        ReplicaRouter.setShared(new ReplicaRouter(List.of(), ReplicaRouter.Strategy.ROUND_ROBIN, 0, 60_000));
+        TransactionManager.beginReadOnly();
+        Page<Feature> page = firstPage();
+        assertEquals(25, page.getTotalElements());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids(page));
+        TransactionManager.commit();
+
+        // giao dịch cha và ít nhất một task con đã mượn kết nối cùng lúc
+        assertTrue(primary.getIdle() >= 2);
+        assertEquals(0, primary.getActive());
+    }
+
+    @Test
+    public void testCountAndPageOnTheParentsReplica() throws SQLException {
+        ReplicaRouter.setShared(new ReplicaRouter(List.of(replicaPool), ReplicaRouter.Strategy.ROUND_ROBIN, 0,
+                60_000));
+        TransactionManager.beginReadOnly();
+        assertTrue(TransactionManager.isOnReplica());
+        Page<Feature> page = firstPage();
+        // tổng và nội dung trang đều lấy từ replica, không lẫn với primary
+        assertEquals(12, page.getTotalElements());
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L), ids(page));
+        TransactionManager.commit();
+
+        assertTrue(replicaPool.getIdle() >= 2);
+        assertEquals(0, replicaPool.getActive());
+        assertEquals(0, primary.getIdle() + primary.getActive());
+    }
+
+    private Page<Feature> firstPage() {
+        return features.findWithCondition(ClauseBuilder.builder().greater("FeatureID", 0L),
+                PageRequest.of(1, 5, Sort.by(Order.asc("FeatureID"))));
+    }
+
+    private static List<Long> ids(Page<Feature> page) {
+        List<Long> ids = new ArrayList<>();
+        page.getContent().forEach(f -> ids.add(f.getFeatureID()));
+        return ids;
+    }
+}
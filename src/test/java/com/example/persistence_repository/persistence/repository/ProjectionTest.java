@@ -0,0 +1,87 @@
+package com.example.persistence_repository.persistence.repository;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.annotation.Column;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
+
+public class ProjectionTest {
+
+    public record FeatureLink(Long featureID, @Column(name = "FeatureURL") String url) {
+    }
+
+    public static class FeatureText {
+        @Column(name = "FeatureID")
+        private long id;
+
+        @Column(name = "Description")
+        private String text;
+
+        private String notProjected;
+    }
+
+    private Connection conn;
+    private final List<String> statements = new ArrayList<>();
+    private final SimpleRepository<Feature, Long> features = new SimpleRepository<>(Feature.class);
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:projection;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "");
+        createTable(conn, 10);
+        Connection recording = (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { Connection.class }, (proxy, method, args) -> {
+                    if (method.getName().equals("prepareStatement")) {
+                        statements.add((String) args[0]);
+                    }
+                    return method.invoke(conn, args);
+                });
+        TransactionManager.beginTransaction(recording);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        TransactionManager.rollback();
+        conn.close();
+    }
+
+    @Test
+    public void testRecordWithFilter() {
+        ClauseBuilder clause = ClauseBuilder.builder().greater("FeatureID", 6L).and().less("FeatureID", 9L);
+        List<FeatureLink> links = features.findProjected(FeatureLink.class, clause);
+
+        assertEquals(List.of(new FeatureLink(7L, "/f/7"), new FeatureLink(8L, "/f/8")), links);
+        // chỉ đọc các cột của record, điều kiện giữ nguyên tham số
+        assertEquals(List.of("SELECT FeatureID, FeatureURL FROM Feature WHERE FeatureID > ? AND FeatureID < ?"),
+                statements);
+    }
+
+    @Test
+    public void testDtoWithoutFilter() {
+        List<FeatureText> texts = features.findProjected(FeatureText.class, null);
+
+        assertEquals(10, texts.size());
+        FeatureText third = texts.stream().filter(t -> t.id == 3).findFirst().orElseThrow();
+        assertEquals("feature 3", third.text);
+        assertNull(third.notProjected);
+        assertEquals(List.of("SELECT FeatureID, Description FROM Feature"), statements);
+
+        // điều kiện rỗng đọc mọi dòng, không khớp dòng nào thì trả về danh sách rỗng
+        assertEquals(10, features.findProjected(FeatureText.class, ClauseBuilder.builder()).size());
+        assertTrue(features.findProjected(FeatureLink.class, ClauseBuilder.builder().equal("FeatureID", 11L))
+                .isEmpty());
+    }
+}
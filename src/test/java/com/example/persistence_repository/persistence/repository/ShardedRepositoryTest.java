@@ -0,0 +1,162 @@
+package com.example.persistence_repository.persistence.repository;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static com.example.persistence_repository.common.model.Features.feature;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.config.ConcurrencyLimiter;
+import com.example.persistence_repository.persistence.config.ConnectionPool;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
+import com.example.persistence_repository.persistence.query.common.Order;
+import com.example.persistence_repository.persistence.query.common.Page;
+import com.example.persistence_repository.persistence.query.common.PageRequest;
+import com.example.persistence_repository.persistence.query.common.Sort;
+
+public class ShardedRepositoryTest {
+
+    private static final int SHARDS = 3;
+
+    private final List<ConnectionPool> pools = new ArrayList<>();
+    private final List<Connection> keepAlive = new ArrayList<>();
+    private ShardedRepository<Feature, Long> features;
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        for (int i = 0; i < SHARDS; i++) {
+            String url = "jdbc:h2:mem:shard" + i + ";DB_CLOSE_DELAY=-1;MODE=MySQL";
+            Connection conn = DriverManager.getConnection(url, "sa", "");
+            createTable(conn, 0);
+            keepAlive.add(conn);
+            pools.add(new ConnectionPool("shard" + i, url, "sa", "", 4, 1_000));
+        }
+        features = new ShardedRepository<>(Feature.class, pools);
+        List<Feature> all = new ArrayList<>();
+        for (long id = 1; id <= 30; id++) {
+            all.add(feature(id));
+        }
+        features.saveAll(all);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        pools.forEach(ConnectionPool::close);
+        for (Connection conn : keepAlive) {
+            conn.close();
+        }
+    }
+
+    @Test
+    public void testRowsLiveOnTheirShardOnly() throws SQLException {
+        int stored = 0;
+        for (int i = 0; i < SHARDS; i++) {
+            int rows = rowsOn(i);
+            assertTrue(rows > 0, "shard " + i + " is empty");
+            stored += rows;
+        }
+        assertEquals(30, stored);
+        assertEquals(30, features.count());
+
+        Feature f = features.findById(17L);
+        assertEquals("/f/17", f.getFeatureURL());
+        assertNull(features.findById(99L));
+
+        features.deleteById(17L);
+        assertNull(features.findById(17L));
+        assertEquals(29, features.count());
+    }
+
+    @Test
+    public void testFindAllByIdKeepsKeyOrder() {
+        List<Long> ids = new ArrayList<>();
+        features.findAllById(List.of(9L, 2L, 99L, 25L, 14L)).forEach(f -> ids.add(f.getFeatureID()));
+        assertEquals(List.of(9L, 2L, 25L, 14L), ids);
+    }
+
+    @Test
+    public void testPagesAreMergedAndLimitedGlobally() {
+        PageRequest request = PageRequest.of(2, 4, Sort.by(Order.desc("FeatureID")));
+        Page<Feature> page = features.findWithCondition(ClauseBuilder.builder().greater("FeatureID", 5L), request);
+        List<Long> ids = new ArrayList<>();
+        page.getContent().forEach(f -> ids.add(f.getFeatureID()));
+        // 25 dòng khớp điều kiện, trang 2 (cỡ 4) theo thứ tự giảm dần
+        assertEquals(List.of(26L, 25L, 24L, 23L), ids);
+        assertEquals(25, page.getTotalElements());
+
+        Page<Feature> last = features.findAll(PageRequest.of(8, 4, Sort.by(Order.asc("FeatureID"))));
+        List<Long> lastIds = new ArrayList<>();
+        last.getContent().forEach(f -> lastIds.add(f.getFeatureID()));
+        assertEquals(List.of(29L, 30L), lastIds);
+    }
+
+    @Test
+    public void testMergeFollowsShardCollation() throws SQLException {
+        // cột không phân biệt hoa thường: a01, A02, a03, ... theo thứ tự id
+        for (Connection conn : keepAlive) {
+            try (Statement st = conn.createStatement()) {
+                st.execute("ALTER TABLE Feature ALTER COLUMN Description VARCHAR_IGNORECASE(255)");
+                st.execute("UPDATE Feature SET Description = CASE WHEN MOD(FeatureID, 2) = 0 THEN 'A' ELSE 'a' END"
+                        + " || LPAD(CAST(FeatureID AS VARCHAR), 2, '0')");
+            }
+        }
+        Sort byDescription = Sort.by(Order.asc("Description"));
+
+        // so sánh nhị phân mặc định không khớp với thứ tự của shard
+        assertNotEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L),
+                ids(features.findAll(PageRequest.of(1, 6, byDescription))));
+
+        features.setCollation(String.CASE_INSENSITIVE_ORDER);
+        assertEquals(List.of(1L, 2L, 3L, 4L, 5L, 6L), ids(features.findAll(PageRequest.of(1, 6, byDescription))));
+        assertEquals(List.of(7L, 8L, 9L, 10L, 11L, 12L),
+                ids(features.findAll(PageRequest.of(2, 6, byDescription))));
+        assertThrows(IllegalArgumentException.class, () -> features.setCollation(null));
+    }
+
+    @Test
+    public void testOperationHoldsOneSlot() throws SQLException {
+        ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 1, 1, 1_000, 0.9, 0);
+        TransactionManager.setConcurrencyLimiter(limiter);
+        try {
+            // một slot cho cả ba giao dịch shard
+            assertEquals(30, features.count());
+            assertEquals(0, limiter.getInFlight());
+
+            // trong giao dịch đã có slot: không lấy thêm
+            TransactionManager.beginTransaction(keepAlive.get(0));
+            assertEquals(30, features.count());
+            assertEquals(1, limiter.getInFlight());
+            TransactionManager.commit();
+            assertEquals(0, limiter.getInFlight());
+            assertEquals(0, limiter.getRejected());
+        } finally {
+            TransactionManager.setConcurrencyLimiter(null);
+        }
+    }
+
+    private static List<Long> ids(Page<Feature> page) {
+        List<Long> ids = new ArrayList<>();
+        page.getContent().forEach(f -> ids.add(f.getFeatureID()));
+        return ids;
+    }
+
+    private int rowsOn(int shard) throws SQLException {
+        try (Statement st = keepAlive.get(shard).createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM Feature")) {
+            rs.next();
+            return rs.getInt(1);
+        }
+    }
+}
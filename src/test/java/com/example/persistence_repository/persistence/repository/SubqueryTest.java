@@ -0,0 +1,56 @@
+package com.example.persistence_repository.persistence.repository;
+
+import static com.example.persistence_repository.common.model.Features.createTable;
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import com.example.persistence_repository.common.model.Feature;
+import com.example.persistence_repository.persistence.config.TransactionManager;
+import com.example.persistence_repository.persistence.query.clause.ClauseBuilder;
+import com.example.persistence_repository.persistence.query.crud.SelectBuilder;
+
+public class SubqueryTest {
+
+    private Connection conn;
+    private final SimpleRepository<Feature, Long> features = new SimpleRepository<>(Feature.class);
+
+    @BeforeEach
+    public void setUp() throws SQLException {
+        conn = DriverManager.getConnection("jdbc:h2:mem:subquery;DB_CLOSE_DELAY=-1;MODE=MySQL", "sa", "");
+        try (Statement st = conn.createStatement()) {
+            st.execute("DROP TABLE IF EXISTS FeatureTag");
+            st.execute("CREATE TABLE FeatureTag (FeatureID BIGINT, Tag VARCHAR(50))");
+            st.execute("INSERT INTO FeatureTag VALUES (1, 'hot'), (2, 'cold'), (3, 'hot')");
+        }
+        createTable(conn, 3);
+        TransactionManager.beginTransaction(conn);
+    }
+
+    @AfterEach
+    public void tearDown() throws SQLException {
+        TransactionManager.rollback();
+        conn.close();
+    }
+
+    @Test
+    public void testCorrelatedExistsOnTableName() {
+        SelectBuilder<Object> hotTags = SelectBuilder.builder("FeatureTag").alias("t")
+                .columns("t.FeatureID")
+                .where("t.FeatureID = Feature.FeatureID AND t.Tag = ?", "hot");
+        ClauseBuilder clause = ClauseBuilder.builder().notEqual("Description", "feature 3").exists(hotTags);
+
+        List<Long> ids = new ArrayList<>();
+        features.findWithCondition(clause).forEach(f -> ids.add(f.getFeatureID()));
+        assertEquals(List.of(1L), ids);
+    }
+}